@@ -0,0 +1,124 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import HotelBookingSystem.Bookings;
+import HotelBookingSystem.CalendarBackend;
+import HotelBookingSystem.RoomType;
+
+/**
+ * JMH benchmarks for the Bookings hot paths (checkAvailability and createBooking) for each CalendarBackend, over
+ * calendars of 1k to 10M booked nights, different stay lengths and a configurable proportion of requests that fall
+ * on nights that are already in the calendar. Each operation has a single-threaded and a multi-threaded variant.
+ * Every request is for the same RoomType, so the multi-threaded variants measure contention on a single calendar
+ * (and a 10M night calendar is only built once per trial). Each booking made by createBooking is cancelled straight
+ * away, so the calendar and the ledger stay the same size over the trial, and the time measured is that of a
+ * booking and its cancellation.
+ * @author Jonathan Janzen
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class bookingsBenchmark {
+	
+	static final LocalDate ORIGIN = LocalDate.parse("2000-01-01");
+	static final int REQUESTS = 4096;	//size of the pre-generated request sequence (a power of two)
+	
+	@Param({"TREE", "ARRAY", "SEGMENT_TREE", "ATOMIC", "PRIMITIVE_TREE", "PERSISTENT_TREE", "RUN_LENGTH"})
+	CalendarBackend backend;
+	
+	@Param({"1000", "100000", "10000000"})
+	int calendarSize;
+	
+	@Param({"1", "7", "30"})
+	int stayLength;
+	
+	@Param({"1.0", "0.5"})
+	double hitRatio;
+	
+	static final RoomType TYPE = RoomType.QUEEN;
+	
+	Bookings bookings;
+	LocalDate[] startDates;
+	LocalDate[] endDates;
+	
+	/**
+	 * Books every night of the calendar once, and generates the request sequence. Misses fall after the end of
+	 * the booked nights.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		bookings = new Bookings(backend);
+		//Enough rooms that createBooking never runs out
+		bookings.setNumRooms(TYPE, Integer.MAX_VALUE / 2);
+		bookings.createBooking(TYPE, ORIGIN, ORIGIN.plusDays(calendarSize));
+		
+		Random random = new Random(42);
+		startDates = new LocalDate[REQUESTS];
+		endDates = new LocalDate[REQUESTS];
+		for (int i = 0; i < REQUESTS; i++) {
+			long start = random.nextInt(Math.max(1, calendarSize - stayLength));
+			if (random.nextDouble() >= hitRatio) start += calendarSize;
+			startDates[i] = ORIGIN.plusDays(start);
+			endDates[i] = startDates[i].plusDays(stayLength);
+		}
+	}
+	
+	/**
+	 * Per-thread position in the request sequence.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+	}
+	
+	@Benchmark
+	public int checkAvailability(Cursor cursor) {
+		int i = cursor.next++ & (REQUESTS - 1);
+		return bookings.checkAvailability(TYPE, startDates[i]);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public int checkAvailabilityContended(Cursor cursor) {
+		int i = cursor.next++ & (REQUESTS - 1);
+		return bookings.checkAvailability(TYPE, startDates[i]);
+	}
+	
+	@Benchmark
+	public long createBooking(Cursor cursor) {
+		int i = cursor.next++ & (REQUESTS - 1);
+		long id = bookings.book(TYPE, startDates[i], endDates[i]);
+		bookings.cancelBooking(id);
+		return id;
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public long createBookingContended(Cursor cursor) {
+		int i = cursor.next++ & (REQUESTS - 1);
+		long id = bookings.book(TYPE, startDates[i], endDates[i]);
+		bookings.cancelBooking(id);
+		return id;
+	}
+}
@@ -0,0 +1,123 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import HotelBookingSystem.RedBlackBST;
+
+/**
+ * JMH benchmarks for the RedBlackBST hot paths (get and put), over calendars of 1k to 10M nights with a configurable
+ * proportion of lookups that hit an existing night. put writes to its own copy of the tree, which is built again
+ * before every iteration, so that each iteration starts from a calendar of the same size.
+ * @author Jonathan Janzen
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class redBlackBSTBenchmark {
+	
+	static final LocalDate ORIGIN = LocalDate.parse("2000-01-01");
+	static final int KEYS = 4096;	//size of the pre-generated key sequence (a power of two)
+	
+	@Param({"1000", "100000", "10000000"})
+	int calendarSize;
+	
+	@Param({"1.0", "0.5", "0.0"})
+	double hitRatio;
+	
+	RedBlackBST<LocalDate, Integer> tree;
+	LocalDate[] keys;
+	
+	/**
+	 * Builds a tree with one entry on every other night (so that the nights in between are misses) and the key
+	 * sequence to be looked up.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		tree = build(calendarSize);
+		
+		Random random = new Random(42);
+		keys = new LocalDate[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			long night = 2L * random.nextInt(calendarSize);
+			keys[i] = ORIGIN.plusDays(random.nextDouble() < hitRatio ? night : night + 1);
+		}
+	}
+	
+	/**
+	 * Builds a tree with one entry on every other night.
+	 * @param size The number of entries.
+	 * @return The tree.
+	 */
+	static RedBlackBST<LocalDate, Integer> build(int size) {
+		LocalDate[] stored = new LocalDate[size];
+		Integer[] vals = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			stored[i] = ORIGIN.plusDays(2L * i);
+			vals[i] = i % 10;
+		}
+		return new RedBlackBST<LocalDate, Integer>(stored, vals, size);
+	}
+	
+	/**
+	 * The tree written to by put, built again before every iteration. The misses of an iteration insert at most
+	 * KEYS new nights, which are thrown away with the tree at the end of the iteration.
+	 */
+	@State(Scope.Benchmark)
+	public static class Written {
+		RedBlackBST<LocalDate, Integer> tree;
+		
+		/**
+		 * Builds the tree to be written to.
+		 * @param benchmark The benchmark state, holding the calendar size.
+		 */
+		@Setup(Level.Iteration)
+		public void setUp(redBlackBSTBenchmark benchmark) {
+			tree = build(benchmark.calendarSize);
+		}
+	}
+	
+	/**
+	 * Per-thread position in the key sequence.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+	}
+	
+	@Benchmark
+	public Integer get(Cursor cursor) {
+		return tree.get(keys[cursor.next++ & (KEYS - 1)]);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public Integer getContended(Cursor cursor) {
+		//Reads only, so sharing the tree between threads is safe
+		return tree.get(keys[cursor.next++ & (KEYS - 1)]);
+	}
+	
+	@Benchmark
+	public void put(Written written, Cursor cursor) {
+		written.tree.put(keys[cursor.next++ & (KEYS - 1)], cursor.next & 7);
+	}
+}
@@ -0,0 +1,128 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import HotelBookingSystem.Bookings;
+import HotelBookingSystem.CalendarBackend;
+import HotelBookingSystem.RoomType;
+import HotelBookingSystem.ShardedBookingEngine;
+
+/**
+ * JMH benchmarks comparing the booking throughput of a ShardedBookingEngine with that of a single locked Bookings
+ * object, as the number of client threads grows. Requests are spread over every RoomType and a year of nights, so
+ * that they fall on every shard. Run with -t to vary the number of threads of the *Scaling variants. The engine has
+ * no cancellation, so both engines are created again before every iteration rather than growing over the trial.
+ * @author Jonathan Janzen
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class shardedEngineBenchmark {
+	
+	static final LocalDate ORIGIN = LocalDate.parse("2000-01-01");
+	static final int REQUESTS = 4096;	//size of the pre-generated request sequence (a power of two)
+	
+	@Param({"1", "4"})
+	int shardsPerType;
+	
+	@Param({"1", "7"})
+	int stayLength;
+	
+	Bookings bookings;
+	ShardedBookingEngine engine;
+	RoomType[] types;
+	LocalDate[] startDates;
+	LocalDate[] endDates;
+	
+	/**
+	 * Generates the request sequence.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		types = new RoomType[REQUESTS];
+		startDates = new LocalDate[REQUESTS];
+		endDates = new LocalDate[REQUESTS];
+		for (int i = 0; i < REQUESTS; i++) {
+			types[i] = RoomType.values()[random.nextInt(RoomType.values().length)];
+			startDates[i] = ORIGIN.plusDays(random.nextInt(365));
+			endDates[i] = startDates[i].plusDays(stayLength);
+		}
+	}
+	
+	/**
+	 * Creates both engines with enough rooms that bookings never run out.
+	 */
+	@Setup(Level.Iteration)
+	public void createEngines() {
+		bookings = new Bookings(CalendarBackend.TREE);
+		engine = new ShardedBookingEngine(shardsPerType, 7, CalendarBackend.TREE);
+		for (RoomType type : RoomType.values()) {
+			bookings.setNumRooms(type, Integer.MAX_VALUE / 2);
+			engine.setNumRooms(type, Integer.MAX_VALUE / 2);
+		}
+	}
+	
+	/**
+	 * Stops the shard threads.
+	 */
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		engine.close();
+	}
+	
+	/**
+	 * Per-thread position in the request sequence.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+	}
+	
+	@Benchmark
+	public boolean bookLocked(Cursor cursor) {
+		int i = cursor.next++ & (REQUESTS - 1);
+		return bookings.createBooking(types[i], startDates[i], endDates[i]);
+	}
+	
+	@Benchmark
+	@Threads(8)
+	public boolean bookLockedScaling(Cursor cursor) {
+		int i = cursor.next++ & (REQUESTS - 1);
+		return bookings.createBooking(types[i], startDates[i], endDates[i]);
+	}
+	
+	@Benchmark
+	public long bookSharded(Cursor cursor) {
+		int i = cursor.next++ & (REQUESTS - 1);
+		return engine.book(types[i], startDates[i], endDates[i]).join();
+	}
+	
+	@Benchmark
+	@Threads(8)
+	public long bookShardedScaling(Cursor cursor) {
+		int i = cursor.next++ & (REQUESTS - 1);
+		return engine.book(types[i], startDates[i], endDates[i]).join();
+	}
+}
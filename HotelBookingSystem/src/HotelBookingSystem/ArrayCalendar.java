@@ -0,0 +1,116 @@
+package HotelBookingSystem;
+
+import java.util.Arrays;
+
+/**
+ * BookingCalendar backed by a primitive int[] indexed by the offset of a night from a base epoch day.
+ * Lookups are a single array read with no boxing. The array covers a contiguous range of nights and
+ * grows in whole chunks (in either direction) when a night outside of that range is written.
+ * @author Jonathan Janzen
+ *
+ */
+public class ArrayCalendar implements BookingCalendar {
+	
+	private static final int CHUNK_SIZE = 512;
+	
+	private long baseDay;		//epoch day stored at index 0
+	private int[] nights;		//rooms booked by offset from baseDay, EMPTY if never written
+	private int size;			//number of nights that are not EMPTY
+	
+	/**
+	 * Constructor for an empty ArrayCalendar.
+	 */
+	public ArrayCalendar() {
+		this.nights = new int[0];
+		this.size = 0;
+	}
+	
+	@Override
+	public int get(long day) {
+		long offset = day - baseDay;
+		if (offset < 0 || offset >= nights.length) return EMPTY;
+		return nights[(int) offset];
+	}
+	
+	@Override
+	public void put(long day, int booked) {
+		if (booked < 0) throw new IllegalArgumentException("The number of rooms booked must not be negative.");
+		ensureCapacity(day);
+		int offset = (int) (day - baseDay);
+		if (nights[offset] == EMPTY) size++;
+		nights[offset] = booked;
+	}
+	
+	@Override
+	public void forEach(NightVisitor visitor) {
+		for (int i = 0; i < nights.length; i++) {
+			if (nights[i] != EMPTY) visitor.visit(baseDay + i, nights[i]);
+		}
+	}
+	
+	@Override
+	public int evictBefore(long day, NightVisitor evicted) {
+		if (nights.length == 0 || day <= baseDay) return 0;
+		int end = (int) Math.min(day - baseDay, nights.length);
+		int removed = 0;
+		for (int i = 0; i < end; i++) {
+			if (nights[i] == EMPTY) continue;
+			evicted.visit(baseDay + i, nights[i]);
+			nights[i] = EMPTY;
+			removed++;
+		}
+		size -= removed;
+		
+		//Drop the whole chunks before the day, so that the array only covers the window that is still live
+		long newBase = Math.min(Math.floorDiv(day, CHUNK_SIZE) * CHUNK_SIZE, baseDay + nights.length);
+		if (newBase > baseDay) {
+			nights = Arrays.copyOfRange(nights, (int) (newBase - baseDay), nights.length);
+			baseDay = newBase;
+		}
+		return removed;
+	}
+	
+	@Override
+	public void read(long from, int[] out, int offset, int length) {
+		Arrays.fill(out, offset, offset + length, EMPTY);
+		//Copy the part of the range that overlaps the backing array
+		long lo = Math.max(from, baseDay);
+		long hi = Math.min(from + length, baseDay + nights.length);
+		if (lo < hi) System.arraycopy(nights, (int) (lo - baseDay), out, offset + (int) (lo - from), (int) (hi - lo));
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Grows the backing array (in whole chunks) so that it covers the given night. Growth is at least the
+	 * current length so that repeatedly booking further into the future stays amortised O(1).
+	 * @param day The night that must be addressable after the call.
+	 */
+	private void ensureCapacity(long day) {
+		if (nights.length == 0) {
+			//First write: allocate the single chunk containing the day
+			baseDay = Math.floorDiv(day, CHUNK_SIZE) * CHUNK_SIZE;
+			nights = new int[CHUNK_SIZE];
+			Arrays.fill(nights, EMPTY);
+			return;
+		}
+		long lowDay = baseDay;
+		long highDay = baseDay + nights.length;
+		if (day >= lowDay && day < highDay) return;
+		
+		if (day < lowDay) lowDay = Math.min(Math.floorDiv(day, CHUNK_SIZE) * CHUNK_SIZE, lowDay - nights.length);
+		else highDay = Math.max((Math.floorDiv(day, CHUNK_SIZE) + 1) * CHUNK_SIZE, highDay + nights.length);
+		if (highDay - lowDay > Integer.MAX_VALUE - CHUNK_SIZE) {
+			throw new IllegalArgumentException("Date range is too large for an ArrayCalendar.");
+		}
+		
+		int[] grown = new int[(int) (highDay - lowDay)];
+		Arrays.fill(grown, EMPTY);
+		System.arraycopy(nights, 0, grown, (int) (baseDay - lowDay), nights.length);
+		nights = grown;
+		baseDay = lowDay;
+	}
+}
@@ -0,0 +1,247 @@
+package HotelBookingSystem;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free BookingCalendar in which the rooms booked on each night are a counter in an AtomicIntegerArray.
+ * tryReserve() takes one room on each night of the stay in turn with compare-and-set, and if it reaches a
+ * night with no rooms left it gives back the rooms it has already taken (a rollback). Stays that do not
+ * overlap never touch the same counter, so throughput scales with the number of threads rather than being
+ * serialised on a lock.
+ * 
+ * Nights are stored in pages of PAGE_SIZE counters. The page directory is copied (under a lock) when a new
+ * page is needed, which only happens the first time a night in that page is written; pages themselves are
+ * never replaced, so a write through an older copy of the directory is never lost. The one exception is
+ * evictBefore(), which drops the pages before the sliding window; nights there must no longer be written.
+ * 
+ * The number of failed compare-and-set attempts (retries) and of rollbacks are counted so that contention
+ * can be monitored.
+ * @author Jonathan Janzen
+ *
+ */
+public class AtomicCalendar implements BookingCalendar {
+	
+	private static final int PAGE_SIZE = 1024;
+	
+	/**
+	 * Private class for an immutable page directory, covering the pages from basePage onwards.
+	 * @author Jonathan Janzen
+	 *
+	 */
+	private static class Directory {
+		private final long basePage;
+		private final AtomicIntegerArray[] pages;
+		
+		/**
+		 * Constructor for a Directory.
+		 * @param _basePage Page number (epoch day / PAGE_SIZE) of the first entry.
+		 * @param _pages Pages of the directory, null where no night has been written.
+		 */
+		public Directory(long _basePage, AtomicIntegerArray[] _pages) {
+			this.basePage = _basePage;
+			this.pages = _pages;
+		}
+	}
+	
+	private volatile Directory directory;
+	private final AtomicInteger size;
+	private final LongAdder casRetries;
+	private final LongAdder rollbacks;
+	
+	/**
+	 * Constructor for an empty AtomicCalendar.
+	 */
+	public AtomicCalendar() {
+		this.directory = new Directory(0, new AtomicIntegerArray[0]);
+		this.size = new AtomicInteger();
+		this.casRetries = new LongAdder();
+		this.rollbacks = new LongAdder();
+	}
+	
+	@Override
+	public int get(long day) {
+		AtomicIntegerArray page = pageOf(day);
+		if (page == null) return EMPTY;
+		return page.get(Math.floorMod(day, PAGE_SIZE));
+	}
+	
+	@Override
+	public void put(long day, int booked) {
+		if (booked < 0) throw new IllegalArgumentException("The number of rooms booked must not be negative.");
+		int previous = createPage(day).getAndSet(Math.floorMod(day, PAGE_SIZE), booked);
+		if (previous == EMPTY) size.incrementAndGet();
+	}
+	
+	@Override
+	public int size() {
+		return size.get();
+	}
+	
+	@Override
+	public void forEach(NightVisitor visitor) {
+		Directory current = directory;
+		for (int p = 0; p < current.pages.length; p++) {
+			AtomicIntegerArray page = current.pages[p];
+			if (page == null) continue;
+			long firstDay = (current.basePage + p) * PAGE_SIZE;
+			for (int i = 0; i < PAGE_SIZE; i++) {
+				int value = page.get(i);
+				if (value != EMPTY) visitor.visit(firstDay + i, value);
+			}
+		}
+	}
+	
+	@Override
+	public int evictBefore(long day, NightVisitor evicted) {
+		synchronized (this) {
+			Directory current = directory;
+			long firstKept = Math.floorDiv(day, PAGE_SIZE) - current.basePage;
+			int removed = 0;
+			for (int p = 0; p < current.pages.length && p <= firstKept; p++) {
+				AtomicIntegerArray page = current.pages[p];
+				if (page == null) continue;
+				long firstDay = (current.basePage + p) * PAGE_SIZE;
+				int end = p < firstKept ? PAGE_SIZE : (int) (day - firstDay);
+				for (int i = 0; i < end; i++) {
+					int value = page.getAndSet(i, EMPTY);
+					if (value == EMPTY) continue;
+					evicted.visit(firstDay + i, value);
+					removed++;
+				}
+			}
+			size.addAndGet(-removed);
+			
+			//Drop the pages that lie entirely before the day
+			if (firstKept > 0) {
+				int dropped = (int) Math.min(firstKept, current.pages.length);
+				AtomicIntegerArray[] pages = new AtomicIntegerArray[current.pages.length - dropped];
+				System.arraycopy(current.pages, dropped, pages, 0, pages.length);
+				directory = new Directory(pages.length == 0 ? 0 : current.basePage + dropped, pages);
+			}
+			return removed;
+		}
+	}
+	
+	@Override
+	public boolean tryReserve(long from, long to, int capacity) {
+		//Optimistic pre-check: most rejections are found here without writing anything
+		if (minAvailable(from, to, capacity) == 0) return false;
+		
+		for (long day = from; day < to; day++) {
+			AtomicIntegerArray page = createPage(day);
+			int offset = Math.floorMod(day, PAGE_SIZE);
+			while (true) {
+				int current = page.get(offset);
+				int booked = current == EMPTY ? 0 : current;
+				if (booked >= capacity) {
+					//Another thread took the last room since the pre-check: give back the nights already taken
+					release(from, day, capacity);
+					rollbacks.increment();
+					return false;
+				}
+				if (page.compareAndSet(offset, current, booked + 1)) {
+					if (current == EMPTY) size.incrementAndGet();
+					break;
+				}
+				casRetries.increment();
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public void reserve(long from, long to, int capacity) {
+		if (!tryReserve(from, to, capacity)) throw new IllegalStateException("No room is available over the whole range.");
+	}
+	
+	@Override
+	public boolean isLockFree() {
+		return true;
+	}
+	
+	/**
+	 * Gives back one room on every night of a range, either a rolled back part of a tryReserve() or a cancelled
+	 * booking. The nights keep their entries, so they remain counted by size(). Safe to call concurrently with
+	 * tryReserve().
+	 * @param from The first night of the range (inclusive), as an epoch day.
+	 * @param to The last night of the range (exclusive), as an epoch day.
+	 * @param capacity The number of rooms on every night of the range.
+	 */
+	@Override
+	public void release(long from, long to, int capacity) {
+		for (long day = from; day < to; day++) {
+			AtomicIntegerArray page = createPage(day);
+			int offset = Math.floorMod(day, PAGE_SIZE);
+			while (true) {
+				int current = page.get(offset);
+				if (page.compareAndSet(offset, current, Math.max(current - 1, 0))) {
+					if (current == EMPTY) size.incrementAndGet();
+					break;
+				}
+				casRetries.increment();
+			}
+		}
+	}
+	
+	/**
+	 * Number of compare-and-set attempts that failed because another thread changed the same night first.
+	 * @return The total number of retries since the calendar was created.
+	 */
+	public long getCasRetries() {
+		return casRetries.sum();
+	}
+	
+	/**
+	 * Number of reservations that had to give back nights they had already taken.
+	 * @return The total number of rollbacks since the calendar was created.
+	 */
+	public long getRollbacks() {
+		return rollbacks.sum();
+	}
+	
+	/**
+	 * Function to find the page holding a given night.
+	 * @param day The night to be found, as an epoch day.
+	 * @return The page holding the night, or null if no night of that page has been written.
+	 */
+	private AtomicIntegerArray pageOf(long day) {
+		Directory current = directory;
+		long index = Math.floorDiv(day, PAGE_SIZE) - current.basePage;
+		if (index < 0 || index >= current.pages.length) return null;
+		return current.pages[(int) index];
+	}
+	
+	/**
+	 * Function to find the page holding a given night, creating it (and growing the directory) if needed.
+	 * @param day The night to be found, as an epoch day.
+	 * @return The page holding the night.
+	 */
+	private AtomicIntegerArray createPage(long day) {
+		AtomicIntegerArray page = pageOf(day);
+		if (page != null) return page;
+		synchronized (this) {
+			//Check again, as another thread may have created the page while this one was waiting
+			Directory current = directory;
+			long pageNumber = Math.floorDiv(day, PAGE_SIZE);
+			long index = pageNumber - current.basePage;
+			if (index >= 0 && index < current.pages.length && current.pages[(int) index] != null) {
+				return current.pages[(int) index];
+			}
+			
+			long basePage = current.pages.length == 0 ? pageNumber : Math.min(current.basePage, pageNumber);
+			long endPage = current.pages.length == 0 ? pageNumber + 1 : Math.max(current.basePage + current.pages.length, pageNumber + 1);
+			if (endPage - basePage > Integer.MAX_VALUE) throw new IllegalArgumentException("Date range is too large for an AtomicCalendar.");
+			AtomicIntegerArray[] pages = new AtomicIntegerArray[(int) (endPage - basePage)];
+			if (current.pages.length > 0) {
+				System.arraycopy(current.pages, 0, pages, (int) (current.basePage - basePage), current.pages.length);
+			}
+			page = new AtomicIntegerArray(PAGE_SIZE);
+			for (int i = 0; i < PAGE_SIZE; i++) page.set(i, EMPTY);
+			pages[(int) (pageNumber - basePage)] = page;
+			directory = new Directory(basePage, pages);
+			return page;
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package HotelBookingSystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only cold storage for nights that have been evicted from the live calendars of a Bookings object (see
+ * Bookings.advanceHorizon()). Past nights are no longer needed to check or make bookings, but are kept here so that
+ * the booking history is not lost.
+ * 
+ * Nights are appended to an in-memory buffer while the calendars are being evicted, and written and forced to disk
+ * by flush(). File layout: an 8 byte header (the magic number and a version), followed by records of RECORD_SIZE
+ * bytes made up of a RoomType byte, the night as an epoch day (long) and its final availability (int). If the
+ * process stops between flushing the archive and recording the eviction in the journal, the same nights may be
+ * archived again after a restart; the later record of a night is the one that counts.
+ * @author Jonathan Janzen
+ *
+ */
+public class BookingArchive implements AutoCloseable {
+	
+	private static final int MAGIC = 0x48424152;	//"HBAR"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	private static final int RECORD_SIZE = 13;
+	
+	private final FileChannel channel;
+	private ByteBuffer pending;		//records appended but not yet written
+	
+	/**
+	 * Constructor for a BookingArchive, opening (or creating) the archive file at the given path. New records are
+	 * appended after any records already in the file.
+	 * @param path The path of the archive file.
+	 * @throws IOException If the file cannot be opened, or is not an archive.
+	 */
+	public BookingArchive(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.pending = ByteBuffer.allocate(1024 * RECORD_SIZE);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			if (channel.size() < HEADER_SIZE) {
+				header.putInt(MAGIC).putInt(VERSION).flip();
+				channel.truncate(0);
+				channel.write(header, 0);
+				channel.force(true);
+			} else {
+				channel.read(header, 0);
+				header.flip();
+				if (header.getInt() != MAGIC) throw new IOException(path + " is not a booking archive.");
+				int version = header.getInt();
+				if (version != VERSION) throw new IOException("Unsupported booking archive version " + version + ".");
+				//Drop a partly written record at the end, so that new records are appended on a record boundary
+				long records = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+				channel.truncate(HEADER_SIZE + records * RECORD_SIZE);
+			}
+			channel.position(channel.size());
+		} catch (IOException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+	
+	/**
+	 * Appends an evicted night to the archive. The record is only written to the file by flush().
+	 * @param type RoomType of the night.
+	 * @param day The night, as an epoch day.
+	 * @param available The availability of the night when it was evicted.
+	 */
+	public synchronized void append(RoomType type, long day, int available) {
+		if (pending.remaining() < RECORD_SIZE) {
+			ByteBuffer grown = ByteBuffer.allocate(pending.capacity() * 2);
+			pending.flip();
+			grown.put(pending);
+			pending = grown;
+		}
+		pending.put((byte) type.getValue()).putLong(day).putInt(available);
+	}
+	
+	/**
+	 * Writes every record appended so far to the file and forces it to disk.
+	 * @throws IOException If the archive could not be written.
+	 */
+	public synchronized void flush() throws IOException {
+		pending.flip();
+		while (pending.hasRemaining()) channel.write(pending);
+		pending.clear();
+		channel.force(false);
+	}
+	
+	/**
+	 * Visits every archived night of a RoomType, in the order in which they were archived.
+	 * @param type RoomType of the nights to be visited.
+	 * @param visitor Function called with each night and its availability.
+	 * @return The number of nights visited.
+	 * @throws IOException If the archive could not be written or read.
+	 */
+	public synchronized long forEach(RoomType type, NightVisitor visitor) throws IOException {
+		flush();
+		ByteBuffer buffer = ByteBuffer.allocate(4096 * RECORD_SIZE);
+		long position = HEADER_SIZE;
+		long end = channel.size();
+		long visited = 0;
+		while (position < end) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) break;
+			}
+			buffer.flip();
+			position += buffer.limit();
+			while (buffer.remaining() >= RECORD_SIZE) {
+				byte recordType = buffer.get();
+				long day = buffer.getLong();
+				int available = buffer.getInt();
+				if (recordType != type.getValue()) continue;
+				visitor.visit(day, available);
+				visited++;
+			}
+		}
+		return visited;
+	}
+	
+	/**
+	 * Flushes any pending records and closes the archive file.
+	 * @throws IOException If the archive could not be written or closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+}
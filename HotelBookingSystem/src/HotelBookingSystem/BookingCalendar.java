@@ -0,0 +1,239 @@
+package HotelBookingSystem;
+
+/**
+ * Interface for the per-RoomType calendar store used by Bookings. A calendar maps a night (given as an
+ * epoch day, i.e. LocalDate.toEpochDay()) to the number of rooms booked on that night.
+ * 
+ * Availability is never stored: it is the capacity of the night (the number of rooms of the type on it, passed to
+ * the range operations below) less the rooms booked, worked out when it is read. Changing the number of rooms
+ * therefore never touches the calendar. A night that has never been written is reported as EMPTY, and has no
+ * rooms booked. Implementations are selected through the CalendarBackend enum so that the different storage
+ * strategies can be compared against each other on the same workload.
+ * @author Jonathan Janzen
+ *
+ */
+public interface BookingCalendar {
+	
+	/**
+	 * Value returned by get() for a night that has no entry in the calendar.
+	 */
+	public static final int EMPTY = -1;
+	
+	/**
+	 * Value returned by earliestWindow() when no night in the search range starts a free window.
+	 */
+	public static final long NOT_FOUND = Long.MIN_VALUE;
+	
+	/**
+	 * Function to return the number of rooms booked on a given night.
+	 * @param day The night to look up, as an epoch day.
+	 * @return The number of rooms booked on that night, or EMPTY if the night has never been written.
+	 */
+	public int get(long day);
+	
+	/**
+	 * Stores the number of rooms booked on a given night, overwriting any previous value.
+	 * @param day The night to be written, as an epoch day.
+	 * @param booked The number of rooms booked on that night (must be 0 or greater).
+	 */
+	public void put(long day, int booked);
+	
+	/**
+	 * Number of nights that have an entry in the calendar.
+	 * @return The number of nights that have been written at least once.
+	 */
+	public int size();
+	
+	/**
+	 * Visits every night that has an entry in the calendar, in ascending order of date.
+	 * @param visitor Function called with each night and its number of rooms booked.
+	 */
+	public void forEach(NightVisitor visitor);
+	
+	/**
+	 * Removes every night before the given day from the calendar, e.g. nights that have passed and will never be
+	 * checked or booked again, so that the calendar only holds a sliding window of nights. Each removed night is
+	 * passed to the visitor first, in ascending order of date, so that it can be archived.
+	 * @param day The first night to be kept, as an epoch day.
+	 * @param evicted Function called with each removed night and its number of rooms booked.
+	 * @return The number of nights removed.
+	 */
+	public int evictBefore(long day, NightVisitor evicted);
+	
+	/**
+	 * Loads a set of entries into an empty calendar, e.g. when restoring a snapshot. The default implementation
+	 * performs one put() per night; implementations that can build their structure directly from sorted input
+	 * should override it.
+	 * @param days The nights to be loaded, as epoch days, in strictly ascending order.
+	 * @param values The number of rooms booked on each night.
+	 * @param n The number of entries to be loaded from the start of the two arrays.
+	 */
+	public default void load(long[] days, int[] values, int n) {
+		for (int i = 0; i < n; i++) {
+			put(days[i], values[i]);
+		}
+	}
+	
+	/**
+	 * Writes a set of nights in one go, e.g. the nights changed by a batch of bookings. The default implementation
+	 * performs one put() per night; a calendar with lock-free reads publishes them as a single version.
+	 * @param days The nights to be written, as epoch days.
+	 * @param values The number of rooms booked on each night.
+	 * @param n The number of entries to be written from the start of the two arrays.
+	 */
+	public default void putAll(long[] days, int[] values, int n) {
+		for (int i = 0; i < n; i++) {
+			put(days[i], values[i]);
+		}
+	}
+	
+	/**
+	 * Reads the entries of a range of consecutive nights into an array. The default implementation performs
+	 * one lookup per night; implementations that can walk a range in order should override it.
+	 * @param from The first night to be read, as an epoch day.
+	 * @param out The array to be filled, with EMPTY for each night that has no entry.
+	 * @param offset Index in out at which the entry for the first night is stored.
+	 * @param length Number of consecutive nights to be read.
+	 */
+	public default void read(long from, int[] out, int offset, int length) {
+		for (int i = 0; i < length; i++) {
+			out[offset + i] = get(from + i);
+		}
+	}
+	
+	/**
+	 * Function to determine the minimum availability over a range of nights, i.e. the capacity less the most rooms
+	 * booked on any night of the range. The default implementation performs one lookup per night.
+	 * @param from The first night of the range (inclusive), as an epoch day.
+	 * @param to The last night of the range (exclusive), as an epoch day.
+	 * @param capacity The number of rooms on every night of the range.
+	 * @return The smallest availability of any night in the range (never less than 0), or Integer.MAX_VALUE for
+	 * an empty range.
+	 */
+	public default int minAvailable(long from, long to, int capacity) {
+		if (from >= to) return Integer.MAX_VALUE;
+		int max = 0;
+		for (long day = from; day < to && max < capacity; day++) max = Math.max(max, get(day));
+		return Math.max(capacity - max, 0);
+	}
+	
+	/**
+	 * Function to find the bottleneck of a range of nights, i.e. the earliest night with the minimum
+	 * availability (the most rooms booked). The default implementation performs one lookup per night.
+	 * @param from The first night of the range (inclusive), as an epoch day.
+	 * @param to The last night of the range (exclusive), as an epoch day. Must be after from.
+	 * @param capacity The number of rooms on every night of the range.
+	 * @return The earliest night in the range with the smallest availability, as an epoch day.
+	 */
+	public default long bottleneck(long from, long to, int capacity) {
+		long bottleneck = from;
+		int max = EMPTY;
+		for (long day = from; day < to && max < capacity; day++) {
+			int checkVal = Math.max(get(day), 0);
+			if (checkVal > max) {
+				max = checkVal;
+				bottleneck = day;
+			}
+		}
+		return bottleneck;
+	}
+	
+	/**
+	 * Function to find the earliest run of consecutive nights that all have at least a given number of rooms
+	 * available. The default implementation reads the range in blocks and scans it once, keeping the length of
+	 * the current run; implementations that keep range summaries should override it to skip over whole runs.
+	 * @param from The earliest night the run may start on (inclusive), as an epoch day.
+	 * @param to The night by which the run must have ended (exclusive), as an epoch day.
+	 * @param nights The length of the run, in nights (1 or more).
+	 * @param rooms The number of rooms that must be available on every night of the run.
+	 * @param capacity The number of rooms on every night of the range.
+	 * @return The first night of the earliest such run, as an epoch day, or NOT_FOUND if there is none.
+	 */
+	public default long earliestWindow(long from, long to, int nights, int rooms, int capacity) {
+		int[] block = new int[(int) Math.max(0, Math.min(256, to - from))];
+		int run = 0;
+		for (long day = from; day < to; day += block.length) {
+			int length = (int) Math.min(block.length, to - day);
+			read(day, block, 0, length);
+			for (int i = 0; i < length; i++) {
+				//A night fits if no more than capacity - rooms of its rooms are booked
+				if (Math.max(block[i], 0) > capacity - rooms) run = 0;
+				else if (++run == nights) return day + i - nights + 1;
+			}
+		}
+		return NOT_FOUND;
+	}
+	
+	/**
+	 * Reserves one room on every night of a range, incrementing the rooms booked on each night. Nights
+	 * without an entry are created with one room booked. The caller is responsible for checking that
+	 * minAvailable() over the range is greater than 0 beforehand.
+	 * @param from The first night of the range (inclusive), as an epoch day.
+	 * @param to The last night of the range (exclusive), as an epoch day.
+	 * @param capacity The number of rooms on every night of the range.
+	 */
+	public default void reserve(long from, long to, int capacity) {
+		for (long day = from; day < to; day++) put(day, Math.max(get(day), 0) + 1);
+	}
+	
+	/**
+	 * Gives back one room on every night of a range, e.g. when a booking is cancelled, decrementing the
+	 * rooms booked on each night (never below 0).
+	 * @param from The first night of the range (inclusive), as an epoch day.
+	 * @param to The last night of the range (exclusive), as an epoch day.
+	 * @param capacity The number of rooms on every night of the range.
+	 */
+	public default void release(long from, long to, int capacity) {
+		for (long day = from; day < to; day++) put(day, Math.max(get(day) - 1, 0));
+	}
+	
+	/**
+	 * Attempts to reserve one room on every night of a range, only if every night has a room available.
+	 * The default implementation is a minAvailable() check followed by reserve(), and is only atomic if the
+	 * caller holds a lock on the calendar.
+	 * @param from The first night of the range (inclusive), as an epoch day.
+	 * @param to The last night of the range (exclusive), as an epoch day.
+	 * @param capacity The number of rooms on every night of the range.
+	 * @return True if the range was reserved, false if some night had no rooms available.
+	 */
+	public default boolean tryReserve(long from, long to, int capacity) {
+		if (minAvailable(from, to, capacity) == 0) return false;
+		reserve(from, to, capacity);
+		return true;
+	}
+	
+	/**
+	 * Function to determine whether the calendar can be read and written by several threads at once without
+	 * any external locking. Bookings skips its per-type locks for such calendars.
+	 * @return True if every operation of the calendar is thread-safe on its own.
+	 */
+	public default boolean isLockFree() {
+		return false;
+	}
+	
+	/**
+	 * Function to determine the height of the search tree behind the calendar, for monitoring. Walks the whole
+	 * tree, so it should not be called on the hot path.
+	 * @return The height of the tree, or -1 if the calendar is empty or is not a tree.
+	 */
+	public default int height() {
+		return -1;
+	}
+	
+	/**
+	 * Number of rotations performed by the search tree behind the calendar since it was created, for monitoring.
+	 * @return The number of rotations, or 0 if the calendar is not a tree (or does not count them).
+	 */
+	public default long getRotations() {
+		return 0;
+	}
+	
+	/**
+	 * Function to determine whether the calendar can be read while another thread is writing to it, without any
+	 * external locking. Writes may still need to be serialised. Bookings skips its read locks for such calendars.
+	 * @return True if reads are thread-safe on their own (always true for a lock-free calendar).
+	 */
+	public default boolean hasLockFreeReads() {
+		return isLockFree();
+	}
+}
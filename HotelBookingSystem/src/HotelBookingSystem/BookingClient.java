@@ -0,0 +1,142 @@
+package HotelBookingSystem;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDate;
+
+/**
+ * Blocking client for a BookingServer (see BookingServer for the protocol). Each call such as book() sends one
+ * request and waits for its response. To pipeline, queue requests with send() and then collect their responses in
+ * the same order with receive(): the queued requests are only written when the buffer fills up or a response is
+ * asked for, so a whole burst goes out in one write. Keep the number of requests in flight to a few thousand, as
+ * the server stops reading from a client whose responses are not being read.
+ * 
+ * A BookingClient is not thread-safe; give each thread its own connection.
+ * @author Jonathan Janzen
+ *
+ */
+public class BookingClient implements AutoCloseable {
+	
+	private static final int BUFFERED_REQUESTS = 256;
+	
+	private final SocketChannel channel;
+	private final ByteBuffer out;	//requests queued but not yet written
+	private final ByteBuffer in;	//responses read but not yet received
+	
+	/**
+	 * Constructor for a BookingClient, connecting to a server.
+	 * @param address Address of the server.
+	 * @throws IOException If the server cannot be reached.
+	 */
+	public BookingClient(InetSocketAddress address) throws IOException {
+		this.channel = SocketChannel.open(address);
+		channel.socket().setTcpNoDelay(true);
+		this.out = ByteBuffer.allocate(BUFFERED_REQUESTS * BookingServer.REQUEST_SIZE);
+		this.in = ByteBuffer.allocate(BUFFERED_REQUESTS * BookingServer.RESPONSE_SIZE);
+		in.flip();
+	}
+	
+	/**
+	 * Queues a request, writing the queue out first if it is full.
+	 * @param op The operation (one of the BookingServer.OP_ constants).
+	 * @param type RoomType of the request (ignored by OP_CANCEL, and may then be null).
+	 * @param a First operand of the request.
+	 * @param b Second operand of the request.
+	 * @throws IOException If the connection has failed.
+	 */
+	public void send(byte op, RoomType type, long a, long b) throws IOException {
+		if (out.remaining() < BookingServer.REQUEST_SIZE) flush();
+		out.put(op).put(type == null ? 0 : (byte) type.getValue()).putLong(a).putLong(b);
+	}
+	
+	/**
+	 * Writes every queued request to the server.
+	 * @throws IOException If the connection has failed.
+	 */
+	public void flush() throws IOException {
+		out.flip();
+		while (out.hasRemaining()) channel.write(out);
+		out.clear();
+	}
+	
+	/**
+	 * Waits for the response to the oldest request that has not yet been answered, writing any queued requests
+	 * first.
+	 * @return The value of the response (see BookingServer for the value of each operation).
+	 * @throws IOException If the connection has failed or been closed by the server.
+	 * @throws IllegalArgumentException If the server rejected the request as malformed.
+	 */
+	public long receive() throws IOException {
+		if (out.position() > 0) flush();
+		if (in.remaining() < BookingServer.RESPONSE_SIZE) {
+			in.compact();
+			while (in.position() < BookingServer.RESPONSE_SIZE) {
+				if (channel.read(in) < 0) throw new EOFException("The server closed the connection.");
+			}
+			in.flip();
+		}
+		byte status = in.get();
+		long value = in.getLong();
+		if (status != BookingServer.STATUS_OK) throw new IllegalArgumentException("The server rejected the request.");
+		return value;
+	}
+	
+	/**
+	 * Function to check the availability of a RoomType on a given night.
+	 * @param type RoomType to check the availability of.
+	 * @param date The night to be checked.
+	 * @return Number of rooms available of the given type.
+	 * @throws IOException If the connection has failed.
+	 */
+	public int checkAvailability(RoomType type, LocalDate date) throws IOException {
+		send(BookingServer.OP_CHECK, type, date.toEpochDay(), 0);
+		return (int) receive();
+	}
+	
+	/**
+	 * Function to book a room of a given type over a range of dates.
+	 * @param type RoomType to be booked.
+	 * @param startDate First night of the booking.
+	 * @param endDate Day after the last night of the booking.
+	 * @return The ID of the booking, or -1 if it could not be made.
+	 * @throws IOException If the connection has failed.
+	 */
+	public long book(RoomType type, LocalDate startDate, LocalDate endDate) throws IOException {
+		send(BookingServer.OP_BOOK, type, startDate.toEpochDay(), endDate.toEpochDay());
+		return receive();
+	}
+	
+	/**
+	 * Sets the number of rooms of a given type.
+	 * @param type RoomType to be set.
+	 * @param n Number of rooms of the type.
+	 * @throws IOException If the connection has failed.
+	 */
+	public void setNumRooms(RoomType type, int n) throws IOException {
+		send(BookingServer.OP_SET_ROOMS, type, n, 0);
+		receive();
+	}
+	
+	/**
+	 * Cancels a booking by its ID.
+	 * @param id The ID of the booking.
+	 * @return True if the booking was cancelled, false if there was no such booking.
+	 * @throws IOException If the connection has failed.
+	 */
+	public boolean cancelBooking(long id) throws IOException {
+		send(BookingServer.OP_CANCEL, null, id, 0);
+		return receive() == 1;
+	}
+	
+	/**
+	 * Closes the connection. Requests still queued are not sent.
+	 * @throws IOException If the connection could not be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
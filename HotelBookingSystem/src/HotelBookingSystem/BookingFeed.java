@@ -0,0 +1,217 @@
+package HotelBookingSystem;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-process feed of the changes made to a Bookings object, so that downstream systems (a channel manager, a rate
+ * shopper, caches of availability) learn of each change as it happens instead of polling checkAvailability() for
+ * every type and date. Each change is a compact event (type, startDay, endDay, delta): the availability of the type
+ * changed by delta rooms on every night from startDay up to endDay, e.g. -1 over its stay for a booking, +1 for a
+ * cancellation, or the change in the number of rooms for setNumRooms() (see Bookings.setFeed()).
+ * 
+ * The events are kept in a bounded ring of preallocated slots, each holding the event as three longs and a sequence
+ * number, so publishing allocates nothing. A publisher claims the next position with a single atomic increment and
+ * never waits for a consumer: once the ring is full, each new event overwrites the oldest one. Any number of
+ * consumers can subscribe, each reading the ring from its own position at its own pace. A consumer that falls a
+ * full lap behind is told explicitly how many events it has missed (Listener.onDropped()) and carries on from the
+ * oldest event still held, so that it can, for example, reload the availability it caches. Its lag() shows how close
+ * it is to being overrun, which lets a slow consumer shed work before it starts losing events.
+ * 
+ * A slot is written under a sequence lock: its sequence number is odd while it is being written and even once the
+ * event is published, and a consumer only accepts an event if the sequence number is the same before and after it
+ * reads it.
+ * @author Jonathan Janzen
+ *
+ */
+public class BookingFeed {
+	
+	//First or last night of an event that applies to every night before or after the other one
+	public static final long OPEN_START = Long.MIN_VALUE;
+	public static final long OPEN_END = Long.MAX_VALUE;
+	
+	private static final int WORDS_PER_EVENT = 3;
+	
+	private final AtomicLongArray sequences;	//2 * position + 1 while a slot is written, 2 * position + 2 once published
+	private final AtomicLongArray events;		//startDay, endDay, then type and delta, for each slot
+	private final int mask;
+	private final AtomicLong tail;				//next position to be claimed by a publisher
+	private final CopyOnWriteArrayList<Consumer> consumers;
+	
+	/**
+	 * Interface for receiving the events of a BookingFeed, one call per event in the order in which they were
+	 * published.
+	 */
+	public interface Listener {
+		
+		/**
+		 * Called for each event that is read.
+		 * @param type RoomType that changed.
+		 * @param startDay First night of the change, as an epoch day (OPEN_START for every night before endDay).
+		 * @param endDay Day after the last night of the change, as an epoch day (OPEN_END for every night from startDay).
+		 * @param delta Change in the number of rooms available on each of those nights.
+		 */
+		void onChange(RoomType type, long startDay, long endDay, int delta);
+		
+		/**
+		 * Called when the consumer has fallen so far behind that events have been overwritten before it read them.
+		 * @param count The number of events missed.
+		 */
+		void onDropped(long count);
+	}
+	
+	/**
+	 * Constructor for an empty BookingFeed.
+	 * @param capacity The number of events that the ring holds (a power of two).
+	 */
+	public BookingFeed(int capacity) {
+		if (capacity < 1 || Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("The capacity must be a power of two.");
+		this.sequences = new AtomicLongArray(capacity);
+		this.events = new AtomicLongArray(capacity * WORDS_PER_EVENT);
+		this.mask = capacity - 1;
+		this.tail = new AtomicLong();
+		this.consumers = new CopyOnWriteArrayList<Consumer>();
+	}
+	
+	/**
+	 * Publishes an event, overwriting the oldest event if the ring is full. May be called by any thread, and never
+	 * waits for a consumer.
+	 * @param type RoomType that changed.
+	 * @param startDay First night of the change, as an epoch day (or OPEN_START).
+	 * @param endDay Day after the last night of the change, as an epoch day (or OPEN_END).
+	 * @param delta Change in the number of rooms available on each of those nights.
+	 * @return The position of the event in the feed.
+	 */
+	public long publish(RoomType type, long startDay, long endDay, int delta) {
+		long position = tail.getAndIncrement();
+		int slot = (int) position & mask;
+		//Only wait for a publisher that is still writing the same slot a full lap earlier (which would have to stall
+		//for a whole lap of events), never for a consumer
+		long previous = position > mask ? 2 * (position - mask - 1) + 2 : 0;
+		while (sequences.get(slot) != previous) Thread.onSpinWait();
+		sequences.set(slot, 2 * position + 1);
+		events.set(slot * WORDS_PER_EVENT, startDay);
+		events.set(slot * WORDS_PER_EVENT + 1, endDay);
+		events.set(slot * WORDS_PER_EVENT + 2, ((long) type.getValue() << 32) | (delta & 0xFFFFFFFFL));
+		sequences.set(slot, 2 * position + 2);
+		return position;
+	}
+	
+	/**
+	 * Adds a new consumer, which reads every event published from now on.
+	 * @return The consumer, to be polled by a single thread.
+	 */
+	public Consumer subscribe() {
+		Consumer consumer = new Consumer(tail.get());
+		consumers.add(consumer);
+		return consumer;
+	}
+	
+	/**
+	 * Removes a consumer, so that it no longer counts towards getMaxLag().
+	 * @param consumer The consumer returned by subscribe().
+	 */
+	public void unsubscribe(Consumer consumer) {
+		consumers.remove(consumer);
+	}
+	
+	/**
+	 * Function to get the number of events published so far.
+	 * @return The position of the next event to be published.
+	 */
+	public long getPublished() {
+		return tail.get();
+	}
+	
+	/**
+	 * Function to get the lag of the slowest consumer, for monitoring: once it reaches capacity(), that consumer
+	 * starts to miss events.
+	 * @return The largest number of events published but not yet read by a consumer (0 with no consumers).
+	 */
+	public long getMaxLag() {
+		long max = 0;
+		for (Consumer consumer : consumers) max = Math.max(max, consumer.lag());
+		return max;
+	}
+	
+	/**
+	 * Function to get the number of events that the ring can hold.
+	 * @return The capacity of the ring.
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+	
+	/**
+	 * A reader of the feed with its own position, so that each consumer sees every event regardless of the others.
+	 * A Consumer must only be polled by one thread at a time.
+	 */
+	public final class Consumer {
+		
+		private volatile long cursor;	//next position to be read
+		private volatile long dropped;	//events overwritten before they were read
+		
+		/**
+		 * Constructor for a Consumer.
+		 * @param _cursor The first position to be read.
+		 */
+		private Consumer(long _cursor) {
+			this.cursor = _cursor;
+		}
+		
+		/**
+		 * Reads the events published since the last call, in order, handing each of them to the listener. If the
+		 * consumer has been overrun, the listener is first told how many events were missed.
+		 * @param listener Receiver of the events.
+		 * @param max The largest number of events to be read.
+		 * @return The number of events read (not counting those missed).
+		 */
+		public int poll(Listener listener, int max) {
+			int n = 0;
+			while (n < max) {
+				long position = cursor;
+				int slot = (int) position & mask;
+				long sequence = sequences.get(slot);
+				if (sequence == 2 * position + 2) {
+					long startDay = events.get(slot * WORDS_PER_EVENT);
+					long endDay = events.get(slot * WORDS_PER_EVENT + 1);
+					long word = events.get(slot * WORDS_PER_EVENT + 2);
+					//The event is only whole if no publisher has started to overwrite it while it was being read
+					if (sequences.get(slot) == sequence) {
+						cursor = position + 1;
+						listener.onChange(RoomType.fromValue((int) (word >>> 32)), startDay, endDay, (int) word);
+						n++;
+						continue;
+					}
+				} else if (sequence < 2 * position + 2) {
+					//The event has not been published yet (or is still being written)
+					return n;
+				}
+				
+				//The slot has been written again a lap later: skip to the oldest event still held
+				long oldest = Math.max(tail.get() - capacity(), position + 1);
+				dropped += oldest - position;
+				cursor = oldest;
+				listener.onDropped(oldest - position);
+			}
+			return n;
+		}
+		
+		/**
+		 * Function to get how far the consumer is behind the publishers.
+		 * @return The number of events published but not yet read.
+		 */
+		public long lag() {
+			return Math.max(tail.get() - cursor, 0);
+		}
+		
+		/**
+		 * Function to get the number of events that the consumer has missed.
+		 * @return The total number of events overwritten before they were read.
+		 */
+		public long getDropped() {
+			return dropped;
+		}
+	}
+}
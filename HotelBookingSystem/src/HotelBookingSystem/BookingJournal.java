@@ -0,0 +1,393 @@
+package HotelBookingSystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Append-only write-ahead journal for a Bookings object, so that reservations survive a restart. Every successful
+ * booking (with its room, if rooms are assigned), every cancellation, every change to the number of rooms, every
+ * room given to an earlier booking and every move of the horizon is appended as a fixed-size binary record, and on
+ * startup the journal is replayed into an empty Bookings object to rebuild its calendars and its ledger.
+ * 
+ * Records are first appended to an in-memory buffer. A caller that needs its record to be durable calls
+ * awaitDurable(), and the first such caller becomes the leader: it writes everything buffered so far to the file
+ * and forces it to disk, while the callers that arrive in the meantime wait and are covered by the leader's (or
+ * the next leader's) single fsync. This group commit means that durability costs one fsync per batch of
+ * concurrent bookings rather than one per booking.
+ * 
+ * Bookings and cancellations made without a lock (on the ATOMIC backend) may be appended in a different order from
+ * the one they were made in, so replay does not depend on their order: a booking is restored as it was made,
+ * without checking the number of rooms, and a cancellation read before its booking is applied once the booking is
+ * read.
+ * 
+ * File layout: a header (the magic number, a version and a table of the names of the RoomTypes, see
+ * RoomType.putNames()), followed by records of RECORD_SIZE bytes made up of an operation byte, a RoomType byte, three
+ * longs (two operands and a booking ID) and an int (a room). A record that was only partly written when the process
+ * stopped is discarded when the journal is opened again. If the types registered have changed since the journal
+ * was written, it is rewritten for the types now registered (matching them by name) before it is opened.
+ * @author Jonathan Janzen
+ *
+ */
+public class BookingJournal implements AutoCloseable {
+	
+	private static final int MAGIC = 0x48424a4c;	//"HBJL"
+	private static final int VERSION = 5;
+	private static final int HEADER_SIZE = 8;		//magic and version, before the table of types
+	private static final int RECORD_SIZE = 30;
+	
+	private static final byte OP_BOOKING = 1;		//a = start epoch day, b = end epoch day, id = booking ID, room = room assigned
+	private static final byte OP_SET_NUM_ROOMS = 2;	//a = number of rooms, b and id unused
+	private static final byte OP_CANCELLATION = 3;	//id = booking ID, a and b unused
+	private static final byte OP_HORIZON = 4;		//a = first live epoch day, b and id unused
+	private static final byte OP_SET_NUM_ROOMS_RANGE = 5;	//a = start epoch day, b = end epoch day, id = number of rooms (-1 to clear)
+	private static final byte OP_ASSIGN_ROOM = 6;	//id = booking ID, room = room assigned, a and b unused
+	
+	private final FileChannel channel;
+	private final int types;		//number of types named in the header
+	private final long dataStart;	//offset of the first record
+	private final Object lock = new Object();
+	private ByteBuffer pending;		//records appended but not yet handed to a leader
+	private ByteBuffer writing;		//records being written by the current leader
+	private long appended;			//sequence number of the last record appended
+	private long durable;			//sequence number of the last record forced to disk
+	private boolean flushing;		//true while a leader is writing
+	private IOException failure;	//set if a write has failed, after which the journal is unusable
+	
+	/**
+	 * Constructor for a BookingJournal, opening (or creating) the journal file at the given path. New records are
+	 * appended after any records already in the file.
+	 * @param path The path of the journal file.
+	 * @throws IOException If the file cannot be opened, is not a journal, or names a RoomType that is not registered.
+	 */
+	public BookingJournal(Path path) throws IOException {
+		RoomType[] registered = RoomType.values();
+		translateTypes(path, registered);
+		this.types = registered.length;
+		this.dataStart = HEADER_SIZE + RoomType.namesSize(registered);
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.pending = ByteBuffer.allocate(64 * RECORD_SIZE);
+		this.writing = ByteBuffer.allocate(64 * RECORD_SIZE);
+		try {
+			if (channel.size() < HEADER_SIZE) {
+				ByteBuffer header = ByteBuffer.allocate((int) dataStart);
+				header.putInt(MAGIC).putInt(VERSION);
+				RoomType.putNames(header, registered);
+				header.flip();
+				channel.truncate(0);
+				channel.write(header, 0);
+				channel.force(true);
+			} else {
+				//translateTypes() has checked the header, which now names the types registered
+				//Drop a partly written record at the end, so that new records are appended on a record boundary
+				long records = (channel.size() - dataStart) / RECORD_SIZE;
+				channel.truncate(dataStart + records * RECORD_SIZE);
+			}
+			channel.position(channel.size());
+		} catch (IOException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+	
+	/**
+	 * Checks the header of an existing journal file and, if the RoomTypes it names are not those now registered (in
+	 * the same order), rewrites the file with a header for the registered types and the type of every record
+	 * translated by name. The new file is written under a temporary name and then moved into place.
+	 * @param path The path of the journal file.
+	 * @param registered Every registered RoomType, indexed by value.
+	 * @throws IOException If the file cannot be read or rewritten, is not a journal, or names a type that is not
+	 * registered.
+	 */
+	private static void translateTypes(Path path, RoomType[] registered) throws IOException {
+		if (!Files.exists(path) || Files.size(path) < HEADER_SIZE) return;
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE));
+			if (header.getInt() != MAGIC) throw new IOException(path + " is not a booking journal.");
+			int version = header.getInt();
+			if (version != VERSION) throw new IOException("Unsupported booking journal version " + version + ".");
+			RoomType[] written = RoomType.getNames(header);
+			if (Arrays.equals(written, registered)) return;
+			
+			try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer buffer = ByteBuffer.allocate(Math.max(HEADER_SIZE + RoomType.namesSize(registered), 4096 * RECORD_SIZE));
+				buffer.putInt(MAGIC).putInt(VERSION);
+				RoomType.putNames(buffer, registered);
+				buffer.flip();
+				while (buffer.hasRemaining()) out.write(buffer);
+				long position = header.position();
+				long end = position + (channel.size() - position) / RECORD_SIZE * RECORD_SIZE;
+				while (position < end) {
+					buffer.clear();
+					buffer.limit((int) Math.min(4096 * RECORD_SIZE, end - position));
+					while (buffer.hasRemaining()) {
+						if (channel.read(buffer, position + buffer.position()) < 0) break;
+					}
+					position += buffer.position();
+					for (int record = 0; record + RECORD_SIZE <= buffer.position(); record += RECORD_SIZE) {
+						int t = buffer.get(record + 1) & 0xFF;
+						if (t >= written.length) throw new IOException(path + " holds a record of an unknown room type.");
+						buffer.put(record + 1, (byte) written[t].getValue());
+					}
+					buffer.flip();
+					while (buffer.hasRemaining()) out.write(buffer);
+				}
+				out.force(true);
+			}
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Replays every record in the journal file into a Bookings object, which should be empty and must not have
+	 * this journal attached yet. Bookings are restored under their IDs rather than made again.
+	 * @param bookings The Bookings object to be rebuilt.
+	 * @return The number of records replayed.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public long replay(Bookings bookings) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4096 * RECORD_SIZE);
+		long position = dataStart;
+		long end = channel.size();
+		long records = 0;
+		HashSet<Long> cancelledEarly = new HashSet<Long>();	//cancellations read before their bookings
+		while (position < end) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) break;
+			}
+			buffer.flip();
+			position += buffer.limit();
+			while (buffer.remaining() >= RECORD_SIZE) {
+				byte op = buffer.get();
+				RoomType type = RoomType.fromValue(buffer.get() & 0xFF);
+				long a = buffer.getLong();
+				long b = buffer.getLong();
+				long id = buffer.getLong();
+				int room = buffer.getInt();
+				if (op == OP_BOOKING) {
+					if (cancelledEarly.remove(id)) bookings.restoreLastId(id);
+					else bookings.restoreBooking(type, a, b, id, room);
+				} else if (op == OP_SET_NUM_ROOMS) {
+					bookings.setNumRooms(type, (int) a);
+				} else if (op == OP_CANCELLATION) {
+					if (!bookings.cancelBooking(id)) cancelledEarly.add(id);
+				} else if (op == OP_HORIZON) {
+					bookings.advanceHorizon(LocalDate.ofEpochDay(a));
+				} else if (op == OP_SET_NUM_ROOMS_RANGE) {
+					bookings.setOverride(type, a, b, (int) id);
+				} else if (op == OP_ASSIGN_ROOM) {
+					bookings.restoreRoom(id, room);
+				} else {
+					throw new IOException("Unknown journal record " + op + " at record " + records + ".");
+				}
+				records++;
+			}
+		}
+		return records;
+	}
+	
+	/**
+	 * Appends a booking to the journal. The record is not durable until awaitDurable() has returned for it.
+	 * @param type RoomType of the booking.
+	 * @param startDay First night of the booking, as an epoch day.
+	 * @param endDay Day after the last night of the booking, as an epoch day.
+	 * @param id The ID of the booking.
+	 * @param room The room assigned to the booking, or RoomAssignments.NO_ROOM if rooms are not being assigned.
+	 * @return The sequence number of the record, to be passed to awaitDurable().
+	 */
+	public long appendBooking(RoomType type, long startDay, long endDay, long id, int room) {
+		return append(OP_BOOKING, type, startDay, endDay, id, room);
+	}
+	
+	/**
+	 * Appends a cancellation to the journal. The record is not durable until awaitDurable() has returned for it.
+	 * @param type RoomType of the cancelled booking.
+	 * @param id The ID of the cancelled booking.
+	 * @return The sequence number of the record, to be passed to awaitDurable().
+	 */
+	public long appendCancellation(RoomType type, long id) {
+		return append(OP_CANCELLATION, type, 0, 0, id, RoomAssignments.NO_ROOM);
+	}
+	
+	/**
+	 * Appends the room given to a booking that was made before rooms were assigned (see
+	 * Bookings.enableRoomAssignment()). The record is not durable until awaitDurable() has returned for it.
+	 * @param type RoomType of the booking.
+	 * @param id The ID of the booking.
+	 * @param room The room assigned to the booking.
+	 * @return The sequence number of the record, to be passed to awaitDurable().
+	 */
+	public long appendRoom(RoomType type, long id, int room) {
+		return append(OP_ASSIGN_ROOM, type, 0, 0, id, room);
+	}
+	
+	/**
+	 * Appends a change to the number of rooms of a type to the journal. The record is not durable until
+	 * awaitDurable() has returned for it.
+	 * @param type RoomType that was changed.
+	 * @param n The new number of rooms of that type.
+	 * @return The sequence number of the record, to be passed to awaitDurable().
+	 */
+	public long appendSetNumRooms(RoomType type, int n) {
+		return append(OP_SET_NUM_ROOMS, type, n, 0, 0, RoomAssignments.NO_ROOM);
+	}
+	
+	/**
+	 * Appends a change to the number of rooms of a type over a range of nights to the journal. The record is not
+	 * durable until awaitDurable() has returned for it.
+	 * @param type RoomType that was changed.
+	 * @param startDay First night of the range, as an epoch day.
+	 * @param endDay Day after the last night of the range, as an epoch day.
+	 * @param n The new number of rooms on those nights, or CapacitySchedule.DEFAULT if the override was removed.
+	 * @return The sequence number of the record, to be passed to awaitDurable().
+	 */
+	public long appendSetNumRooms(RoomType type, long startDay, long endDay, int n) {
+		return append(OP_SET_NUM_ROOMS_RANGE, type, startDay, endDay, n, RoomAssignments.NO_ROOM);
+	}
+	
+	/**
+	 * Appends a move of the horizon (the first night kept in the live calendars) to the journal. The record is not
+	 * durable until awaitDurable() has returned for it.
+	 * @param day The new horizon, as an epoch day.
+	 * @return The sequence number of the record, to be passed to awaitDurable().
+	 */
+	public long appendHorizon(long day) {
+		return append(OP_HORIZON, RoomType.fromValue(0), day, 0, 0, RoomAssignments.NO_ROOM);
+	}
+	
+	/**
+	 * Appends a record to the pending buffer, growing it if needed.
+	 * @param op Operation of the record.
+	 * @param type RoomType of the record.
+	 * @param a First operand of the record.
+	 * @param b Second operand of the record.
+	 * @param id Booking ID of the record.
+	 * @param room Room of the record.
+	 * @return The sequence number of the record.
+	 */
+	private long append(byte op, RoomType type, long a, long b, long id, int room) {
+		if (type.getValue() >= types) throw new IllegalArgumentException("The room type " + type + " was registered after the journal was opened.");
+		synchronized (lock) {
+			if (pending.remaining() < RECORD_SIZE) {
+				ByteBuffer grown = ByteBuffer.allocate(pending.capacity() * 2);
+				pending.flip();
+				grown.put(pending);
+				pending = grown;
+			}
+			pending.put(op).put((byte) type.getValue()).putLong(a).putLong(b).putLong(id).putInt(room);
+			return ++appended;
+		}
+	}
+	
+	/**
+	 * Blocks until the record with the given sequence number (and every record before it) has been forced to disk.
+	 * The calling thread either waits for a flush that is already in progress, or performs the flush itself for
+	 * every record appended so far.
+	 * @param sequence The sequence number returned when the record was appended.
+	 * @throws IOException If the journal could not be written.
+	 */
+	public void awaitDurable(long sequence) throws IOException {
+		ByteBuffer batch;
+		long batchEnd;
+		synchronized (lock) {
+			while (true) {
+				if (failure != null) throw failure;
+				if (durable >= sequence) return;
+				if (!flushing) break;
+				try {
+					lock.wait();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for the journal.", ex);
+				}
+			}
+			//Become the leader: take everything appended so far as one batch
+			flushing = true;
+			batch = pending;
+			pending = writing;
+			pending.clear();
+			writing = batch;
+			batchEnd = appended;
+		}
+		
+		IOException error = null;
+		try {
+			batch.flip();
+			while (batch.hasRemaining()) channel.write(batch);
+			channel.force(false);
+		} catch (IOException ex) {
+			error = ex;
+		}
+		
+		synchronized (lock) {
+			flushing = false;
+			if (error != null) failure = error;
+			else durable = batchEnd;
+			lock.notifyAll();
+			if (failure != null) throw failure;
+		}
+	}
+	
+	/**
+	 * Discards every record in the journal, e.g. once a snapshot covering all of them has been written. The caller
+	 * must make sure that no records are appended while this runs. Callers still waiting for earlier records are
+	 * released, as those records are covered by the snapshot.
+	 * @throws IOException If the journal could not be truncated.
+	 */
+	public void reset() throws IOException {
+		synchronized (lock) {
+			while (flushing) {
+				try {
+					lock.wait();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for the journal.", ex);
+				}
+			}
+			if (failure != null) throw failure;
+			pending.clear();
+			channel.truncate(dataStart);
+			channel.position(dataStart);
+			channel.force(true);
+			durable = appended;
+			lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Forces every record appended so far to disk.
+	 * @throws IOException If the journal could not be written.
+	 */
+	public void flush() throws IOException {
+		long sequence;
+		synchronized (lock) {
+			sequence = appended;
+		}
+		awaitDurable(sequence);
+	}
+	
+	/**
+	 * Flushes any pending records and closes the journal file.
+	 * @throws IOException If the journal could not be written or closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,404 @@
+package HotelBookingSystem;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index of every booking that currently holds rooms, by booking ID, so that a booking can be cancelled (and its
+ * nights given back) without searching the calendars. IDs are handed out in increasing order starting at 1.
+ * 
+ * The index is an open-addressing hash table with linear probing over parallel primitive arrays (ID, RoomType,
+ * start day, end day and assigned room), so a lookup never follows a pointer and an entry costs 29 bytes rather
+ * than a boxed key plus an object. Removal shifts the following entries of the probe run back instead of leaving
+ * tombstones, so the table never has to be cleaned up after a large batch of cancellations.
+ * 
+ * Bookings of different RoomTypes are made in parallel, and with a lock-free calendar so are bookings of the same
+ * type, so the table is split into STRIPES independent tables (chosen by the top bits of the hash of the ID), each
+ * with its own lock, and IDs are handed out by an AtomicLong. Two callers only wait for each other if their IDs
+ * fall in the same stripe, and then only for a single probe.
+ * @author Jonathan Janzen
+ *
+ */
+public class BookingLedger {
+	
+	private static final long FREE = 0;		//ID of an empty slot (IDs start at 1)
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int STRIPES = 16;	//a power of two
+	
+	private final Stripe[] stripes;
+	private final AtomicLong lastId;	//largest ID handed out or restored so far
+	
+	/**
+	 * Constructor for an empty BookingLedger.
+	 */
+	public BookingLedger() {
+		this.stripes = new Stripe[STRIPES];
+		for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe(INITIAL_CAPACITY / STRIPES);
+		this.lastId = new AtomicLong();
+	}
+	
+	/**
+	 * Records a new booking under the next free ID.
+	 * @param type RoomType of the booking.
+	 * @param startDay First night of the booking, as an epoch day.
+	 * @param endDay Day after the last night of the booking, as an epoch day.
+	 * @return The ID of the booking.
+	 */
+	public long add(RoomType type, long startDay, long endDay) {
+		long id = lastId.incrementAndGet();
+		stripeOf(id).put(id, (byte) type.getValue(), startDay, endDay);
+		return id;
+	}
+	
+	/**
+	 * Records a booking under a given ID, e.g. when restoring the ledger from a journal or a snapshot. Later IDs
+	 * handed out by add() are always larger than it.
+	 * @param id The ID of the booking.
+	 * @param type RoomType of the booking.
+	 * @param startDay First night of the booking, as an epoch day.
+	 * @param endDay Day after the last night of the booking, as an epoch day.
+	 */
+	public void put(long id, RoomType type, long startDay, long endDay) {
+		if (id <= FREE) throw new IllegalArgumentException("Booking IDs must be positive.");
+		lastId.accumulateAndGet(id, Math::max);
+		stripeOf(id).put(id, (byte) type.getValue(), startDay, endDay);
+	}
+	
+	/**
+	 * Function to look up a booking by its ID.
+	 * @param id The ID of the booking.
+	 * @return BookingRequest with the RoomType and dates of the booking, or null if there is no such booking.
+	 */
+	public BookingRequest get(long id) {
+		return id == FREE ? null : stripeOf(id).get(id);
+	}
+	
+	/**
+	 * Records the physical room assigned to a booking.
+	 * @param id The ID of the booking.
+	 * @param room The room assigned to it, or RoomAssignments.NO_ROOM.
+	 * @return True if the booking is in the ledger, false if not.
+	 */
+	public boolean setRoom(long id, int room) {
+		return id != FREE && stripeOf(id).setRoom(id, room);
+	}
+	
+	/**
+	 * Function to get the physical room assigned to a booking.
+	 * @param id The ID of the booking.
+	 * @return The room assigned to it, or RoomAssignments.NO_ROOM if it has none or there is no such booking.
+	 */
+	public int getRoom(long id) {
+		return id == FREE ? RoomAssignments.NO_ROOM : stripeOf(id).getRoom(id);
+	}
+	
+	/**
+	 * Removes a booking from the ledger.
+	 * @param id The ID of the booking.
+	 * @return BookingRequest with the RoomType and dates of the removed booking, or null if there is no such booking
+	 * (e.g. it was already cancelled).
+	 */
+	public BookingRequest remove(long id) {
+		return id == FREE ? null : stripeOf(id).remove(id);
+	}
+	
+	/**
+	 * Removes every booking whose stay ends on or before the given day, i.e. that has no nights left from that day
+	 * onwards (used when past nights are evicted from the calendars).
+	 * @param day The first night that is still live, as an epoch day.
+	 * @return The number of bookings removed.
+	 */
+	public int removeEndingBy(long day) {
+		int n = 0;
+		for (Stripe stripe : stripes) n += stripe.removeEndingBy(day);
+		return n;
+	}
+	
+	/**
+	 * Number of bookings in the ledger.
+	 * @return The number of bookings that have not been cancelled.
+	 */
+	public int size() {
+		int n = 0;
+		for (Stripe stripe : stripes) n += stripe.size();
+		return n;
+	}
+	
+	/**
+	 * Function to get the largest ID handed out so far.
+	 * @return The largest ID that has been added to the ledger, or 0 if none has.
+	 */
+	public long getLastId() {
+		return lastId.get();
+	}
+	
+	/**
+	 * Copies every booking into dense columns, in no particular order. Used to write snapshots. Bookings added while
+	 * the copy is made (with a lock-free calendar) are only copied while there is room for them.
+	 * @param outIds Array to receive the IDs, at least size() long.
+	 * @param outTypes Array to receive the RoomType values.
+	 * @param outStarts Array to receive the start days.
+	 * @param outEnds Array to receive the end days.
+	 * @param outRooms Array to receive the rooms assigned (RoomAssignments.NO_ROOM for none).
+	 * @return The number of bookings copied.
+	 */
+	int copyTo(long[] outIds, byte[] outTypes, long[] outStarts, long[] outEnds, int[] outRooms) {
+		int n = 0;
+		for (Stripe stripe : stripes) n = stripe.copyTo(outIds, outTypes, outStarts, outEnds, outRooms, n);
+		return n;
+	}
+	
+	/**
+	 * Sets the largest ID handed out so far, e.g. from a snapshot, so that cancelled IDs are never reused.
+	 * @param id The largest ID handed out.
+	 */
+	void restoreLastId(long id) {
+		lastId.accumulateAndGet(id, Math::max);
+	}
+	
+	/**
+	 * Function to find the stripe that holds an ID. The top bits of the hash are used, as the stripe's own table
+	 * uses the bottom bits.
+	 * @param id The ID.
+	 * @return The stripe of the ID.
+	 */
+	private Stripe stripeOf(long id) {
+		return stripes[hash(id) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(STRIPES))];
+	}
+	
+	/**
+	 * Spreads the bits of an ID, as consecutive IDs would otherwise fill consecutive slots into one long probe run
+	 * as soon as the table wraps around.
+	 * @param id The ID to be hashed.
+	 * @return Hash code of the ID.
+	 */
+	private static int hash(long id) {
+		long h = id * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+	
+	/**
+	 * One of the independent hash tables of the ledger, holding the IDs whose hash falls in it. All methods are
+	 * synchronized on the stripe.
+	 */
+	private static final class Stripe {
+		
+		private long[] ids;
+		private byte[] types;
+		private long[] startDays;
+		private long[] endDays;
+		private int[] rooms;		//room assigned to each booking, or RoomAssignments.NO_ROOM
+		private int size;
+		
+		/**
+		 * Constructor for an empty Stripe.
+		 * @param capacity Initial number of slots (a power of two).
+		 */
+		Stripe(int capacity) {
+			allocate(capacity);
+		}
+		
+		/**
+		 * Records a booking under an ID, replacing any booking already recorded under it.
+		 * @param id The ID of the booking (not FREE).
+		 * @param type RoomType value of the booking.
+		 * @param startDay First night of the booking, as an epoch day.
+		 * @param endDay Day after the last night of the booking, as an epoch day.
+		 */
+		synchronized void put(long id, byte type, long startDay, long endDay) {
+			int slot = find(id);
+			if (ids[slot] == id) {
+				types[slot] = type;
+				startDays[slot] = startDay;
+				endDays[slot] = endDay;
+				rooms[slot] = RoomAssignments.NO_ROOM;
+			} else {
+				insert(id, type, startDay, endDay);
+			}
+		}
+		
+		/**
+		 * Function to look up a booking by its ID.
+		 * @param id The ID of the booking (not FREE).
+		 * @return BookingRequest with the RoomType and dates of the booking, or null if there is no such booking.
+		 */
+		synchronized BookingRequest get(long id) {
+			int slot = find(id);
+			return ids[slot] == id ? toRequest(slot) : null;
+		}
+		
+		/**
+		 * Records the physical room assigned to a booking.
+		 * @param id The ID of the booking (not FREE).
+		 * @param room The room assigned to it, or RoomAssignments.NO_ROOM.
+		 * @return True if the booking is in the stripe, false if not.
+		 */
+		synchronized boolean setRoom(long id, int room) {
+			int slot = find(id);
+			if (ids[slot] != id) return false;
+			rooms[slot] = room;
+			return true;
+		}
+		
+		/**
+		 * Function to get the physical room assigned to a booking.
+		 * @param id The ID of the booking (not FREE).
+		 * @return The room assigned to it, or RoomAssignments.NO_ROOM if it has none or there is no such booking.
+		 */
+		synchronized int getRoom(long id) {
+			int slot = find(id);
+			return ids[slot] == id ? rooms[slot] : RoomAssignments.NO_ROOM;
+		}
+		
+		/**
+		 * Removes a booking from the stripe.
+		 * @param id The ID of the booking (not FREE).
+		 * @return BookingRequest with the RoomType and dates of the removed booking, or null if there is no such
+		 * booking.
+		 */
+		synchronized BookingRequest remove(long id) {
+			int slot = find(id);
+			if (ids[slot] != id) return null;
+			BookingRequest removed = toRequest(slot);
+			
+			//Shift back any later entry of the probe run that would no longer be reachable across the gap
+			int mask = ids.length - 1;
+			int gap = slot;
+			int next = (gap + 1) & mask;
+			while (ids[next] != FREE) {
+				int home = hash(ids[next]) & mask;
+				if (((next - home) & mask) >= ((next - gap) & mask)) {
+					ids[gap] = ids[next];
+					types[gap] = types[next];
+					startDays[gap] = startDays[next];
+					endDays[gap] = endDays[next];
+					rooms[gap] = rooms[next];
+					gap = next;
+				}
+				next = (next + 1) & mask;
+			}
+			ids[gap] = FREE;
+			size--;
+			return removed;
+		}
+		
+		/**
+		 * Removes every booking whose stay ends on or before the given day.
+		 * @param day The first night that is still live, as an epoch day.
+		 * @return The number of bookings removed.
+		 */
+		synchronized int removeEndingBy(long day) {
+			//Collect the IDs first, as removing shifts later entries back into slots that have already been scanned
+			long[] ended = new long[size];
+			int n = 0;
+			for (int slot = 0; slot < ids.length; slot++) {
+				if (ids[slot] != FREE && endDays[slot] <= day) ended[n++] = ids[slot];
+			}
+			for (int i = 0; i < n; i++) remove(ended[i]);
+			return n;
+		}
+		
+		/**
+		 * Number of bookings in the stripe.
+		 * @return The number of bookings.
+		 */
+		synchronized int size() {
+			return size;
+		}
+		
+		/**
+		 * Copies every booking of the stripe into dense columns, after those already copied.
+		 * @param outIds Array to receive the IDs.
+		 * @param outTypes Array to receive the RoomType values.
+		 * @param outStarts Array to receive the start days.
+		 * @param outEnds Array to receive the end days.
+		 * @param outRooms Array to receive the rooms assigned.
+		 * @param n Number of bookings already copied into the columns.
+		 * @return The number of bookings copied in total.
+		 */
+		synchronized int copyTo(long[] outIds, byte[] outTypes, long[] outStarts, long[] outEnds, int[] outRooms, int n) {
+			for (int slot = 0; slot < ids.length && n < outIds.length; slot++) {
+				if (ids[slot] == FREE) continue;
+				outIds[n] = ids[slot];
+				outTypes[n] = types[slot];
+				outStarts[n] = startDays[slot];
+				outEnds[n] = endDays[slot];
+				outRooms[n++] = rooms[slot];
+			}
+			return n;
+		}
+		
+		/**
+		 * Finds the slot holding the given ID, or the free slot at which its probe run ends.
+		 * @param id The ID to be found.
+		 * @return Index of the slot.
+		 */
+		private int find(long id) {
+			int mask = ids.length - 1;
+			int slot = hash(id) & mask;
+			while (ids[slot] != FREE && ids[slot] != id) slot = (slot + 1) & mask;
+			return slot;
+		}
+		
+		/**
+		 * Inserts an ID that is not yet in the table, growing the table first if it is more than half full.
+		 * @param id The ID to be inserted.
+		 * @param type RoomType value of the booking.
+		 * @param startDay First night of the booking.
+		 * @param endDay Day after the last night of the booking.
+		 */
+		private void insert(long id, byte type, long startDay, long endDay) {
+			if (2 * (size + 1) > ids.length) grow();
+			int slot = find(id);
+			ids[slot] = id;
+			types[slot] = type;
+			startDays[slot] = startDay;
+			endDays[slot] = endDay;
+			rooms[slot] = RoomAssignments.NO_ROOM;
+			size++;
+		}
+		
+		/**
+		 * Doubles the capacity of the table and reinserts every entry.
+		 */
+		private void grow() {
+			long[] oldIds = ids;
+			byte[] oldTypes = types;
+			long[] oldStarts = startDays;
+			long[] oldEnds = endDays;
+			int[] oldRooms = rooms;
+			allocate(oldIds.length * 2);
+			for (int slot = 0; slot < oldIds.length; slot++) {
+				if (oldIds[slot] == FREE) continue;
+				int to = find(oldIds[slot]);
+				ids[to] = oldIds[slot];
+				types[to] = oldTypes[slot];
+				startDays[to] = oldStarts[slot];
+				endDays[to] = oldEnds[slot];
+				rooms[to] = oldRooms[slot];
+			}
+		}
+		
+		/**
+		 * Replaces the table with empty arrays of the given capacity, keeping the size.
+		 * @param capacity Number of slots (a power of two).
+		 */
+		private void allocate(int capacity) {
+			ids = new long[capacity];
+			types = new byte[capacity];
+			startDays = new long[capacity];
+			endDays = new long[capacity];
+			rooms = new int[capacity];
+		}
+		
+		/**
+		 * Builds the BookingRequest describing the booking in a slot.
+		 * @param slot Index of an occupied slot.
+		 * @return BookingRequest with the RoomType and dates of the booking.
+		 */
+		private BookingRequest toRequest(int slot) {
+			return new BookingRequest(RoomType.fromValue(types[slot] & 0xFF), LocalDate.ofEpochDay(startDays[slot]),
+					LocalDate.ofEpochDay(endDays[slot]));
+		}
+	}
+}
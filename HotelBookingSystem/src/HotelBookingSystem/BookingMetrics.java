@@ -0,0 +1,289 @@
+package HotelBookingSystem;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics for the hot paths of a Bookings object: booking and availability-check latency histograms, and per
+ * RoomType counts of bookings, rejections, cancellations and checks. Calendar sizes, tree heights and rotation
+ * counts are read from the attached Bookings object when they are reported.
+ * 
+ * Every counter is a LongAdder and every histogram a LatencyHistogram, so recording never takes a lock or
+ * allocates. Metrics are off unless a BookingMetrics object is attached with Bookings.setMetrics(); while off,
+ * Bookings does not even read the clock. Once attached, the metrics can be exposed through JMX with register()
+ * and printed periodically with startReporting().
+ * @author Jonathan Janzen
+ *
+ */
+public class BookingMetrics implements BookingMetricsMXBean, AutoCloseable {
+	
+	public static final String OBJECT_NAME = "HotelBookingSystem:type=BookingMetrics";
+	
+	private final LongAdder[] bookings;
+	private final LongAdder[] rejections;
+	private final LongAdder[] cancellations;
+	private final LongAdder[] checks;
+	private final LatencyHistogram bookingLatency;
+	private final LatencyHistogram availabilityLatency;
+	private volatile Bookings source;				//Bookings object that the gauges are read from
+	private ObjectName registeredName;				//name under which this object is registered, if it is
+	private ScheduledExecutorService reporter;		//thread printing the periodic report, if started
+	
+	/**
+	 * Constructor for a BookingMetrics object with every counter at zero.
+	 */
+	public BookingMetrics() {
+		int types = RoomType.values().length;
+		this.bookings = new LongAdder[types];
+		this.rejections = new LongAdder[types];
+		this.cancellations = new LongAdder[types];
+		this.checks = new LongAdder[types];
+		for (int i = 0; i < types; i++) {
+			bookings[i] = new LongAdder();
+			rejections[i] = new LongAdder();
+			cancellations[i] = new LongAdder();
+			checks[i] = new LongAdder();
+		}
+		this.bookingLatency = new LatencyHistogram();
+		this.availabilityLatency = new LatencyHistogram();
+	}
+	
+	/**
+	 * Sets the Bookings object that calendar sizes, tree heights and rotations are read from. Called by
+	 * Bookings.setMetrics().
+	 * @param _source The Bookings object that records into these metrics.
+	 */
+	void attach(Bookings _source) {
+		this.source = _source;
+	}
+	
+	/**
+	 * Records a single booking attempt.
+	 * @param type RoomType of the booking.
+	 * @param nanos Time taken, in nanoseconds.
+	 * @param booked True if the booking was made, false if it was rejected.
+	 */
+	public void recordBooking(RoomType type, long nanos, boolean booked) {
+		bookingLatency.record(nanos);
+		(booked ? bookings : rejections)[type.getValue()].increment();
+	}
+	
+	/**
+	 * Records the outcome of the requests of one RoomType in a batch of bookings (no latency is recorded, as the
+	 * batch is not timed per request).
+	 * @param type RoomType of the requests.
+	 * @param booked The number of requests that were booked.
+	 * @param rejected The number of requests that were rejected.
+	 */
+	public void recordBookings(RoomType type, int booked, int rejected) {
+		bookings[type.getValue()].add(booked);
+		rejections[type.getValue()].add(rejected);
+	}
+	
+	/**
+	 * Records a single availability check.
+	 * @param type RoomType that was checked.
+	 * @param nanos Time taken, in nanoseconds.
+	 */
+	public void recordCheck(RoomType type, long nanos) {
+		availabilityLatency.record(nanos);
+		checks[type.getValue()].increment();
+	}
+	
+	/**
+	 * Records cancelled bookings.
+	 * @param type RoomType of the bookings.
+	 * @param cancelled The number of bookings cancelled.
+	 */
+	public void recordCancellations(RoomType type, int cancelled) {
+		cancellations[type.getValue()].add(cancelled);
+	}
+	
+	/**
+	 * Function to get the latency histogram of single bookings.
+	 * @return The histogram of createBooking() latency.
+	 */
+	public LatencyHistogram getBookingLatency() {
+		return bookingLatency;
+	}
+	
+	/**
+	 * Function to get the latency histogram of availability checks.
+	 * @return The histogram of checkAvailability() latency.
+	 */
+	public LatencyHistogram getAvailabilityLatency() {
+		return availabilityLatency;
+	}
+	
+	@Override
+	public Map<String, Long> getBookings() {
+		return byType(bookings);
+	}
+	
+	@Override
+	public Map<String, Long> getRejections() {
+		return byType(rejections);
+	}
+	
+	@Override
+	public Map<String, Long> getCancellations() {
+		return byType(cancellations);
+	}
+	
+	@Override
+	public Map<String, Long> getAvailabilityChecks() {
+		return byType(checks);
+	}
+	
+	@Override
+	public Map<String, Integer> getCalendarSizes() {
+		Map<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+		Bookings current = source;
+		for (RoomType type : RoomType.values()) sizes.put(type.name(), current == null ? 0 : current.getNumBookings(type));
+		return sizes;
+	}
+	
+	@Override
+	public Map<String, Integer> getTreeHeights() {
+		Map<String, Integer> heights = new LinkedHashMap<String, Integer>();
+		Bookings current = source;
+		for (RoomType type : RoomType.values()) heights.put(type.name(), current == null ? -1 : current.getCalendarHeight(type));
+		return heights;
+	}
+	
+	@Override
+	public Map<String, Long> getTreeRotations() {
+		Map<String, Long> rotations = new LinkedHashMap<String, Long>();
+		Bookings current = source;
+		for (RoomType type : RoomType.values()) rotations.put(type.name(), current == null ? 0 : current.getRotations(type));
+		return rotations;
+	}
+	
+	@Override
+	public double getBookingLatencyP50() {
+		return bookingLatency.getPercentile(50) / 1000.0;
+	}
+	
+	@Override
+	public double getBookingLatencyP99() {
+		return bookingLatency.getPercentile(99) / 1000.0;
+	}
+	
+	@Override
+	public double getBookingLatencyMax() {
+		return bookingLatency.getMax() / 1000.0;
+	}
+	
+	@Override
+	public double getAvailabilityLatencyP50() {
+		return availabilityLatency.getPercentile(50) / 1000.0;
+	}
+	
+	@Override
+	public double getAvailabilityLatencyP99() {
+		return availabilityLatency.getPercentile(99) / 1000.0;
+	}
+	
+	@Override
+	public double getAvailabilityLatencyMax() {
+		return availabilityLatency.getMax() / 1000.0;
+	}
+	
+	@Override
+	public String getReport() {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%-8s %10s %10s %10s %10s %8s %6s %10s%n", "type", "booked", "rejected", "cancelled",
+				"checks", "nights", "height", "rotations"));
+		Map<String, Integer> sizes = getCalendarSizes();
+		Map<String, Integer> heights = getTreeHeights();
+		Map<String, Long> rotations = getTreeRotations();
+		for (RoomType type : RoomType.values()) {
+			int t = type.getValue();
+			report.append(String.format("%-8s %10d %10d %10d %10d %8d %6d %10d%n", type.name(), bookings[t].sum(),
+					rejections[t].sum(), cancellations[t].sum(), checks[t].sum(), sizes.get(type.name()),
+					heights.get(type.name()), rotations.get(type.name())));
+		}
+		appendLatency(report, "booking", bookingLatency);
+		appendLatency(report, "check", availabilityLatency);
+		return report.toString();
+	}
+	
+	/**
+	 * Registers this object with the platform MBean server, so that it can be read over JMX.
+	 * @return The name under which it was registered (OBJECT_NAME).
+	 * @throws JMException If the object could not be registered (e.g. another one is already registered).
+	 */
+	public synchronized ObjectName register() throws JMException {
+		if (registeredName != null) return registeredName;
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+		registeredName = name;
+		return name;
+	}
+	
+	/**
+	 * Starts printing the report periodically, on a daemon thread.
+	 * @param period Time between two reports.
+	 * @param unit Unit of the period.
+	 * @param out Stream that the reports are printed to.
+	 */
+	public synchronized void startReporting(long period, TimeUnit unit, PrintStream out) {
+		if (reporter != null) return;
+		reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "booking-metrics");
+			thread.setDaemon(true);
+			return thread;
+		});
+		reporter.scheduleAtFixedRate(() -> out.print(getReport()), period, period, unit);
+	}
+	
+	/**
+	 * Stops the periodic report and unregisters this object from JMX, if either was started.
+	 * @throws JMException If the object could not be unregistered.
+	 */
+	@Override
+	public synchronized void close() throws JMException {
+		if (reporter != null) {
+			reporter.shutdownNow();
+			reporter = null;
+		}
+		if (registeredName != null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(registeredName)) server.unregisterMBean(registeredName);
+			registeredName = null;
+		}
+	}
+	
+	/**
+	 * Copies a set of per-RoomType counters into a map.
+	 * @param counters The counter of each RoomType.
+	 * @return Map from RoomType name to the value of its counter.
+	 */
+	private static Map<String, Long> byType(LongAdder[] counters) {
+		Map<String, Long> values = new LinkedHashMap<String, Long>();
+		for (RoomType type : RoomType.values()) values.put(type.name(), counters[type.getValue()].sum());
+		return values;
+	}
+	
+	/**
+	 * Appends a line describing a latency histogram to a report.
+	 * @param report The report being built.
+	 * @param label Name of the operation that the histogram measures.
+	 * @param histogram The histogram.
+	 */
+	private static void appendLatency(StringBuilder report, String label, LatencyHistogram histogram) {
+		report.append(String.format("%-8s latency (us): count %d, mean %.1f, p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+				label, histogram.getCount(), histogram.getMean() / 1000, histogram.getPercentile(50) / 1000.0,
+				histogram.getPercentile(99) / 1000.0, histogram.getPercentile(99.9) / 1000.0, histogram.getMax() / 1000.0));
+	}
+}
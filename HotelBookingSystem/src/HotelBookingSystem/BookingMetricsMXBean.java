@@ -0,0 +1,96 @@
+package HotelBookingSystem;
+
+import java.util.Map;
+
+/**
+ * Management interface through which BookingMetrics is exposed over JMX (e.g. to JConsole or VisualVM). Maps are
+ * keyed by RoomType name, and latencies are in microseconds.
+ * @author Jonathan Janzen
+ *
+ */
+public interface BookingMetricsMXBean {
+	
+	/**
+	 * Number of successful bookings of each RoomType.
+	 * @return Map from RoomType name to the number of bookings made.
+	 */
+	public Map<String, Long> getBookings();
+	
+	/**
+	 * Number of rejected bookings of each RoomType.
+	 * @return Map from RoomType name to the number of bookings rejected.
+	 */
+	public Map<String, Long> getRejections();
+	
+	/**
+	 * Number of cancelled bookings of each RoomType.
+	 * @return Map from RoomType name to the number of bookings cancelled.
+	 */
+	public Map<String, Long> getCancellations();
+	
+	/**
+	 * Number of availability checks of each RoomType.
+	 * @return Map from RoomType name to the number of checks.
+	 */
+	public Map<String, Long> getAvailabilityChecks();
+	
+	/**
+	 * Number of nights stored in the calendar of each RoomType.
+	 * @return Map from RoomType name to the size of its calendar.
+	 */
+	public Map<String, Integer> getCalendarSizes();
+	
+	/**
+	 * Height of the tree behind the calendar of each RoomType (-1 for backends that are not trees).
+	 * @return Map from RoomType name to the height of its tree.
+	 */
+	public Map<String, Integer> getTreeHeights();
+	
+	/**
+	 * Number of rotations performed by the tree behind the calendar of each RoomType.
+	 * @return Map from RoomType name to the number of rotations.
+	 */
+	public Map<String, Long> getTreeRotations();
+	
+	/**
+	 * Median latency of a single booking.
+	 * @return The 50th percentile of createBooking() latency, in microseconds.
+	 */
+	public double getBookingLatencyP50();
+	
+	/**
+	 * 99th percentile latency of a single booking.
+	 * @return The 99th percentile of createBooking() latency, in microseconds.
+	 */
+	public double getBookingLatencyP99();
+	
+	/**
+	 * Largest latency of a single booking.
+	 * @return The largest createBooking() latency, in microseconds.
+	 */
+	public double getBookingLatencyMax();
+	
+	/**
+	 * Median latency of an availability check.
+	 * @return The 50th percentile of checkAvailability() latency, in microseconds.
+	 */
+	public double getAvailabilityLatencyP50();
+	
+	/**
+	 * 99th percentile latency of an availability check.
+	 * @return The 99th percentile of checkAvailability() latency, in microseconds.
+	 */
+	public double getAvailabilityLatencyP99();
+	
+	/**
+	 * Largest latency of an availability check.
+	 * @return The largest checkAvailability() latency, in microseconds.
+	 */
+	public double getAvailabilityLatencyMax();
+	
+	/**
+	 * Every metric as a text report, in the same format as the periodic dump.
+	 * @return The report.
+	 */
+	public String getReport();
+}
@@ -0,0 +1,51 @@
+package HotelBookingSystem;
+
+import java.time.LocalDate;
+
+/**
+ * A class which defines a single request for a booking, as submitted in a batch to Bookings.createBookings().
+ * @author Jonathan Janzen
+ *
+ */
+public class BookingRequest {
+	
+	private final RoomType type;
+	private final LocalDate startDate;
+	private final LocalDate endDate;
+	
+	/**
+	 * Constructor for a BookingRequest.
+	 * @param _type RoomType that the booking is to be created for.
+	 * @param _startDate LocalDate object, representing the date for the booking to begin.
+	 * @param _endDate LocalDate object, representing the date for the booking to end.
+	 */
+	public BookingRequest(RoomType _type, LocalDate _startDate, LocalDate _endDate) {
+		this.type = _type;
+		this.startDate = _startDate;
+		this.endDate = _endDate;
+	}
+	
+	/**
+	 * Getter for the RoomType of the request.
+	 * @return RoomType that the booking is to be created for.
+	 */
+	public RoomType getType() {
+		return this.type;
+	}
+	
+	/**
+	 * Getter for the start date of the request.
+	 * @return LocalDate on which the booking begins.
+	 */
+	public LocalDate getStartDate() {
+		return this.startDate;
+	}
+	
+	/**
+	 * Getter for the end date of the request.
+	 * @return LocalDate on which the booking ends (the night of this date is not booked).
+	 */
+	public LocalDate getEndDate() {
+		return this.endDate;
+	}
+}
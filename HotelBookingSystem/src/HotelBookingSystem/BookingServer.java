@@ -0,0 +1,323 @@
+package HotelBookingSystem;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Non-blocking network front end for a shared Bookings object. One thread accepts connections and hands them out
+ * in turn to a fixed set of worker threads, each of which serves all of its connections from a single NIO
+ * Selector, so thousands of clients are served by a handful of threads.
+ * 
+ * Protocol: every request is REQUEST_SIZE bytes, made up of an operation byte, a RoomType byte and two longs
+ * (a and b), and is answered by a RESPONSE_SIZE byte response made up of a status byte and a long value. All
+ * values are big-endian. The operations are:
+ * OP_CHECK: a = epoch day; the value is the number of rooms available on that night.
+ * OP_BOOK: a = start epoch day, b = end epoch day; the value is the booking ID, or -1 if it was rejected.
+ * OP_SET_ROOMS: a = number of rooms; the value is the number of rooms set.
+ * OP_CANCEL: a = booking ID (the RoomType is ignored); the value is 1 if the booking was cancelled, 0 if not.
+ * A malformed request (unknown operation or RoomType, or arguments that Bookings rejects) is answered with
+ * STATUS_ERROR rather than closing the connection, as the fixed-size framing stays aligned.
+ * 
+ * Requests may be pipelined: a client can send any number of requests without waiting, and the responses are
+ * sent back in the same order. A worker executes every complete request it has read before writing, so a
+ * pipelined burst is answered with a single write. Once the responses of a connection can no longer be
+ * written (the client is not reading), the worker stops reading from it until they are.
+ * 
+ * Requests are executed on the worker threads, so a booking that waits for the journal only holds up the other
+ * connections of its own worker.
+ * @author Jonathan Janzen
+ *
+ */
+public class BookingServer implements AutoCloseable {
+	
+	public static final int REQUEST_SIZE = 18;
+	public static final int RESPONSE_SIZE = 9;
+	
+	public static final byte OP_CHECK = 1;
+	public static final byte OP_BOOK = 2;
+	public static final byte OP_SET_ROOMS = 3;
+	public static final byte OP_CANCEL = 4;
+	
+	public static final byte STATUS_OK = 0;
+	public static final byte STATUS_ERROR = 1;
+	
+	private static final int PIPELINE_DEPTH = 256;	//requests read from a connection before its responses are written
+	
+	private final Bookings bookings;
+	private final ServerSocketChannel serverChannel;
+	private final Worker[] workers;
+	private final Thread acceptor;
+	private volatile boolean running;
+	private boolean started;
+	
+	/**
+	 * Constructor for a BookingServer, binding it to the given address. Nothing is served until start() is called.
+	 * @param _bookings The Bookings object shared by every client.
+	 * @param address Address to listen on (port 0 picks a free port, see getPort()).
+	 * @param threads Number of worker threads serving the connections.
+	 * @throws IOException If the address cannot be bound.
+	 */
+	public BookingServer(Bookings _bookings, InetSocketAddress address, int threads) throws IOException {
+		if (threads < 1) throw new IllegalArgumentException("A server needs at least one worker thread.");
+		this.bookings = _bookings;
+		this.serverChannel = ServerSocketChannel.open();
+		this.workers = new Worker[threads];
+		try {
+			serverChannel.bind(address, 1024);
+			for (int i = 0; i < threads; i++) workers[i] = new Worker(i);
+		} catch (IOException ex) {
+			close();
+			throw ex;
+		}
+		this.acceptor = new Thread(this::acceptLoop, "booking-server-accept");
+	}
+	
+	/**
+	 * Starts accepting and serving connections.
+	 */
+	public synchronized void start() {
+		if (started) return;
+		started = true;
+		running = true;
+		for (Worker worker : workers) worker.thread.start();
+		acceptor.start();
+	}
+	
+	/**
+	 * Function to get the port that the server listens on.
+	 * @return The local port of the server.
+	 */
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+	
+	/**
+	 * Waits until the server has been closed.
+	 * @throws InterruptedException If the calling thread is interrupted while waiting.
+	 */
+	public void join() throws InterruptedException {
+		if (!started) return;
+		acceptor.join();
+		for (Worker worker : workers) worker.thread.join();
+	}
+	
+	/**
+	 * Stops the server, closing every connection. Requests that have been read but not yet answered are dropped.
+	 */
+	@Override
+	public synchronized void close() {
+		running = false;
+		try {
+			serverChannel.close();
+		} catch (IOException ex) {
+			//Nothing more can be done with a channel that fails to close
+		}
+		for (Worker worker : workers) {
+			if (worker == null) continue;
+			//A worker that was never started closes nothing itself
+			if (started) worker.selector.wakeup();
+			else closeQuietly(worker.selector);
+		}
+	}
+	
+	/**
+	 * Accepts connections until the server is closed, handing them out to the workers in turn.
+	 */
+	private void acceptLoop() {
+		int next = 0;
+		while (running) {
+			try {
+				SocketChannel channel = serverChannel.accept();
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				workers[next].add(channel);
+				next = (next + 1) % workers.length;
+			} catch (ClosedChannelException ex) {
+				break;
+			} catch (IOException ex) {
+				//A connection that fails while being accepted does not affect the others
+			}
+		}
+	}
+	
+	/**
+	 * Executes a single request and writes its response.
+	 * @param in Buffer positioned at the start of the request, which is consumed.
+	 * @param out Buffer that the response is written to.
+	 */
+	private void execute(ByteBuffer in, ByteBuffer out) {
+		byte op = in.get();
+		byte typeValue = in.get();
+		long a = in.getLong();
+		long b = in.getLong();
+		long value;
+		try {
+			RoomType type = op == OP_CANCEL ? null : RoomType.fromValue(typeValue & 0xFF);
+			switch (op) {
+			case OP_CHECK:
+				value = bookings.checkAvailability(type, LocalDate.ofEpochDay(a));
+				break;
+			case OP_BOOK:
+				value = bookings.book(type, LocalDate.ofEpochDay(a), LocalDate.ofEpochDay(b));
+				break;
+			case OP_SET_ROOMS:
+				if (a > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many rooms.");
+				bookings.setNumRooms(type, (int) a);
+				value = a;
+				break;
+			case OP_CANCEL:
+				value = bookings.cancelBooking(a) ? 1 : 0;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown operation " + op + ".");
+			}
+		} catch (RuntimeException ex) {
+			//Covers unknown RoomTypes, days out of range and negative room counts
+			out.put(STATUS_ERROR).putLong(0);
+			return;
+		}
+		out.put(STATUS_OK).putLong(value);
+	}
+	
+	/**
+	 * Buffers of a single connection.
+	 */
+	private static class Connection {
+		
+		final ByteBuffer in = ByteBuffer.allocate(PIPELINE_DEPTH * REQUEST_SIZE);
+		final ByteBuffer out = ByteBuffer.allocate(PIPELINE_DEPTH * RESPONSE_SIZE);
+	}
+	
+	/**
+	 * Thread serving its share of the connections from a single Selector.
+	 */
+	private class Worker implements Runnable {
+		
+		final Selector selector;
+		final Thread thread;
+		final ConcurrentLinkedQueue<SocketChannel> added;	//channels accepted but not yet registered
+		
+		/**
+		 * Constructor for a Worker with no connections.
+		 * @param index Index of the worker, used to name its thread.
+		 * @throws IOException If the selector cannot be opened.
+		 */
+		Worker(int index) throws IOException {
+			this.selector = Selector.open();
+			this.thread = new Thread(this, "booking-server-" + index);
+			this.added = new ConcurrentLinkedQueue<SocketChannel>();
+		}
+		
+		/**
+		 * Hands a new connection to this worker.
+		 * @param channel The connection, in non-blocking mode.
+		 */
+		void add(SocketChannel channel) {
+			added.add(channel);
+			selector.wakeup();
+		}
+		
+		/**
+		 * Serves the connections of this worker until the server is closed.
+		 */
+		@Override
+		public void run() {
+			try {
+				while (running) {
+					selector.select();
+					SocketChannel channel;
+					while ((channel = added.poll()) != null) {
+						try {
+							channel.register(selector, SelectionKey.OP_READ, new Connection());
+						} catch (IOException ex) {
+							closeQuietly(channel);
+						}
+					}
+					Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						try {
+							serve(key);
+						} catch (IOException ex) {
+							//The client has gone away
+							key.cancel();
+							closeQuietly(key.channel());
+						}
+					}
+				}
+			} catch (IOException ex) {
+				//The selector has failed, so this worker can no longer serve its connections
+			} finally {
+				for (SelectionKey key : selector.keys()) closeQuietly(key.channel());
+				SocketChannel channel;
+				while ((channel = added.poll()) != null) closeQuietly(channel);
+				closeQuietly(selector);
+			}
+		}
+		
+		/**
+		 * Reads and executes the requests of a connection that is ready, and writes back their responses.
+		 * @param key Selection key of the connection.
+		 * @throws IOException If the connection has been closed or has failed.
+		 */
+		void serve(SelectionKey key) throws IOException {
+			SocketChannel channel = (SocketChannel) key.channel();
+			Connection connection = (Connection) key.attachment();
+			ByteBuffer in = connection.in;
+			ByteBuffer out = connection.out;
+			
+			if (key.isReadable() && channel.read(in) < 0) throw new ClosedChannelException();
+			//Execute the buffered requests for as long as their responses can be written
+			boolean pending;
+			do {
+				in.flip();
+				while (in.remaining() >= REQUEST_SIZE && out.remaining() >= RESPONSE_SIZE) execute(in, out);
+				pending = in.remaining() >= REQUEST_SIZE;
+				in.compact();
+				if (!flush(channel, out)) {
+					//Stop reading from a client that is not reading its responses, until they have been written
+					key.interestOps(SelectionKey.OP_WRITE);
+					return;
+				}
+			} while (pending);
+			key.interestOps(SelectionKey.OP_READ);
+		}
+		
+		/**
+		 * Writes as much of the pending responses as the connection accepts.
+		 * @param channel The connection.
+		 * @param out Buffer of pending responses, in write mode.
+		 * @return True if every pending response has been written.
+		 * @throws IOException If the connection has failed.
+		 */
+		boolean flush(SocketChannel channel, ByteBuffer out) throws IOException {
+			out.flip();
+			channel.write(out);
+			boolean done = !out.hasRemaining();
+			out.compact();
+			return done;
+		}
+	}
+	
+	/**
+	 * Closes a channel or selector, ignoring any failure.
+	 * @param closeable The object to be closed.
+	 */
+	private static void closeQuietly(AutoCloseable closeable) {
+		try {
+			closeable.close();
+		} catch (Exception ex) {
+			//Nothing more can be done with an object that fails to close
+		}
+	}
+}
@@ -0,0 +1,264 @@
+package HotelBookingSystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Compact binary snapshot of the calendars and room counts of a Bookings object, so that startup does not have to
+ * replay a long journal one booking (and one night) at a time. Used through Bookings.saveSnapshot(),
+ * Bookings.checkpoint() and Bookings.loadSnapshot().
+ * 
+ * File layout (big-endian): the magic number, a version and a table of the names of the RoomTypes (see
+ * RoomType.putNames()), then for each RoomType its number of rooms, its number of stored nights n, the n nights as
+ * epoch days (longs, ascending) and the n booked values (ints). The ledger of booking IDs follows: the last ID
+ * handed out, the number of bookings m, and then the m IDs (longs), RoomTypes (bytes), start days and end days
+ * (longs) and assigned rooms (ints, see RoomAssignments), then the horizon (the first night kept in the calendars,
+ * as an epoch day), and finally for each RoomType its number of capacity overrides k, the k change points as epoch
+ * days (longs) and the k numbers of rooms (ints, see CapacitySchedule). Keeping the days and values in two dense
+ * columns means that each can be read with a single bulk get from the memory-mapped file, and handed to
+ * BookingCalendar.load() already sorted. Older snapshots can still be read: version 1 has no ledger, neither
+ * version 1 nor 2 has a horizon, versions 1 to 3 have no overrides and hold the rooms available on each night
+ * rather than the rooms booked (which are converted against the number of rooms of the type as they are read),
+ * versions 1 to 4 have no assigned rooms, and versions 1 to 5 hold only the number of RoomTypes rather than their
+ * names, so their types are taken to be the first types registered, in the same order. The types of newer snapshots
+ * are matched to the registered types by name, so a snapshot can still be read after types are added, removed or
+ * reordered, as long as every type it names is still registered.
+ * @author Jonathan Janzen
+ *
+ */
+public class BookingSnapshot {
+	
+	private static final int MAGIC = 0x4842534e;	//"HBSN"
+	private static final int VERSION = 6;
+	private static final int HEADER_SIZE = 12;	//magic, version and the number of types
+	private static final int TYPE_HEADER_SIZE = 8;
+	private static final int LEDGER_HEADER_SIZE = 12;
+	private static final int LEDGER_ENTRY_SIZE = 3 * Long.BYTES + 1 + Integer.BYTES;
+	
+	/**
+	 * Private constructor, as this class only has static functions.
+	 */
+	private BookingSnapshot() {
+	}
+	
+	/**
+	 * Writes a snapshot of the given calendars. The caller must make sure that they are not modified while this runs.
+	 * The file is written under a temporary name and then moved into place, so an existing snapshot is never left
+	 * half-overwritten.
+	 * @param path The path of the snapshot file.
+	 * @param roomTypes The RoomTypes, indexed by value.
+	 * @param calendars The calendar of each RoomType.
+	 * @param numRoomsByType The number of rooms of each RoomType.
+	 * @param schedules The capacity overrides of each RoomType.
+	 * @param ledger The ledger of booking IDs.
+	 * @param horizonDay The first night kept in the calendars, as an epoch day.
+	 * @throws IOException If the file could not be written.
+	 */
+	static void write(Path path, RoomType[] roomTypes, BookingCalendar[] calendars, AtomicIntegerArray numRoomsByType,
+			CapacitySchedule[] schedules, BookingLedger ledger, long horizonDay) throws IOException {
+		//Collect every calendar into dense columns first, so that the size of the file is known
+		long[][] days = new long[calendars.length][];
+		int[][] values = new int[calendars.length][];
+		long fileSize = 2 * Integer.BYTES + RoomType.namesSize(roomTypes);
+		for (int t = 0; t < calendars.length; t++) {
+			long[] typeDays = new long[calendars[t].size()];
+			int[] typeValues = new int[typeDays.length];
+			int[] count = new int[1];
+			calendars[t].forEach((day, value) -> {
+				typeDays[count[0]] = day;
+				typeValues[count[0]++] = value;
+			});
+			days[t] = typeDays;
+			values[t] = typeValues;
+			fileSize += TYPE_HEADER_SIZE + typeDays.length * (long) (Long.BYTES + Integer.BYTES);
+		}
+		int bookings = ledger.size();
+		long[] ids = new long[bookings];
+		byte[] types = new byte[bookings];
+		long[] startDays = new long[bookings];
+		long[] endDays = new long[bookings];
+		int[] rooms = new int[bookings];
+		ledger.copyTo(ids, types, startDays, endDays, rooms);
+		fileSize += LEDGER_HEADER_SIZE + bookings * (long) LEDGER_ENTRY_SIZE + Long.BYTES;
+		long[][] overrideStarts = new long[schedules.length][];
+		int[][] overrideRooms = new int[schedules.length][];
+		for (int t = 0; t < schedules.length; t++) {
+			overrideStarts[t] = new long[schedules[t].size()];
+			overrideRooms[t] = new int[overrideStarts[t].length];
+			schedules[t].copyTo(overrideStarts[t], overrideRooms[t]);
+			fileSize += Integer.BYTES + overrideStarts[t].length * (long) (Long.BYTES + Integer.BYTES);
+		}
+		if (fileSize > Integer.MAX_VALUE) throw new IOException("The calendars are too large for a single snapshot file.");
+		
+		ByteBuffer buffer = ByteBuffer.allocate((int) fileSize);
+		buffer.putInt(MAGIC).putInt(VERSION);
+		RoomType.putNames(buffer, roomTypes);
+		for (int t = 0; t < calendars.length; t++) {
+			buffer.putInt(numRoomsByType.get(t)).putInt(days[t].length);
+			buffer.asLongBuffer().put(days[t]);
+			buffer.position(buffer.position() + days[t].length * Long.BYTES);
+			buffer.asIntBuffer().put(values[t]);
+			buffer.position(buffer.position() + values[t].length * Integer.BYTES);
+		}
+		buffer.putLong(ledger.getLastId()).putInt(bookings);
+		putLongs(buffer, ids);
+		buffer.put(types);
+		putLongs(buffer, startDays);
+		putLongs(buffer, endDays);
+		buffer.asIntBuffer().put(rooms);
+		buffer.position(buffer.position() + rooms.length * Integer.BYTES);
+		buffer.putLong(horizonDay);
+		for (int t = 0; t < schedules.length; t++) {
+			buffer.putInt(overrideStarts[t].length);
+			putLongs(buffer, overrideStarts[t]);
+			buffer.asIntBuffer().put(overrideRooms[t]);
+			buffer.position(buffer.position() + overrideRooms[t].length * Integer.BYTES);
+		}
+		buffer.flip();
+		
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) channel.write(buffer);
+			channel.force(true);
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Reads a snapshot into the given (empty) calendars, room counts, capacity overrides and ledger, which are
+	 * indexed by the values of the RoomTypes now registered.
+	 * @param path The path of the snapshot file.
+	 * @param calendars The calendar of each RoomType, to be loaded.
+	 * @param numRoomsByType The number of rooms of each RoomType, to be set.
+	 * @param schedules The capacity overrides of each RoomType, to be set.
+	 * @param ledger The ledger of booking IDs, to be filled.
+	 * @return The first night kept in the calendars, as an epoch day (Long.MIN_VALUE if nothing has been evicted).
+	 * @throws IOException If the file could not be read, is not a valid snapshot, or holds a RoomType that is not
+	 * registered (or was registered after the calendars were created).
+	 */
+	static long read(Path path, BookingCalendar[] calendars, AtomicIntegerArray numRoomsByType,
+			CapacitySchedule[] schedules, BookingLedger ledger) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) throw new IOException(path + " is not a booking snapshot.");
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC) throw new IOException(path + " is not a booking snapshot.");
+			int version = buffer.getInt();
+			if (version < 1 || version > VERSION) throw new IOException("Unsupported booking snapshot version " + version + ".");
+			//Find the value each type of the snapshot now has
+			int[] valueOf;
+			if (version < 6) {
+				valueOf = new int[buffer.getInt()];
+				for (int t = 0; t < valueOf.length; t++) valueOf[t] = t;
+			} else {
+				RoomType[] written = RoomType.getNames(buffer);
+				valueOf = new int[written.length];
+				for (int t = 0; t < valueOf.length; t++) valueOf[t] = written[t].getValue();
+			}
+			for (int value : valueOf) {
+				if (value < 0 || value >= calendars.length) {
+					throw new IOException("The snapshot has " + valueOf.length + " room types, but " + calendars.length + " are defined.");
+				}
+			}
+			int types = valueOf.length;
+			for (int t = 0; t < types; t++) {
+				int numRooms = buffer.getInt();
+				int n = buffer.getInt();
+				if (n < 0 || buffer.remaining() < n * (long) (Long.BYTES + Integer.BYTES)) {
+					throw new IOException(path + " is truncated.");
+				}
+				long[] days = new long[n];
+				int[] values = new int[n];
+				buffer.asLongBuffer().get(days);
+				buffer.position(buffer.position() + n * Long.BYTES);
+				buffer.asIntBuffer().get(values);
+				buffer.position(buffer.position() + n * Integer.BYTES);
+				numRoomsByType.set(valueOf[t], numRooms);
+				if (version < 4) {
+					//Older snapshots hold the rooms available, which had no overrides to account for
+					for (int i = 0; i < n; i++) values[i] = Math.max(Math.max(numRooms, 0) - values[i], 0);
+				}
+				calendars[valueOf[t]].load(days, values, n);
+			}
+			if (version == 1) return Long.MIN_VALUE;
+			
+			if (buffer.remaining() < LEDGER_HEADER_SIZE) throw new IOException(path + " is truncated.");
+			long lastId = buffer.getLong();
+			int bookings = buffer.getInt();
+			//Versions before 5 have no column of assigned rooms
+			int entrySize = version < 5 ? LEDGER_ENTRY_SIZE - Integer.BYTES : LEDGER_ENTRY_SIZE;
+			if (bookings < 0 || buffer.remaining() < bookings * (long) entrySize) {
+				throw new IOException(path + " is truncated.");
+			}
+			long[] ids = getLongs(buffer, bookings);
+			byte[] bookingTypes = new byte[bookings];
+			buffer.get(bookingTypes);
+			long[] startDays = getLongs(buffer, bookings);
+			long[] endDays = getLongs(buffer, bookings);
+			int[] assigned = new int[bookings];
+			if (version >= 5) {
+				buffer.asIntBuffer().get(assigned);
+				buffer.position(buffer.position() + bookings * Integer.BYTES);
+			} else {
+				Arrays.fill(assigned, RoomAssignments.NO_ROOM);
+			}
+			for (int i = 0; i < bookings; i++) {
+				int t = bookingTypes[i] & 0xFF;
+				if (t >= types) throw new IOException(path + " holds a booking of an unknown room type.");
+				ledger.put(ids[i], RoomType.fromValue(valueOf[t]), startDays[i], endDays[i]);
+				if (assigned[i] != RoomAssignments.NO_ROOM) ledger.setRoom(ids[i], assigned[i]);
+			}
+			ledger.restoreLastId(lastId);
+			if (version == 2) return Long.MIN_VALUE;
+			
+			if (buffer.remaining() < Long.BYTES) throw new IOException(path + " is truncated.");
+			long horizonDay = buffer.getLong();
+			if (version == 3) return horizonDay;
+			
+			for (int t = 0; t < types; t++) {
+				if (buffer.remaining() < Integer.BYTES) throw new IOException(path + " is truncated.");
+				int k = buffer.getInt();
+				if (k < 0 || buffer.remaining() < k * (long) (Long.BYTES + Integer.BYTES)) {
+					throw new IOException(path + " is truncated.");
+				}
+				long[] starts = getLongs(buffer, k);
+				int[] rooms = new int[k];
+				buffer.asIntBuffer().get(rooms);
+				buffer.position(buffer.position() + k * Integer.BYTES);
+				schedules[valueOf[t]].restore(starts, rooms, k);
+			}
+			return horizonDay;
+		}
+	}
+	
+	/**
+	 * Writes a column of longs to a buffer with one bulk put.
+	 * @param buffer The buffer to be written to.
+	 * @param column The values to be written.
+	 */
+	private static void putLongs(ByteBuffer buffer, long[] column) {
+		buffer.asLongBuffer().put(column);
+		buffer.position(buffer.position() + column.length * Long.BYTES);
+	}
+	
+	/**
+	 * Reads a column of longs from a buffer with one bulk get.
+	 * @param buffer The buffer to be read from.
+	 * @param n The number of values to be read.
+	 * @return The values read.
+	 */
+	private static long[] getLongs(ByteBuffer buffer, int n) {
+		long[] column = new long[n];
+		buffer.asLongBuffer().get(column);
+		buffer.position(buffer.position() + n * Long.BYTES);
+		return column;
+	}
+}
@@ -1,21 +1,39 @@
 package HotelBookingSystem;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * A class which defines an object of bookings, consisting of an ArrayList of different red-black
- * binary search trees. Each BST in the ArrayList corresponds to an enumerated RoomType (i.e. the 
- * size of the ArrayList is equivalent to the number of different Room Types that can be booked).
+ * A class which defines an object of bookings, consisting of an array of different red-black
+ * binary search trees. Each BST in the array corresponds to a registered RoomType (i.e. the 
+ * size of the array is equivalent to the number of different Room Types that can be booked), and
+ * is found by the dense numerical value of its RoomType, as is every other piece of per-type state
+ * (its lock, its number of rooms and its capacity overrides), without any boxing. The RoomTypes are
+ * those registered when the object is created, so every type must be registered before then.
  * 
  * Each node in each BST consists of a LocalDate as a Key and an Integer as its corresponding value
  * (the data structure was kept general in the interests of potential future reusability).
- * The value shows how many of that specific room are available on the given date, depending on the
+ * The value shows how many of that specific room are booked on the given date, depending on the
  * room type. Adding a new booking for a 3-day span would mean creating three nodes (if no bookings
- * existed for any of those days already) with value numRoomsByType[RoomType] - 1. If a booking
- * exists already for one of those rooms, the booking can still occur, but the value of the node
- * with an existing booking must decrement by one. If doing so would set the value of that node
- * to a value less than 0, the booking cannot be completed, and the user must be informed.
+ * existed for any of those days already) with value 1. If a booking exists already for one of those
+ * rooms, the booking can still occur, but the value of the node with an existing booking must
+ * increment by one. If doing so would take the value of that node above the number of rooms of the
+ * type on that date, the booking cannot be completed, and the user must be informed.
+ * 
+ * As the nodes hold the rooms booked rather than the rooms left, the availability of a night is only
+ * worked out when it is read, as the number of rooms on that night less the rooms booked. Changing the
+ * number of rooms of a type, whether for every night (setNumRooms()) or for a range of dates such as a
+ * wing closed for renovation (a CapacitySchedule override), therefore applies at once to every night
+ * already booked without rewriting any node.
  * 
  * Red-black binary search trees were chosen due to their insertion and lookup properties. A red-black
  * BST (in general) boasts 2lg(n) search and 2lg(n) insertion complexity in worst-case circumstances. In this
@@ -23,6 +41,56 @@ import java.util.ArrayList;
  * is booked for) search operations, this becomes 2*k*lg(n) for searching and inserting into the relevant
  * BST (as insertion also requires a check for capacity). Therefore, both can be considered O(lg n) in complexity.
  * 
+ * The storage behind each RoomType is pluggable through the CalendarBackend enum. TREE keeps the red-black
+ * BST described above, while ARRAY stores the rooms booked on each night in a primitive int[] indexed by epoch
+ * day, turning each lookup into a single array read with no boxing. SEGMENT_TREE keeps a range-max segment tree of
+ * the rooms booked with lazy propagation, so that checking and reserving a whole stay are both O(lg n) regardless
+ * of its length.
+ * PRIMITIVE_TREE is a red-black BST over primitive long keys and int values in array-backed nodes, with which
+ * createBooking() and checkAvailability() do not allocate at all. RUN_LENGTH stores runs of consecutive nights with
+ * the same number of rooms booked, so that long stays cost a few runs rather than an entry per night.
+ * 
+ * Bookings is safe to share between threads. Each RoomType is guarded by its own read-write lock: availability
+ * checks take the read lock, while createBooking (check and reserve) and setNumRooms take the write lock, so that
+ * a booking is atomic over its whole stay and two callers can never both take the last room. Bookings of
+ * different RoomTypes proceed in parallel. Any operation that needs more than one RoomType acquires their locks
+ * in RoomType order, which rules out deadlock between such operations.
+ * 
+ * The ATOMIC backend is the exception: its calendars are lock-free (each night is an atomic counter taken with
+ * compare-and-set), so Bookings does not lock them and non-overlapping stays never wait for each other on the
+ * calendar. The BookingLedger that records each booking is striped by ID, so
+ * such bookings only wait for each other there if their IDs share a stripe, and then only for a single probe.
+ * Its contention can be monitored through getCasRetries() and getRollbacks(). The PERSISTENT_TREE backend sits in
+ * between: writes still take the write lock, but each calendar publishes an immutable version of its tree through a
+ * volatile reference, so availability checks take no lock and are never blocked by a booking in progress.
+ * 
+ * A BookingJournal can be attached with setJournal() to make the bookings durable. Every successful booking and every
+ * change to the number of rooms is then appended to the journal (while the lock for the type is held, so that the
+ * journal order matches the order in which the changes were made), and the call only returns once the record has
+ * been forced to disk. Concurrent callers share a single fsync through the journal's group commit. The ATOMIC backend
+ * appends its bookings and cancellations without taking the lock, so their records may be in a different order from
+ * the changes themselves (a booking that took a room freed by a cancellation may be journaled before it). The
+ * journal is therefore replayed as a record of what happened rather than as requests to be made again: each
+ * booking is restored under its ID without checking the number of rooms, and a cancellation found before its
+ * booking cancels the booking once it is reached, so every order of the records leads to the same state.
+ * 
+ * For a fast startup, saveSnapshot() writes every calendar to a compact BookingSnapshot file, and loadSnapshot()
+ * builds a new Bookings object from one without replaying any bookings. checkpoint() does the same while also
+ * emptying the journal, so that a restart only replays the bookings made since the last checkpoint.
+ * 
+ * Every successful booking gets an ID from the BookingLedger, with which it can later be cancelled. Past nights are
+ * removed from the calendars by advanceHorizon() (and kept in a BookingArchive if one is attached), so that the
+ * calendars only hold a sliding window of nights and do not grow without limit as the years pass.
+ * 
+ * Once enableRoomAssignment() has been called, every booking is also given a physical room (see RoomAssignments),
+ * which getAssignedRoom() reports and cancelBooking() frees. A booking is then only made if a single room is free
+ * over the whole stay, so a stay whose nights are each available, but only in different rooms, is rejected. The
+ * room of each booking is journaled and kept in snapshots along with it, so guests keep their rooms over a restart.
+ * 
+ * A BookingFeed can be attached with setFeed() so that other systems learn of every change to availability as it
+ * is made: each booking, cancellation and change to the number of rooms is published to it as a (type, start, end,
+ * delta) event, while the lock for the type is held, without ever waiting for the consumers of the feed.
+ * 
  * ASSUMPTION: Rooms are booked based on nights. So, for example, a booking from 2022-03-02 to 2022-03-04 would be two
  * nights, the 2nd and 3rd, meaning that a booking would not be created for the 4th.
  * @author Jonathan Janzen
@@ -30,41 +98,572 @@ import java.util.ArrayList;
  */
 public class Bookings {
 	
-	private ArrayList<RedBlackBST> bookingsList;
-	private ArrayList<Integer> numRoomsByType;
+	//Searches over at least this many nights check the RoomTypes in parallel
+	private static final int PARALLEL_SEARCH_NIGHTS = 1024;
+	//Searches for a free window without an end date look this many nights ahead of their start date
+	public static final int WINDOW_SEARCH_NIGHTS = 2 * 366;
+	
+	private RoomType[] roomTypes;			//every RoomType, indexed by value
+	private BookingCalendar[] calendars;
+	private AtomicIntegerArray numRoomsByType;
+	private ReentrantReadWriteLock[] locks;
+	private boolean lockFree;
+	private boolean lockFreeReads;
+	private volatile BookingJournal journal;
+	private BookingLedger ledger;
+	private volatile long horizonDay;	//first night kept in the calendars, as an epoch day
+	private volatile BookingArchive archive;
+	private volatile BookingMetrics metrics;
+	private volatile BookingFeed feed;
+	private volatile RoomAssignments[] assignments;	//null unless rooms are assigned
+	private CapacitySchedule[] schedules;			//date-ranged overrides of numRoomsByType
 	
 	/**
-	 * Constructor for a new Bookings() object.
+	 * Constructor for a new Bookings() object, using the red-black BST calendar for every RoomType.
 	 */
 	public Bookings() {
-		this.bookingsList = new ArrayList<RedBlackBST>();
-		this.numRoomsByType = new ArrayList<Integer>();
-		for (int i = 0; i < RoomType.values().length; i++) {
-			bookingsList.add(new RedBlackBST());
-			numRoomsByType.add(-1);
+		this(CalendarBackend.TREE);
+	}
+	
+	/**
+	 * Constructor for a new Bookings() object using the given calendar store.
+	 * @param backend The CalendarBackend used to store the bookings of every RoomType.
+	 */
+	public Bookings(CalendarBackend backend) {
+		//Types registered later are not known to this object
+		this.roomTypes = RoomType.values();
+		int types = roomTypes.length;
+		this.calendars = new BookingCalendar[types];
+		this.numRoomsByType = new AtomicIntegerArray(types);
+		this.locks = new ReentrantReadWriteLock[types];
+		this.ledger = new BookingLedger();
+		this.horizonDay = Long.MIN_VALUE;
+		this.schedules = new CapacitySchedule[types];
+		for (int i = 0; i < types; i++) {
+			schedules[i] = new CapacitySchedule();
+			calendars[i] = backend.newCalendar();
+			numRoomsByType.set(i, -1);
+			locks[i] = new ReentrantReadWriteLock();
+		}
+		this.lockFree = calendars[0].isLockFree();
+		this.lockFreeReads = calendars[0].hasLockFreeReads();
+	}
+	
+	/**
+	 * Attaches a journal to this object, so that every later booking and change to the number of rooms is recorded
+	 * in it. Any records already in the journal should be replayed into this object (with BookingJournal.replay())
+	 * before it is attached. With a lock-free backend, it should also be attached before any other thread makes
+	 * bookings, as a booking already in progress may not be journaled.
+	 * @param journal The journal to be written to, or null to stop journaling.
+	 */
+	public void setJournal(BookingJournal journal) {
+		this.journal = journal;
+	}
+	
+	/**
+	 * Function to create a Bookings object from a snapshot file. The calendars are bulk loaded from the snapshot (a
+	 * tree calendar is built bottom-up in O(n)) instead of replaying the bookings that led to them.
+	 * @param path The path of a snapshot written by saveSnapshot() or checkpoint().
+	 * @param backend The CalendarBackend to load the bookings into.
+	 * @return A new Bookings object with the room counts and bookings of the snapshot.
+	 * @throws IOException If the snapshot could not be read.
+	 */
+	public static Bookings loadSnapshot(Path path, CalendarBackend backend) throws IOException {
+		Bookings bookings = new Bookings(backend);
+		bookings.horizonDay = BookingSnapshot.read(path, bookings.calendars, bookings.numRoomsByType, bookings.schedules,
+				bookings.ledger);
+		return bookings;
+	}
+	
+	/**
+	 * Writes a snapshot of every RoomType's room count and calendar. The read lock of every type is held (taken in
+	 * RoomType order) while the calendars are copied, so the snapshot is consistent across types.
+	 * @param path The path of the snapshot file.
+	 * @throws IOException If the snapshot could not be written.
+	 */
+	public void saveSnapshot(Path path) throws IOException {
+		for (ReentrantReadWriteLock lock : locks) lock.readLock().lock();
+		try {
+			BookingSnapshot.write(path, roomTypes, calendars, numRoomsByType, schedules, ledger, horizonDay);
+		} finally {
+			for (int i = locks.length - 1; i >= 0; i--) locks[i].readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Writes a snapshot and then empties the attached journal, so that the snapshot plus the journal always hold
+	 * every booking. The write lock of every type is held (taken in RoomType order) throughout, so no booking can be
+	 * journaled between the two steps. Not available for lock-free backends, as their bookings never take the locks.
+	 * @param path The path of the snapshot file.
+	 * @throws IOException If the snapshot or the journal could not be written.
+	 */
+	public void checkpoint(Path path) throws IOException {
+		if (lockFree) throw new IllegalStateException("A checkpoint cannot be taken with a lock-free calendar backend.");
+		BookingJournal journal = this.journal;
+		for (ReentrantReadWriteLock lock : locks) lock.writeLock().lock();
+		try {
+			BookingSnapshot.write(path, roomTypes, calendars, numRoomsByType, schedules, ledger, horizonDay);
+			if (journal != null) journal.reset();
+		} finally {
+			for (int i = locks.length - 1; i >= 0; i--) locks[i].writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Attaches an archive to this object, so that nights evicted by advanceHorizon() are kept in cold storage
+	 * rather than discarded.
+	 * @param archive The archive to be written to, or null to discard evicted nights.
+	 */
+	public void setArchive(BookingArchive archive) {
+		this.archive = archive;
+	}
+	
+	/**
+	 * Attaches metrics to this object, so that the latency and outcome of every booking, cancellation and
+	 * availability check is recorded in them. With no metrics attached (the default), nothing is measured.
+	 * @param metrics The metrics to be recorded into, or null to stop recording.
+	 */
+	public void setMetrics(BookingMetrics metrics) {
+		if (metrics != null) metrics.attach(this);
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Attaches a change feed to this object, so that every later booking (delta -1 over its stay), cancellation
+	 * (delta +1 over the nights given back) and change to the number of rooms (the change on each night affected) is
+	 * published to it.
+	 * @param feed The feed to be published to, or null to stop publishing.
+	 */
+	public void setFeed(BookingFeed feed) {
+		this.feed = feed;
+	}
+	
+	/**
+	 * Starts assigning a physical room to every booking, so that housekeeping and key cards know which room each
+	 * guest is in. Bookings already held that were given a room before (restored from the journal or a snapshot)
+	 * keep it; the others are given the best-fitting room in the order in which they were made, and those rooms
+	 * are journaled. Nothing is changed unless every booking can be placed. Not available for lock-free backends,
+	 * as their bookings never take the locks.
+	 * @throws IllegalStateException If a booking's saved room is also held by another booking, or a booking without
+	 * a room no longer fits in a single room.
+	 */
+	public void enableRoomAssignment() {
+		if (lockFree) throw new IllegalStateException("Rooms cannot be assigned with a lock-free calendar backend.");
+		BookingJournal journal = this.journal;
+		long sequence = 0;
+		for (ReentrantReadWriteLock lock : locks) lock.writeLock().lock();
+		try {
+			if (assignments != null) return;
+			RoomAssignments[] created = new RoomAssignments[roomTypes.length];
+			for (int t = 0; t < created.length; t++) created[t] = new RoomAssignments();
+			
+			int n = ledger.size();
+			long[] ids = new long[n];
+			byte[] types = new byte[n];
+			long[] startDays = new long[n];
+			long[] endDays = new long[n];
+			int[] rooms = new int[n];
+			ledger.copyTo(ids, types, startDays, endDays, rooms);
+			Integer[] order = new Integer[n];
+			for (int i = 0; i < n; i++) order[i] = i;
+			Arrays.sort(order, Comparator.comparingLong(i -> ids[i]));
+			//Place the bookings that already have a room first, so that none of them is moved
+			for (int i : order) {
+				if (rooms[i] == RoomAssignments.NO_ROOM) continue;
+				//Only the nights that have not been evicted need a room
+				long startDay = Math.max(startDays[i], horizonDay);
+				int t = types[i] & 0xFF;
+				placeRoom(created[t], ids[i], startDay, endDays[i], rooms[i], 0);
+			}
+			boolean[] placed = new boolean[n];
+			for (int i : order) {
+				if (rooms[i] != RoomAssignments.NO_ROOM) continue;
+				long startDay = Math.max(startDays[i], horizonDay);
+				int t = types[i] & 0xFF;
+				int capacity = minCapacity(t, startDay, endDays[i]);
+				rooms[i] = placeRoom(created[t], ids[i], startDay, endDays[i], RoomAssignments.NO_ROOM, capacity);
+				placed[i] = true;
+			}
+			for (int i : order) {
+				if (!placed[i]) continue;
+				ledger.setRoom(ids[i], rooms[i]);
+				if (journal != null) sequence = journal.appendRoom(roomTypes[types[i] & 0xFF], ids[i], rooms[i]);
+			}
+			assignments = created;
+		} finally {
+			for (int i = locks.length - 1; i >= 0; i--) locks[i].writeLock().unlock();
+		}
+		awaitDurable(journal, sequence);
+	}
+	
+	/**
+	 * Gives a booking a room, either the room it was given before or, if it has none, the best-fitting free room.
+	 * The caller must hold the write lock of the booking's type.
+	 * @param rooms The room assignments of the type.
+	 * @param id The ID of the booking.
+	 * @param startDay First night that needs a room, as an epoch day.
+	 * @param endDay Day after the last night of the booking, as an epoch day.
+	 * @param room The room the booking was given before, or RoomAssignments.NO_ROOM.
+	 * @param capacity Number of rooms of the type over the stay, used only if a room has to be found.
+	 * @return The room occupied by the booking.
+	 * @throws IllegalStateException If the saved room is held by another booking, or no single room is free.
+	 */
+	private int placeRoom(RoomAssignments rooms, long id, long startDay, long endDay, int room, int capacity) {
+		if (room == RoomAssignments.NO_ROOM) {
+			room = rooms.assign(startDay, endDay, capacity);
+			if (room == RoomAssignments.NO_ROOM) {
+				throw new IllegalStateException("Booking " + id + " no longer fits in a single room.");
+			}
+			return room;
+		}
+		if (!rooms.isFree(room, startDay, endDay)) {
+			throw new IllegalStateException("Booking " + id + " cannot keep room " + room + ", which another booking holds.");
+		}
+		rooms.occupy(room, startDay, endDay);
+		return room;
+	}
+	
+	/**
+	 * Function to get the physical room assigned to a booking.
+	 * @param id The ID returned when the booking was made.
+	 * @return The room (numbered from 0 within its RoomType), or RoomAssignments.NO_ROOM if the booking has no room,
+	 * there is no such booking or rooms are not being assigned.
+	 */
+	public int getAssignedRoom(long id) {
+		return ledger.getRoom(id);
+	}
+	
+	/**
+	 * Function to list the rooms of a type that are occupied on a given night, e.g. for housekeeping.
+	 * @param type RoomType to be listed.
+	 * @param date The night to be listed.
+	 * @return The occupied rooms (numbered from 0), in increasing order.
+	 * @throws IllegalStateException If rooms are not being assigned.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
+	 */
+	public int[] getOccupiedRooms(RoomType type, LocalDate date) {
+		RoomAssignments[] assignments = this.assignments;
+		if (assignments == null) throw new IllegalStateException("Rooms are not being assigned.");
+		ReentrantReadWriteLock.ReadLock lock = locks[indexOf(type)].readLock();
+		lock.lock();
+		try {
+			return assignments[type.getValue()].occupiedRooms(date.toEpochDay());
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Function to get the horizon of the calendars, i.e. the first night that can still be checked or booked.
+	 * @return The horizon, or null if no night has been evicted yet.
+	 */
+	public LocalDate getHorizon() {
+		long day = horizonDay;
+		return day == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(day);
+	}
+	
+	/**
+	 * Moves the horizon forward, evicting every night before it from the calendars (into the attached archive, if
+	 * any) so that they only hold a sliding window of nights, and dropping bookings that ended before it from the
+	 * ledger. Past nights are never needed to check or make bookings, so calling this regularly (e.g. once a day)
+	 * keeps memory use and lookup cost flat however long the booking history grows. Once evicted, a night reports
+	 * no availability and cannot be booked; cancelling a booking that started before the horizon only gives back
+	 * its later nights. The horizon never moves backwards.
+	 * 
+	 * The write lock of every type is held (taken in RoomType order) throughout. A lock-free booking does not take
+	 * the lock, so it checks the horizon again once it has reserved its nights: if its first night has been evicted
+	 * in the meantime it is given back and rejected, and anything it wrote to the evicted nights is dropped.
+	 * @param horizon The first night to be kept.
+	 * @return The number of nights evicted.
+	 * @throws IOException If the archive could not be written.
+	 */
+	public int advanceHorizon(LocalDate horizon) throws IOException {
+		long day = horizon.toEpochDay();
+		BookingJournal journal = this.journal;
+		BookingArchive archive = this.archive;
+		long sequence = 0;
+		int evicted = 0;
+		for (ReentrantReadWriteLock lock : locks) lock.writeLock().lock();
+		try {
+			if (day <= horizonDay) return 0;
+			horizonDay = day;
+			for (RoomType type : roomTypes) {
+				//The archive keeps the rooms that were left on each night, under the number of rooms it had then
+				NightVisitor visitor = (night, booked) -> {
+					if (archive != null) archive.append(type, night, Math.max(capacityOn(type.getValue(), night) - booked, 0));
+				};
+				evicted += calendars[type.getValue()].evictBefore(day, visitor);
+				if (assignments != null) assignments[type.getValue()].evictBefore(day);
+			}
+			ledger.removeEndingBy(day);
+			if (archive != null) archive.flush();
+			if (journal != null) sequence = journal.appendHorizon(day);
+		} finally {
+			for (int i = locks.length - 1; i >= 0; i--) locks[i].writeLock().unlock();
 		}
+		awaitDurable(journal, sequence);
+		return evicted;
 	}
 	
 	/**
 	 * Function to get the number of rooms of a particular type.
 	 * @param type RoomType desired.
 	 * @return The number of rooms of the desired type that are potentially available.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
 	 */
 	public int getNumRoomsByType(RoomType type) {
-		return numRoomsByType.get(type.getValue());
+		return numRoomsByType.get(indexOf(type));
+	}
+	
+	/**
+	 * Function to get the number of rooms of a particular type on a given night, with any override for that night
+	 * applied.
+	 * @param type RoomType desired.
+	 * @param date The night desired.
+	 * @return The number of rooms of the desired type on that night.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
+	 */
+	public int getNumRoomsByType(RoomType type, LocalDate date) {
+		return capacityOn(indexOf(type), date.toEpochDay());
 	}
 	
 	/**
 	 * Sets the number of rooms for a given RoomType.
 	 * @param type The RoomType to be changed.
 	 * @param n The number of rooms of that type.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
 	 */
 	public void setNumRooms(RoomType type, int n) {
 		//Throw an exception if the number of rooms is less than 0
 		if (n < 0) {
 			throw new NumberFormatException();
 		}
-		numRoomsByType.set(type.getValue(), n);
+		BookingJournal journal = this.journal;
+		BookingFeed feed = this.feed;
+		long sequence = 0;
+		ReentrantReadWriteLock.WriteLock lock = locks[indexOf(type)].writeLock();
+		lock.lock();
+		try {
+			//The default number of rooms applies to every night kept that has no override
+			CapacityStretches before = feed == null ? null : new CapacityStretches(type.getValue(), horizonDay, BookingFeed.OPEN_END);
+			numRoomsByType.set(type.getValue(), n);
+			if (feed != null) publishCapacityChange(feed, type, before);
+			if (journal != null) sequence = journal.appendSetNumRooms(type, n);
+		} finally {
+			lock.unlock();
+		}
+		awaitDurable(journal, sequence);
+	}
+	
+	/**
+	 * Sets the number of rooms for a given RoomType over a range of nights only, e.g. while a wing is closed for
+	 * renovation, overriding the number set by setNumRooms(type, n) on those nights. Bookings already made on those
+	 * nights are kept, but a night with more rooms booked than it now has reports no availability. Nights outside of
+	 * the range keep any override they already had.
+	 * @param type The RoomType to be changed.
+	 * @param startDate The first night of the range.
+	 * @param endDate The date after the last night of the range.
+	 * @param n The number of rooms of that type on every night of the range.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
+	 */
+	public void setNumRooms(RoomType type, LocalDate startDate, LocalDate endDate, int n) {
+		//Throw an exception if the number of rooms is less than 0
+		if (n < 0) {
+			throw new NumberFormatException();
+		}
+		setOverride(type, startDate.toEpochDay(), endDate.toEpochDay(), n);
+	}
+	
+	/**
+	 * Removes any override of the number of rooms for a given RoomType over a range of nights, so that those nights
+	 * have the number of rooms set by setNumRooms(type, n) again.
+	 * @param type The RoomType to be changed.
+	 * @param startDate The first night of the range.
+	 * @param endDate The date after the last night of the range.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
+	 */
+	public void clearNumRooms(RoomType type, LocalDate startDate, LocalDate endDate) {
+		setOverride(type, startDate.toEpochDay(), endDate.toEpochDay(), CapacitySchedule.DEFAULT);
+	}
+	
+	/**
+	 * Sets or removes an override of the number of rooms over a range of nights, and journals it.
+	 * @param type The RoomType to be changed.
+	 * @param startDay The first night of the range, as an epoch day.
+	 * @param endDay The day after the last night of the range, as an epoch day.
+	 * @param n The number of rooms, or CapacitySchedule.DEFAULT to remove the override.
+	 */
+	void setOverride(RoomType type, long startDay, long endDay, int n) {
+		if (startDay >= endDay) throw new IllegalArgumentException("The end date must be after the start date.");
+		BookingJournal journal = this.journal;
+		BookingFeed feed = this.feed;
+		long sequence = 0;
+		ReentrantReadWriteLock.WriteLock lock = locks[indexOf(type)].writeLock();
+		lock.lock();
+		try {
+			CapacityStretches before = feed == null ? null : new CapacityStretches(type.getValue(), startDay, endDay);
+			schedules[type.getValue()].set(startDay, endDay, n);
+			if (feed != null) publishCapacityChange(feed, type, before);
+			if (journal != null) sequence = journal.appendSetNumRooms(type, startDay, endDay, n);
+		} finally {
+			lock.unlock();
+		}
+		awaitDurable(journal, sequence);
+	}
+	
+	/**
+	 * The number of rooms of a RoomType over a range of nights, as the stretches of the range over which it does not
+	 * change, taken before a change so that the change can be published afterwards.
+	 */
+	private class CapacityStretches {
+		
+		private final long from;
+		private final long to;
+		private final long[] starts;	//first night of each stretch, as an epoch day
+		private final int[] rooms;		//rooms on every night of each stretch
+		private final int count;
+		
+		/**
+		 * Constructor for the current stretches of a range. The caller must hold the write lock for the type.
+		 * @param t Value of the RoomType.
+		 * @param _from The first night of the range, as an epoch day.
+		 * @param _to The day after the last night of the range, as an epoch day.
+		 */
+		CapacityStretches(int t, long _from, long _to) {
+			this.from = _from;
+			this.to = _to;
+			this.starts = new long[schedules[t].size() + 1];
+			this.rooms = new int[starts.length];
+			int n = 0;
+			for (long day = _from; day < _to; day = schedules[t].nextChange(day)) {
+				starts[n] = day;
+				rooms[n++] = capacityOn(t, day);
+			}
+			this.count = n;
+		}
+		
+		/**
+		 * Function to get the day after the last night of a stretch.
+		 * @param i Index of the stretch.
+		 * @return The first night of the next stretch, or the end of the range.
+		 */
+		long end(int i) {
+			return i + 1 < count ? starts[i + 1] : to;
+		}
+	}
+	
+	/**
+	 * Publishes the change in the number of rooms of a RoomType over a range of nights, as one event for each stretch
+	 * of the range over which the change is the same. The caller must hold the write lock for the type.
+	 * @param feed The feed to be published to.
+	 * @param type The RoomType that was changed.
+	 * @param before The stretches of the range before the change.
+	 */
+	private void publishCapacityChange(BookingFeed feed, RoomType type, CapacityStretches before) {
+		CapacityStretches after = new CapacityStretches(type.getValue(), before.from, before.to);
+		//Walk both sets of stretches together, joining neighbouring pieces with the same change
+		long pendingStart = before.from;
+		int pendingDelta = 0;
+		int i = 0;
+		int j = 0;
+		for (long day = before.from; day < before.to; ) {
+			long end = Math.min(before.end(i), after.end(j));
+			int delta = after.rooms[j] - before.rooms[i];
+			if (delta != pendingDelta) {
+				if (pendingDelta != 0) feed.publish(type, pendingStart, day, pendingDelta);
+				pendingStart = day;
+				pendingDelta = delta;
+			}
+			if (end == before.end(i)) i++;
+			if (end == after.end(j)) j++;
+			day = end;
+		}
+		if (pendingDelta != 0) feed.publish(type, pendingStart, before.to, pendingDelta);
+	}
+	
+	/**
+	 * Function to get the number of rooms of a RoomType on a night, with any override for that night applied.
+	 * @param t Value of the RoomType.
+	 * @param day The night, as an epoch day.
+	 * @return The number of rooms on that night (0 if it has never been set).
+	 */
+	private int capacityOn(int t, long day) {
+		return schedules[t].roomsOn(day, Math.max(numRoomsByType.get(t), 0));
+	}
+	
+	/**
+	 * Function to get the fewest rooms of a RoomType on any night of a range, e.g. to bound the room that a stay
+	 * over the range can be given.
+	 * @param t Value of the RoomType.
+	 * @param startDay The first night of the range, as an epoch day.
+	 * @param endDay The day after the last night of the range, as an epoch day.
+	 * @return The minimum number of rooms over the range.
+	 */
+	private int minCapacity(int t, long startDay, long endDay) {
+		int min = capacityOn(t, startDay);
+		for (long day = schedules[t].nextChange(startDay); day < endDay; day = schedules[t].nextChange(day)) {
+			min = Math.min(min, capacityOn(t, day));
+		}
+		return min;
+	}
+	
+	/**
+	 * Function to get the number of rooms of a RoomType on each night of a range.
+	 * @param t Value of the RoomType.
+	 * @param from The first night of the range, as an epoch day.
+	 * @param out Array to receive the number of rooms of each night.
+	 * @param offset Index in out of the first night.
+	 * @param length Number of nights in the range.
+	 */
+	private void readCapacities(int t, long from, int[] out, int offset, int length) {
+		long end = from + length;
+		for (long day = from; day < end; ) {
+			long next = Math.min(schedules[t].nextChange(day), end);
+			Arrays.fill(out, offset + (int) (day - from), offset + (int) (next - from), capacityOn(t, day));
+			day = next;
+		}
+	}
+	
+	/**
+	 * Function to find the minimum availability of a RoomType over a range of nights, with one calendar query for
+	 * each stretch of the range over which the number of rooms does not change. The caller must hold a lock for the
+	 * type, unless the calendar has lock-free reads.
+	 * @param t Value of the RoomType.
+	 * @param calendar The calendar of the RoomType.
+	 * @param startDay The first night of the range, as an epoch day.
+	 * @param endDay The day after the last night of the range, as an epoch day.
+	 * @return The minimum number of rooms available over the range.
+	 */
+	private int minAvailable(int t, BookingCalendar calendar, long startDay, long endDay) {
+		int min = Integer.MAX_VALUE;
+		for (long from = startDay; from < endDay && min > 0; ) {
+			long to = Math.min(schedules[t].nextChange(from), endDay);
+			min = Math.min(min, calendar.minAvailable(from, to, capacityOn(t, from)));
+			from = to;
+		}
+		return min;
+	}
+	
+	/**
+	 * Reserves a room on every night of a range of a lock-free calendar, with one tryReserve() for each stretch of
+	 * the range over which the number of rooms does not change. If a stretch cannot be reserved, the stretches
+	 * already reserved are given back.
+	 * @param t Value of the RoomType.
+	 * @param calendar The (lock-free) calendar of the RoomType.
+	 * @param startDay The first night of the range, as an epoch day.
+	 * @param endDay The day after the last night of the range, as an epoch day.
+	 * @return True if every night was reserved, false if none was.
+	 */
+	private boolean tryReserve(int t, BookingCalendar calendar, long startDay, long endDay) {
+		for (long from = startDay; from < endDay; ) {
+			long to = Math.min(schedules[t].nextChange(from), endDay);
+			if (!calendar.tryReserve(from, to, capacityOn(t, from))) {
+				if (from > startDay) calendar.release(startDay, from, capacityOn(t, startDay));
+				return false;
+			}
+			from = to;
+		}
+		return true;
 	}
 	
 	/**
@@ -74,31 +673,599 @@ public class Bookings {
 	 * @param startDate LocalDate object, representing the date for the booking to begin.
 	 * @param endDate LocalDate object, representing the date for the booking to end.
 	 * @return Boolean of 'true' if the booking has been created successfully, and false if not.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
 	 */
 	public boolean createBooking(RoomType type, LocalDate startDate, LocalDate endDate) {
-		ArrayList<Integer> existingBookings = new ArrayList<Integer>();
+		return book(type, startDate, endDate) > 0;
+	}
+	
+	/**
+	 * Creates a booking in the same way as createBooking(), and records it in the ledger so that it can later
+	 * be cancelled with cancelBooking().
+	 * @param type RoomType that the booking is to be created for.
+	 * @param startDate LocalDate object, representing the date for the booking to begin.
+	 * @param endDate LocalDate object, representing the date for the booking to end.
+	 * @return The ID of the new booking (always greater than 0), or -1 if the booking could not be created.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
+	 */
+	public long book(RoomType type, LocalDate startDate, LocalDate endDate) {
 		//First: check availability over the entire set of dates
-		if (startDate.isEqual(endDate)) return false;
-		else if (startDate.isAfter(endDate)) return false;
-		//else if (startDate.isBefore(LocalDate.now())) return false;
+		if (startDate.isEqual(endDate)) return -1;
+		else if (startDate.isAfter(endDate)) return -1;
+		//else if (startDate.isBefore(LocalDate.now())) return -1;
+		BookingMetrics metrics = this.metrics;
+		if (metrics == null) return bookNights(type, startDate.toEpochDay(), endDate.toEpochDay());
+		long start = System.nanoTime();
+		long id = bookNights(type, startDate.toEpochDay(), endDate.toEpochDay());
+		metrics.recordBooking(type, System.nanoTime() - start, id > 0);
+		return id;
+	}
+	
+	/**
+	 * Creates a booking over a range of nights and records it in the ledger under the next free ID.
+	 * @param type RoomType that the booking is to be created for.
+	 * @param startDay First night of the booking, as an epoch day (before endDay).
+	 * @param endDay Day after the last night of the booking, as an epoch day.
+	 * @return The ID of the booking, or -1 if the booking could not be created.
+	 */
+	private long bookNights(RoomType type, long startDay, long endDay) {
+		BookingCalendar calendar = calendars[indexOf(type)];
+		//Nights before the horizon have been evicted and can no longer be booked
+		if (startDay < horizonDay) return -1;
+		BookingJournal journal = this.journal;
+		BookingFeed feed = this.feed;
+		long sequence = 0;
+		long id;
+		if (lockFree) {
+			if (!tryReserve(type.getValue(), calendar, startDay, endDay)) return -1;
+			id = ledger.add(type, startDay, endDay);
+			//The horizon may have moved past the first night while it was being reserved
+			if (startDay < horizonDay) {
+				undoBooking(type.getValue(), calendar, startDay, endDay, id);
+				return -1;
+			}
+			if (feed != null) feed.publish(type, startDay, endDay, -1);
+			if (journal != null) sequence = journal.appendBooking(type, startDay, endDay, id, RoomAssignments.NO_ROOM);
+		} else {
+			//Hold the write lock for the type over both the check and the reservation, so that no other booking
+			//can take a room in between
+			ReentrantReadWriteLock.WriteLock lock = locks[type.getValue()].writeLock();
+			lock.lock();
+			try {
+				//Check the horizon again, as it may have moved before the lock was taken
+				if (startDay < horizonDay) return -1;
+				//Shortcut exit if any room is unavailable in the series
+				if (minAvailable(type.getValue(), calendar, startDay, endDay) == 0) return -1;
+				int capacity = minCapacity(type.getValue(), startDay, endDay);
+				RoomAssignments[] assignments = this.assignments;
+				int room = RoomAssignments.NO_ROOM;
+				if (assignments != null) {
+					room = assignments[type.getValue()].assign(startDay, endDay, capacity);
+					//Every night has a room, but no single room is free over the whole stay
+					if (room == RoomAssignments.NO_ROOM) return -1;
+				}
+				
+				//Next: add or update booking for each day in the series, incrementing the value of any existing bookings
+				calendar.reserve(startDay, endDay, capacity);
+				id = ledger.add(type, startDay, endDay);
+				if (room != RoomAssignments.NO_ROOM) ledger.setRoom(id, room);
+				if (feed != null) feed.publish(type, startDay, endDay, -1);
+				if (journal != null) sequence = journal.appendBooking(type, startDay, endDay, id, room);
+			} finally {
+				lock.unlock();
+			}
+		}
+		//Wait for the journal outside of the lock, so that other bookings can join the same fsync
+		awaitDurable(journal, sequence);
+		return id;
+	}
+	
+	/**
+	 * Gives back a lock-free booking whose first night was evicted by advanceHorizon() while it was being made:
+	 * the booking is removed from the ledger and the nights it reserved are released.
+	 * @param t Value of the RoomType of the booking.
+	 * @param calendar The calendar of the type.
+	 * @param startDay First night of the booking, as an epoch day.
+	 * @param endDay Day after the last night of the booking, as an epoch day.
+	 * @param id The ID the booking was recorded under.
+	 */
+	private void undoBooking(int t, BookingCalendar calendar, long startDay, long endDay, long id) {
+		ledger.remove(id);
+		long from = Math.max(startDay, horizonDay);
+		calendar.release(from, endDay, capacityOn(t, from));
+		clearBehindHorizon(t, calendar, startDay);
+	}
+	
+	/**
+	 * Drops the entries that a lock-free booking or cancellation wrote to nights before the horizon after they had
+	 * been evicted, i.e. when advanceHorizon() ran while it was being made. The write lock of the type is taken, so
+	 * that advanceHorizon() has finished archiving the nights first.
+	 * @param t Value of the RoomType.
+	 * @param calendar The calendar of the type.
+	 * @param from The first night that was written, as an epoch day.
+	 */
+	private void clearBehindHorizon(int t, BookingCalendar calendar, long from) {
+		if (from >= horizonDay) return;
+		ReentrantReadWriteLock.WriteLock lock = locks[t].writeLock();
+		lock.lock();
+		try {
+			calendar.evictBefore(horizonDay, (night, booked) -> {});
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Restores a booking read from a journal under the ID it was given. Unlike book(), the number of rooms is not
+	 * checked, as the booking was already made (and with a lock-free backend, the journal may hold it before the
+	 * cancellation that freed its room). Only the nights that have not been evicted are taken, and a booking that
+	 * ended before the horizon is not restored at all. The booking is not journaled again. It keeps the room it was
+	 * given, which is occupied again if rooms are being assigned.
+	 * @param type RoomType of the booking.
+	 * @param startDay First night of the booking, as an epoch day.
+	 * @param endDay Day after the last night of the booking, as an epoch day.
+	 * @param id The ID of the booking.
+	 * @param room The room assigned to the booking, or RoomAssignments.NO_ROOM.
+	 * @throws IllegalStateException If rooms are being assigned and the booking cannot be given its room (or any
+	 * room, if it had none).
+	 */
+	void restoreBooking(RoomType type, long startDay, long endDay, long id, int room) {
+		BookingFeed feed = this.feed;
+		ReentrantReadWriteLock.WriteLock lock = locks[type.getValue()].writeLock();
+		lock.lock();
+		try {
+			ledger.restoreLastId(id);
+			long from = Math.max(startDay, horizonDay);
+			if (from >= endDay) return;
+			RoomAssignments[] assignments = this.assignments;
+			if (assignments != null) {
+				room = placeRoom(assignments[type.getValue()], id, from, endDay, room, minCapacity(type.getValue(), from, endDay));
+			}
+			//No night can be full for a booking that was already made
+			calendars[type.getValue()].reserve(from, endDay, Integer.MAX_VALUE);
+			ledger.put(id, type, startDay, endDay);
+			if (room != RoomAssignments.NO_ROOM) ledger.setRoom(id, room);
+			if (feed != null) feed.publish(type, from, endDay, -1);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Restores the room given to a booking by enableRoomAssignment(), as read from a journal. The room is not
+	 * journaled again.
+	 * @param id The ID of the booking.
+	 * @param room The room assigned to the booking.
+	 * @throws IllegalStateException If rooms are being assigned and the room is held by another booking.
+	 */
+	void restoreRoom(long id, int room) {
+		BookingRequest booking = ledger.get(id);
+		if (booking == null) return;
+		int t = booking.getType().getValue();
+		ReentrantReadWriteLock.WriteLock lock = locks[t].writeLock();
+		lock.lock();
+		try {
+			RoomAssignments[] assignments = this.assignments;
+			if (assignments != null) {
+				long startDay = Math.max(booking.getStartDate().toEpochDay(), horizonDay);
+				long endDay = booking.getEndDate().toEpochDay();
+				assignments[t].release(ledger.getRoom(id), startDay, endDay);
+				placeRoom(assignments[t], id, startDay, endDay, room, 0);
+			}
+			ledger.setRoom(id, room);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Makes sure that no booking is given an ID up to a given one, e.g. for a booking read from a journal that was
+	 * cancelled before it was journaled.
+	 * @param id An ID that has been handed out.
+	 */
+	void restoreLastId(long id) {
+		ledger.restoreLastId(id);
+	}
+	
+	/**
+	 * Function to look up a booking by its ID.
+	 * @param id The ID returned when the booking was made.
+	 * @return BookingRequest with the RoomType and dates of the booking, or null if there is no such booking (or it
+	 * has been cancelled).
+	 */
+	public BookingRequest getBooking(long id) {
+		return ledger.get(id);
+	}
+	
+	/**
+	 * Cancels a booking, giving its room back on every night of the stay.
+	 * @param id The ID returned when the booking was made.
+	 * @return True if the booking was cancelled, false if there is no such booking (or it was already cancelled).
+	 */
+	public boolean cancelBooking(long id) {
+		return cancelBookings(new long[] { id })[0];
+	}
+	
+	/**
+	 * Cancels a batch of bookings, returning the result of each in the same order as the IDs. The result is the
+	 * same as calling cancelBooking() on each ID in turn.
+	 * 
+	 * Each booking is found through the ledger rather than by searching the calendars. The bookings are then
+	 * grouped by RoomType and, as in createBookings(), merged into windows of consecutive nights: each window is
+	 * read once, the cancelled stays are added back to it with a difference array, and the nights that changed are
+	 * written back once. The write lock of each type is taken once for the whole batch.
+	 * @param ids The IDs of the bookings to be cancelled.
+	 * @return An array holding, for each ID, true if its booking was cancelled and false if not.
+	 */
+	public boolean[] cancelBookings(long[] ids) {
+		boolean[] results = new boolean[ids.length];
 		
-		for (LocalDate date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
-			Integer checkVal = checkAvailability(type, date);
-			//Shortcut exit if any room is unavailable in the series
-			if (checkVal == 0) return false;
-			//add to existing bookings list to prevent additional searching later
-			existingBookings.add(checkVal);
+		//Group the IDs by RoomType, dropping any that are not in the ledger
+		int[] groupSizes = new int[roomTypes.length];
+		int[] typeOf = new int[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			BookingRequest booking = ledger.get(ids[i]);
+			typeOf[i] = booking == null ? -1 : booking.getType().getValue();
+			if (booking != null) groupSizes[typeOf[i]]++;
+		}
+		int[][] groups = new int[roomTypes.length][];
+		for (int t = 0; t < groups.length; t++) {
+			groups[t] = new int[groupSizes[t]];
+			groupSizes[t] = 0;
+		}
+		for (int i = 0; i < ids.length; i++) {
+			if (typeOf[i] >= 0) groups[typeOf[i]][groupSizes[typeOf[i]]++] = i;
 		}
 		
-		//Next: add or update booking for each day in the series
-		int i = 0;
-		for (LocalDate date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
-			//Index bookingsList for the correct BST, then put the new booking information in
-			//Must also decrement the value of any existing bookings
-			bookingsList.get(type.getValue()).put(date, existingBookings.get(i) - 1);
-			i++;
+		BookingJournal journal = this.journal;
+		BookingFeed feed = this.feed;
+		long sequence = 0;
+		for (RoomType type : roomTypes) {
+			int[] group = groups[type.getValue()];
+			if (group.length == 0) continue;
+			if (lockFree) {
+				BookingCalendar calendar = calendars[type.getValue()];
+				for (int i : group) {
+					BookingRequest booking = ledger.remove(ids[i]);
+					if (booking == null) continue;
+					//Only the nights that have not been evicted are given back
+					long startDay = Math.max(booking.getStartDate().toEpochDay(), horizonDay);
+					calendar.release(startDay, booking.getEndDate().toEpochDay(), capacityOn(type.getValue(), startDay));
+					clearBehindHorizon(type.getValue(), calendar, startDay);
+					results[i] = true;
+					if (feed != null && startDay < booking.getEndDate().toEpochDay()) feed.publish(type, startDay, booking.getEndDate().toEpochDay(), 1);
+					if (journal != null) sequence = journal.appendCancellation(type, ids[i]);
+				}
+				continue;
+			}
+			ReentrantReadWriteLock.WriteLock lock = locks[type.getValue()].writeLock();
+			lock.lock();
+			try {
+				//Remove the bookings under the lock, so that a checkpoint never sees a booking removed from the
+				//ledger while its nights are still taken
+				cancelBookings(type, ids, group, results, feed);
+				if (journal != null) {
+					for (int i : group) {
+						if (results[i]) sequence = journal.appendCancellation(type, ids[i]);
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
 		}
-		return true;
+		//One wait covers every record of the batch
+		awaitDurable(journal, sequence);
+		BookingMetrics metrics = this.metrics;
+		if (metrics != null) {
+			for (RoomType type : roomTypes) {
+				int cancelled = 0;
+				for (int i : groups[type.getValue()]) if (results[i]) cancelled++;
+				metrics.recordCancellations(type, cancelled);
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * Removes a group of bookings of the same RoomType from the ledger and gives their nights back to its calendar.
+	 * The caller must hold the write lock for the type.
+	 * @param type RoomType of every booking in the group.
+	 * @param ids All of the IDs in the batch.
+	 * @param group Indices (into ids) of the IDs of bookings of this type.
+	 * @param results Array in which the result of each cancellation is stored.
+	 * @param feed The feed to publish each cancellation to, or null.
+	 */
+	private void cancelBookings(RoomType type, long[] ids, int[] group, boolean[] results, BookingFeed feed) {
+		BookingCalendar calendar = calendars[type.getValue()];
+		RoomAssignments rooms = assignments == null ? null : assignments[type.getValue()];
+		int n = group.length;
+		long[] startDays = new long[n];
+		long[] endDays = new long[n];
+		for (int i = 0; i < n; i++) {
+			//A booking that was cancelled by another thread since the grouping is skipped (start == end)
+			int room = rooms == null ? RoomAssignments.NO_ROOM : ledger.getRoom(ids[group[i]]);
+			BookingRequest booking = ledger.remove(ids[group[i]]);
+			if (booking == null || booking.getType() != type) continue;
+			//Only the nights that have not been evicted are given back
+			startDays[i] = Math.max(booking.getStartDate().toEpochDay(), horizonDay);
+			endDays[i] = booking.getEndDate().toEpochDay();
+			if (room != RoomAssignments.NO_ROOM) rooms.release(room, startDays[i], endDays[i]);
+			if (feed != null && startDays[i] < endDays[i]) feed.publish(type, startDays[i], endDays[i], 1);
+			results[group[i]] = true;
+		}
+		
+		int[] windowOf = new int[n];
+		long[] windowStart = new long[n];
+		int[] windowOffset = new int[n + 1];
+		int windows = mergeWindows(startDays, endDays, windowOf, windowStart, windowOffset);
+		if (windows == 0) return;
+		int[] nights = new int[windowOffset[windows]];
+		for (int w = 0; w < windows; w++) {
+			calendar.read(windowStart[w], nights, windowOffset[w], windowOffset[w + 1] - windowOffset[w]);
+		}
+		
+		//Count the cancelled stays covering each night with a difference array, then take them off in one pass
+		int[] released = new int[nights.length + 1];
+		for (int i = 0; i < n; i++) {
+			int w = windowOf[i];
+			if (w < 0) continue;
+			int from = windowOffset[w] + (int) (startDays[i] - windowStart[w]);
+			released[from]++;
+			released[from + (int) (endDays[i] - startDays[i])]--;
+		}
+		long[] changedDays = new long[nights.length];
+		int[] changedValues = new int[nights.length];
+		int numChanged = 0;
+		int covering = 0;
+		for (int w = 0; w < windows; w++) {
+			for (int j = windowOffset[w]; j < windowOffset[w + 1]; j++) {
+				covering += released[j];
+				if (covering == 0) continue;
+				changedDays[numChanged] = windowStart[w] + (j - windowOffset[w]);
+				changedValues[numChanged++] = Math.max(Math.max(nights[j], 0) - covering, 0);
+			}
+		}
+		calendar.putAll(changedDays, changedValues, numChanged);
+	}
+	
+	/**
+	 * Function to get the index of a RoomType in the per-type state of this object.
+	 * @param type The RoomType.
+	 * @return The numerical value of the type.
+	 * @throws IllegalArgumentException If the type was registered after this object was created, and so has no
+	 * calendar.
+	 */
+	private int indexOf(RoomType type) {
+		if (type.getValue() >= roomTypes.length) throw new IllegalArgumentException("The room type " + type + " was registered after the bookings were created.");
+		return type.getValue();
+	}
+	
+	/**
+	 * Waits until a journal record has been forced to disk. The change it records has already been applied in
+	 * memory, and stays applied if the journal fails.
+	 * @param journal The journal the record was appended to, or null if there is no journal.
+	 * @param sequence The sequence number of the record, or 0 if nothing was appended.
+	 * @throws UncheckedIOException If the journal could not be written.
+	 */
+	private void awaitDurable(BookingJournal journal, long sequence) {
+		if (journal == null || sequence == 0) return;
+		try {
+			journal.awaitDurable(sequence);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+	
+	/**
+	 * Creates a batch of bookings, returning the result of each in the same order as the requests. The result
+	 * is the same as calling createBooking() on each request in turn, in the order given.
+	 * @param requests The bookings to be created.
+	 * @return An array holding, for each request, true if it was booked and false if not.
+	 * @throws IllegalArgumentException If the type of a request was registered after this object was created.
+	 */
+	public boolean[] createBookings(List<BookingRequest> requests) {
+		long[] ids = bookAll(requests);
+		boolean[] results = new boolean[ids.length];
+		for (int i = 0; i < ids.length; i++) results[i] = ids[i] > 0;
+		return results;
+	}
+	
+	/**
+	 * Creates a batch of bookings, returning the ID of each in the same order as the requests. The result
+	 * is the same as calling book() on each request in turn, in the order given.
+	 * 
+	 * The requests are grouped by RoomType, and each group is sorted by start date so that overlapping stays
+	 * can be merged into a small number of windows of consecutive nights. Each window is read from the
+	 * calendar in one ordered pass, the requests are applied to those copies in their original order, and the
+	 * nights that changed are written back once. A burst of requests therefore walks each calendar a handful
+	 * of times instead of once per night of every stay.
+	 * @param requests The bookings to be created.
+	 * @return An array holding, for each request, the ID of its booking, or -1 if it could not be booked.
+	 * @throws IllegalArgumentException If the type of a request was registered after this object was created.
+	 */
+	public long[] bookAll(List<BookingRequest> requests) {
+		long[] ids = new long[requests.size()];
+		Arrays.fill(ids, -1);
+		
+		//Group the indices of the requests by RoomType, keeping their original order within each group
+		int[] groupSizes = new int[roomTypes.length];
+		for (BookingRequest request : requests) groupSizes[indexOf(request.getType())]++;
+		int[][] groups = new int[roomTypes.length][];
+		for (int t = 0; t < groups.length; t++) {
+			groups[t] = new int[groupSizes[t]];
+			groupSizes[t] = 0;
+		}
+		for (int i = 0; i < requests.size(); i++) {
+			int t = requests.get(i).getType().getValue();
+			groups[t][groupSizes[t]++] = i;
+		}
+		
+		BookingJournal journal = this.journal;
+		BookingFeed feed = this.feed;
+		long sequence = 0;
+		for (RoomType type : roomTypes) {
+			int[] group = groups[type.getValue()];
+			if (group.length == 0) continue;
+			if (lockFree) {
+				//Lock-free calendars are already safe to reserve from one request at a time
+				BookingCalendar calendar = calendars[type.getValue()];
+				for (int i : group) {
+					long startDay = requests.get(i).getStartDate().toEpochDay();
+					long endDay = requests.get(i).getEndDate().toEpochDay();
+					if (startDay >= endDay || startDay < horizonDay) continue;
+					if (!tryReserve(type.getValue(), calendar, startDay, endDay)) continue;
+					long id = ledger.add(type, startDay, endDay);
+					if (startDay < horizonDay) {
+						undoBooking(type.getValue(), calendar, startDay, endDay, id);
+						continue;
+					}
+					ids[i] = id;
+					if (feed != null) feed.publish(type, startDay, endDay, -1);
+					if (journal != null) sequence = journal.appendBooking(type, startDay, endDay, ids[i], RoomAssignments.NO_ROOM);
+				}
+				continue;
+			}
+			ReentrantReadWriteLock.WriteLock lock = locks[type.getValue()].writeLock();
+			lock.lock();
+			try {
+				createBookings(type, requests, group, ids, feed);
+				if (journal != null) {
+					for (int i : group) {
+						if (ids[i] < 0) continue;
+						sequence = journal.appendBooking(type, requests.get(i).getStartDate().toEpochDay(),
+								requests.get(i).getEndDate().toEpochDay(), ids[i], ledger.getRoom(ids[i]));
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		//One wait covers every record of the batch
+		awaitDurable(journal, sequence);
+		BookingMetrics metrics = this.metrics;
+		if (metrics != null) {
+			for (RoomType type : roomTypes) {
+				int booked = 0;
+				for (int i : groups[type.getValue()]) if (ids[i] > 0) booked++;
+				metrics.recordBookings(type, booked, groups[type.getValue()].length - booked);
+			}
+		}
+		return ids;
+	}
+	
+	/**
+	 * Applies a group of requests of the same RoomType to its calendar, recording each successful booking in the
+	 * ledger. The caller must hold the write lock for the type.
+	 * @param type RoomType of every request in the group.
+	 * @param requests All of the requests in the batch.
+	 * @param group Indices (into requests) of the requests for this type, in their original order.
+	 * @param ids Array in which the ID of each successful booking is stored.
+	 * @param feed The feed to publish each booking to, or null.
+	 */
+	private void createBookings(RoomType type, List<BookingRequest> requests, int[] group, long[] ids, BookingFeed feed) {
+		BookingCalendar calendar = calendars[type.getValue()];
+		RoomAssignments rooms = assignments == null ? null : assignments[type.getValue()];
+		int n = group.length;
+		long[] startDays = new long[n];
+		long[] endDays = new long[n];
+		for (int i = 0; i < n; i++) {
+			BookingRequest request = requests.get(group[i]);
+			startDays[i] = request.getStartDate().toEpochDay();
+			endDays[i] = request.getEndDate().toEpochDay();
+			//A stay starting before the horizon is rejected, in the same way as a stay with no nights
+			if (startDays[i] < horizonDay) endDays[i] = startDays[i];
+		}
+		
+		int[] windowOf = new int[n];
+		long[] windowStart = new long[n];
+		int[] windowOffset = new int[n + 1];
+		int windows = mergeWindows(startDays, endDays, windowOf, windowStart, windowOffset);
+		if (windows == 0) return;
+		
+		//Read every window in one pass per window, along with the number of rooms on each of its nights
+		int[] nights = new int[windowOffset[windows]];
+		int[] capacities = new int[nights.length];
+		boolean[] changed = new boolean[nights.length];
+		for (int w = 0; w < windows; w++) {
+			calendar.read(windowStart[w], nights, windowOffset[w], windowOffset[w + 1] - windowOffset[w]);
+			readCapacities(type.getValue(), windowStart[w], capacities, windowOffset[w], windowOffset[w + 1] - windowOffset[w]);
+		}
+		
+		//Apply the requests in their original order against the copy
+		for (int i = 0; i < n; i++) {
+			int w = windowOf[i];
+			if (w < 0) continue;
+			int from = windowOffset[w] + (int) (startDays[i] - windowStart[w]);
+			int to = from + (int) (endDays[i] - startDays[i]);
+			boolean available = true;
+			int capacity = Integer.MAX_VALUE;
+			for (int j = from; j < to && available; j++) {
+				available = capacities[j] - Math.max(nights[j], 0) > 0;
+				capacity = Math.min(capacity, capacities[j]);
+			}
+			if (!available) continue;
+			int room = rooms == null ? RoomAssignments.NO_ROOM : rooms.assign(startDays[i], endDays[i], capacity);
+			if (rooms != null && room == RoomAssignments.NO_ROOM) continue;
+			for (int j = from; j < to; j++) {
+				nights[j] = Math.max(nights[j], 0) + 1;
+				changed[j] = true;
+			}
+			ids[group[i]] = ledger.add(type, startDays[i], endDays[i]);
+			if (room != RoomAssignments.NO_ROOM) ledger.setRoom(ids[group[i]], room);
+			if (feed != null) feed.publish(type, startDays[i], endDays[i], -1);
+		}
+		
+		//Write back only the nights that were booked, in one putAll() so that a calendar with lock-free reads
+		//publishes the whole batch at once
+		long[] changedDays = new long[nights.length];
+		int[] changedValues = new int[nights.length];
+		int numChanged = 0;
+		for (int w = 0; w < windows; w++) {
+			for (int j = windowOffset[w]; j < windowOffset[w + 1]; j++) {
+				if (!changed[j]) continue;
+				changedDays[numChanged] = windowStart[w] + (j - windowOffset[w]);
+				changedValues[numChanged++] = nights[j];
+			}
+		}
+		calendar.putAll(changedDays, changedValues, numChanged);
+	}
+	
+	/**
+	 * Merges a group of stays into windows of consecutive nights, in order of start date, so that the nights they
+	 * cover can be read from a calendar with one read() per window into a single dense buffer. A stay with no nights
+	 * (end not after start) does not need a window.
+	 * @param startDays First night of each stay, as an epoch day.
+	 * @param endDays Day after the last night of each stay, as an epoch day.
+	 * @param windowOf Array in which the window of each stay is stored (-1 for a stay with no nights).
+	 * @param windowStart Array in which the first night of each window is stored.
+	 * @param windowOffset Array in which the offset of each window in the buffer is stored, followed by the
+	 * total length of the buffer (one entry longer than the number of windows).
+	 * @return The number of windows.
+	 */
+	private static int mergeWindows(long[] startDays, long[] endDays, int[] windowOf, long[] windowStart, int[] windowOffset) {
+		int n = startDays.length;
+		Integer[] byStart = new Integer[n];
+		for (int i = 0; i < n; i++) byStart[i] = i;
+		Arrays.sort(byStart, (a, b) -> Long.compare(startDays[a], startDays[b]));
+		
+		int windows = 0;
+		long windowEnd = Long.MIN_VALUE;
+		for (int i : byStart) {
+			if (startDays[i] >= endDays[i]) {
+				windowOf[i] = -1;
+				continue;
+			}
+			if (windows == 0 || startDays[i] > windowEnd) {
+				if (windows > 0) windowOffset[windows] = windowOffset[windows - 1] + (int) (windowEnd - windowStart[windows - 1]);
+				windowStart[windows++] = startDays[i];
+				windowEnd = endDays[i];
+			} else {
+				windowEnd = Math.max(windowEnd, endDays[i]);
+			}
+			windowOf[i] = windows - 1;
+		}
+		if (windows > 0) windowOffset[windows] = windowOffset[windows - 1] + (int) (windowEnd - windowStart[windows - 1]);
+		return windows;
 	}
 	
 	/**
@@ -106,19 +1273,278 @@ public class Bookings {
 	 * @param type RoomType to check the availability of.
 	 * @param date The date on which to check the availability.
 	 * @return Number of rooms available of the given type.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
 	 */
-	public Integer checkAvailability(RoomType type, LocalDate date) {
-		Integer checkVal = (Integer) bookingsList.get(type.getValue()).get(date);
-		if (checkVal == null) {
-			//Must determine if there are enough rooms of that type to handle a booking in the event that the
-			//node does not currently exist
-			if (numRoomsByType.get(type.getValue()) > 0) {
-				return numRoomsByType.get(type.getValue());
-			} else {
-				return 0;
+	public int checkAvailability(RoomType type, LocalDate date) {
+		BookingMetrics metrics = this.metrics;
+		if (metrics == null) return checkNight(type, date.toEpochDay());
+		long start = System.nanoTime();
+		int available = checkNight(type, date.toEpochDay());
+		metrics.recordCheck(type, System.nanoTime() - start);
+		return available;
+	}
+	
+	/**
+	 * Function to check the availability of a single night, taking the read lock for the type unless the calendar
+	 * has lock-free reads.
+	 * @param type RoomType to check the availability of.
+	 * @param day The night to be checked, as an epoch day.
+	 * @return Number of rooms available of the given type.
+	 */
+	private int checkNight(RoomType type, long day) {
+		if (lockFreeReads) return availableOn(calendars[indexOf(type)], type, day);
+		ReentrantReadWriteLock.ReadLock lock = locks[indexOf(type)].readLock();
+		lock.lock();
+		try {
+			return availableOn(calendars[type.getValue()], type, day);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Function to check the availability of a RoomType over a range of nights, i.e. how many rooms of that type
+	 * could be booked for the whole stay.
+	 * @param type RoomType to check the availability of.
+	 * @param startDate The first night of the range.
+	 * @param endDate The date after the last night of the range.
+	 * @return RangeAvailability with the minimum availability over the range and the night on which it occurs.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
+	 */
+	public RangeAvailability checkAvailability(RoomType type, LocalDate startDate, LocalDate endDate) {
+		return checkAvailability(type, startDate, endDate, false);
+	}
+	
+	/**
+	 * Function to check the availability of a RoomType over a range of nights, optionally including the availability
+	 * of every night of the range. The range is read from the calendar with one ordered pass (or a range-max query)
+	 * rather than with a separate lookup per night.
+	 * @param type RoomType to check the availability of.
+	 * @param startDate The first night of the range.
+	 * @param endDate The date after the last night of the range.
+	 * @param perNight True if the availability of each night should be included in the result.
+	 * @return RangeAvailability with the minimum availability over the range and the night on which it occurs.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
+	 */
+	public RangeAvailability checkAvailability(RoomType type, LocalDate startDate, LocalDate endDate, boolean perNight) {
+		if (!startDate.isBefore(endDate)) throw new IllegalArgumentException("The end date must be after the start date.");
+		BookingMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		RangeAvailability result;
+		if (lockFreeReads) {
+			result = rangeAvailability(type, startDate, endDate, perNight);
+		} else {
+			ReentrantReadWriteLock.ReadLock lock = locks[indexOf(type)].readLock();
+			lock.lock();
+			try {
+				result = rangeAvailability(type, startDate, endDate, perNight);
+			} finally {
+				lock.unlock();
 			}
+		}
+		if (metrics != null) metrics.recordCheck(type, System.nanoTime() - start);
+		return result;
+	}
+	
+	/**
+	 * Function to find the earliest date on or after a given date from which a number of rooms of a RoomType
+	 * are available for a stay of consecutive nights, searching up to WINDOW_SEARCH_NIGHTS ahead.
+	 * @param type RoomType to be searched.
+	 * @param from The earliest date the stay may start on.
+	 * @param nights The length of the stay, in nights.
+	 * @param rooms The number of rooms needed on every night of the stay.
+	 * @return The earliest start date of such a stay, or null if there is none within the search range.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
+	 */
+	public LocalDate findEarliestWindow(RoomType type, LocalDate from, int nights, int rooms) {
+		return findEarliestWindow(type, from, from.plusDays(WINDOW_SEARCH_NIGHTS), nights, rooms);
+	}
+	
+	/**
+	 * Function to find the earliest date on or after a given date from which a number of rooms of a RoomType
+	 * are available for a stay of consecutive nights that ends by a given date. Backends that keep range summaries
+	 * (SEGMENT_TREE) jump over whole runs of full nights rather than checking each night.
+	 * @param type RoomType to be searched.
+	 * @param from The earliest date the stay may start on.
+	 * @param until The latest date the stay may end on (i.e. the day after its last night).
+	 * @param nights The length of the stay, in nights.
+	 * @param rooms The number of rooms needed on every night of the stay.
+	 * @return The earliest start date of such a stay, or null if there is none.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
+	 */
+	public LocalDate findEarliestWindow(RoomType type, LocalDate from, LocalDate until, int nights, int rooms) {
+		if (nights < 1) throw new IllegalArgumentException("A stay must be at least one night long.");
+		if (rooms < 1) throw new IllegalArgumentException("At least one room must be asked for.");
+		//Nights before the horizon have been evicted and can no longer be booked
+		long fromDay = Math.max(from.toEpochDay(), horizonDay);
+		long untilDay = until.toEpochDay();
+		long start;
+		if (lockFreeReads) {
+			start = earliestWindow(indexOf(type), fromDay, untilDay, nights, rooms);
 		} else {
-			return checkVal;
+			ReentrantReadWriteLock.ReadLock lock = locks[indexOf(type)].readLock();
+			lock.lock();
+			try {
+				start = earliestWindow(type.getValue(), fromDay, untilDay, nights, rooms);
+			} finally {
+				lock.unlock();
+			}
+		}
+		return start == BookingCalendar.NOT_FOUND ? null : LocalDate.ofEpochDay(start);
+	}
+	
+	/**
+	 * Function to find the earliest window of consecutive nights with enough rooms available. The calendar searches
+	 * the range itself when the number of rooms does not change within it; otherwise the range is read in one pass,
+	 * along with the number of rooms on each night, and scanned for the first long enough run of nights. The caller
+	 * must hold a lock for the type, unless the calendar has lock-free reads.
+	 * @param t Value of the RoomType.
+	 * @param fromDay The earliest night the stay may start on, as an epoch day.
+	 * @param untilDay The latest day the stay may end on, as an epoch day.
+	 * @param nights The length of the stay, in nights.
+	 * @param rooms The number of rooms needed on every night of the stay.
+	 * @return The first night of the window, or BookingCalendar.NOT_FOUND if there is none.
+	 */
+	private long earliestWindow(int t, long fromDay, long untilDay, int nights, int rooms) {
+		BookingCalendar calendar = calendars[t];
+		if (untilDay - fromDay < nights) return BookingCalendar.NOT_FOUND;
+		if (schedules[t].nextChange(fromDay) >= untilDay) {
+			return calendar.earliestWindow(fromDay, untilDay, nights, rooms, capacityOn(t, fromDay));
+		}
+		int[] booked = new int[(int) (untilDay - fromDay)];
+		int[] capacities = new int[booked.length];
+		calendar.read(fromDay, booked, 0, booked.length);
+		readCapacities(t, fromDay, capacities, 0, booked.length);
+		int run = 0;
+		for (int i = 0; i < booked.length; i++) {
+			run = capacities[i] - Math.max(booked[i], 0) >= rooms ? run + 1 : 0;
+			if (run == nights) return fromDay + i - nights + 1;
+		}
+		return BookingCalendar.NOT_FOUND;
+	}
+	
+	/**
+	 * Function to check the availability of every RoomType over a range of nights in one call, e.g. to offer
+	 * alternatives when a guest's preferred type is full. The calendars of the different types are independent,
+	 * so on long ranges they are checked in parallel.
+	 * @param startDate The first night of the range.
+	 * @param endDate The date after the last night of the range.
+	 * @return List with the RangeAvailability of each RoomType, ranked from the most rooms available over the
+	 * whole stay to the least (ties keep RoomType order).
+	 */
+	public List<RangeAvailability> searchAvailability(LocalDate startDate, LocalDate endDate) {
+		if (!startDate.isBefore(endDate)) throw new IllegalArgumentException("The end date must be after the start date.");
+		Stream<RoomType> types = Arrays.stream(roomTypes);
+		if (endDate.toEpochDay() - startDate.toEpochDay() >= PARALLEL_SEARCH_NIGHTS) types = types.parallel();
+		//Each type only takes its own lock, so the checks never wait on each other
+		List<RangeAvailability> results = types.map(type -> checkAvailability(type, startDate, endDate))
+				.collect(Collectors.toList());
+		results.sort(Comparator.comparingInt(RangeAvailability::getMinimum).reversed());
+		return results;
+	}
+	
+	/**
+	 * Function to compute the availability of a RoomType over a range of nights. The caller must hold a lock for
+	 * the type, unless the calendar has lock-free reads.
+	 * @param type RoomType to check the availability of.
+	 * @param startDate The first night of the range.
+	 * @param endDate The date after the last night of the range.
+	 * @param perNight True if the availability of each night should be included in the result.
+	 * @return RangeAvailability for the range.
+	 */
+	private RangeAvailability rangeAvailability(RoomType type, LocalDate startDate, LocalDate endDate, boolean perNight) {
+		BookingCalendar calendar = calendars[indexOf(type)];
+		int t = type.getValue();
+		long startDay = startDate.toEpochDay();
+		long endDay = endDate.toEpochDay();
+		//Evicted nights have no rooms available
+		if (startDay < horizonDay && !perNight) return new RangeAvailability(type, startDate, endDate, 0, startDate, null);
+		//Without a lock, the separate bottleneck and get() calls could see two different versions of the calendar,
+		//so the range is read in one call instead
+		if (!perNight && !lockFreeReads) {
+			//Find the bottleneck of each stretch over which the number of rooms does not change, and keep the lowest
+			long bottleneck = startDay;
+			int minimum = Integer.MAX_VALUE;
+			for (long from = startDay; from < endDay; ) {
+				long to = Math.min(schedules[t].nextChange(from), endDay);
+				long night = calendar.bottleneck(from, to, capacityOn(t, from));
+				int available = availableOn(calendar, type, night);
+				if (available < minimum) {
+					minimum = available;
+					bottleneck = night;
+				}
+				from = to;
+			}
+			return new RangeAvailability(type, startDate, endDate, minimum, LocalDate.ofEpochDay(bottleneck), null);
+		}
+		
+		int[] nights = new int[(int) (endDay - startDay)];
+		int[] capacities = new int[nights.length];
+		calendar.read(startDay, nights, 0, nights.length);
+		readCapacities(t, startDay, capacities, 0, nights.length);
+		int bottleneck = 0;
+		for (int i = 0; i < nights.length; i++) {
+			nights[i] = startDay + i < horizonDay ? 0 : Math.max(capacities[i] - Math.max(nights[i], 0), 0);
+			if (nights[i] < nights[bottleneck]) bottleneck = i;
+		}
+		return new RangeAvailability(type, startDate, endDate, nights[bottleneck], startDate.plusDays(bottleneck),
+				perNight ? nights : null);
+	}
+	
+	/**
+	 * Function to read the availability of a single night from a calendar. The caller must hold a lock
+	 * for the type, unless the calendar has lock-free reads.
+	 * @param calendar The calendar of the given RoomType.
+	 * @param type RoomType that the calendar belongs to.
+	 * @param day The night to be checked, as an epoch day.
+	 * @return Number of rooms available of the given type on that night (0 if the night has been evicted).
+	 */
+	private int availableOn(BookingCalendar calendar, RoomType type, long day) {
+		if (day < horizonDay) return 0;
+		//A night that does not currently exist has no rooms booked, and one with more rooms booked than it now has
+		//(after the number of rooms was lowered) has none available
+		int checkVal = calendar.get(day);
+		return Math.max(capacityOn(type.getValue(), day) - Math.max(checkVal, 0), 0);
+	}
+	
+	/**
+	 * Function to report the occupancy of every RoomType over a range of nights (e.g. several years), by month and
+	 * by day of week, measured against the number of rooms of each type on each night. The calendars are read in blocks
+	 * by fork-join tasks, in parallel across both RoomTypes and dates. Each block is read under the read lock of its
+	 * type, so bookings are only held up for the length of one block, but a report taken while bookings are being
+	 * made may count some of them and not others. Nights before the horizon have been evicted and count as empty.
+	 * @param startDate The first night of the report.
+	 * @param endDate The date after the last night of the report.
+	 * @return OccupancyReport for the range.
+	 */
+	public OccupancyReport getOccupancyReport(LocalDate startDate, LocalDate endDate) {
+		if (!startDate.isBefore(endDate)) throw new IllegalArgumentException("The end date must be after the start date.");
+		return new OccupancyReport(startDate, endDate, roomTypes, this::readNights);
+	}
+	
+	/**
+	 * Reads the entries of a range of consecutive nights of a RoomType, along with the number of rooms on each of
+	 * them, under its read lock unless the calendar has lock-free reads.
+	 * @param type RoomType to be read.
+	 * @param from First night of the range, as an epoch day.
+	 * @param booked Array to receive the entries, BookingCalendar.EMPTY for a night with no entry.
+	 * @param capacities Array to receive the number of rooms of each night.
+	 * @param length Number of nights to be read.
+	 */
+	private void readNights(RoomType type, long from, int[] booked, int[] capacities, int length) {
+		BookingCalendar calendar = calendars[type.getValue()];
+		if (lockFreeReads) {
+			calendar.read(from, booked, 0, length);
+			readCapacities(type.getValue(), from, capacities, 0, length);
+			return;
+		}
+		ReentrantReadWriteLock.ReadLock lock = locks[type.getValue()].readLock();
+		lock.lock();
+		try {
+			calendar.read(from, booked, 0, length);
+			readCapacities(type.getValue(), from, capacities, 0, length);
+		} finally {
+			lock.unlock();
 		}
 	}
 	
@@ -127,8 +1553,78 @@ public class Bookings {
 	 * any bookings.
 	 * @param type RoomType to check the number of bookings for.
 	 * @return Integer with the number of days booked for the given type.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
 	 */
 	public int getNumBookings(RoomType type) {
-		return bookingsList.get(type.getValue()).size();
+		if (lockFreeReads) return calendars[indexOf(type)].size();
+		ReentrantReadWriteLock.ReadLock lock = locks[indexOf(type)].readLock();
+		lock.lock();
+		try {
+			return calendars[type.getValue()].size();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Function to get the height of the tree behind the calendar of a given RoomType, for monitoring. Walks the
+	 * whole tree.
+	 * @param type RoomType to get the height of.
+	 * @return The height of the tree, or -1 if the calendar is empty or the backend is not a tree.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
+	 */
+	public int getCalendarHeight(RoomType type) {
+		if (lockFreeReads) return calendars[indexOf(type)].height();
+		ReentrantReadWriteLock.ReadLock lock = locks[indexOf(type)].readLock();
+		lock.lock();
+		try {
+			return calendars[type.getValue()].height();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Function to get the number of rotations performed by the tree behind the calendar of a given RoomType.
+	 * @param type RoomType to get the rotations of.
+	 * @return The number of rotations, or 0 if the backend does not count them.
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
+	 */
+	public long getRotations(RoomType type) {
+		if (lockFreeReads) return calendars[indexOf(type)].getRotations();
+		ReentrantReadWriteLock.ReadLock lock = locks[indexOf(type)].readLock();
+		lock.lock();
+		try {
+			return calendars[type.getValue()].getRotations();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Function to get the number of compare-and-set retries for a given RoomType, i.e. how often a booking
+	 * lost a race for a night to another booking and had to try again. Only the ATOMIC backend retries.
+	 * @param type RoomType to get the retries of.
+	 * @return The number of retries since this object was created (0 for backends that use locks).
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
+	 */
+	public long getCasRetries(RoomType type) {
+		BookingCalendar calendar = calendars[indexOf(type)];
+		if (calendar instanceof AtomicCalendar) return ((AtomicCalendar) calendar).getCasRetries();
+		return 0;
+	}
+	
+	/**
+	 * Function to get the number of rolled back bookings for a given RoomType, i.e. bookings that had already
+	 * taken some nights when another booking took the last room of a later night. Only the ATOMIC backend
+	 * rolls back.
+	 * @param type RoomType to get the rollbacks of.
+	 * @return The number of rollbacks since this object was created (0 for backends that use locks).
+	 * @throws IllegalArgumentException If the type was registered after this object was created.
+	 */
+	public long getRollbacks(RoomType type) {
+		BookingCalendar calendar = calendars[indexOf(type)];
+		if (calendar instanceof AtomicCalendar) return ((AtomicCalendar) calendar).getRollbacks();
+		return 0;
 	}
 }
@@ -0,0 +1,386 @@
+package HotelBookingSystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Non-interactive processor that streams a file of text commands into a Bookings object, e.g. to load the history
+ * of another booking system. One command per line, with fields separated by spaces or tabs:
+ * CHECK type date: writes the number of rooms of the type available on the night.
+ * BOOK type startDate endDate: writes the ID of the new booking, or -1 if it could not be made.
+ * ROOMS type n: sets the number of rooms of the type, and writes OK.
+ * CANCEL id: writes 1 if the booking was cancelled, or 0 if there was no such booking.
+ * The type is either the name of a RoomType or its numerical value, and dates are written as yyyy-MM-dd. Blank
+ * lines and lines starting with '#' are skipped; any other line that is not a valid command writes ERROR followed
+ * by its line number, and processing carries on with the next line.
+ * 
+ * The input is read in large blocks and each line is parsed in place from the bytes of the block, so no String
+ * is made per line, and a malformed date is detected by the parser itself rather than by catching the exception
+ * of LocalDate.parse(). Results are collected in a buffer and written to the output a block at a time.
+ * @author Jonathan Janzen
+ *
+ */
+public class BulkCommandProcessor {
+	
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final long INVALID = Long.MIN_VALUE;		//returned by the parsers for a malformed field
+	private static final long DAYS_0000_TO_1970 = 719528;
+	
+	private static final byte[] CHECK = ascii("CHECK");
+	private static final byte[] BOOK = ascii("BOOK");
+	private static final byte[] ROOMS = ascii("ROOMS");
+	private static final byte[] CANCEL = ascii("CANCEL");
+	private static final byte[] OK = ascii("OK");
+	private static final byte[] ERROR = ascii("ERROR ");
+	
+	private final Bookings bookings;
+	private final RoomType[] types;		//every RoomType, indexed by value
+	private final byte[][] typeNames;	//name of each RoomType in upper case, as matched by tokenIs()
+	private final byte[] output;		//results not yet written to the output stream
+	private final byte[] digits;		//scratch space for formatting a number
+	private int outputLength;
+	private byte[] line;				//block holding the line being parsed
+	private int cursor;					//position of the parser in the line
+	private int lineEnd;				//end of the line being parsed
+	private int tokenStart;				//start of the last token read
+	private int tokenEnd;				//end of the last token read
+	
+	private long lines;
+	private long commands;
+	private long checks;
+	private long booked;
+	private long rejected;
+	private long roomChanges;
+	private long cancellations;
+	private long errors;
+	private long elapsedNanos;
+	
+	/**
+	 * Constructor for a BulkCommandProcessor applying commands to the given Bookings object.
+	 * @param _bookings The Bookings object that the commands are applied to.
+	 */
+	public BulkCommandProcessor(Bookings _bookings) {
+		this.bookings = _bookings;
+		this.types = RoomType.values();
+		this.typeNames = new byte[types.length][];
+		for (int i = 0; i < types.length; i++) typeNames[i] = ascii(types[i].name().toUpperCase());
+		this.output = new byte[BUFFER_SIZE];
+		this.digits = new byte[20];
+	}
+	
+	/**
+	 * Applies every command of a stream, in order, writing one line of result per command to the output. The
+	 * counts reported by getReport() accumulate over every call.
+	 * @param in Stream of commands (read to its end, but not closed).
+	 * @param out Stream that the results are written to (flushed, but not closed).
+	 * @return The number of commands applied, including malformed ones.
+	 * @throws IOException If the input could not be read or the output written.
+	 */
+	public long process(InputStream in, OutputStream out) throws IOException {
+		long begin = System.nanoTime();
+		long before = commands;
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int start = 0;
+		int limit = 0;
+		boolean eof = false;
+		boolean skipping = false;		//true while discarding the rest of a line that did not fit in the buffer
+		while (true) {
+			int newline = start;
+			while (newline < limit && buffer[newline] != '\n') newline++;
+			if (newline < limit) {
+				if (skipping) skipping = false;
+				else execute(buffer, start, newline, out);
+				start = newline + 1;
+				continue;
+			}
+			if (eof) {
+				if (start < limit && !skipping) execute(buffer, start, limit, out);
+				break;
+			}
+			if (start == 0 && limit == buffer.length) {
+				//No command is anywhere near this long, so the line is an error whatever the rest of it holds
+				if (!skipping) {
+					lines++;
+					commands++;
+					error(out);
+					skipping = true;
+				}
+				limit = 0;
+			} else {
+				System.arraycopy(buffer, start, buffer, 0, limit - start);
+				limit -= start;
+				start = 0;
+			}
+			int read = in.read(buffer, limit, buffer.length - limit);
+			if (read < 0) eof = true;
+			else limit += read;
+		}
+		out.write(output, 0, outputLength);
+		outputLength = 0;
+		out.flush();
+		elapsedNanos += System.nanoTime() - begin;
+		return commands - before;
+	}
+	
+	/**
+	 * Parses and applies a single line.
+	 * @param buffer Block holding the line.
+	 * @param from Start of the line.
+	 * @param to End of the line (the position of its newline, if any).
+	 * @param out Stream that the results are written to when the output buffer is full.
+	 * @throws IOException If the output could not be written.
+	 */
+	private void execute(byte[] buffer, int from, int to, OutputStream out) throws IOException {
+		lines++;
+		if (to > from && buffer[to - 1] == '\r') to--;
+		line = buffer;
+		cursor = from;
+		lineEnd = to;
+		if (!nextToken() || line[tokenStart] == '#') return;
+		commands++;
+		
+		if (tokenIs(CHECK)) {
+			RoomType type = nextType();
+			long day = nextDate();
+			if (type == null || day == INVALID || nextToken()) {
+				error(out);
+				return;
+			}
+			checks++;
+			writeLong(bookings.checkAvailability(type, LocalDate.ofEpochDay(day)), out);
+		} else if (tokenIs(BOOK)) {
+			RoomType type = nextType();
+			long startDay = nextDate();
+			long endDay = nextDate();
+			if (type == null || startDay == INVALID || endDay == INVALID || startDay >= endDay || nextToken()) {
+				error(out);
+				return;
+			}
+			long id = bookings.book(type, LocalDate.ofEpochDay(startDay), LocalDate.ofEpochDay(endDay));
+			if (id > 0) booked++;
+			else rejected++;
+			writeLong(id, out);
+		} else if (tokenIs(ROOMS)) {
+			RoomType type = nextType();
+			long n = nextToken() ? parseNumber() : INVALID;
+			if (type == null || n == INVALID || n > Integer.MAX_VALUE || nextToken()) {
+				error(out);
+				return;
+			}
+			bookings.setNumRooms(type, (int) n);
+			roomChanges++;
+			write(OK, out);
+		} else if (tokenIs(CANCEL)) {
+			long id = nextToken() ? parseNumber() : INVALID;
+			if (id == INVALID || nextToken()) {
+				error(out);
+				return;
+			}
+			boolean cancelled = bookings.cancelBooking(id);
+			if (cancelled) cancellations++;
+			writeLong(cancelled ? 1 : 0, out);
+		} else {
+			error(out);
+		}
+	}
+	
+	/**
+	 * Moves to the next token of the line.
+	 * @return True if there is another token, false if the rest of the line is blank.
+	 */
+	private boolean nextToken() {
+		while (cursor < lineEnd && (line[cursor] == ' ' || line[cursor] == '\t')) cursor++;
+		if (cursor == lineEnd) return false;
+		tokenStart = cursor;
+		while (cursor < lineEnd && line[cursor] != ' ' && line[cursor] != '\t') cursor++;
+		tokenEnd = cursor;
+		return true;
+	}
+	
+	/**
+	 * Function to check whether the last token is a given word, ignoring case.
+	 * @param word The word, in upper case ASCII.
+	 * @return True if the token is the word.
+	 */
+	private boolean tokenIs(byte[] word) {
+		if (tokenEnd - tokenStart != word.length) return false;
+		for (int i = 0; i < word.length; i++) {
+			int c = line[tokenStart + i];
+			if (c >= 'a' && c <= 'z') c -= 'a' - 'A';
+			if (c != word[i]) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Reads the next token as a RoomType, given by its name or its numerical value.
+	 * @return The RoomType, or null if the token is missing or is not a RoomType.
+	 */
+	private RoomType nextType() {
+		if (!nextToken()) return null;
+		if (line[tokenStart] >= '0' && line[tokenStart] <= '9') {
+			long value = parseNumber();
+			return value >= 0 && value < types.length ? types[(int) value] : null;
+		}
+		for (int i = 0; i < types.length; i++) {
+			if (tokenIs(typeNames[i])) return types[i];
+		}
+		return null;
+	}
+	
+	/**
+	 * Parses the last token as a non-negative decimal number.
+	 * @return The number, or INVALID if the token is not made up of at most 18 digits.
+	 */
+	private long parseNumber() {
+		if (tokenEnd - tokenStart > 18) return INVALID;
+		long value = 0;
+		for (int i = tokenStart; i < tokenEnd; i++) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9) return INVALID;
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+	
+	/**
+	 * Reads the next token as a date written yyyy-MM-dd, checking that the month and day exist.
+	 * @return The date as an epoch day, or INVALID if the token is missing or is not a valid date.
+	 */
+	private long nextDate() {
+		if (!nextToken() || tokenEnd - tokenStart != 10) return INVALID;
+		if (line[tokenStart + 4] != '-' || line[tokenStart + 7] != '-') return INVALID;
+		int year = digits(tokenStart, 4);
+		int month = digits(tokenStart + 5, 2);
+		int day = digits(tokenStart + 8, 2);
+		if (year < 0 || month < 1 || month > 12 || day < 1) return INVALID;
+		boolean leap = (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+		int length = month == 2 ? (leap ? 29 : 28) : (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+		if (day > length) return INVALID;
+		
+		//Same arithmetic as LocalDate.toEpochDay(), for years 0 to 9999
+		long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+		total += (367 * month - 362) / 12 + day - 1;
+		if (month > 2) total -= leap ? 1 : 2;
+		return total - DAYS_0000_TO_1970;
+	}
+	
+	/**
+	 * Parses a fixed number of decimal digits of the line.
+	 * @param from Position of the first digit.
+	 * @param count Number of digits.
+	 * @return The number, or -1 if any of the characters is not a digit.
+	 */
+	private int digits(int from, int count) {
+		int value = 0;
+		for (int i = from; i < from + count; i++) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9) return -1;
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+	
+	/**
+	 * Writes the result of a malformed line: ERROR followed by its line number.
+	 * @param out Stream that the results are written to when the output buffer is full.
+	 * @throws IOException If the output could not be written.
+	 */
+	private void error(OutputStream out) throws IOException {
+		errors++;
+		if (outputLength + ERROR.length > output.length) {
+			out.write(output, 0, outputLength);
+			outputLength = 0;
+		}
+		System.arraycopy(ERROR, 0, output, outputLength, ERROR.length);
+		outputLength += ERROR.length;
+		writeLong(lines, out);
+	}
+	
+	/**
+	 * Writes a word followed by a newline to the output buffer.
+	 * @param word The word to be written.
+	 * @param out Stream that the buffer is written to when it is full.
+	 * @throws IOException If the output could not be written.
+	 */
+	private void write(byte[] word, OutputStream out) throws IOException {
+		if (outputLength + word.length + 1 > output.length) {
+			out.write(output, 0, outputLength);
+			outputLength = 0;
+		}
+		System.arraycopy(word, 0, output, outputLength, word.length);
+		outputLength += word.length;
+		output[outputLength++] = '\n';
+	}
+	
+	/**
+	 * Writes a number followed by a newline to the output buffer, without making a String.
+	 * @param value The number to be written.
+	 * @param out Stream that the buffer is written to when it is full.
+	 * @throws IOException If the output could not be written.
+	 */
+	private void writeLong(long value, OutputStream out) throws IOException {
+		if (outputLength + digits.length + 2 > output.length) {
+			out.write(output, 0, outputLength);
+			outputLength = 0;
+		}
+		if (value < 0) {
+			output[outputLength++] = '-';
+			value = -value;
+		}
+		int n = 0;
+		do {
+			digits[n++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+		while (n > 0) output[outputLength++] = digits[--n];
+		output[outputLength++] = '\n';
+	}
+	
+	/**
+	 * Function to get the number of commands applied so far.
+	 * @return The number of commands applied, including malformed ones.
+	 */
+	public long getCommands() {
+		return commands;
+	}
+	
+	/**
+	 * Function to get the number of malformed lines so far.
+	 * @return The number of lines answered with ERROR.
+	 */
+	public long getErrors() {
+		return errors;
+	}
+	
+	/**
+	 * Function to get the throughput of the processor.
+	 * @return The number of commands applied per second of processing, or 0 if nothing has been processed.
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : commands * 1e9 / elapsedNanos;
+	}
+	
+	/**
+	 * Function to get a summary of everything processed so far.
+	 * @return A one-paragraph report of the counts of each command and of the throughput.
+	 */
+	public String getReport() {
+		return String.format("Processed %d commands from %d lines in %.3f s (%.0f commands/s).%n"
+				+ "Checks: %d. Bookings: %d made, %d rejected. Room changes: %d. Cancellations: %d. Errors: %d.%n",
+				commands, lines, elapsedNanos / 1e9, getThroughput(), checks, booked, rejected, roomChanges, cancellations,
+				errors);
+	}
+	
+	/**
+	 * Encodes a keyword as ASCII bytes.
+	 * @param word The keyword.
+	 * @return Its bytes.
+	 */
+	private static byte[] ascii(String word) {
+		return word.getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,40 @@
+package HotelBookingSystem;
+
+/**
+ * Enumerated class for the different calendar stores that Bookings can use for each RoomType.
+ * @author Jonathan Janzen
+ *
+ */
+public enum CalendarBackend {
+	TREE,		//RedBlackBST keyed by LocalDate (the original backend)
+	ARRAY,		//Primitive int[] indexed by epoch day offset
+	SEGMENT_TREE,	//Range-max segment tree (of rooms booked) with lazy range updates
+	ATOMIC,		//Lock-free atomic counter per night, reserved with compare-and-set
+	PRIMITIVE_TREE,	//Red-black BST with primitive long keys and int values in array-backed nodes
+	PERSISTENT_TREE,	//Path-copying red-black BST, read without locks
+	RUN_LENGTH;	//Sorted runs of nights with the same rooms booked, split and merged as bookings change
+	
+	/**
+	 * Creates a new, empty calendar of this type.
+	 * @return A BookingCalendar with no nights stored.
+	 */
+	public BookingCalendar newCalendar() {
+		switch (this) {
+		case ARRAY:
+			return new ArrayCalendar();
+		case SEGMENT_TREE:
+			return new SegmentTreeCalendar();
+		case ATOMIC:
+			return new AtomicCalendar();
+		case PRIMITIVE_TREE:
+			return new PrimitiveTreeCalendar();
+		case PERSISTENT_TREE:
+			return new PersistentTreeCalendar();
+		case RUN_LENGTH:
+			return new RunLengthCalendar();
+		case TREE:
+		default:
+			return new TreeCalendar();
+		}
+	}
+}
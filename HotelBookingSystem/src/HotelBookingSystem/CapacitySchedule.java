@@ -0,0 +1,167 @@
+package HotelBookingSystem;
+
+import java.util.Arrays;
+
+/**
+ * Date-ranged overrides of the number of rooms of a single RoomType, e.g. a wing closed for renovation from March to
+ * May or a new wing opening on a given date. Nights not covered by an override have the default number of rooms of
+ * the type (Bookings.setNumRooms()).
+ * 
+ * The overrides are kept as a sorted list of change points: from starts[i] up to the next change point, the type
+ * has rooms[i] rooms (or the default, if rooms[i] is DEFAULT), and before the first change point it has the
+ * default. Looking up a night is a binary search over the change points, and as the calendars hold booked counts
+ * rather than rooms left, changing the overrides never touches the calendars at all.
+ * 
+ * The two arrays are immutable once published, and are replaced together (copy-on-write) through a single volatile
+ * reference, so readers never lock and always see a consistent set of overrides. Overrides are few and rarely
+ * changed, so each change simply rebuilds the arrays.
+ * @author Jonathan Janzen
+ *
+ */
+public class CapacitySchedule {
+	
+	//Marks a range of nights that has the default number of rooms
+	public static final int DEFAULT = -1;
+	
+	private volatile Points points;
+	
+	/**
+	 * Immutable set of change points, published as a whole.
+	 */
+	private static final class Points {
+		
+		private final long[] starts;	//first night of each change, as an epoch day, in increasing order
+		private final int[] rooms;		//rooms from that night until the next change, or DEFAULT
+		
+		/**
+		 * Constructor for a set of change points.
+		 * @param _starts First night of each change, in increasing order.
+		 * @param _rooms Rooms from each change until the next.
+		 */
+		Points(long[] _starts, int[] _rooms) {
+			this.starts = _starts;
+			this.rooms = _rooms;
+		}
+	}
+	
+	/**
+	 * Constructor for an empty CapacitySchedule, under which every night has the default number of rooms.
+	 */
+	public CapacitySchedule() {
+		this.points = new Points(new long[0], new int[0]);
+	}
+	
+	/**
+	 * Sets the number of rooms on every night of a range, replacing any overrides already in it.
+	 * @param from The first night of the range (inclusive), as an epoch day.
+	 * @param to The last night of the range (exclusive), as an epoch day.
+	 * @param n The number of rooms (0 or more), or DEFAULT to go back to the default number of rooms.
+	 */
+	public synchronized void set(long from, long to, int n) {
+		if (n < DEFAULT) throw new IllegalArgumentException("The number of rooms must not be negative.");
+		if (from >= to) return;
+		Points current = points;
+		int after = roomsAt(current, to);
+		long[] starts = new long[current.starts.length + 2];
+		int[] rooms = new int[starts.length];
+		int size = 0;
+		//Keep the change points before the range, then the range itself, then what was in force after it
+		for (int i = 0; i < current.starts.length && current.starts[i] < from; i++) {
+			starts[size] = current.starts[i];
+			rooms[size++] = current.rooms[i];
+		}
+		starts[size] = from;
+		rooms[size++] = n;
+		starts[size] = to;
+		rooms[size++] = after;
+		for (int i = 0; i < current.starts.length; i++) {
+			if (current.starts[i] <= to) continue;
+			starts[size] = current.starts[i];
+			rooms[size++] = current.rooms[i];
+		}
+		
+		//Drop any change point that does not change anything, including a leading change to the default
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			int previous = kept == 0 ? DEFAULT : rooms[kept - 1];
+			if (rooms[i] == previous) continue;
+			starts[kept] = starts[i];
+			rooms[kept++] = rooms[i];
+		}
+		points = new Points(Arrays.copyOf(starts, kept), Arrays.copyOf(rooms, kept));
+	}
+	
+	/**
+	 * Function to get the number of rooms on a night.
+	 * @param day The night, as an epoch day.
+	 * @param defaultRooms The default number of rooms of the type.
+	 * @return The number of rooms of the type on that night.
+	 */
+	public int roomsOn(long day, int defaultRooms) {
+		int rooms = roomsAt(points, day);
+		return rooms == DEFAULT ? defaultRooms : rooms;
+	}
+	
+	/**
+	 * Function to find the next night on which the number of rooms may change.
+	 * @param day The night to search after, as an epoch day.
+	 * @return The first change point after day, or Long.MAX_VALUE if there is none.
+	 */
+	public long nextChange(long day) {
+		long[] starts = points.starts;
+		int i = Arrays.binarySearch(starts, day);
+		i = i >= 0 ? i + 1 : -i - 1;
+		return i < starts.length ? starts[i] : Long.MAX_VALUE;
+	}
+	
+	/**
+	 * Function to determine whether there are any overrides.
+	 * @return True if every night has the default number of rooms.
+	 */
+	public boolean isEmpty() {
+		return points.starts.length == 0;
+	}
+	
+	/**
+	 * Function to get the number of change points, e.g. to save them in a snapshot.
+	 * @return The number of change points.
+	 */
+	public int size() {
+		return points.starts.length;
+	}
+	
+	/**
+	 * Copies the change points into arrays, in increasing order of night.
+	 * @param starts Array to receive the first night of each change, as an epoch day (at least size() long).
+	 * @param rooms Array to receive the rooms from each change until the next, DEFAULT for the default.
+	 * @return The number of change points copied.
+	 */
+	public int copyTo(long[] starts, int[] rooms) {
+		Points current = points;
+		System.arraycopy(current.starts, 0, starts, 0, current.starts.length);
+		System.arraycopy(current.rooms, 0, rooms, 0, current.rooms.length);
+		return current.starts.length;
+	}
+	
+	/**
+	 * Replaces every override with the given change points, e.g. when loading a snapshot.
+	 * @param starts First night of each change, as an epoch day, in increasing order.
+	 * @param rooms Rooms from each change until the next, DEFAULT for the default.
+	 * @param n The number of change points.
+	 */
+	synchronized void restore(long[] starts, int[] rooms, int n) {
+		points = new Points(Arrays.copyOf(starts, n), Arrays.copyOf(rooms, n));
+	}
+	
+	/**
+	 * Function to get the override in force on a night.
+	 * @param current The change points to be searched.
+	 * @param day The night, as an epoch day.
+	 * @return The rooms set by the last change point on or before day, or DEFAULT if there is none.
+	 */
+	private static int roomsAt(Points current, long day) {
+		int i = Arrays.binarySearch(current.starts, day);
+		if (i < 0) i = -i - 2;
+		return i < 0 ? DEFAULT : current.rooms[i];
+	}
+}
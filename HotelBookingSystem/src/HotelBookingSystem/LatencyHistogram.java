@@ -0,0 +1,92 @@
+package HotelBookingSystem;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with a fixed set of power-of-two buckets. A latency of n nanoseconds is counted in
+ * bucket 64 - numberOfLeadingZeros(n), i.e. the bucket whose upper bound is the next power of two, so recording is
+ * a few arithmetic operations and one atomic increment, with no allocation and no lock. Percentiles are reported
+ * as the upper bound of the bucket they fall in, which is accurate to within a factor of two.
+ * @author Jonathan Janzen
+ *
+ */
+public class LatencyHistogram {
+	
+	private static final int BUCKETS = 65;
+	
+	private final AtomicLongArray counts;	//number of latencies in each bucket
+	private final LongAdder total;			//sum of every latency recorded, in nanoseconds
+	private final LongAccumulator max;		//largest latency recorded, in nanoseconds
+	
+	/**
+	 * Constructor for an empty LatencyHistogram.
+	 */
+	public LatencyHistogram() {
+		this.counts = new AtomicLongArray(BUCKETS);
+		this.total = new LongAdder();
+		this.max = new LongAccumulator(Math::max, 0);
+	}
+	
+	/**
+	 * Records one latency.
+	 * @param nanos The latency in nanoseconds (negative values are counted as 0).
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) nanos = 0;
+		counts.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+		total.add(nanos);
+		max.accumulate(nanos);
+	}
+	
+	/**
+	 * Number of latencies recorded.
+	 * @return The number of calls to record().
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) count += counts.get(i);
+		return count;
+	}
+	
+	/**
+	 * Function to get the mean latency.
+	 * @return The mean latency in nanoseconds, or 0 if nothing has been recorded.
+	 */
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : total.sum() / (double) count;
+	}
+	
+	/**
+	 * Function to get the largest latency recorded.
+	 * @return The largest latency in nanoseconds, or 0 if nothing has been recorded.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+	
+	/**
+	 * Function to get a percentile of the latencies recorded.
+	 * @param percentile The percentile to be found, between 0 and 100.
+	 * @return The upper bound of the bucket holding the percentile, in nanoseconds (capped at the largest latency
+	 * recorded), or 0 if nothing has been recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			count += snapshot[i];
+		}
+		if (count == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) return i == 0 ? 0 : Math.min(i == 64 ? Long.MAX_VALUE : (1L << i) - 1, getMax());
+		}
+		return getMax();
+	}
+}
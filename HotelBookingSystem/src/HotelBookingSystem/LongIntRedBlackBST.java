@@ -0,0 +1,331 @@
+package HotelBookingSystem;
+
+import java.util.Arrays;
+
+/**
+ * A red-black BST specialised for primitive long keys and int values, following the same left-leaning algorithm as
+ * RedBlackBST (Sedgewick & Wayne, 'Algorithms: Fourth Edition'). Rather than one Node object per entry, the nodes are
+ * stored in parallel primitive arrays and linked by index, so there is no boxing and no virtual compareTo() call.
+ * Lookups and inserts are iterative, and putting a key that already exists updates its value in place, so neither
+ * allocates (other than the occasional growth of the node arrays when a new key is added).
+ * @author Robert Sedgewick
+ * @author Kevin Wayne
+ * @author Jonathan Janzen
+ *
+ */
+public class LongIntRedBlackBST {
+	
+	private static final int NIL = -1;
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int MAX_DEPTH = 128;	//a left-leaning red-black tree of 2^31 nodes is at most 62 deep
+	
+	private long[] keys;
+	private int[] vals;
+	private int[] left;
+	private int[] right;
+	private int[] size;			//number of nodes in the subtree
+	private boolean[] red;		//colour of the link from the parent
+	private int count;			//number of nodes allocated
+	private int root;
+	private long rotations;		//number of rotations performed since the tree was created
+	private final int[] path;	//ancestors of the node being inserted, reused by every put()
+	
+	/**
+	 * Constructor for an empty BST.
+	 */
+	public LongIntRedBlackBST() {
+		allocate(INITIAL_CAPACITY);
+		this.root = NIL;
+		this.path = new int[MAX_DEPTH];
+	}
+	
+	/**
+	 * Constructor for a BST holding the given key-value pairs, built bottom-up in O(n) as a 2-3 tree with every leaf
+	 * at the same depth (see RedBlackBST for the details).
+	 * @param _keys The keys, in strictly ascending order.
+	 * @param _vals The value for each key.
+	 * @param n The number of pairs to be taken from the start of the two arrays.
+	 */
+	public LongIntRedBlackBST(long[] _keys, int[] _vals, int n) {
+		allocate(Math.max(INITIAL_CAPACITY, n));
+		this.path = new int[MAX_DEPTH];
+		int blackHeight = 0;
+		while (maxKeys(blackHeight) < n) blackHeight++;
+		this.root = build(_keys, _vals, 0, n, blackHeight);
+	}
+	
+	/**
+	 * Allocates the node arrays.
+	 * @param capacity Number of nodes the arrays can hold.
+	 */
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		this.vals = new int[capacity];
+		this.left = new int[capacity];
+		this.right = new int[capacity];
+		this.size = new int[capacity];
+		this.red = new boolean[capacity];
+		this.count = 0;
+	}
+	
+	/**
+	 * Function to determine the largest number of keys a 2-3 tree of the given black height can hold.
+	 * @param blackHeight Number of black links on every path from the root to a leaf.
+	 * @return 3^blackHeight - 1.
+	 */
+	private static long maxKeys(int blackHeight) {
+		long max = 1;
+		for (int i = 0; i < blackHeight; i++) max *= 3;
+		return max - 1;
+	}
+	
+	/**
+	 * Builds a subtree of the given black height from a run of sorted keys.
+	 * @param _keys The sorted keys.
+	 * @param _vals The value for each key.
+	 * @param lo Index of the first key of the subtree.
+	 * @param n Number of keys in the subtree.
+	 * @param blackHeight Black height of the subtree.
+	 * @return The index of the root of the subtree (NIL if n is 0).
+	 */
+	private int build(long[] _keys, int[] _vals, int lo, int n, int blackHeight) {
+		if (n == 0) return NIL;
+		if (n - 1 <= 2 * maxKeys(blackHeight - 1)) {
+			int l = n - 1 - (n - 1) / 2;
+			int h = newNode(_keys[lo + l], _vals[lo + l], false);
+			left[h] = build(_keys, _vals, lo, l, blackHeight - 1);
+			right[h] = build(_keys, _vals, lo + l + 1, n - 1 - l, blackHeight - 1);
+			size[h] = n;
+			return h;
+		}
+		int m = n - 2;
+		int a = (m + 2) / 3;
+		int b = (m + 1) / 3;
+		int x = newNode(_keys[lo + a], _vals[lo + a], true);
+		left[x] = build(_keys, _vals, lo, a, blackHeight - 1);
+		right[x] = build(_keys, _vals, lo + a + 1, b, blackHeight - 1);
+		size[x] = a + b + 1;
+		int h = newNode(_keys[lo + a + 1 + b], _vals[lo + a + 1 + b], false);
+		left[h] = x;
+		right[h] = build(_keys, _vals, lo + a + b + 2, m - a - b, blackHeight - 1);
+		size[h] = n;
+		return h;
+	}
+	
+	/**
+	 * Number of key-value pairs in the tree.
+	 * @return The number of key-value pairs in the tree.
+	 */
+	public int size() {
+		return size(root);
+	}
+	
+	/**
+	 * Function to determine if the tree is empty.
+	 * @return Returns true if the tree is empty and false otherwise.
+	 */
+	public boolean isEmpty() {
+		return root == NIL;
+	}
+	
+	/**
+	 * Function to determine the height of the tree, i.e. the number of links on the longest path from the root to a
+	 * leaf. Walks the whole tree, so it is meant for monitoring rather than for the hot path.
+	 * @return The height of the tree (-1 if the tree is empty).
+	 */
+	public int height() {
+		return height(root);
+	}
+	
+	/**
+	 * Function to determine the height of the subtree rooted at x.
+	 * @param x Index of the root node.
+	 * @return The height of the subtree (-1 if x is NIL).
+	 */
+	private int height(int x) {
+		if (x == NIL) return -1;
+		return 1 + Math.max(height(left[x]), height(right[x]));
+	}
+	
+	/**
+	 * Number of rotations performed by put() since the tree was created, a measure of how much rebalancing the
+	 * insertions cause.
+	 * @return The number of rotations.
+	 */
+	public long getRotations() {
+		return rotations;
+	}
+	
+	/**
+	 * Function to return the value associated with a given key.
+	 * @param key Key to find the value of.
+	 * @param missing Value to be returned if the key is not in the tree.
+	 * @return The value associated with the given key, or missing.
+	 */
+	public int get(long key, int missing) {
+		int x = root;
+		while (x != NIL) {
+			if (key < keys[x]) x = left[x];
+			else if (key > keys[x]) x = right[x];
+			else return vals[x];
+		}
+		return missing;
+	}
+	
+	/**
+	 * Insert the key-value pair specified into the BST, overwriting the previous value if it already exists. The
+	 * search for the key is iterative; if the key is new, the ancestors are then fixed up bottom-up from the stack
+	 * of indices recorded on the way down, exactly as the recursive put() of RedBlackBST does on its way back up.
+	 * @param key Key to be added.
+	 * @param val Value to be added with the given key.
+	 */
+	public void put(long key, int val) {
+		int depth = 0;
+		int x = root;
+		while (x != NIL) {
+			if (key == keys[x]) {
+				//Existing key: update in place, the shape of the tree does not change
+				vals[x] = val;
+				return;
+			}
+			path[depth++] = x;
+			x = key < keys[x] ? left[x] : right[x];
+		}
+		
+		int child = newNode(key, val, true);
+		for (int d = depth - 1; d >= 0; d--) {
+			int h = path[d];
+			if (key < keys[h]) left[h] = child;
+			else right[h] = child;
+			child = balance(h);
+		}
+		root = child;
+		red[root] = false;
+	}
+	
+	/**
+	 * Corrects any right-leaning or doubled red links at h after an insert below it, and updates its size.
+	 * @param h Index of the node to be fixed.
+	 * @return Index of the root of the subtree after any rotations.
+	 */
+	private int balance(int h) {
+		if (isRed(right[h]) && !isRed(left[h])) h = rotateLeft(h);
+		if (isRed(left[h]) && isRed(left[left[h]])) h = rotateRight(h);
+		if (isRed(left[h]) && isRed(right[h])) flipColours(h);
+		size[h] = size(left[h]) + size(right[h]) + 1;
+		return h;
+	}
+	
+	/**
+	 * Visits every key-value pair with a key between lo and hi (both inclusive), in ascending order of key.
+	 * @param lo The smallest key to be visited.
+	 * @param hi The largest key to be visited.
+	 * @param visitor Function called with each key and its value.
+	 */
+	public void forEach(long lo, long hi, NightVisitor visitor) {
+		forEach(root, lo, hi, visitor);
+	}
+	
+	/**
+	 * Visits the key-value pairs of the subtree rooted at x with a key between lo and hi, in order.
+	 * @param x Index of the root of the subtree.
+	 * @param lo The smallest key to be visited.
+	 * @param hi The largest key to be visited.
+	 * @param visitor Function called with each key and its value.
+	 */
+	private void forEach(int x, long lo, long hi, NightVisitor visitor) {
+		if (x == NIL) return;
+		if (lo < keys[x]) forEach(left[x], lo, hi, visitor);
+		if (lo <= keys[x] && hi >= keys[x]) visitor.visit(keys[x], vals[x]);
+		if (hi > keys[x]) forEach(right[x], lo, hi, visitor);
+	}
+	
+	/**
+	 * Allocates a node, growing the node arrays if they are full.
+	 * @param key Key of the node.
+	 * @param val Value of the node.
+	 * @param colour True if the link to the node is red.
+	 * @return Index of the new node.
+	 */
+	private int newNode(long key, int val, boolean colour) {
+		if (count == keys.length) {
+			int capacity = keys.length * 2;
+			keys = Arrays.copyOf(keys, capacity);
+			vals = Arrays.copyOf(vals, capacity);
+			left = Arrays.copyOf(left, capacity);
+			right = Arrays.copyOf(right, capacity);
+			size = Arrays.copyOf(size, capacity);
+			red = Arrays.copyOf(red, capacity);
+		}
+		int x = count++;
+		keys[x] = key;
+		vals[x] = val;
+		left[x] = NIL;
+		right[x] = NIL;
+		size[x] = 1;
+		red[x] = colour;
+		return x;
+	}
+	
+	/**
+	 * Function to determine if a given node is red.
+	 * @param x Index of the node to be tested.
+	 * @return True if the node is red, false otherwise (including if the node is NIL).
+	 */
+	private boolean isRed(int x) {
+		return x != NIL && red[x];
+	}
+	
+	/**
+	 * Function to determine the size of a given node.
+	 * @param x Index of the node.
+	 * @return The size of the node (0 if the node is NIL).
+	 */
+	private int size(int x) {
+		return x == NIL ? 0 : size[x];
+	}
+	
+	/**
+	 * Function to make a left leaning link lean to the right.
+	 * @param h Index of the node upon which to rotate.
+	 * @return Index of the parent node post-rotation.
+	 */
+	private int rotateRight(int h) {
+		rotations++;
+		int x = left[h];
+		left[h] = right[x];
+		right[x] = h;
+		red[x] = red[h];
+		red[h] = true;
+		size[x] = size[h];
+		size[h] = size(left[h]) + size(right[h]) + 1;
+		return x;
+	}
+	
+	/**
+	 * Function to make a right leaning link lean to the left.
+	 * @param h Index of the node upon which to rotate.
+	 * @return Index of the parent node post-rotation.
+	 */
+	private int rotateLeft(int h) {
+		rotations++;
+		int x = right[h];
+		right[h] = left[x];
+		left[x] = h;
+		red[x] = red[h];
+		red[h] = true;
+		size[x] = size[h];
+		size[h] = size(left[h]) + size(right[h]) + 1;
+		return x;
+	}
+	
+	/**
+	 * Flips the colours of a node and its two children.
+	 * @param h Index of the parent node to flip.
+	 */
+	private void flipColours(int h) {
+		red[h] = !red[h];
+		red[left[h]] = !red[left[h]];
+		red[right[h]] = !red[right[h]];
+	}
+}
@@ -1,26 +1,68 @@
 package HotelBookingSystem;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Clock;
 import java.time.LocalDate;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
 
 /**
  * Main class to implement the two use cases requested:
  * 1. Determine if a given room type is available on a given date.
  * 2. Book a room of a given type for a specific date range.
+ * 3. Cancel a booking by its booking ID.
  * @author Jonathan Janzen
  *
  */
 public class Main {
 	
+	//Number of past nights kept in the live calendars when a journal is used, before they are archived
+	private static final int RETENTION_DAYS = Integer.getInteger("hotel.retentionDays", 30);
+	//Seconds between two metrics reports printed to the error stream, or 0 for none
+	private static final int METRICS_DUMP_SECONDS = Integer.getInteger("hotel.metrics.dumpSeconds", 0);
+	//Port to serve bookings on over the network instead of the console, or -1 for the console
+	private static final int SERVER_PORT = Integer.getInteger("hotel.port", -1);
+	private static final int SERVER_THREADS = Integer.getInteger("hotel.serverThreads", Runtime.getRuntime().availableProcessors());
+	//File of commands to be applied without prompting (see BulkCommandProcessor), and file for their results
+	private static final String BULK_FILE = System.getProperty("hotel.bulk");
+	private static final String BULK_OUTPUT_FILE = System.getProperty("hotel.bulk.out");
+	
+	//File listing the room types of the property, one name per line (see RoomType.load())
+	private static final String ROOM_TYPES_FILE = System.getProperty("hotel.roomTypes");
+	
+	//The room types are registered before the bookings are created, as their per-type arrays are sized then
+	private static final RoomType[] ROOM_TYPES = loadRoomTypes();
+	
 	private static Bookings hotelBookings = new Bookings();
 	
 	/**
 	 * Main method to be used via command line to execute the functionality requested.
 	 * @param args Any command line arguments. None are required to execute the program
-	 * correctly.
+	 * correctly. If a path is given, it is used as the booking journal: any bookings already
+	 * in it (and in its snapshot) are restored, and every new booking is recorded in it.
 	 */
 	public static void main(String[] args) {
+		if (args.length > 0) openJournal(args[0]);
+		if (Boolean.getBoolean("hotel.metrics") || METRICS_DUMP_SECONDS > 0) enableMetrics();
+		if (Boolean.getBoolean("hotel.assignRooms")) assignRooms();
+		if (SERVER_PORT >= 0) {
+			serve();
+			return;
+		}
+		if (BULK_FILE != null) {
+			processBulkFile();
+			return;
+		}
 		horizontalLine();
 		System.out.println("Welcome to the console edition of our Hotel Room Booking program.");
 		System.out.println("The program will now request the number of rooms of each type that are present. Please "
@@ -28,10 +70,10 @@ public class Main {
 		
 		//Iterate through all RoomTypes and take input for the number of each at the hotel
 		Scanner input = new Scanner(System.in);
-		for (int i = 0; i < RoomType.values().length; i++) {
-			RoomType type = RoomType.values()[i];
+		for (int i = 0; i < ROOM_TYPES.length; i++) {
+			RoomType type = ROOM_TYPES[i];
 			while (hotelBookings.getNumRoomsByType(type) == -1) {
-				System.out.println("Please enter the number of rooms of type " + RoomType.values()[i] + ":");
+				System.out.println("Please enter the number of rooms of type " + ROOM_TYPES[i] + ":");
 				try {
 					int num = Integer.parseInt(input.nextLine());
 					hotelBookings.setNumRooms(type, num);
@@ -47,12 +89,12 @@ public class Main {
 		while(true) {
 			horizontalLine();
 			int checkVal = 0;
-			while (checkVal != 1 && checkVal != 2) {
-				System.out.println("Please type '1' to check availability on a given date, or type '2' to add a "
-						+ "booking over a certain range.");
+			while (checkVal != 1 && checkVal != 2 && checkVal != 3) {
+				System.out.println("Please type '1' to check availability on a given date, type '2' to add a "
+						+ "booking over a certain range, or type '3' to cancel a booking.");
 				try {
 					checkVal = Integer.parseInt(input.nextLine());
-					if (checkVal != 1 && checkVal != 2) System.out.println("ERROR: Input must be '1' or '2'.");
+					if (checkVal != 1 && checkVal != 2 && checkVal != 3) System.out.println("ERROR: Input must be '1', '2' or '3'.");
 				} catch (NumberFormatException ex) {
 					System.out.println("ERROR: Input must be an integer.");
 				}
@@ -103,22 +145,158 @@ public class Main {
 				}
 				
 				//Attempt a booking and return a message to the user depending on the result
-				boolean bookingSuccess = createBooking(checkType, startDate, endDate);
-				if (bookingSuccess) {
+				long bookingId = createBooking(checkType, startDate, endDate);
+				if (bookingId > 0) {
 					System.out.println("Booking was successfully made from " + startDate.toString() + " to " + endDate.toString() + " in room type " + checkType);
+					System.out.println("The booking ID is " + bookingId + ". Please keep it in case the booking needs to be cancelled.");
+					int room = hotelBookings.getAssignedRoom(bookingId);
+					if (room != RoomAssignments.NO_ROOM) System.out.println("The booking is in room " + room + ".");
 					//Print the total number of booked dates for each type
 					horizontalLine();
-					for (int i = 0; i < RoomType.values().length; i++) {
-						System.out.println("#bookings for " + RoomType.values()[i] + ": " + hotelBookings.getNumBookings(RoomType.values()[i]));
+					for (int i = 0; i < ROOM_TYPES.length; i++) {
+						System.out.println("#bookings for " + ROOM_TYPES[i] + ": " + hotelBookings.getNumBookings(ROOM_TYPES[i]));
 					}
 				} else {
 					System.out.println("Booking was unsucessful due to limited availability. Please try another set of dates or a different."
 							+ " room type.");
 				}
+			} else if (checkVal == 3) {
+				//Cancel a booking by its ID
+				long bookingId = -1;
+				while (bookingId <= 0) {
+					horizontalLine();
+					System.out.println("Please enter the ID of the booking to be cancelled:");
+					try {
+						bookingId = Long.parseLong(input.nextLine());
+						if (bookingId <= 0) System.out.println("ERROR: Booking IDs are integers greater than 0.");
+					} catch (NumberFormatException ex) {
+						System.out.println("ERROR: Input must be an integer.");
+					}
+				}
+				
+				horizontalLine();
+				BookingRequest booking = hotelBookings.getBooking(bookingId);
+				if (booking != null && hotelBookings.cancelBooking(bookingId)) {
+					System.out.println("Booking " + bookingId + " from " + booking.getStartDate() + " to " + booking.getEndDate()
+							+ " in room type " + booking.getType() + " was cancelled.");
+				} else {
+					System.out.println("There is no booking with the ID " + bookingId + ".");
+				}
 			}
 		}
 	}
 	
+	/**
+	 * Opens the booking journal at the given path, restores the bookings recorded in its snapshot
+	 * and in the journal itself, and attaches it so that new bookings are recorded. Nights more than
+	 * RETENTION_DAYS in the past are then moved to the archive next to the journal, and a checkpoint
+	 * is taken, so that the next start only has to replay the bookings made after this one.
+	 * Exits the program if the journal cannot be opened.
+	 * @param path Path of the journal file (created if it does not exist).
+	 */
+	private static void openJournal(String path) {
+		try {
+			Path snapshotPath = Paths.get(path + ".snapshot");
+			if (Files.exists(snapshotPath)) hotelBookings = Bookings.loadSnapshot(snapshotPath, CalendarBackend.TREE);
+			BookingJournal journal = new BookingJournal(Paths.get(path));
+			long records = journal.replay(hotelBookings);
+			hotelBookings.setJournal(journal);
+			hotelBookings.setArchive(new BookingArchive(Paths.get(path + ".archive")));
+			int evicted = hotelBookings.advanceHorizon(LocalDate.now().minusDays(RETENTION_DAYS));
+			hotelBookings.checkpoint(snapshotPath);
+			System.out.println("Restored " + records + " records from the journal " + path + ".");
+			if (evicted > 0) System.out.println("Archived " + evicted + " past nights to " + path + ".archive.");
+		} catch (IOException ex) {
+			System.out.println("ERROR: The journal " + path + " could not be opened: " + ex.getMessage());
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Starts assigning rooms to the bookings (started with -Dhotel.assignRooms=true). Exits the program if a
+	 * booking restored from the journal cannot be given its room, rather than moving the guest.
+	 */
+	private static void assignRooms() {
+		try {
+			hotelBookings.enableRoomAssignment();
+		} catch (IllegalStateException ex) {
+			System.out.println("ERROR: Rooms could not be assigned: " + ex.getMessage());
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Registers the room types listed in ROOM_TYPES_FILE, if it is set (started with -Dhotel.roomTypes=path), in
+	 * addition to the built-in ones. Exits the program if the file cannot be read or lists an invalid type.
+	 * @return Every registered RoomType, indexed by value.
+	 */
+	private static RoomType[] loadRoomTypes() {
+		if (ROOM_TYPES_FILE != null) {
+			try {
+				RoomType.load(Paths.get(ROOM_TYPES_FILE));
+			} catch (IOException | IllegalArgumentException ex) {
+				System.out.println("ERROR: The room types in " + ROOM_TYPES_FILE + " could not be loaded: " + ex.getMessage());
+				System.exit(1);
+			}
+		}
+		return RoomType.values();
+	}
+	
+	/**
+	 * Applies every command of BULK_FILE to the bookings without prompting, writing the results to
+	 * BULK_OUTPUT_FILE (or to the console if it is not set), and prints a report with the throughput
+	 * to the error stream. Started with -Dhotel.bulk=path and optionally -Dhotel.bulk.out=path.
+	 * Exits the program if either file cannot be opened.
+	 */
+	private static void processBulkFile() {
+		BulkCommandProcessor processor = new BulkCommandProcessor(hotelBookings);
+		try (InputStream in = Files.newInputStream(Paths.get(BULK_FILE));
+				OutputStream out = BULK_OUTPUT_FILE == null ? new FileOutputStream(FileDescriptor.out)
+						: Files.newOutputStream(Paths.get(BULK_OUTPUT_FILE))) {
+			processor.process(in, out);
+		} catch (IOException ex) {
+			System.err.println("ERROR: The commands in " + BULK_FILE + " could not be processed: " + ex.getMessage());
+			System.exit(1);
+		}
+		System.err.print(processor.getReport());
+	}
+	
+	/**
+	 * Serves the bookings over the network on SERVER_PORT (see BookingServer for the protocol) until the program
+	 * is stopped, instead of running the console loop. The number of rooms of each type is then set by the clients.
+	 * Started with -Dhotel.port=N, and -Dhotel.serverThreads=N to change the number of worker threads.
+	 * Exits the program if the port cannot be bound.
+	 */
+	private static void serve() {
+		try {
+			BookingServer server = new BookingServer(hotelBookings, new InetSocketAddress(SERVER_PORT), SERVER_THREADS);
+			server.start();
+			System.out.println("Serving bookings on port " + server.getPort() + " with " + SERVER_THREADS + " threads.");
+			server.join();
+		} catch (IOException ex) {
+			System.out.println("ERROR: The server could not be started on port " + SERVER_PORT + ": " + ex.getMessage());
+			System.exit(1);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Attaches metrics to the bookings and exposes them over JMX, under BookingMetrics.OBJECT_NAME. If
+	 * METRICS_DUMP_SECONDS is set, the metrics report is also printed to the error stream at that period.
+	 * Metrics are enabled with -Dhotel.metrics=true or -Dhotel.metrics.dumpSeconds=N.
+	 */
+	private static void enableMetrics() {
+		BookingMetrics metrics = new BookingMetrics();
+		hotelBookings.setMetrics(metrics);
+		try {
+			metrics.register();
+		} catch (JMException ex) {
+			System.out.println("ERROR: The metrics could not be registered with JMX: " + ex.getMessage());
+		}
+		if (METRICS_DUMP_SECONDS > 0) metrics.startReporting(METRICS_DUMP_SECONDS, TimeUnit.SECONDS, System.err);
+	}
+	
 	/**
 	 * Prints a horizontal line for console output beautification.
 	 */
@@ -142,10 +320,10 @@ public class Main {
 	 * @param type RoomType that is to be booked for.
 	 * @param startDate Start date that the booking is for.
 	 * @param endDate End date that the booking is for.
-	 * @return Returns true if the room was booked successfully, and false otherwise.
+	 * @return Returns the ID of the booking if the room was booked successfully, and -1 otherwise.
 	 */
-	private static boolean createBooking(RoomType type, LocalDate startDate, LocalDate endDate) {
-		return hotelBookings.createBooking(type, startDate, endDate);
+	private static long createBooking(RoomType type, LocalDate startDate, LocalDate endDate) {
+		return hotelBookings.book(type, startDate, endDate);
 	}
 	
 	/**
@@ -186,13 +364,13 @@ public class Main {
 			//Print all possible RoomTypes and their corresponding IDs
 			System.out.println("Please enter the RoomType that you wish to " + message + ". Your options"
 					+ " and their corresponding numerical values are listed below:");
-			for (int i = 0; i < RoomType.values().length; i++) {
-				System.out.println(RoomType.values()[i] + ": " + RoomType.values()[i].getValue());
+			for (int i = 0; i < ROOM_TYPES.length; i++) {
+				System.out.println(ROOM_TYPES[i] + ": " + ROOM_TYPES[i].getValue());
 			}
 			
 			//Take input and validate that it matches one of the IDs listed
 			try {
-				checkType = RoomType.values()[Integer.parseInt(s.nextLine())];
+				checkType = ROOM_TYPES[Integer.parseInt(s.nextLine())];
 			} catch (Exception ex) {
 				System.out.println("ERROR: Input value must be an integer that corresponds to one of the RoomTypes listed"
 						+ " above.");
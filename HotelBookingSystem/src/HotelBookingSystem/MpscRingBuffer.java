@@ -0,0 +1,98 @@
+package HotelBookingSystem;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producer threads and a single consumer thread, used to hand requests to the
+ * thread that owns a shard of a ShardedBookingEngine.
+ * 
+ * The queue is a ring of slots, each with a sequence number that says whose turn it is: a producer claims the next
+ * position with a compare-and-set on the tail, fills the slot and then publishes it by advancing its sequence, and
+ * the consumer takes slots in order once they are published and hands them back by advancing the sequence again
+ * by a full lap. Producers only contend on the tail counter, and never wait for each other to finish filling a
+ * slot; the consumer only writes to the slots it has taken, so it never contends with the producers.
+ * @author Jonathan Janzen
+ *
+ */
+public class MpscRingBuffer<E> {
+	
+	private final Object[] slots;
+	private final AtomicLongArray sequences;	//position + 1 once a slot is filled, position + capacity once it is free again
+	private final int mask;
+	private final AtomicLong tail;				//next position to be claimed by a producer
+	private long head;							//next position to be taken by the consumer (consumer thread only)
+	
+	/**
+	 * Constructor for an empty MpscRingBuffer.
+	 * @param capacity The number of elements that the queue can hold (a power of two).
+	 */
+	public MpscRingBuffer(int capacity) {
+		if (capacity < 1 || Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("The capacity must be a power of two.");
+		this.slots = new Object[capacity];
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) sequences.set(i, i);
+		this.mask = capacity - 1;
+		this.tail = new AtomicLong();
+	}
+	
+	/**
+	 * Adds an element to the queue, if there is room. May be called by any thread.
+	 * @param element The element to be added (not null).
+	 * @return True if the element was added, false if the queue is full.
+	 */
+	public boolean offer(E element) {
+		if (element == null) throw new NullPointerException();
+		long position = tail.get();
+		while (true) {
+			int slot = (int) position & mask;
+			long difference = sequences.get(slot) - position;
+			if (difference == 0) {
+				//The slot is free for this position: claim it, then fill and publish it
+				if (tail.compareAndSet(position, position + 1)) {
+					slots[slot] = element;
+					sequences.set(slot, position + 1);
+					return true;
+				}
+				position = tail.get();
+			} else if (difference < 0) {
+				//The consumer has not yet taken the element a full lap behind
+				return false;
+			} else {
+				//Another producer has claimed this position
+				position = tail.get();
+			}
+		}
+	}
+	
+	/**
+	 * Removes the oldest element of the queue. Must only be called by the consumer thread.
+	 * @return The oldest element, or null if the queue is empty (or its oldest element is still being added).
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		int slot = (int) head & mask;
+		if (sequences.get(slot) != head + 1) return null;
+		E element = (E) slots[slot];
+		slots[slot] = null;
+		sequences.set(slot, head + slots.length);
+		head++;
+		return element;
+	}
+	
+	/**
+	 * Function to determine whether the consumer would find an element. Must only be called by the consumer thread.
+	 * @return True if poll() would return null.
+	 */
+	public boolean isEmpty() {
+		return sequences.get((int) head & mask) != head + 1;
+	}
+	
+	/**
+	 * Function to get the number of elements that the queue can hold.
+	 * @return The capacity of the queue.
+	 */
+	public int capacity() {
+		return slots.length;
+	}
+}
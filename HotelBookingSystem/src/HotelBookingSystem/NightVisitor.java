@@ -0,0 +1,17 @@
+package HotelBookingSystem;
+
+/**
+ * Functional interface for visiting the nights stored in a BookingCalendar, in ascending order of date.
+ * @author Jonathan Janzen
+ *
+ */
+@FunctionalInterface
+public interface NightVisitor {
+	
+	/**
+	 * Called once for each night that has an entry in the calendar.
+	 * @param day The night, as an epoch day.
+	 * @param value The value stored for that night.
+	 */
+	public void visit(long day, int value);
+}
@@ -0,0 +1,299 @@
+package HotelBookingSystem;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A class which defines the occupancy of every RoomType over a range of nights, broken down by month and by day of
+ * week, as returned by Bookings.getOccupancyReport(). The occupancy of a night is the number of rooms booked on it
+ * (at most the number of rooms of the type on that night), and is reported both as a count of occupied room nights
+ * and as a fraction of the capacity room nights, i.e. of the rooms that the type had on each night of the range.
+ * 
+ * The report is computed with fork-join: the range is split for each RoomType into blocks of LEAF_NIGHTS nights,
+ * each block is read from its calendar in one ordered pass (one in-order walk of the range for a tree calendar) and
+ * summed into a primitive accumulator of its own, and the accumulators are added together as the tasks join. No
+ * object is created per night.
+ * @author Jonathan Janzen
+ *
+ */
+public class OccupancyReport {
+	
+	//Nights read by a single task before the range is no longer split
+	static final int LEAF_NIGHTS = 512;
+	
+	private static final int DAYS_PER_WEEK = 7;
+	
+	private final LocalDate startDate;
+	private final LocalDate endDate;
+	private final YearMonth firstMonth;
+	private final int numMonths;
+	private final long[] occupied;		//occupied room nights, by RoomType then month and day of week (see index())
+	private final long[] capacity;		//capacity room nights, laid out in the same way as occupied
+	
+	/**
+	 * Functional interface for reading the rooms booked and the number of rooms on a range of nights of a RoomType,
+	 * e.g. from its calendar and capacity overrides under the read lock of the type.
+	 */
+	@FunctionalInterface
+	interface NightReader {
+		
+		/**
+		 * Reads the entries of a range of consecutive nights into an array, in the same way as
+		 * BookingCalendar.read(), and the number of rooms on each of them into another.
+		 * @param type RoomType to be read.
+		 * @param from First night of the range, as an epoch day.
+		 * @param booked Array to receive the entries, BookingCalendar.EMPTY for a night with no entry.
+		 * @param capacities Array to receive the number of rooms of each night.
+		 * @param length Number of nights to be read.
+		 */
+		void read(RoomType type, long from, int[] booked, int[] capacities, int length);
+	}
+	
+	/**
+	 * Constructor for an OccupancyReport, computing it from the calendars.
+	 * @param _startDate First night of the report.
+	 * @param _endDate Date after the last night of the report.
+	 * @param types Every RoomType to be reported on, indexed by value.
+	 * @param reader Source of the rooms booked and the number of rooms of each night.
+	 */
+	OccupancyReport(LocalDate _startDate, LocalDate _endDate, RoomType[] types, NightReader reader) {
+		this.startDate = _startDate;
+		this.endDate = _endDate;
+		this.firstMonth = YearMonth.from(_startDate);
+		this.numMonths = (int) (firstMonth.until(YearMonth.from(_endDate.minusDays(1)), ChronoUnit.MONTHS) + 1);
+		long startDay = _startDate.toEpochDay();
+		long endDay = _endDate.toEpochDay();
+		
+		//The first night of each month in the range (clipped to the range), followed by the end of the range
+		long[] monthStarts = new long[numMonths + 1];
+		for (int m = 0; m < numMonths; m++) {
+			monthStarts[m] = Math.max(firstMonth.plusMonths(m).atDay(1).toEpochDay(), startDay);
+		}
+		monthStarts[numMonths] = endDay;
+		
+		OccupancyTask[] tasks = new OccupancyTask[types.length];
+		for (RoomType type : types) {
+			tasks[type.getValue()] = new OccupancyTask(type, startDay, endDay, monthStarts, reader);
+		}
+		int slots = numMonths + DAYS_PER_WEEK;
+		this.occupied = new long[tasks.length * slots];
+		this.capacity = new long[tasks.length * slots];
+		//The RoomTypes are summed in parallel, and each of them splits its range further
+		for (OccupancyTask task : tasks) ForkJoinPool.commonPool().execute(task);
+		for (int t = 0; t < tasks.length; t++) {
+			//Each task returns its occupied room nights followed by its capacity room nights
+			long[] totals = tasks[t].join();
+			System.arraycopy(totals, 0, occupied, t * slots, slots);
+			System.arraycopy(totals, slots, capacity, t * slots, slots);
+		}
+	}
+	
+	/**
+	 * Getter for the first night of the report.
+	 * @return LocalDate of the first night.
+	 */
+	public LocalDate getStartDate() {
+		return this.startDate;
+	}
+	
+	/**
+	 * Getter for the end of the report.
+	 * @return LocalDate after the last night of the report.
+	 */
+	public LocalDate getEndDate() {
+		return this.endDate;
+	}
+	
+	/**
+	 * Getter for the first month of the report (which may only be covered in part).
+	 * @return YearMonth of the first night.
+	 */
+	public YearMonth getFirstMonth() {
+		return this.firstMonth;
+	}
+	
+	/**
+	 * Getter for the number of months that the report covers, in whole or in part.
+	 * @return Number of months from the first night to the last, inclusive.
+	 */
+	public int getNumMonths() {
+		return this.numMonths;
+	}
+	
+	/**
+	 * Function to get the occupied room nights of a RoomType over the whole report.
+	 * @param type RoomType desired.
+	 * @return The number of room nights occupied.
+	 */
+	public long getOccupiedNights(RoomType type) {
+		long total = 0;
+		for (int m = 0; m < numMonths; m++) total += occupied[index(type, m)];
+		return total;
+	}
+	
+	/**
+	 * Function to get the occupied room nights of a RoomType in a month.
+	 * @param type RoomType desired.
+	 * @param month The month desired, which must be covered by the report.
+	 * @return The number of room nights occupied in the part of the month within the report.
+	 */
+	public long getOccupiedNights(RoomType type, YearMonth month) {
+		return occupied[index(type, monthIndex(month))];
+	}
+	
+	/**
+	 * Function to get the occupied room nights of a RoomType on a day of the week.
+	 * @param type RoomType desired.
+	 * @param day The day of the week desired.
+	 * @return The number of room nights occupied on every such day of the report.
+	 */
+	public long getOccupiedNights(RoomType type, DayOfWeek day) {
+		return occupied[index(type, numMonths + day.ordinal())];
+	}
+	
+	/**
+	 * Function to get the occupancy of a RoomType over the whole report.
+	 * @param type RoomType desired.
+	 * @return Occupied room nights as a fraction of the capacity room nights (0 if the type has no rooms).
+	 */
+	public double getOccupancy(RoomType type) {
+		long capacityNights = 0;
+		for (int m = 0; m < numMonths; m++) capacityNights += capacity[index(type, m)];
+		return ratio(getOccupiedNights(type), capacityNights);
+	}
+	
+	/**
+	 * Function to get the occupancy of a RoomType in a month.
+	 * @param type RoomType desired.
+	 * @param month The month desired, which must be covered by the report.
+	 * @return Occupied room nights as a fraction of the capacity room nights (0 if the type has no rooms).
+	 */
+	public double getOccupancy(RoomType type, YearMonth month) {
+		int m = monthIndex(month);
+		return ratio(occupied[index(type, m)], capacity[index(type, m)]);
+	}
+	
+	/**
+	 * Function to get the occupancy of a RoomType on a day of the week.
+	 * @param type RoomType desired.
+	 * @param day The day of the week desired.
+	 * @return Occupied room nights as a fraction of the capacity room nights (0 if the type has no rooms).
+	 */
+	public double getOccupancy(RoomType type, DayOfWeek day) {
+		int d = numMonths + day.ordinal();
+		return ratio(occupied[index(type, d)], capacity[index(type, d)]);
+	}
+	
+	/**
+	 * Function to get the position of a month in the report.
+	 * @param month The month desired.
+	 * @return Index of the month, 0 being the first month.
+	 * @throws IllegalArgumentException If the month is not covered by the report.
+	 */
+	private int monthIndex(YearMonth month) {
+		long m = firstMonth.until(month, ChronoUnit.MONTHS);
+		if (m < 0 || m >= numMonths) throw new IllegalArgumentException("The month " + month + " is not covered by the report.");
+		return (int) m;
+	}
+	
+	/**
+	 * Function to get the position of a total in the occupied and capacity arrays.
+	 * @param type RoomType of the total.
+	 * @param slot Index of the month, or numMonths plus the day of the week.
+	 * @return Index into the occupied array.
+	 */
+	private int index(RoomType type, int slot) {
+		return type.getValue() * (numMonths + DAYS_PER_WEEK) + slot;
+	}
+	
+	/**
+	 * Divides two counts, treating 0 / 0 as 0.
+	 * @param numerator The occupied room nights.
+	 * @param denominator The capacity room nights.
+	 * @return The ratio of the two.
+	 */
+	private static double ratio(long numerator, long denominator) {
+		return denominator == 0 ? 0 : (double) numerator / denominator;
+	}
+	
+	/**
+	 * Function to get the day of the week of an epoch day.
+	 * @param day The epoch day.
+	 * @return The DayOfWeek ordinal (0 for Monday), as 1970-01-01 was a Thursday.
+	 */
+	private static int dayOfWeek(long day) {
+		return Math.floorMod(day + 3, DAYS_PER_WEEK);
+	}
+	
+	/**
+	 * Fork-join task summing the occupied and capacity room nights of one RoomType over a range of nights, by month and
+	 * by day of week. Ranges longer than LEAF_NIGHTS are split in half.
+	 */
+	private class OccupancyTask extends RecursiveTask<long[]> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final RoomType type;
+		private final long from;
+		private final long to;
+		private final long[] monthStarts;
+		private final NightReader reader;
+		
+		/**
+		 * Constructor for an OccupancyTask.
+		 * @param _type RoomType to be summed.
+		 * @param _from First night of the range, as an epoch day.
+		 * @param _to Day after the last night of the range, as an epoch day.
+		 * @param _monthStarts First night of each month of the report, followed by the end of the report.
+		 * @param _reader Source of the rooms booked and the number of rooms of each night.
+		 */
+		OccupancyTask(RoomType _type, long _from, long _to, long[] _monthStarts, NightReader _reader) {
+			this.type = _type;
+			this.from = _from;
+			this.to = _to;
+			this.monthStarts = _monthStarts;
+			this.reader = _reader;
+		}
+		
+		@Override
+		protected long[] compute() {
+			if (to - from > LEAF_NIGHTS) {
+				long mid = from + (to - from) / 2;
+				OccupancyTask left = new OccupancyTask(type, from, mid, monthStarts, reader);
+				OccupancyTask right = new OccupancyTask(type, mid, to, monthStarts, reader);
+				left.fork();
+				long[] totals = right.compute();
+				long[] leftTotals = left.join();
+				for (int i = 0; i < totals.length; i++) totals[i] += leftTotals[i];
+				return totals;
+			}
+			
+			int slots = numMonths + DAYS_PER_WEEK;
+			long[] totals = new long[2 * slots];
+			int[] block = new int[(int) (to - from)];
+			int[] rooms = new int[block.length];
+			reader.read(type, from, block, rooms, block.length);
+			//Find the month of the first night, then move to the next month as its first night is reached
+			int month = 0;
+			while (monthStarts[month + 1] <= from) month++;
+			int weekday = dayOfWeek(from);
+			for (int i = 0; i < block.length; i++) {
+				long day = from + i;
+				if (day == monthStarts[month + 1]) month++;
+				//A night with no entry has had no bookings, and one with more rooms booked than it now has is counted
+				//as full
+				int taken = Math.min(Math.max(block[i], 0), rooms[i]);
+				totals[month] += taken;
+				totals[numMonths + weekday] += taken;
+				totals[slots + month] += rooms[i];
+				totals[slots + numMonths + weekday] += rooms[i];
+				if (++weekday == DAYS_PER_WEEK) weekday = 0;
+			}
+			return totals;
+		}
+	}
+}
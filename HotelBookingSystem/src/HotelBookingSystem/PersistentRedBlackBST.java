@@ -0,0 +1,272 @@
+package HotelBookingSystem;
+
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable (persistent) variant of RedBlackBST. put() does not change the tree it is called on: it copies the
+ * nodes on the path from the root to the key (applying the same left-leaning rotations and colour flips as
+ * RedBlackBST, to copies) and returns a new tree that shares every untouched subtree with the old one. A tree can
+ * therefore be read by any number of threads without locking, and always shows one consistent version, while a
+ * single writer builds the next version alongside it.
+ * @author Robert Sedgewick
+ * @author Kevin Wayne
+ * @author Jonathan Janzen
+ *
+ */
+public class PersistentRedBlackBST<Key extends Comparable<? super Key>, Value> {
+	
+	private static final boolean RED = true;
+	private static final boolean BLACK = false;
+	
+	private final Node<Key, Value> root;
+	
+	/**
+	 * Private class to define the immutable Node datatype (for use in the BST).
+	 * @author Jonathan Janzen
+	 *
+	 */
+	private static class Node<Key, Value> {
+		private final Key key;
+		private final Value val;
+		private final Node<Key, Value> left, right;
+		private final boolean colour;	//colour of parent link
+		private final int size;			//number of nodes in the subtree
+		
+		/**
+		 * Constructor for a Node.
+		 * @param _key Key for the node.
+		 * @param _val Value that corresponds to the given key.
+		 * @param _colour Boolean to represent whether the given node is RED or BLACK.
+		 * @param _left Left subtree.
+		 * @param _right Right subtree.
+		 */
+		public Node(Key _key, Value _val, boolean _colour, Node<Key, Value> _left, Node<Key, Value> _right) {
+			this.key = _key;
+			this.val = _val;
+			this.colour = _colour;
+			this.left = _left;
+			this.right = _right;
+			this.size = 1 + (_left == null ? 0 : _left.size) + (_right == null ? 0 : _right.size);
+		}
+	}
+	
+	/**
+	 * Constructor for an empty BST.
+	 */
+	public PersistentRedBlackBST() {
+		this.root = null;
+	}
+	
+	/**
+	 * Constructor for a BST holding the given key-value pairs, built bottom-up in O(n) in the same way as the
+	 * equivalent RedBlackBST constructor, rather than by n calls to put() that each copy a path.
+	 * @param keys The keys, in strictly ascending order.
+	 * @param vals The value for each key.
+	 * @param n The number of pairs to be taken from the start of the two arrays.
+	 */
+	public PersistentRedBlackBST(Key[] keys, Value[] vals, int n) {
+		//Use the smallest black height that can hold n keys, i.e. the smallest b with 3^b - 1 >= n
+		int blackHeight = 0;
+		while (maxKeys(blackHeight) < n) blackHeight++;
+		this.root = build(keys, vals, 0, n, blackHeight);
+	}
+	
+	/**
+	 * Constructor for a BST with the given root.
+	 * @param _root Root node of the tree.
+	 */
+	private PersistentRedBlackBST(Node<Key, Value> _root) {
+		this.root = _root;
+	}
+	
+	/**
+	 * Function to determine the largest number of keys a 2-3 tree of the given black height can hold.
+	 * @param blackHeight Number of black links on every path from the root to a leaf.
+	 * @return 3^blackHeight - 1, the number of keys in a tree made only of 3-nodes.
+	 */
+	private static long maxKeys(int blackHeight) {
+		long max = 1;
+		for (int i = 0; i < blackHeight; i++) max *= 3;
+		return max - 1;
+	}
+	
+	/**
+	 * Builds a subtree of the given black height from a run of sorted keys, as RedBlackBST.build() does. The nodes
+	 * are immutable, so the children of each node are built before the node itself.
+	 * @param keys The sorted keys.
+	 * @param vals The value for each key.
+	 * @param lo Index of the first key of the subtree.
+	 * @param n Number of keys in the subtree.
+	 * @param blackHeight Black height of the subtree.
+	 * @return The root of the subtree (null if n is 0).
+	 */
+	private Node<Key, Value> build(Key[] keys, Value[] vals, int lo, int n, int blackHeight) {
+		if (n == 0) return null;
+		if (n - 1 <= 2 * maxKeys(blackHeight - 1)) {
+			//2-node: split the remaining keys evenly between the two children
+			int left = n - 1 - (n - 1) / 2;
+			return new Node<Key, Value>(keys[lo + left], vals[lo + left], BLACK,
+					build(keys, vals, lo, left, blackHeight - 1),
+					build(keys, vals, lo + left + 1, n - 1 - left, blackHeight - 1));
+		}
+		//3-node: split the remaining keys evenly between the three children
+		int m = n - 2;
+		int a = (m + 2) / 3;
+		int b = (m + 1) / 3;
+		Node<Key, Value> x = new Node<Key, Value>(keys[lo + a], vals[lo + a], RED,
+				build(keys, vals, lo, a, blackHeight - 1),
+				build(keys, vals, lo + a + 1, b, blackHeight - 1));
+		return new Node<Key, Value>(keys[lo + a + 1 + b], vals[lo + a + 1 + b], BLACK, x,
+				build(keys, vals, lo + a + b + 2, m - a - b, blackHeight - 1));
+	}
+	
+	/**
+	 * Number of key-value pairs in the tree.
+	 * @return The number of key-value pairs in the tree.
+	 */
+	public int size() {
+		return root == null ? 0 : root.size;
+	}
+	
+	/**
+	 * Function to determine if the tree is empty.
+	 * @return Returns true if the tree is empty and false otherwise.
+	 */
+	public boolean isEmpty() {
+		return root == null;
+	}
+	
+	/**
+	 * Function to determine the height of the tree, i.e. the number of links on the longest path from the root to a
+	 * leaf. Walks the whole tree, so it is meant for monitoring rather than for the hot path.
+	 * @return The height of the tree (-1 if the tree is empty).
+	 */
+	public int height() {
+		return height(root);
+	}
+	
+	/**
+	 * Function to determine the height of the subtree rooted at x.
+	 * @param x The root node.
+	 * @return The height of the subtree (-1 if x is null).
+	 */
+	private int height(Node<Key, Value> x) {
+		if (x == null) return -1;
+		return 1 + Math.max(height(x.left), height(x.right));
+	}
+	
+	/**
+	 * Function to return the value associated with a given key.
+	 * @param key Key to find the value of.
+	 * @return The value associated with the given key, or null if it does not exist.
+	 */
+	public Value get(Key key) {
+		if (key == null) throw new IllegalArgumentException("Argument to get() is null");
+		Node<Key, Value> x = root;
+		while (x != null) {
+			int cmp = key.compareTo(x.key);
+			if (cmp < 0) x = x.left;
+			else if (cmp > 0) x = x.right;
+			else return x.val;
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns a tree with the key-value pair specified inserted, overwriting the previous value if it already exists.
+	 * This tree is not changed.
+	 * @param key Key to be added.
+	 * @param val Value to be added with the given key.
+	 * @return The new version of the tree.
+	 */
+	public PersistentRedBlackBST<Key, Value> put(Key key, Value val) {
+		if (key == null) throw new IllegalArgumentException("First argument to put() is null.");
+		Node<Key, Value> h = put(root, key, val);
+		if (h.colour == RED) h = new Node<Key, Value>(h.key, h.val, BLACK, h.left, h.right);
+		return new PersistentRedBlackBST<Key, Value>(h);
+	}
+	
+	/**
+	 * Returns a copy of the subtree rooted at h with a key-value pair inserted.
+	 * @param h The root node.
+	 * @param key The key to be inserted at.
+	 * @param val The value to be inserted.
+	 * @return The root of the new subtree.
+	 */
+	private Node<Key, Value> put(Node<Key, Value> h, Key key, Value val) {
+		if (h == null) return new Node<Key, Value>(key, val, RED, null, null);
+		
+		int cmp = key.compareTo(h.key);
+		if (cmp < 0) return balance(h.key, h.val, h.colour, put(h.left, key, val), h.right);
+		else if (cmp > 0) return balance(h.key, h.val, h.colour, h.left, put(h.right, key, val));
+		else return new Node<Key, Value>(h.key, val, h.colour, h.left, h.right);
+	}
+	
+	/**
+	 * Builds a node from its parts, correcting any links that lean right or doubled red links in the same way as
+	 * RedBlackBST.put() does (rotate left, rotate right, flip colours), but on new nodes.
+	 * @param key Key of the node.
+	 * @param val Value of the node.
+	 * @param colour Colour of the node.
+	 * @param left Left subtree.
+	 * @param right Right subtree.
+	 * @return The root of the balanced subtree.
+	 */
+	private Node<Key, Value> balance(Key key, Value val, boolean colour, Node<Key, Value> left, Node<Key, Value> right) {
+		if (isRed(right) && !isRed(left)) {
+			//Rotate left: the right child becomes the root, with the old root as its red left child
+			left = new Node<Key, Value>(key, val, RED, left, right.left);
+			key = right.key;
+			val = right.val;
+			right = right.right;
+		}
+		if (isRed(left) && isRed(left.left)) {
+			//Rotate right: the left child becomes the root, with the old root as its red right child
+			right = new Node<Key, Value>(key, val, RED, left.right, right);
+			key = left.key;
+			val = left.val;
+			left = left.left;
+		}
+		if (isRed(left) && isRed(right)) {
+			colour = !colour;
+			left = new Node<Key, Value>(left.key, left.val, !left.colour, left.left, left.right);
+			right = new Node<Key, Value>(right.key, right.val, !right.colour, right.left, right.right);
+		}
+		return new Node<Key, Value>(key, val, colour, left, right);
+	}
+	
+	/**
+	 * Function to determine if a given node is red.
+	 * @param x Node to be tested.
+	 * @return True if the node is red, false otherwise (including if the node is null).
+	 */
+	private boolean isRed(Node<Key, Value> x) {
+		return x != null && x.colour == RED;
+	}
+	
+	/**
+	 * Visits every key-value pair with a key between lo and hi (both inclusive), in ascending order of key.
+	 * @param lo The smallest key to be visited.
+	 * @param hi The largest key to be visited.
+	 * @param visitor Function called with each key and its value.
+	 */
+	public void forEach(Key lo, Key hi, BiConsumer<? super Key, ? super Value> visitor) {
+		forEach(root, lo, hi, visitor);
+	}
+	
+	/**
+	 * Visits the key-value pairs of the subtree rooted at x with a key between lo and hi (a null bound is unbounded).
+	 * @param x The root node of the subtree.
+	 * @param lo The smallest key to be visited, or null.
+	 * @param hi The largest key to be visited, or null.
+	 * @param visitor Function called with each key and its value.
+	 */
+	private void forEach(Node<Key, Value> x, Key lo, Key hi, BiConsumer<? super Key, ? super Value> visitor) {
+		if (x == null) return;
+		int cmplo = lo == null ? -1 : lo.compareTo(x.key);
+		int cmphi = hi == null ? 1 : hi.compareTo(x.key);
+		if (cmplo < 0) forEach(x.left, lo, hi, visitor);
+		if (cmplo <= 0 && cmphi >= 0) visitor.accept(x.key, x.val);
+		if (cmphi > 0) forEach(x.right, lo, hi, visitor);
+	}
+}
@@ -0,0 +1,142 @@
+package HotelBookingSystem;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * BookingCalendar backed by a PersistentRedBlackBST, published through a volatile reference. Every read works on the
+ * version that was current when it started, so reads never take a lock and never see a tree in the middle of an
+ * update. Writes build the next version privately and then publish it with a single volatile write; a multi-night
+ * reservation is published as one version, so readers see either none or all of its nights. Writes must still be
+ * made by one thread at a time (Bookings holds the write lock of the type).
+ * @author Jonathan Janzen
+ *
+ */
+public class PersistentTreeCalendar implements BookingCalendar {
+	
+	private volatile PersistentRedBlackBST<LocalDate, Integer> tree;
+	
+	/**
+	 * Constructor for an empty PersistentTreeCalendar.
+	 */
+	public PersistentTreeCalendar() {
+		this.tree = new PersistentRedBlackBST<LocalDate, Integer>();
+	}
+	
+	@Override
+	public int get(long day) {
+		Integer checkVal = tree.get(LocalDate.ofEpochDay(day));
+		if (checkVal == null) return EMPTY;
+		return checkVal;
+	}
+	
+	@Override
+	public void put(long day, int booked) {
+		tree = tree.put(LocalDate.ofEpochDay(day), booked);
+	}
+	
+	@Override
+	public int size() {
+		return tree.size();
+	}
+	
+	@Override
+	public void forEach(NightVisitor visitor) {
+		tree.forEach(null, null, (date, booked) -> visitor.visit(date.toEpochDay(), booked));
+	}
+	
+	@Override
+	public int evictBefore(long day, NightVisitor evicted) {
+		PersistentRedBlackBST<LocalDate, Integer> current = tree;
+		LocalDate[] keys = new LocalDate[current.size()];
+		Integer[] vals = new Integer[keys.length];
+		int[] kept = new int[1];
+		int[] removed = new int[1];
+		current.forEach(null, null, (date, booked) -> {
+			long night = date.toEpochDay();
+			if (night < day) {
+				evicted.visit(night, booked);
+				removed[0]++;
+			} else {
+				keys[kept[0]] = date;
+				vals[kept[0]++] = booked;
+			}
+		});
+		if (removed[0] == 0) return 0;
+		//Build the tree of the nights that are kept bottom-up, and publish it as a single version
+		tree = new PersistentRedBlackBST<LocalDate, Integer>(keys, vals, kept[0]);
+		return removed[0];
+	}
+	
+	@Override
+	public void load(long[] days, int[] values, int n) {
+		//Build the tree bottom-up from the sorted entries instead of inserting them one at a time
+		LocalDate[] keys = new LocalDate[n];
+		Integer[] vals = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = LocalDate.ofEpochDay(days[i]);
+			vals[i] = values[i];
+		}
+		tree = new PersistentRedBlackBST<LocalDate, Integer>(keys, vals, n);
+	}
+	
+	@Override
+	public void putAll(long[] days, int[] values, int n) {
+		PersistentRedBlackBST<LocalDate, Integer> next = tree;
+		for (int i = 0; i < n; i++) next = next.put(LocalDate.ofEpochDay(days[i]), values[i]);
+		tree = next;
+	}
+	
+	@Override
+	public void read(long from, int[] out, int offset, int length) {
+		if (length <= 0) return;
+		Arrays.fill(out, offset, offset + length, EMPTY);
+		tree.forEach(LocalDate.ofEpochDay(from), LocalDate.ofEpochDay(from + length - 1),
+				(date, booked) -> out[offset + (int) (date.toEpochDay() - from)] = booked);
+	}
+	
+	@Override
+	public int minAvailable(long from, long to, int capacity) {
+		if (from >= to) return Integer.MAX_VALUE;
+		//Read one version for the whole range
+		PersistentRedBlackBST<LocalDate, Integer> current = tree;
+		int max = 0;
+		for (long day = from; day < to && max < capacity; day++) {
+			Integer checkVal = current.get(LocalDate.ofEpochDay(day));
+			if (checkVal != null) max = Math.max(max, checkVal);
+		}
+		return Math.max(capacity - max, 0);
+	}
+	
+	@Override
+	public void reserve(long from, long to, int capacity) {
+		PersistentRedBlackBST<LocalDate, Integer> next = tree;
+		for (long day = from; day < to; day++) {
+			LocalDate date = LocalDate.ofEpochDay(day);
+			Integer checkVal = next.get(date);
+			next = next.put(date, (checkVal == null ? 0 : checkVal) + 1);
+		}
+		tree = next;
+	}
+	
+	@Override
+	public void release(long from, long to, int capacity) {
+		PersistentRedBlackBST<LocalDate, Integer> next = tree;
+		for (long day = from; day < to; day++) {
+			LocalDate date = LocalDate.ofEpochDay(day);
+			Integer checkVal = next.get(date);
+			next = next.put(date, Math.max((checkVal == null ? 0 : checkVal) - 1, 0));
+		}
+		tree = next;
+	}
+	
+	@Override
+	public boolean hasLockFreeReads() {
+		return true;
+	}
+	
+	@Override
+	public int height() {
+		return tree.height();
+	}
+}
@@ -0,0 +1,81 @@
+package HotelBookingSystem;
+
+import java.util.Arrays;
+
+/**
+ * BookingCalendar backed by a LongIntRedBlackBST keyed by epoch day. It keeps the ordered-tree behaviour of
+ * TreeCalendar, but with primitive keys and values in array-backed nodes, so that checking and booking a stay do not
+ * allocate.
+ * @author Jonathan Janzen
+ *
+ */
+public class PrimitiveTreeCalendar implements BookingCalendar {
+	
+	private LongIntRedBlackBST tree;
+	
+	/**
+	 * Constructor for an empty PrimitiveTreeCalendar.
+	 */
+	public PrimitiveTreeCalendar() {
+		this.tree = new LongIntRedBlackBST();
+	}
+	
+	@Override
+	public int get(long day) {
+		return tree.get(day, EMPTY);
+	}
+	
+	@Override
+	public void put(long day, int booked) {
+		tree.put(day, booked);
+	}
+	
+	@Override
+	public int size() {
+		return tree.size();
+	}
+	
+	@Override
+	public void forEach(NightVisitor visitor) {
+		tree.forEach(Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+	}
+	
+	@Override
+	public int evictBefore(long day, NightVisitor evicted) {
+		//The array-backed tree has no deletion, so the nights that are kept are rebuilt bottom-up in O(n)
+		long[] days = new long[tree.size()];
+		int[] values = new int[days.length];
+		int[] kept = new int[1];
+		int removed = tree.size();
+		tree.forEach(Long.MIN_VALUE, day - 1, evicted);
+		tree.forEach(day, Long.MAX_VALUE, (keptDay, booked) -> {
+			days[kept[0]] = keptDay;
+			values[kept[0]++] = booked;
+		});
+		removed -= kept[0];
+		if (removed > 0) tree = new LongIntRedBlackBST(days, values, kept[0]);
+		return removed;
+	}
+	
+	@Override
+	public void load(long[] days, int[] values, int n) {
+		tree = new LongIntRedBlackBST(days, values, n);
+	}
+	
+	@Override
+	public void read(long from, int[] out, int offset, int length) {
+		if (length <= 0) return;
+		Arrays.fill(out, offset, offset + length, EMPTY);
+		tree.forEach(from, from + length - 1, (day, booked) -> out[offset + (int) (day - from)] = booked);
+	}
+	
+	@Override
+	public int height() {
+		return tree.height();
+	}
+	
+	@Override
+	public long getRotations() {
+		return tree.getRotations();
+	}
+}
@@ -0,0 +1,88 @@
+package HotelBookingSystem;
+
+import java.time.LocalDate;
+
+/**
+ * A class which defines the availability of a RoomType over a range of nights, as returned by
+ * Bookings.checkAvailability(type, startDate, endDate). The minimum is the number of rooms that could
+ * be booked for the whole stay, and the bottleneck is the (earliest) night on which that minimum occurs.
+ * @author Jonathan Janzen
+ *
+ */
+public class RangeAvailability {
+	
+	private final RoomType type;
+	private final LocalDate startDate;
+	private final LocalDate endDate;
+	private final int minimum;
+	private final LocalDate bottleneck;
+	private final int[] nights;
+	
+	/**
+	 * Constructor for a RangeAvailability.
+	 * @param _type RoomType that was checked.
+	 * @param _startDate First night of the range.
+	 * @param _endDate Date after the last night of the range.
+	 * @param _minimum Smallest number of rooms available on any night of the range.
+	 * @param _bottleneck Earliest night on which the minimum occurs.
+	 * @param _nights Number of rooms available on each night of the range, or null if it was not requested.
+	 */
+	public RangeAvailability(RoomType _type, LocalDate _startDate, LocalDate _endDate, int _minimum,
+			LocalDate _bottleneck, int[] _nights) {
+		this.type = _type;
+		this.startDate = _startDate;
+		this.endDate = _endDate;
+		this.minimum = _minimum;
+		this.bottleneck = _bottleneck;
+		this.nights = _nights;
+	}
+	
+	/**
+	 * Getter for the RoomType that was checked.
+	 * @return RoomType of the range.
+	 */
+	public RoomType getType() {
+		return this.type;
+	}
+	
+	/**
+	 * Getter for the first night of the range.
+	 * @return LocalDate of the first night.
+	 */
+	public LocalDate getStartDate() {
+		return this.startDate;
+	}
+	
+	/**
+	 * Getter for the end of the range.
+	 * @return LocalDate after the last night of the range.
+	 */
+	public LocalDate getEndDate() {
+		return this.endDate;
+	}
+	
+	/**
+	 * Getter for the minimum availability over the range, i.e. how many rooms could be booked for the whole stay.
+	 * @return The smallest number of rooms available on any night of the range.
+	 */
+	public int getMinimum() {
+		return this.minimum;
+	}
+	
+	/**
+	 * Getter for the bottleneck night of the range.
+	 * @return The earliest night on which the minimum availability occurs.
+	 */
+	public LocalDate getBottleneck() {
+		return this.bottleneck;
+	}
+	
+	/**
+	 * Getter for the availability of each night of the range.
+	 * @return Array with the number of rooms available on each night (index 0 being the start date), or null
+	 * if per-night counts were not requested.
+	 */
+	public int[] getNights() {
+		return this.nights;
+	}
+}
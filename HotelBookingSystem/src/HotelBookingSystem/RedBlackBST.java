@@ -1,5 +1,8 @@
 package HotelBookingSystem;
 
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+
 /**
  * The following data structure and algorithms have been modified from the code
  * found in Sedgewick & Wayne's 4th Edition "Algorithms" textbook. A link to the textbook's 
@@ -9,12 +12,13 @@ package HotelBookingSystem;
  * @author Jonathan Janzen
  *
  */
-public class RedBlackBST<Key extends Comparable<Key>, Value> {
+public class RedBlackBST<Key extends Comparable<? super Key>, Value> {
 	
 	private static final boolean RED = true;
 	private static final boolean BLACK = false;
 	
 	private Node root;
+	private long rotations;	//number of rotations performed since the tree was created
 	
 	/**
 	 * Private class to define the Node datatype (for use in the BST)
@@ -52,6 +56,66 @@ public class RedBlackBST<Key extends Comparable<Key>, Value> {
 	public RedBlackBST() {
 	}
 	
+	/**
+	 * Constructor for a BST holding the given key-value pairs, built bottom-up in O(n) rather than by n calls
+	 * to put(). The keys are laid out as a 2-3 tree with every leaf at the same depth (3-nodes being a black
+	 * node with a red left child), so the result satisfies the same invariants as a tree built by put().
+	 * @param keys The keys, in strictly ascending order.
+	 * @param vals The value for each key.
+	 * @param n The number of pairs to be taken from the start of the two arrays.
+	 */
+	public RedBlackBST(Key[] keys, Value[] vals, int n) {
+		//Use the smallest black height that can hold n keys, i.e. the smallest b with 3^b - 1 >= n
+		int blackHeight = 0;
+		while (maxKeys(blackHeight) < n) blackHeight++;
+		root = build(keys, vals, 0, n, blackHeight);
+	}
+	
+	/**
+	 * Function to determine the largest number of keys a 2-3 tree of the given black height can hold.
+	 * @param blackHeight Number of black links on every path from the root to a leaf.
+	 * @return 3^blackHeight - 1, the number of keys in a tree made only of 3-nodes.
+	 */
+	private static long maxKeys(int blackHeight) {
+		long max = 1;
+		for (int i = 0; i < blackHeight; i++) max *= 3;
+		return max - 1;
+	}
+	
+	/**
+	 * Builds a subtree of the given black height from a run of sorted keys. A 2-3 tree of black height b holds
+	 * between 2^b - 1 and 3^b - 1 keys, so the root is a 2-node whenever the children can hold the remaining
+	 * keys between them, and a 3-node otherwise.
+	 * @param keys The sorted keys.
+	 * @param vals The value for each key.
+	 * @param lo Index of the first key of the subtree.
+	 * @param n Number of keys in the subtree.
+	 * @param blackHeight Black height of the subtree.
+	 * @return The root of the subtree (null if n is 0).
+	 */
+	private Node build(Key[] keys, Value[] vals, int lo, int n, int blackHeight) {
+		if (n == 0) return null;
+		if (n - 1 <= 2 * maxKeys(blackHeight - 1)) {
+			//2-node: split the remaining keys evenly between the two children
+			int left = n - 1 - (n - 1) / 2;
+			Node h = new Node(keys[lo + left], vals[lo + left], BLACK, n);
+			h.left = build(keys, vals, lo, left, blackHeight - 1);
+			h.right = build(keys, vals, lo + left + 1, n - 1 - left, blackHeight - 1);
+			return h;
+		}
+		//3-node: split the remaining keys evenly between the three children
+		int m = n - 2;
+		int a = (m + 2) / 3;
+		int b = (m + 1) / 3;
+		Node x = new Node(keys[lo + a], vals[lo + a], RED, a + b + 1);
+		x.left = build(keys, vals, lo, a, blackHeight - 1);
+		x.right = build(keys, vals, lo + a + 1, b, blackHeight - 1);
+		Node h = new Node(keys[lo + a + 1 + b], vals[lo + a + 1 + b], BLACK, n);
+		h.left = x;
+		h.right = build(keys, vals, lo + a + b + 2, m - a - b, blackHeight - 1);
+		return h;
+	}
+	
 	/**
 	 * Function to determine if a given node is red.
 	 * @param x Node to be tested.
@@ -89,6 +153,34 @@ public class RedBlackBST<Key extends Comparable<Key>, Value> {
 		return root == null;
 	}
 	
+	/**
+	 * Function to determine the height of the tree, i.e. the number of links on the longest path from the root to a
+	 * leaf. Walks the whole tree, so it is meant for monitoring rather than for the hot path.
+	 * @return The height of the tree (-1 if the tree is empty).
+	 */
+	public int height() {
+		return height(root);
+	}
+	
+	/**
+	 * Function to determine the height of the subtree rooted at x.
+	 * @param x The root node.
+	 * @return The height of the subtree (-1 if x is null).
+	 */
+	private int height(Node x) {
+		if (x == null) return -1;
+		return 1 + Math.max(height(x.left), height(x.right));
+	}
+	
+	/**
+	 * Number of rotations performed by put() and the deletions since the tree was created, a measure of how much
+	 * rebalancing the insertions cause.
+	 * @return The number of rotations.
+	 */
+	public long getRotations() {
+		return rotations;
+	}
+	
 	/**
 	 * Function to return the value associated with a given key.
 	 * @param key Key to find the value of.
@@ -115,6 +207,55 @@ public class RedBlackBST<Key extends Comparable<Key>, Value> {
 		return null;
 	}
 	
+	/**
+	 * Visits every key-value pair in the tree, in ascending order of key.
+	 * @param visitor Function called with each key and its value.
+	 */
+	public void forEach(BiConsumer<? super Key, ? super Value> visitor) {
+		forEach(root, visitor);
+	}
+	
+	/**
+	 * Visits every key-value pair of the subtree rooted at x, in order.
+	 * @param x The root node of the subtree.
+	 * @param visitor Function called with each key and its value.
+	 */
+	private void forEach(Node x, BiConsumer<? super Key, ? super Value> visitor) {
+		if (x == null) return;
+		forEach(x.left, visitor);
+		visitor.accept(x.key, x.val);
+		forEach(x.right, visitor);
+	}
+	
+	/**
+	 * Visits every key-value pair with a key between lo and hi (both inclusive), in ascending order of key.
+	 * Subtrees that lie entirely outside of the range are skipped, so a range of m keys costs O(lg n + m).
+	 * @param lo The smallest key to be visited.
+	 * @param hi The largest key to be visited.
+	 * @param visitor Function called with each key and its value.
+	 */
+	public void forEach(Key lo, Key hi, BiConsumer<? super Key, ? super Value> visitor) {
+		if (lo == null) throw new IllegalArgumentException("First argument to forEach() is null.");
+		if (hi == null) throw new IllegalArgumentException("Second argument to forEach() is null.");
+		forEach(root, lo, hi, visitor);
+	}
+	
+	/**
+	 * Visits the key-value pairs of the subtree rooted at x with a key between lo and hi, in order.
+	 * @param x The root node of the subtree.
+	 * @param lo The smallest key to be visited.
+	 * @param hi The largest key to be visited.
+	 * @param visitor Function called with each key and its value.
+	 */
+	private void forEach(Node x, Key lo, Key hi, BiConsumer<? super Key, ? super Value> visitor) {
+		if (x == null) return;
+		int cmplo = lo.compareTo(x.key);
+		int cmphi = hi.compareTo(x.key);
+		if (cmplo < 0) forEach(x.left, lo, hi, visitor);
+		if (cmplo <= 0 && cmphi >= 0) visitor.accept(x.key, x.val);
+		if (cmphi > 0) forEach(x.right, lo, hi, visitor);
+	}
+	
 	/**
 	 * Insert the key-value pair specified into the BST, overwriting the previous
 	 * value if it already exists.
@@ -152,6 +293,99 @@ public class RedBlackBST<Key extends Comparable<Key>, Value> {
 		return h;
 	}
 	
+	/**
+	 * Function to return the smallest key in the tree.
+	 * @return The smallest key.
+	 * @throws NoSuchElementException If the tree is empty.
+	 */
+	public Key min() {
+		if (isEmpty()) throw new NoSuchElementException("Called min() with an empty tree.");
+		return min(root).key;
+	}
+	
+	/**
+	 * Function to find the node with the smallest key in the subtree rooted at x.
+	 * @param x The root node (not null).
+	 * @return The node with the smallest key.
+	 */
+	private Node min(Node x) {
+		while (x.left != null) x = x.left;
+		return x;
+	}
+	
+	/**
+	 * Removes the smallest key (and its value) from the tree.
+	 * @throws NoSuchElementException If the tree is empty.
+	 */
+	public void deleteMin() {
+		if (isEmpty()) throw new NoSuchElementException("Called deleteMin() with an empty tree.");
+		
+		//If both children of the root are black, set the root to red
+		if (!isRed(root.left) && !isRed(root.right)) root.colour = RED;
+		root = deleteMin(root);
+		if (!isEmpty()) root.colour = BLACK;
+	}
+	
+	/**
+	 * Removes the smallest key from the subtree rooted at h.
+	 * @param h The root node.
+	 * @return The root of the subtree after the deletion.
+	 */
+	private Node deleteMin(Node h) {
+		if (h.left == null) return null;
+		
+		if (!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeft(h);
+		h.left = deleteMin(h.left);
+		return balance(h);
+	}
+	
+	/**
+	 * Removes every key smaller than the given key, smallest first, e.g. to drop a run of past dates in one call.
+	 * Each deletion is O(lg n).
+	 * @param key Every key smaller than this is removed.
+	 * @param visitor Function called with each key and its value before it is removed.
+	 * @return The number of keys removed.
+	 */
+	public int deleteBelow(Key key, BiConsumer<? super Key, ? super Value> visitor) {
+		int deleted = 0;
+		while (!isEmpty()) {
+			Node smallest = min(root);
+			if (smallest.key.compareTo(key) >= 0) break;
+			visitor.accept(smallest.key, smallest.val);
+			deleteMin();
+			deleted++;
+		}
+		return deleted;
+	}
+	
+	/**
+	 * Assuming that h is red and both h.left and h.left.left are black, makes h.left or one of its children red.
+	 * @param h The node whose left child is to be made red.
+	 * @return The root of the subtree after the change.
+	 */
+	private Node moveRedLeft(Node h) {
+		flipColours(h);
+		if (isRed(h.right.left)) {
+			h.right = rotateRight(h.right);
+			h = rotateLeft(h);
+			flipColours(h);
+		}
+		return h;
+	}
+	
+	/**
+	 * Restores the red-black invariants of the subtree rooted at h on the way back up from a deletion.
+	 * @param h The root node.
+	 * @return The root of the subtree after the change.
+	 */
+	private Node balance(Node h) {
+		if (isRed(h.right) && !isRed(h.left)) h = rotateLeft(h);
+		if (isRed(h.left) && isRed(h.left.left)) h = rotateRight(h);
+		if (isRed(h.left) && isRed(h.right)) flipColours(h);
+		h.size = size(h.left) + size(h.right) + 1;
+		return h;
+	}
+	
 	/**
 	 * Function to make a left leaning link lean to the right.
 	 * @param h Node upon which to rotate.
@@ -159,6 +393,7 @@ public class RedBlackBST<Key extends Comparable<Key>, Value> {
 	 */
 	private Node rotateRight(Node h) {
 		assert (h != null) && isRed(h.left);
+		rotations++;
 		Node x = h.left;
 		h.left = x.right;
 		x.right = h;
@@ -176,6 +411,7 @@ public class RedBlackBST<Key extends Comparable<Key>, Value> {
 	 */
 	private Node rotateLeft(Node h) {
 		assert (h != null) && isRed(h.right);
+		rotations++;
 		Node x = h.right;
 		h.right = x.left;
 		x.left = h;
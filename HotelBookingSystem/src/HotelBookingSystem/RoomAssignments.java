@@ -0,0 +1,263 @@
+package HotelBookingSystem;
+
+import java.util.Arrays;
+
+/**
+ * Record of which physical room of a single RoomType is occupied on each night, so that every booking can be given
+ * a concrete room (numbered from 0 within its type) rather than only being counted against the type's capacity.
+ * 
+ * Each night is a bitset of its occupied rooms, stored as a fixed number of longs (one bit per room) in a single
+ * long[] indexed by the offset of the night from a base epoch day, which grows in whole chunks in the same way as
+ * an ArrayCalendar. A room that is free over a whole stay is found 64 rooms at a time: the words of the nights of
+ * the stay are ORed together, so each word of candidates costs one array read per night.
+ * 
+ * Among the rooms that are free over the whole stay, assign() picks the best fit: the one whose free gap around the
+ * stay is smallest, i.e. whose neighbouring bookings (looked for up to FIT_SCAN_NIGHTS nights before and after the
+ * stay) are closest. Short stays therefore fill the holes between existing bookings, and long runs of free nights
+ * are kept whole for the long stays that need them. The gaps are also measured a word of candidates at a time.
+ * 
+ * A RoomAssignments object is not thread-safe; Bookings only uses it under the write lock of its RoomType.
+ * @author Jonathan Janzen
+ *
+ */
+public class RoomAssignments {
+	
+	public static final int NO_ROOM = -1;
+	//Distance before and after a stay within which a neighbouring booking makes a room a better fit
+	public static final int FIT_SCAN_NIGHTS = 28;
+	
+	private static final int CHUNK_SIZE = 512;
+	
+	private int words;			//longs per night, i.e. room capacity / 64
+	private long baseDay;		//epoch day stored at index 0
+	private long[] occupied;	//words longs per night by offset from baseDay, a set bit is an occupied room
+	private final int[] gaps;	//free nights around the stay of each candidate in a word (scratch space)
+	
+	/**
+	 * Constructor for an empty RoomAssignments object, with no room occupied on any night.
+	 */
+	public RoomAssignments() {
+		this.words = 1;
+		this.occupied = new long[0];
+		this.gaps = new int[Long.SIZE];
+	}
+	
+	/**
+	 * Finds the best-fitting room that is free on every night of a stay and marks it as occupied over the stay.
+	 * @param startDay First night of the stay, as an epoch day.
+	 * @param endDay Day after the last night of the stay, as an epoch day (after startDay).
+	 * @param rooms Number of rooms of the type, i.e. rooms 0 to rooms - 1 may be assigned.
+	 * @return The room assigned, or NO_ROOM if no single room is free over the whole stay.
+	 */
+	public int assign(long startDay, long endDay, int rooms) {
+		int room = findRoom(startDay, endDay, rooms);
+		if (room != NO_ROOM) occupy(room, startDay, endDay);
+		return room;
+	}
+	
+	/**
+	 * Finds the best-fitting room that is free on every night of a stay, without occupying it.
+	 * @param startDay First night of the stay, as an epoch day.
+	 * @param endDay Day after the last night of the stay, as an epoch day (after startDay).
+	 * @param rooms Number of rooms of the type, i.e. rooms 0 to rooms - 1 may be chosen.
+	 * @return The room found, or NO_ROOM if no single room is free over the whole stay.
+	 */
+	public int findRoom(long startDay, long endDay, int rooms) {
+		int bestRoom = NO_ROOM;
+		int bestGap = Integer.MAX_VALUE;
+		int lastWord = Math.min((rooms + Long.SIZE - 1) / Long.SIZE, words);
+		for (int w = 0; w < lastWord; w++) {
+			//Candidates are the rooms of this word that exist, less any occupied on a night of the stay
+			long free = w == rooms / Long.SIZE ? (1L << (rooms % Long.SIZE)) - 1 : -1L;
+			for (long day = startDay; day < endDay && free != 0; day++) free &= ~word(day, w);
+			if (free == 0) continue;
+			
+			//Measure the free gap on each side of the stay for every candidate at once: a candidate drops out of
+			//the scan on the first night (counting outwards) on which it is occupied
+			Arrays.fill(gaps, 0);
+			measureGaps(free, startDay - 1, -1, w);
+			measureGaps(free, endDay, 1, w);
+			for (long candidates = free; candidates != 0; candidates &= candidates - 1) {
+				int bit = Long.numberOfTrailingZeros(candidates);
+				if (gaps[bit] < bestGap) {
+					bestGap = gaps[bit];
+					bestRoom = w * Long.SIZE + bit;
+				}
+			}
+			//A room that exactly fills its hole cannot be bettered
+			if (bestGap == 0) break;
+		}
+		//Rooms beyond the words stored so far have never been occupied
+		if (bestRoom == NO_ROOM && rooms > words * Long.SIZE) bestRoom = words * Long.SIZE;
+		return bestRoom;
+	}
+	
+	/**
+	 * Adds the free nights on one side of a stay to the gap of every candidate room of a word.
+	 * @param candidates Bitset of the candidate rooms of the word.
+	 * @param firstDay The night next to the stay on that side.
+	 * @param step -1 to scan the nights before the stay, 1 for the nights after it.
+	 * @param w Index of the word.
+	 */
+	private void measureGaps(long candidates, long firstDay, int step, int w) {
+		long alive = candidates;
+		for (int k = 0; k < FIT_SCAN_NIGHTS && alive != 0; k++) {
+			long ended = alive & word(firstDay + k * step, w);
+			alive &= ~ended;
+			for (; ended != 0; ended &= ended - 1) gaps[Long.numberOfTrailingZeros(ended)] += k;
+		}
+		for (; alive != 0; alive &= alive - 1) gaps[Long.numberOfTrailingZeros(alive)] += FIT_SCAN_NIGHTS;
+	}
+	
+	/**
+	 * Marks a room as occupied on every night of a stay.
+	 * @param room The room to be occupied.
+	 * @param startDay First night of the stay, as an epoch day.
+	 * @param endDay Day after the last night of the stay, as an epoch day.
+	 */
+	public void occupy(int room, long startDay, long endDay) {
+		if (room < 0) throw new IllegalArgumentException("Rooms are numbered from 0.");
+		if (startDay >= endDay) return;
+		ensureWords(room / Long.SIZE + 1);
+		ensureCapacity(startDay);
+		ensureCapacity(endDay - 1);
+		long bit = 1L << (room % Long.SIZE);
+		int index = (int) (startDay - baseDay) * words + room / Long.SIZE;
+		for (long day = startDay; day < endDay; day++, index += words) occupied[index] |= bit;
+	}
+	
+	/**
+	 * Marks a room as free on every night of a stay (e.g. when its booking is cancelled).
+	 * @param room The room to be freed.
+	 * @param startDay First night of the stay, as an epoch day.
+	 * @param endDay Day after the last night of the stay, as an epoch day.
+	 */
+	public void release(int room, long startDay, long endDay) {
+		if (room < 0 || room >= words * Long.SIZE) return;
+		long bit = 1L << (room % Long.SIZE);
+		long from = Math.max(startDay, baseDay);
+		long to = Math.min(endDay, baseDay + nights());
+		for (long day = from; day < to; day++) occupied[(int) (day - baseDay) * words + room / Long.SIZE] &= ~bit;
+	}
+	
+	/**
+	 * Function to determine whether a room is occupied on a night.
+	 * @param room The room to be checked.
+	 * @param day The night to be checked, as an epoch day.
+	 * @return True if the room is occupied on that night.
+	 */
+	public boolean isOccupied(int room, long day) {
+		if (room < 0 || room >= words * Long.SIZE) return false;
+		return (word(day, room / Long.SIZE) & (1L << (room % Long.SIZE))) != 0;
+	}
+	
+	/**
+	 * Function to determine whether a room is free on every night of a stay.
+	 * @param room The room to be checked.
+	 * @param startDay First night of the stay, as an epoch day.
+	 * @param endDay Day after the last night of the stay, as an epoch day.
+	 * @return True if the room is not occupied on any night of the stay.
+	 */
+	public boolean isFree(int room, long startDay, long endDay) {
+		if (room < 0) return false;
+		for (long day = startDay; day < endDay; day++) {
+			if (isOccupied(room, day)) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Function to list the rooms occupied on a night.
+	 * @param day The night to be listed, as an epoch day.
+	 * @return The occupied rooms, in increasing order.
+	 */
+	public int[] occupiedRooms(long day) {
+		int count = 0;
+		for (int w = 0; w < words; w++) count += Long.bitCount(word(day, w));
+		int[] rooms = new int[count];
+		int n = 0;
+		for (int w = 0; w < words; w++) {
+			for (long bits = word(day, w); bits != 0; bits &= bits - 1) {
+				rooms[n++] = w * Long.SIZE + Long.numberOfTrailingZeros(bits);
+			}
+		}
+		return rooms;
+	}
+	
+	/**
+	 * Forgets every night before the given day, dropping the whole chunks before it (in the same way as
+	 * ArrayCalendar.evictBefore()).
+	 * @param day The first night to be kept, as an epoch day.
+	 */
+	public void evictBefore(long day) {
+		if (occupied.length == 0 || day <= baseDay) return;
+		int end = (int) Math.min(day - baseDay, nights());
+		Arrays.fill(occupied, 0, end * words, 0);
+		long newBase = Math.min(Math.floorDiv(day, CHUNK_SIZE) * CHUNK_SIZE, baseDay + nights());
+		if (newBase > baseDay) {
+			occupied = Arrays.copyOfRange(occupied, (int) (newBase - baseDay) * words, occupied.length);
+			baseDay = newBase;
+		}
+	}
+	
+	/**
+	 * Function to get one word of the bitset of a night.
+	 * @param day The night, as an epoch day.
+	 * @param w Index of the word.
+	 * @return The occupied rooms of the word on that night (0 for a night that has never been written).
+	 */
+	private long word(long day, int w) {
+		long offset = day - baseDay;
+		if (offset < 0 || offset >= nights()) return 0;
+		return occupied[(int) offset * words + w];
+	}
+	
+	/**
+	 * Function to get the number of nights covered by the backing array.
+	 * @return Length of the backing array in nights.
+	 */
+	private int nights() {
+		return occupied.length / words;
+	}
+	
+	/**
+	 * Widens the bitset of every night so that it holds at least the given number of words.
+	 * @param needed Number of words each night must hold.
+	 */
+	private void ensureWords(int needed) {
+		if (needed <= words) return;
+		int grown = Math.max(needed, 2 * words);
+		long[] copy = new long[nights() * grown];
+		for (int night = 0; night < nights(); night++) System.arraycopy(occupied, night * words, copy, night * grown, words);
+		occupied = copy;
+		words = grown;
+	}
+	
+	/**
+	 * Grows the backing array (in whole chunks of nights) so that it covers the given night. Growth is at least the
+	 * current length so that repeatedly booking further into the future stays amortised O(1).
+	 * @param day The night that must be addressable after the call.
+	 */
+	private void ensureCapacity(long day) {
+		if (occupied.length == 0) {
+			//First write: allocate the single chunk containing the day
+			baseDay = Math.floorDiv(day, CHUNK_SIZE) * CHUNK_SIZE;
+			occupied = new long[CHUNK_SIZE * words];
+			return;
+		}
+		long lowDay = baseDay;
+		long highDay = baseDay + nights();
+		if (day >= lowDay && day < highDay) return;
+		
+		if (day < lowDay) lowDay = Math.min(Math.floorDiv(day, CHUNK_SIZE) * CHUNK_SIZE, lowDay - nights());
+		else highDay = Math.max((Math.floorDiv(day, CHUNK_SIZE) + 1) * CHUNK_SIZE, highDay + nights());
+		if ((highDay - lowDay) * words > Integer.MAX_VALUE - CHUNK_SIZE) {
+			throw new IllegalArgumentException("Date range is too large for a RoomAssignments object.");
+		}
+		
+		long[] grown = new long[(int) (highDay - lowDay) * words];
+		System.arraycopy(occupied, 0, grown, (int) (baseDay - lowDay) * words, occupied.length);
+		occupied = grown;
+		baseDay = lowDay;
+	}
+}
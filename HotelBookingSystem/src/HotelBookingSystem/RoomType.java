@@ -1,32 +1,214 @@
 package HotelBookingSystem;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
 /**
- * Enumerated class for different types of rooms. A sequence of four possibilities has been chosen
- * as an example.
+ * Class for the different types of rooms. Four types are always registered as an example (DOUBLE, TWIN, QUEEN and
+ * KING), and any number of further types (up to MAX_TYPES) can be registered by name when the program starts, e.g.
+ * from a file with load(), so that the room categories of a property can change without a recompile.
+ * 
+ * Each type is given a dense numerical value in the order in which it is registered, starting from 0, so that the
+ * state kept for each type (its calendar, lock, number of rooms and so on) can be held in flat arrays indexed by that
+ * value. As those arrays are sized when they are created, every type must be registered before any Bookings (or
+ * other object keeping per-type state) is created. The journal and snapshots store each type by its value, along
+ * with a table of the names of the types, so that they can still be read after types are added, removed or
+ * reordered.
  * @author Jonathan Janzen
  *
  */
-public enum RoomType {
-	DOUBLE(0),
-	TWIN(1),
-	QUEEN(2),
-	KING(3);
+public final class RoomType {
+	
+	//Types are stored as a single unsigned byte in the journal, the ledger and snapshots
+	public static final int MAX_TYPES = 256;
+	
+	private static volatile RoomType[] registered = new RoomType[0];
+	
+	public static final RoomType DOUBLE = register("DOUBLE");
+	public static final RoomType TWIN = register("TWIN");
+	public static final RoomType QUEEN = register("QUEEN");
+	public static final RoomType KING = register("KING");
 	
+	private static final int BUILT_IN_TYPES = 4;
+	
+	private final String name;
 	private final int value;
 	
 	/**
-	 * Private constructor, used to define the numerical value of each item.
-	 * @param _value Numerical value to be assigned to the enumerated type.
+	 * Private constructor, used to define the name and numerical value of each type.
+	 * @param _name Name of the type.
+	 * @param _value Numerical value to be assigned to the type.
 	 */
-	private RoomType(int _value) {
+	private RoomType(String _name, int _value) {
+		this.name = _name;
 		this.value = _value;
 	}
 	
 	/**
-	 * Getter for the value of the enumerated class (used for indexing the Rooms list)
+	 * Registers a new type, giving it the next numerical value. Registering a name that is already registered returns
+	 * the existing type, so a file of types may also list the built-in ones.
+	 * @param name Name of the type: a single word, unique regardless of case.
+	 * @return The type with that name.
+	 * @throws IllegalArgumentException If the name is not a single word, differs only in case from a registered
+	 * name, or MAX_TYPES types are already registered.
+	 */
+	public static synchronized RoomType register(String name) {
+		if (name.isEmpty() || !name.chars().allMatch(c -> c > ' ' && c < 0x7f)) {
+			throw new IllegalArgumentException("A room type name must be a single word: \"" + name + "\".");
+		}
+		for (RoomType type : registered) {
+			if (type.name.equals(name)) return type;
+			if (type.name.equalsIgnoreCase(name)) {
+				throw new IllegalArgumentException("The room type " + name + " is already registered as " + type.name + ".");
+			}
+		}
+		if (registered.length == MAX_TYPES) throw new IllegalArgumentException("At most " + MAX_TYPES + " room types can be registered.");
+		RoomType type = new RoomType(name, registered.length);
+		RoomType[] grown = Arrays.copyOf(registered, registered.length + 1);
+		grown[type.value] = type;
+		registered = grown;
+		return type;
+	}
+	
+	/**
+	 * Registers every type listed in a file, one name per line, in order. Blank lines and lines starting with '#'
+	 * are skipped.
+	 * @param path The file of room types.
+	 * @return The number of types registered in total (including the built-in types).
+	 * @throws IOException If the file cannot be read.
+	 */
+	public static int load(Path path) throws IOException {
+		for (String line : Files.readAllLines(path)) {
+			String name = line.trim();
+			if (name.isEmpty() || name.startsWith("#")) continue;
+			register(name);
+		}
+		return count();
+	}
+	
+	/**
+	 * Forgets every type registered after the built-in ones, so that tests which register types of their own do not
+	 * leave them behind for the tests that follow. Objects created while those types were registered must not be
+	 * used afterwards.
+	 */
+	public static synchronized void reset() {
+		registered = Arrays.copyOf(registered, BUILT_IN_TYPES);
+	}
+	
+	/**
+	 * Function to get every registered type.
+	 * @return A new array holding the types, indexed by their numerical values.
+	 */
+	public static RoomType[] values() {
+		return registered.clone();
+	}
+	
+	/**
+	 * Function to get the number of registered types, without copying them.
+	 * @return The number of types, i.e. one more than the largest numerical value.
+	 */
+	public static int count() {
+		return registered.length;
+	}
+	
+	/**
+	 * Function to find a type by its numerical value.
+	 * @param value The numerical value.
+	 * @return The type with that value.
+	 * @throws IllegalArgumentException If no type has that value.
+	 */
+	public static RoomType fromValue(int value) {
+		RoomType[] types = registered;
+		if (value < 0 || value >= types.length) throw new IllegalArgumentException("There is no room type " + value + ".");
+		return types[value];
+	}
+	
+	/**
+	 * Function to find a type by its name.
+	 * @param name The name, which must match exactly.
+	 * @return The type with that name.
+	 * @throws IllegalArgumentException If no type has that name.
+	 */
+	public static RoomType valueOf(String name) {
+		for (RoomType type : registered) {
+			if (type.name.equals(name)) return type;
+		}
+		throw new IllegalArgumentException("There is no room type " + name + ".");
+	}
+	
+	/**
+	 * Writes a table of the names of the given types to a buffer: their number, and then the length and the ASCII
+	 * bytes of each name, in order of value.
+	 * @param buffer The buffer to be written to.
+	 * @param types The types, indexed by value.
+	 */
+	static void putNames(ByteBuffer buffer, RoomType[] types) {
+		buffer.putInt(types.length);
+		for (RoomType type : types) {
+			byte[] name = type.name.getBytes(StandardCharsets.US_ASCII);
+			buffer.putInt(name.length).put(name);
+		}
+	}
+	
+	/**
+	 * Function to get the number of bytes putNames() writes for the given types.
+	 * @param types The types, indexed by value.
+	 * @return The size of the table in bytes.
+	 */
+	static int namesSize(RoomType[] types) {
+		int size = Integer.BYTES;
+		for (RoomType type : types) size += Integer.BYTES + type.name.length();
+		return size;
+	}
+	
+	/**
+	 * Reads a table written by putNames() and finds the type now registered under each name, so that the values
+	 * stored alongside the table can be translated to the current values.
+	 * @param buffer The buffer to be read from, positioned at the table.
+	 * @return The registered type for each value in the table.
+	 * @throws IOException If the table is cut short, or names a type that is not registered.
+	 */
+	static RoomType[] getNames(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < Integer.BYTES) throw new IOException("The table of room types is truncated.");
+		int count = buffer.getInt();
+		if (count < 0 || count > MAX_TYPES) throw new IOException("The table of room types is not valid.");
+		RoomType[] types = new RoomType[count];
+		for (int t = 0; t < count; t++) {
+			int length = buffer.remaining() < Integer.BYTES ? -1 : buffer.getInt();
+			if (length < 0 || buffer.remaining() < length) throw new IOException("The table of room types is truncated.");
+			byte[] name = new byte[length];
+			buffer.get(name);
+			try {
+				types[t] = valueOf(new String(name, StandardCharsets.US_ASCII));
+			} catch (IllegalArgumentException ex) {
+				throw new IOException("The room type " + new String(name, StandardCharsets.US_ASCII) + " is not registered.");
+			}
+		}
+		return types;
+	}
+	
+	/**
+	 * Getter for the value of the type (used for indexing the per-type arrays)
 	 * @return Integer value that corresponds to the type.
 	 */
 	public int getValue() {
 		return this.value;
 	}
+	
+	/**
+	 * Getter for the name of the type.
+	 * @return The name the type was registered under.
+	 */
+	public String name() {
+		return this.name;
+	}
+	
+	@Override
+	public String toString() {
+		return this.name;
+	}
 }
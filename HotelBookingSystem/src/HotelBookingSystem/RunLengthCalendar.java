@@ -0,0 +1,294 @@
+package HotelBookingSystem;
+
+import java.util.Arrays;
+
+/**
+ * BookingCalendar that stores runs of consecutive nights with the same number of rooms booked, rather than one entry
+ * per night. Each run covers the nights [start, end) and holds a single value, and the runs are kept in start order in
+ * three parallel primitive arrays. A night that is not covered by any run has never been written.
+ * 
+ * Long stays and block bookings leave long stretches of nights with the same number of rooms booked, so memory (and
+ * the cost of range queries) scales with the number of changes in the calendar rather than with the number of
+ * nights. A write splits the runs at the edges of its range and rewrites the runs inside it, and then merges any
+ * neighbouring runs that have ended up with the same value, so cancelling a booking gives back its runs as well as
+ * its rooms. Range queries (minAvailable(), bottleneck(), earliestWindow()) look at each run of the range once.
+ * 
+ * Finding a night is a binary search over the runs. Inserting a run shifts the runs after it along the arrays, which
+ * costs O(r) for r runs but is a single System.arraycopy(), and r stays small for the inventories this is meant for.
+ * @author Jonathan Janzen
+ *
+ */
+public class RunLengthCalendar implements BookingCalendar {
+	
+	private static final int INITIAL_RUNS = 16;
+	
+	private long[] starts;		//first night of each run, as an epoch day, in increasing order
+	private long[] ends;		//day after the last night of each run (never after the start of the next run)
+	private int[] values;		//rooms booked on every night of each run
+	private int runs;			//number of runs in use
+	private int size;			//number of nights covered by the runs
+	
+	//Runs replacing part of the calendar while it is being rewritten (scratch space)
+	private long[] newStarts;
+	private long[] newEnds;
+	private int[] newValues;
+	
+	/**
+	 * Constructor for an empty RunLengthCalendar.
+	 */
+	public RunLengthCalendar() {
+		this.starts = new long[INITIAL_RUNS];
+		this.ends = new long[INITIAL_RUNS];
+		this.values = new int[INITIAL_RUNS];
+		this.newStarts = new long[INITIAL_RUNS];
+		this.newEnds = new long[INITIAL_RUNS];
+		this.newValues = new int[INITIAL_RUNS];
+	}
+	
+	@Override
+	public int get(long day) {
+		int i = runBefore(day);
+		return i >= 0 && day < ends[i] ? values[i] : EMPTY;
+	}
+	
+	@Override
+	public void put(long day, int booked) {
+		if (booked < 0) throw new IllegalArgumentException("The number of rooms booked must not be negative.");
+		update(day, day + 1, 0, booked, true);
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Function to get the number of runs stored, for monitoring how well the calendar is compressed.
+	 * @return The number of runs.
+	 */
+	public int runCount() {
+		return runs;
+	}
+	
+	@Override
+	public void forEach(NightVisitor visitor) {
+		for (int i = 0; i < runs; i++) {
+			for (long day = starts[i]; day < ends[i]; day++) visitor.visit(day, values[i]);
+		}
+	}
+	
+	@Override
+	public int evictBefore(long day, NightVisitor evicted) {
+		int removed = 0;
+		int kept = 0;
+		while (kept < runs && starts[kept] < day) {
+			long end = Math.min(ends[kept], day);
+			for (long night = starts[kept]; night < end; night++) evicted.visit(night, values[kept]);
+			removed += (int) (end - starts[kept]);
+			//A run across the cut keeps its later nights
+			if (ends[kept] > day) {
+				starts[kept] = day;
+				break;
+			}
+			kept++;
+		}
+		if (kept > 0) {
+			System.arraycopy(starts, kept, starts, 0, runs - kept);
+			System.arraycopy(ends, kept, ends, 0, runs - kept);
+			System.arraycopy(values, kept, values, 0, runs - kept);
+			runs -= kept;
+		}
+		size -= removed;
+		return removed;
+	}
+	
+	@Override
+	public void load(long[] days, int[] loaded, int n) {
+		runs = 0;
+		size = n;
+		for (int i = 0; i < n; i++) {
+			//Consecutive nights with the same value extend the last run
+			if (runs > 0 && ends[runs - 1] == days[i] && values[runs - 1] == loaded[i]) {
+				ends[runs - 1]++;
+				continue;
+			}
+			ensureRuns(runs + 1);
+			starts[runs] = days[i];
+			ends[runs] = days[i] + 1;
+			values[runs++] = loaded[i];
+		}
+	}
+	
+	@Override
+	public void read(long from, int[] out, int offset, int length) {
+		if (length <= 0) return;
+		long to = from + length;
+		Arrays.fill(out, offset, offset + length, EMPTY);
+		for (int i = firstRunAfter(from); i < runs && starts[i] < to; i++) {
+			Arrays.fill(out, offset + (int) (Math.max(starts[i], from) - from), offset + (int) (Math.min(ends[i], to) - from), values[i]);
+		}
+	}
+	
+	@Override
+	public int minAvailable(long from, long to, int capacity) {
+		if (from >= to) return Integer.MAX_VALUE;
+		int max = 0;
+		for (int i = firstRunAfter(from); i < runs && starts[i] < to && max < capacity; i++) max = Math.max(max, values[i]);
+		return Math.max(capacity - max, 0);
+	}
+	
+	@Override
+	public long bottleneck(long from, long to, int capacity) {
+		//The bottleneck is the first night with the most rooms booked, any night that is full being as bad as another
+		int first = firstRunAfter(from);
+		int max = 0;
+		for (int i = first; i < runs && starts[i] < to && max < capacity; i++) max = Math.max(max, values[i]);
+		int target = Math.min(max, capacity);
+		if (target <= 0) return from;
+		for (int i = first; i < runs && starts[i] < to; i++) {
+			if (values[i] >= target) return Math.max(starts[i], from);
+		}
+		return from;
+	}
+	
+	@Override
+	public long earliestWindow(long from, long to, int nights, int rooms, int capacity) {
+		//A night fits if at most limit of its rooms are booked, and nights outside of the runs have none booked
+		int limit = capacity - rooms;
+		if (limit < 0) return NOT_FOUND;
+		long start = from;
+		for (int i = firstRunAfter(from); i < runs && starts[i] < to && start + nights <= to; i++) {
+			if (values[i] <= limit) continue;
+			//This run breaks any window that reaches it, so the next candidate starts after it
+			if (start + nights <= starts[i]) return start;
+			start = Math.max(start, ends[i]);
+		}
+		return start + nights <= to ? start : NOT_FOUND;
+	}
+	
+	@Override
+	public void reserve(long from, long to, int capacity) {
+		update(from, to, 1, 1, false);
+	}
+	
+	@Override
+	public void release(long from, long to, int capacity) {
+		//As with the default, a night with no entry is written as having none booked
+		update(from, to, -1, 0, false);
+	}
+	
+	/**
+	 * Rewrites every night of a range, splitting the runs at the edges of the range and merging runs that end up next
+	 * to a run with the same value.
+	 * @param from The first night of the range (inclusive), as an epoch day.
+	 * @param to The last night of the range (exclusive), as an epoch day.
+	 * @param delta Amount added to the value of each night that has an entry (the result never going below 0).
+	 * @param fill Value given to each night with no entry, or EMPTY to leave such nights without one.
+	 * @param overwrite True to give every night of the range the value fill instead, regardless of delta.
+	 */
+	private void update(long from, long to, int delta, int fill, boolean overwrite) {
+		if (from >= to) return;
+		//The runs from lo (inclusive) to hi (exclusive) overlap the range or touch it, and are the only ones that
+		//can change or be merged
+		int lo = firstRunAfter(from);
+		if (lo > 0 && ends[lo - 1] == from) lo--;
+		int hi = lo;
+		while (hi < runs && starts[hi] <= to) hi++;
+		
+		ensureScratch(2 * (hi - lo) + 2);
+		int n = 0;
+		long cursor = from;
+		for (int i = lo; i < hi; i++) {
+			//The part of the run before the range, or the whole run if it only touches the range, is kept as it is
+			if (starts[i] < from) n = append(n, starts[i], Math.min(ends[i], from), values[i]);
+			long start = Math.max(starts[i], from);
+			long end = Math.min(ends[i], to);
+			//The gap before the run has no entries
+			if (fill != EMPTY) n = append(n, cursor, Math.min(Math.max(start, cursor), to), fill);
+			if (start < end) n = append(n, start, end, overwrite ? fill : Math.max(values[i] + delta, 0));
+			cursor = Math.max(cursor, end);
+			if (ends[i] > to) n = append(n, Math.max(starts[i], to), ends[i], values[i]);
+		}
+		if (fill != EMPTY) n = append(n, cursor, to, fill);
+		
+		//Replace the runs lo to hi with the new runs
+		int removed = 0;
+		for (int i = lo; i < hi; i++) removed += (int) (ends[i] - starts[i]);
+		int added = 0;
+		for (int i = 0; i < n; i++) added += (int) (newEnds[i] - newStarts[i]);
+		ensureRuns(runs - (hi - lo) + n);
+		System.arraycopy(starts, hi, starts, lo + n, runs - hi);
+		System.arraycopy(ends, hi, ends, lo + n, runs - hi);
+		System.arraycopy(values, hi, values, lo + n, runs - hi);
+		System.arraycopy(newStarts, 0, starts, lo, n);
+		System.arraycopy(newEnds, 0, ends, lo, n);
+		System.arraycopy(newValues, 0, values, lo, n);
+		runs += n - (hi - lo);
+		size += added - removed;
+	}
+	
+	/**
+	 * Adds a run to the end of the new runs, merging it into the last one if they touch and have the same value.
+	 * @param n Number of new runs so far.
+	 * @param start First night of the run, as an epoch day.
+	 * @param end Day after the last night of the run (an empty run is ignored).
+	 * @param value Rooms booked on every night of the run.
+	 * @return The number of new runs after the call.
+	 */
+	private int append(int n, long start, long end, int value) {
+		if (start >= end) return n;
+		if (n > 0 && newEnds[n - 1] == start && newValues[n - 1] == value) {
+			newEnds[n - 1] = end;
+			return n;
+		}
+		newStarts[n] = start;
+		newEnds[n] = end;
+		newValues[n] = value;
+		return n + 1;
+	}
+	
+	/**
+	 * Function to find the run containing a night, or the last run before it.
+	 * @param day The night, as an epoch day.
+	 * @return Index of the last run starting on or before day, or -1 if there is none.
+	 */
+	private int runBefore(long day) {
+		int i = Arrays.binarySearch(starts, 0, runs, day);
+		return i >= 0 ? i : -i - 2;
+	}
+	
+	/**
+	 * Function to find the first run that ends after a night, i.e. the first run that can overlap a range starting
+	 * on that night.
+	 * @param day The night, as an epoch day.
+	 * @return Index of the first run with an end after day, or runs if there is none.
+	 */
+	private int firstRunAfter(long day) {
+		int i = runBefore(day);
+		return i >= 0 && ends[i] > day ? i : i + 1;
+	}
+	
+	/**
+	 * Grows the run arrays so that they hold at least the given number of runs.
+	 * @param needed Number of runs that must fit.
+	 */
+	private void ensureRuns(int needed) {
+		if (needed <= starts.length) return;
+		int grown = Math.max(needed, 2 * starts.length);
+		starts = Arrays.copyOf(starts, grown);
+		ends = Arrays.copyOf(ends, grown);
+		values = Arrays.copyOf(values, grown);
+	}
+	
+	/**
+	 * Grows the scratch arrays so that they hold at least the given number of runs.
+	 * @param needed Number of runs that must fit.
+	 */
+	private void ensureScratch(int needed) {
+		if (needed <= newStarts.length) return;
+		int grown = Math.max(needed, 2 * newStarts.length);
+		newStarts = new long[grown];
+		newEnds = new long[grown];
+		newValues = new int[grown];
+	}
+}
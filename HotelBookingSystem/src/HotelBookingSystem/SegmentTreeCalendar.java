@@ -0,0 +1,563 @@
+package HotelBookingSystem;
+
+import java.util.Arrays;
+
+/**
+ * BookingCalendar backed by a range-max segment tree with lazy propagation over a contiguous range of
+ * epoch days, holding the rooms booked on each night. Both "what is the minimum availability over
+ * [from, to)?" (the capacity less the maximum booked) and "reserve one room on every night of [from, to)"
+ * take O(lg n) regardless of the length of the stay.
+ * 
+ * Every node also keeps the minimum over its written leaves, so that earliestWindow() can descend to "the
+ * first night with too many rooms booked" (using the maximum) and "the first night with few enough"
+ * (using the minimum) in O(lg n) each, jumping over whole runs of nights instead of scanning them.
+ * 
+ * Nights that have never been written have no rooms booked, but are still told apart from written nights
+ * (for size(), forEach() and read()), so every node keeps the minimum and maximum over its written leaves
+ * and a count of its unwritten leaves. A pending update on a node is a pair (add, fill): add is applied to
+ * written leaves, and unwritten leaves become written with the value fill (or stay unwritten if fill is
+ * NONE).
+ * 
+ * Queries never modify the tree (pending updates are accumulated on the way down instead of being pushed),
+ * so several threads can safely query a calendar as long as no thread is writing to it.
+ * @author Jonathan Janzen
+ *
+ */
+public class SegmentTreeCalendar implements BookingCalendar {
+	
+	private static final int INITIAL_LEAVES = 1024;
+	private static final int INF = Integer.MAX_VALUE;	//minimum of a node with no written leaves
+	private static final int NONE = Integer.MIN_VALUE;	//pending update does not fill unwritten leaves
+	private static final int NO_MAX = Integer.MIN_VALUE;	//maximum of a node with no written leaves
+	
+	private long baseDay;		//epoch day of the first leaf
+	private int leaves;			//number of leaves (a power of two), 0 before the first write
+	private int[] min;			//minimum over written leaves of the subtree, INF if there are none
+	private int[] max;			//maximum over written leaves of the subtree, NO_MAX if there are none
+	private int[] unwritten;	//number of unwritten leaves in the subtree
+	private int[] lazyAdd;		//pending add for the children of the node
+	private int[] lazyFill;		//pending fill for the children of the node, NONE if there is none
+	
+	/**
+	 * Constructor for an empty SegmentTreeCalendar.
+	 */
+	public SegmentTreeCalendar() {
+		this.leaves = 0;
+	}
+	
+	@Override
+	public int get(long day) {
+		if (day < baseDay || day >= baseDay + leaves) return EMPTY;
+		int offset = (int) (day - baseDay);
+		int node = 1, lo = 0, hi = leaves;
+		int accAdd = 0, accFill = NONE;
+		//Walk down to the leaf, accumulating the pending updates of its ancestors
+		while (node < leaves) {
+			//An update pending higher up is more recent than one pending lower down
+			accFill = lazyFill[node] != NONE ? lazyFill[node] + accAdd : accFill;
+			accAdd += lazyAdd[node];
+			int mid = (lo + hi) >>> 1;
+			if (offset < mid) {
+				node = 2 * node;
+				hi = mid;
+			} else {
+				node = 2 * node + 1;
+				lo = mid;
+			}
+		}
+		if (unwritten[node] > 0) return accFill == NONE ? EMPTY : accFill;
+		return min[node] + accAdd;
+	}
+	
+	@Override
+	public void put(long day, int booked) {
+		if (booked < 0) throw new IllegalArgumentException("The number of rooms booked must not be negative.");
+		ensureDomain(day, day + 1);
+		put(1, 0, leaves, (int) (day - baseDay), booked);
+	}
+	
+	/**
+	 * Writes a single leaf in the subtree rooted at node, pushing pending updates on the way down.
+	 * @param node Index of the subtree root.
+	 * @param lo First leaf offset covered by the node (inclusive).
+	 * @param hi Last leaf offset covered by the node (exclusive).
+	 * @param offset Offset of the leaf to be written.
+	 * @param booked Value to be written.
+	 */
+	private void put(int node, int lo, int hi, int offset, int booked) {
+		if (hi - lo == 1) {
+			min[node] = booked;
+			max[node] = booked;
+			unwritten[node] = 0;
+			return;
+		}
+		push(node);
+		int mid = (lo + hi) >>> 1;
+		if (offset < mid) put(2 * node, lo, mid, offset, booked);
+		else put(2 * node + 1, mid, hi, offset, booked);
+		pull(node);
+	}
+	
+	@Override
+	public int size() {
+		if (leaves == 0) return 0;
+		return leaves - unwritten[1];
+	}
+	
+	@Override
+	public void forEach(NightVisitor visitor) {
+		if (leaves > 0) forEach(1, 0, leaves, 0, NONE, visitor);
+	}
+	
+	/**
+	 * Visits the written leaves of the subtree rooted at node in order, without modifying the tree.
+	 * @param node Index of the subtree root.
+	 * @param lo First leaf offset covered by the node (inclusive).
+	 * @param hi Last leaf offset covered by the node (exclusive).
+	 * @param accAdd Add pending on the ancestors of the node.
+	 * @param accFill Fill pending on the ancestors of the node.
+	 * @param visitor Function called with each night and its number of rooms booked.
+	 */
+	private void forEach(int node, int lo, int hi, int accAdd, int accFill, NightVisitor visitor) {
+		if (min[node] == INF && accFill == NONE) return;
+		if (hi - lo == 1) {
+			if (unwritten[node] == 0) visitor.visit(baseDay + lo, min[node] + accAdd);
+			else visitor.visit(baseDay + lo, accFill);
+			return;
+		}
+		int childFill = lazyFill[node] != NONE ? lazyFill[node] + accAdd : accFill;
+		int childAdd = accAdd + lazyAdd[node];
+		int mid = (lo + hi) >>> 1;
+		forEach(2 * node, lo, mid, childAdd, childFill, visitor);
+		forEach(2 * node + 1, mid, hi, childAdd, childFill, visitor);
+	}
+	
+	@Override
+	public void load(long[] days, int[] values, int n) {
+		if (n == 0) return;
+		if (leaves > 0) {
+			BookingCalendar.super.load(days, values, n);
+			return;
+		}
+		//Set the leaves directly and build the internal nodes once
+		ensureDomain(days[0], days[n - 1] + 1);
+		for (int i = 0; i < n; i++) {
+			int leaf = leaves + (int) (days[i] - baseDay);
+			min[leaf] = values[i];
+			max[leaf] = values[i];
+			unwritten[leaf] = 0;
+		}
+		for (int node = leaves - 1; node >= 1; node--) pull(node);
+	}
+	
+	@Override
+	public int evictBefore(long day, NightVisitor evicted) {
+		if (leaves == 0 || day <= baseDay) return 0;
+		//Split the written leaves into those evicted and those kept, then build a new tree over the kept ones
+		long[] days = new long[size()];
+		int[] values = new int[days.length];
+		int[] kept = new int[1];
+		int[] removed = new int[1];
+		forEach((night, booked) -> {
+			if (night < day) {
+				evicted.visit(night, booked);
+				removed[0]++;
+			} else {
+				days[kept[0]] = night;
+				values[kept[0]++] = booked;
+			}
+		});
+		leaves = 0;
+		min = null;
+		max = null;
+		unwritten = null;
+		lazyAdd = null;
+		lazyFill = null;
+		load(days, values, kept[0]);
+		return removed[0];
+	}
+	
+	@Override
+	public void read(long from, int[] out, int offset, int length) {
+		Arrays.fill(out, offset, offset + length, EMPTY);
+		long lo = Math.max(from, baseDay);
+		long hi = Math.min(from + length, baseDay + leaves);
+		if (lo < hi) {
+			read(1, 0, leaves, (int) (lo - baseDay), (int) (hi - baseDay), 0, NONE, out, offset + (int) (baseDay - from));
+		}
+	}
+	
+	/**
+	 * Reads the leaves of the subtree rooted at node that lie in [from, to), without modifying the tree.
+	 * Subtrees with no written leaves are skipped unless a pending fill has been applied to them.
+	 * @param node Index of the subtree root.
+	 * @param lo First leaf offset covered by the node (inclusive).
+	 * @param hi Last leaf offset covered by the node (exclusive).
+	 * @param from First leaf offset to be read (inclusive).
+	 * @param to Last leaf offset to be read (exclusive).
+	 * @param accAdd Add pending on the ancestors of the node.
+	 * @param accFill Fill pending on the ancestors of the node.
+	 * @param out The array to be filled.
+	 * @param shift Index in out of leaf offset 0.
+	 */
+	private void read(int node, int lo, int hi, int from, int to, int accAdd, int accFill, int[] out, int shift) {
+		if (to <= lo || hi <= from) return;
+		if (min[node] == INF && accFill == NONE) return;
+		if (hi - lo == 1) {
+			if (unwritten[node] == 0) out[shift + lo] = min[node] + accAdd;
+			else if (accFill != NONE) out[shift + lo] = accFill;
+			return;
+		}
+		int childFill = lazyFill[node] != NONE ? lazyFill[node] + accAdd : accFill;
+		int childAdd = accAdd + lazyAdd[node];
+		int mid = (lo + hi) >>> 1;
+		read(2 * node, lo, mid, from, to, childAdd, childFill, out, shift);
+		read(2 * node + 1, mid, hi, from, to, childAdd, childFill, out, shift);
+	}
+	
+	@Override
+	public int minAvailable(long from, long to, int capacity) {
+		if (from >= to) return Integer.MAX_VALUE;
+		return Math.max(capacity - maxBooked(from, to), 0);
+	}
+	
+	/**
+	 * Function to find the most rooms booked on any night of a range, counting unwritten nights (including those
+	 * outside of the tree) as having none.
+	 * @param from The first night of the range (inclusive), as an epoch day.
+	 * @param to The last night of the range (exclusive), as an epoch day. Must be after from.
+	 * @return The maximum number of rooms booked.
+	 */
+	private int maxBooked(long from, long to) {
+		long lo = Math.max(from, baseDay);
+		long hi = Math.min(to, baseDay + leaves);
+		if (lo >= hi) return 0;
+		return maxBooked(1, 0, leaves, (int) (lo - baseDay), (int) (hi - baseDay), 0, NONE);
+	}
+	
+	/**
+	 * Range-max query over the subtree rooted at node, without modifying the tree.
+	 * @param node Index of the subtree root.
+	 * @param lo First leaf offset covered by the node (inclusive).
+	 * @param hi Last leaf offset covered by the node (exclusive).
+	 * @param from First leaf offset of the query (inclusive).
+	 * @param to Last leaf offset of the query (exclusive).
+	 * @param accAdd Add pending on the ancestors of the node.
+	 * @param accFill Fill pending on the ancestors of the node.
+	 * @return The maximum number of rooms booked over the part of the query covered by the node.
+	 */
+	private int maxBooked(int node, int lo, int hi, int from, int to, int accAdd, int accFill) {
+		if (to <= lo || hi <= from) return 0;
+		if (from <= lo && hi <= to) return nodeMax(node, accAdd, accFill);
+		int childFill = lazyFill[node] != NONE ? lazyFill[node] + accAdd : accFill;
+		int childAdd = accAdd + lazyAdd[node];
+		int mid = (lo + hi) >>> 1;
+		return Math.max(maxBooked(2 * node, lo, mid, from, to, childAdd, childFill),
+				maxBooked(2 * node + 1, mid, hi, from, to, childAdd, childFill));
+	}
+	
+	/**
+	 * Function to get the minimum number of rooms booked over a whole subtree, with the updates pending on its
+	 * ancestors applied.
+	 * @param node Index of the subtree root.
+	 * @param accAdd Add pending on the ancestors of the node.
+	 * @param accFill Fill pending on the ancestors of the node.
+	 * @return The minimum over the subtree, an unwritten leaf counting as 0 (or as the pending fill).
+	 */
+	private int nodeMin(int node, int accAdd, int accFill) {
+		int result = min[node] == INF ? Integer.MAX_VALUE : min[node] + accAdd;
+		if (unwritten[node] > 0) result = Math.min(result, accFill == NONE ? 0 : accFill);
+		return result;
+	}
+	
+	/**
+	 * Function to get the maximum number of rooms booked over a whole subtree, with the updates pending on its
+	 * ancestors applied.
+	 * @param node Index of the subtree root.
+	 * @param accAdd Add pending on the ancestors of the node.
+	 * @param accFill Fill pending on the ancestors of the node.
+	 * @return The maximum over the subtree, an unwritten leaf counting as 0 (or as the pending fill).
+	 */
+	private int nodeMax(int node, int accAdd, int accFill) {
+		int result = max[node] == NO_MAX ? Integer.MIN_VALUE : max[node] + accAdd;
+		if (unwritten[node] > 0) result = Math.max(result, accFill == NONE ? 0 : accFill);
+		return result;
+	}
+	
+	@Override
+	public long bottleneck(long from, long to, int capacity) {
+		//The bottleneck is the first night with the most rooms booked, any night that is full being as bad as another
+		long night = firstAtLeast(from, to, Math.min(maxBooked(from, to), capacity));
+		return night == NOT_FOUND ? from : night;
+	}
+	
+	/**
+	 * Finds the first leaf in [from, to) of the subtree rooted at node with at most target rooms booked,
+	 * skipping every subtree whose minimum is above target. Does not modify the tree.
+	 * @param node Index of the subtree root.
+	 * @param lo First leaf offset covered by the node (inclusive).
+	 * @param hi Last leaf offset covered by the node (exclusive).
+	 * @param from First leaf offset of the search (inclusive).
+	 * @param to Last leaf offset of the search (exclusive).
+	 * @param accAdd Add pending on the ancestors of the node.
+	 * @param accFill Fill pending on the ancestors of the node.
+	 * @param target The number of rooms booked being searched for.
+	 * @return The offset of the first such leaf, or -1 if there is none.
+	 */
+	private int firstAtMost(int node, int lo, int hi, int from, int to, int accAdd, int accFill, int target) {
+		if (to <= lo || hi <= from) return -1;
+		if (nodeMin(node, accAdd, accFill) > target) return -1;
+		if (hi - lo == 1) return lo;
+		int childFill = lazyFill[node] != NONE ? lazyFill[node] + accAdd : accFill;
+		int childAdd = accAdd + lazyAdd[node];
+		int mid = (lo + hi) >>> 1;
+		int result = firstAtMost(2 * node, lo, mid, from, to, childAdd, childFill, target);
+		if (result >= 0) return result;
+		return firstAtMost(2 * node + 1, mid, hi, from, to, childAdd, childFill, target);
+	}
+	
+	@Override
+	public long earliestWindow(long from, long to, int nights, int rooms, int capacity) {
+		//A night fits if at most limit of its rooms are booked
+		int limit = capacity - rooms;
+		if (limit < 0) return NOT_FOUND;
+		long start = from;
+		while (start + nights <= to) {
+			//The run starting at start is broken by the first night in it with too many rooms booked, if any
+			long blocked = firstAtLeast(start, start + nights, limit + 1);
+			if (blocked == NOT_FOUND) return start;
+			//Otherwise the next candidate is the first night after it that does fit
+			start = firstAtMost(blocked + 1, to, limit);
+			if (start == NOT_FOUND) return NOT_FOUND;
+		}
+		return NOT_FOUND;
+	}
+	
+	/**
+	 * Finds the first night of [from, to) with at most target rooms booked, including unwritten nights outside
+	 * of the tree.
+	 * @param from The first night of the search (inclusive), as an epoch day.
+	 * @param to The last night of the search (exclusive), as an epoch day.
+	 * @param target The number of rooms booked being searched for (0 or more).
+	 * @return The first such night, as an epoch day, or NOT_FOUND if there is none.
+	 */
+	private long firstAtMost(long from, long to, int target) {
+		if (from >= to) return NOT_FOUND;
+		//Nights before the tree have no rooms booked
+		if (from < baseDay) return from;
+		long hi = Math.min(to, baseDay + leaves);
+		if (from < hi) {
+			int offset = firstAtMost(1, 0, leaves, (int) (from - baseDay), (int) (hi - baseDay), 0, NONE, target);
+			if (offset >= 0) return baseDay + offset;
+		}
+		long after = Math.max(from, baseDay + leaves);
+		return after < to ? after : NOT_FOUND;
+	}
+	
+	/**
+	 * Finds the first night of [from, to) with at least target rooms booked, including unwritten nights outside
+	 * of the tree.
+	 * @param from The first night of the search (inclusive), as an epoch day.
+	 * @param to The last night of the search (exclusive), as an epoch day.
+	 * @param target The number of rooms booked being searched for.
+	 * @return The first such night, as an epoch day, or NOT_FOUND if there is none.
+	 */
+	private long firstAtLeast(long from, long to, int target) {
+		if (from >= to) return NOT_FOUND;
+		//Nights outside of the tree have no rooms booked
+		if (target <= 0) return from;
+		long lo = Math.max(from, baseDay);
+		long hi = Math.min(to, baseDay + leaves);
+		if (lo < hi) {
+			int offset = firstAtLeast(1, 0, leaves, (int) (lo - baseDay), (int) (hi - baseDay), 0, NONE, target);
+			if (offset >= 0) return baseDay + offset;
+		}
+		return NOT_FOUND;
+	}
+	
+	/**
+	 * Finds the first leaf in [from, to) of the subtree rooted at node with at least target rooms booked,
+	 * skipping every subtree whose maximum is below target. Does not modify the tree.
+	 * @param node Index of the subtree root.
+	 * @param lo First leaf offset covered by the node (inclusive).
+	 * @param hi Last leaf offset covered by the node (exclusive).
+	 * @param from First leaf offset of the search (inclusive).
+	 * @param to Last leaf offset of the search (exclusive).
+	 * @param accAdd Add pending on the ancestors of the node.
+	 * @param accFill Fill pending on the ancestors of the node.
+	 * @param target The number of rooms booked being searched for.
+	 * @return The offset of the first such leaf, or -1 if there is none.
+	 */
+	private int firstAtLeast(int node, int lo, int hi, int from, int to, int accAdd, int accFill, int target) {
+		if (to <= lo || hi <= from) return -1;
+		if (nodeMax(node, accAdd, accFill) < target) return -1;
+		if (hi - lo == 1) return lo;
+		int childFill = lazyFill[node] != NONE ? lazyFill[node] + accAdd : accFill;
+		int childAdd = accAdd + lazyAdd[node];
+		int mid = (lo + hi) >>> 1;
+		int result = firstAtLeast(2 * node, lo, mid, from, to, childAdd, childFill, target);
+		if (result >= 0) return result;
+		return firstAtLeast(2 * node + 1, mid, hi, from, to, childAdd, childFill, target);
+	}
+	
+	@Override
+	public void reserve(long from, long to, int capacity) {
+		if (from >= to) return;
+		ensureDomain(from, to);
+		update(1, 0, leaves, (int) (from - baseDay), (int) (to - baseDay), 1, 1);
+	}
+	
+	@Override
+	public void release(long from, long to, int capacity) {
+		if (from >= to) return;
+		ensureDomain(from, to);
+		//Only nights that were reserved are released, so no written leaf goes below 0 and unwritten leaves stay so
+		update(1, 0, leaves, (int) (from - baseDay), (int) (to - baseDay), -1, NONE);
+	}
+	
+	/**
+	 * Applies an (add, fill) update to every leaf of the subtree rooted at node that lies in [from, to).
+	 * @param node Index of the subtree root.
+	 * @param lo First leaf offset covered by the node (inclusive).
+	 * @param hi Last leaf offset covered by the node (exclusive).
+	 * @param from First leaf offset of the update (inclusive).
+	 * @param to Last leaf offset of the update (exclusive).
+	 * @param add Value added to written leaves.
+	 * @param fill Value given to unwritten leaves, or NONE.
+	 */
+	private void update(int node, int lo, int hi, int from, int to, int add, int fill) {
+		if (to <= lo || hi <= from) return;
+		if (from <= lo && hi <= to) {
+			apply(node, add, fill);
+			return;
+		}
+		push(node);
+		int mid = (lo + hi) >>> 1;
+		update(2 * node, lo, mid, from, to, add, fill);
+		update(2 * node + 1, mid, hi, from, to, add, fill);
+		pull(node);
+	}
+	
+	/**
+	 * Applies an (add, fill) update to a whole subtree, deferring it for the children of the node.
+	 * @param node Index of the subtree root.
+	 * @param add Value added to written leaves.
+	 * @param fill Value given to unwritten leaves, or NONE.
+	 */
+	private void apply(int node, int add, int fill) {
+		if (min[node] != INF) min[node] += add;
+		if (max[node] != NO_MAX) max[node] += add;
+		if (fill != NONE && unwritten[node] > 0) {
+			min[node] = Math.min(min[node], fill);
+			max[node] = Math.max(max[node], fill);
+			unwritten[node] = 0;
+		}
+		if (node < leaves) {
+			//Compose with the update already pending: an earlier fill is shifted by the new add
+			if (lazyFill[node] != NONE) lazyFill[node] += add;
+			else lazyFill[node] = fill;
+			lazyAdd[node] += add;
+		}
+	}
+	
+	/**
+	 * Pushes the pending update of a node down to its two children.
+	 * @param node Index of the node.
+	 */
+	private void push(int node) {
+		if (lazyAdd[node] != 0 || lazyFill[node] != NONE) {
+			apply(2 * node, lazyAdd[node], lazyFill[node]);
+			apply(2 * node + 1, lazyAdd[node], lazyFill[node]);
+			lazyAdd[node] = 0;
+			lazyFill[node] = NONE;
+		}
+	}
+	
+	/**
+	 * Recomputes the summary of a node from its two children.
+	 * @param node Index of the node.
+	 */
+	private void pull(int node) {
+		min[node] = Math.min(min[2 * node], min[2 * node + 1]);
+		max[node] = Math.max(max[2 * node], max[2 * node + 1]);
+		unwritten[node] = unwritten[2 * node] + unwritten[2 * node + 1];
+	}
+	
+	/**
+	 * Grows the tree (doubling the number of leaves until it fits) so that it covers [from, to). The
+	 * existing leaves are carried over and the tree is rebuilt bottom-up, which is O(n) but amortised
+	 * over the doublings.
+	 * @param from The first night that must be covered (inclusive).
+	 * @param to The last night that must be covered (exclusive).
+	 */
+	private void ensureDomain(long from, long to) {
+		if (leaves == 0) {
+			long newBase = Math.floorDiv(from, INITIAL_LEAVES) * INITIAL_LEAVES;
+			int newLeaves = INITIAL_LEAVES;
+			while (newBase + newLeaves < to) newLeaves = grow(newLeaves);
+			baseDay = newBase;
+			rebuild(newLeaves, 0, null, null, null);
+			return;
+		}
+		if (from >= baseDay && to <= baseDay + leaves) return;
+		
+		//Keep the end of the tree that is not being extended fixed
+		long newBase = baseDay;
+		int newLeaves = leaves;
+		long newEnd = Math.max(to, baseDay + leaves);
+		while (from < newBase || to > newBase + newLeaves) {
+			newLeaves = grow(newLeaves);
+			newBase = from < baseDay ? newEnd - newLeaves : baseDay;
+		}
+		
+		//Push every pending update down so that the leaves hold their final values
+		for (int node = 1; node < leaves; node++) push(node);
+		int[] oldMin = new int[leaves];
+		int[] oldMax = new int[leaves];
+		int[] oldUnwritten = new int[leaves];
+		System.arraycopy(min, leaves, oldMin, 0, leaves);
+		System.arraycopy(max, leaves, oldMax, 0, leaves);
+		System.arraycopy(unwritten, leaves, oldUnwritten, 0, leaves);
+		int shift = (int) (baseDay - newBase);
+		baseDay = newBase;
+		rebuild(newLeaves, shift, oldMin, oldMax, oldUnwritten);
+	}
+	
+	/**
+	 * Doubles a number of leaves, failing if the tree would become too large to index.
+	 * @param n The current number of leaves.
+	 * @return Twice the number of leaves.
+	 */
+	private static int grow(int n) {
+		if (n >= (1 << 29)) throw new IllegalArgumentException("Date range is too large for a SegmentTreeCalendar.");
+		return 2 * n;
+	}
+	
+	/**
+	 * Allocates a tree with the given number of leaves, copies the old leaves in at an offset and builds
+	 * the internal nodes bottom-up.
+	 * @param newLeaves Number of leaves of the new tree.
+	 * @param shift Offset in the new tree of the first old leaf.
+	 * @param oldMin Values of the old leaves (null if there are none).
+	 * @param oldMax Maxima of the old leaves (null if there are none).
+	 * @param oldUnwritten Unwritten flags of the old leaves (null if there are none).
+	 */
+	private void rebuild(int newLeaves, int shift, int[] oldMin, int[] oldMax, int[] oldUnwritten) {
+		leaves = newLeaves;
+		min = new int[2 * leaves];
+		max = new int[2 * leaves];
+		unwritten = new int[2 * leaves];
+		lazyAdd = new int[2 * leaves];
+		lazyFill = new int[2 * leaves];
+		Arrays.fill(min, leaves, 2 * leaves, INF);
+		Arrays.fill(max, leaves, 2 * leaves, NO_MAX);
+		Arrays.fill(unwritten, leaves, 2 * leaves, 1);
+		Arrays.fill(lazyFill, NONE);
+		if (oldMin != null) {
+			System.arraycopy(oldMin, 0, min, leaves + shift, oldMin.length);
+			System.arraycopy(oldMax, 0, max, leaves + shift, oldMax.length);
+			System.arraycopy(oldUnwritten, 0, unwritten, leaves + shift, oldUnwritten.length);
+		}
+		for (int node = leaves - 1; node >= 1; node--) pull(node);
+	}
+}
@@ -0,0 +1,475 @@
+package HotelBookingSystem;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Booking engine that partitions the inventory into shards, each owned by a single thread, as an alternative to
+ * sharing one Bookings object behind locks. The nights of each RoomType are cut into blocks of blockNights
+ * consecutive nights, and the blocks are dealt out in turn to the shardsPerType shards of that type, so that both
+ * different types and different weeks of the same type are served by different threads.
+ * 
+ * Each shard has its own calendar and its own ledger, which only its thread ever touches, so they need no
+ * synchronization at all. Requests are handed to a shard through a bounded lock-free MpscRingBuffer, and every
+ * operation returns a CompletableFuture that the shard thread completes. A shard thread that finds its queue
+ * empty spins briefly and then parks until a request arrives.
+ * 
+ * A stay whose nights all belong to one shard is checked and reserved by that shard in a single step. A stay that
+ * crosses shards is booked in two phases: every shard involved is asked to prepare, i.e. to reserve its part of
+ * the stay if it has a room on each of those nights, and the booking is committed only if every shard agreed;
+ * otherwise the shards that did reserve their part are told to give it back. A prepared part holds its rooms until
+ * the outcome is known, so a concurrent booking may be turned away by rooms that are then given back, but no night
+ * is ever overbooked. Shard threads never wait on each other: the second phase is sent from another thread once
+ * every vote is in.
+ * 
+ * Booking IDs encode the shard that holds the booking in its ledger (the shard of its first night), so a
+ * cancellation goes straight to that shard, which gives back its own nights and reports the stay so that the other
+ * shards can be told to give back theirs.
+ * 
+ * The shards are laid out for the RoomTypes registered when the engine is created. A type registered afterwards has
+ * no shards, so every method taking a RoomType rejects it with an IllegalArgumentException.
+ * @author Jonathan Janzen
+ *
+ */
+public class ShardedBookingEngine implements AutoCloseable {
+	
+	private static final int QUEUE_CAPACITY = 1 << 14;	//requests that can wait for each shard
+	private static final int SPINS = 1000;				//empty polls before an idle shard thread parks
+	
+	private static final byte OP_CHECK = 1;		//start = night; result = availability
+	private static final byte OP_BOOK = 2;		//ranges all owned by the shard; result = booking ID, or -1
+	private static final byte OP_PREPARE = 3;	//ranges = part of a stay; result = 1 if reserved, 0 if not
+	private static final byte OP_ABORT = 4;		//ranges = part of a prepared stay, to be given back
+	private static final byte OP_COMMIT = 5;	//start, end = stay; result = booking ID
+	private static final byte OP_CANCEL = 6;	//id = booking ID; result = 1 if cancelled, 0 if not
+	private static final byte OP_RELEASE = 7;	//ranges = part of a cancelled stay, to be given back
+	
+	private final Shard[] shards;
+	private final int shardsPerType;
+	private final int blockNights;
+	private final AtomicIntegerArray numRoomsByType;
+	private volatile boolean running;
+	
+	/**
+	 * Constructor for a ShardedBookingEngine with one shard per available processor (spread over the RoomTypes),
+	 * four-week blocks and TREE calendars.
+	 */
+	public ShardedBookingEngine() {
+		this(Math.max(1, Runtime.getRuntime().availableProcessors() / RoomType.values().length), 28, CalendarBackend.TREE);
+	}
+	
+	/**
+	 * Constructor for a ShardedBookingEngine, starting one thread per shard.
+	 * @param _shardsPerType Number of shards that the nights of each RoomType are spread over.
+	 * @param _blockNights Number of consecutive nights dealt to a shard at a time.
+	 * @param backend Calendar store used by every shard.
+	 */
+	public ShardedBookingEngine(int _shardsPerType, int _blockNights, CalendarBackend backend) {
+		if (_shardsPerType < 1 || _blockNights < 1) throw new IllegalArgumentException("Shards and blocks must not be empty.");
+		this.shardsPerType = _shardsPerType;
+		this.blockNights = _blockNights;
+		this.numRoomsByType = new AtomicIntegerArray(RoomType.values().length);
+		for (int i = 0; i < numRoomsByType.length(); i++) numRoomsByType.set(i, -1);
+		this.shards = new Shard[RoomType.values().length * shardsPerType];
+		this.running = true;
+		for (int i = 0; i < shards.length; i++) shards[i] = new Shard(i, backend.newCalendar());
+		for (Shard shard : shards) shard.thread.start();
+	}
+	
+	/**
+	 * Function to get the number of rooms of a given type.
+	 * @param type RoomType to get the number of rooms of.
+	 * @return The number of rooms of the type, or -1 if it has not been set.
+	 * @throws IllegalArgumentException If the type was registered after the engine was created.
+	 */
+	public int getNumRoomsByType(RoomType type) {
+		return numRoomsByType.get(indexOf(type));
+	}
+	
+	/**
+	 * Sets the number of rooms of a given type. Requests already queued see the new number when they are executed.
+	 * @param type RoomType to be set.
+	 * @param n Number of rooms of the type (0 or greater).
+	 * @throws IllegalArgumentException If the type was registered after the engine was created.
+	 */
+	public void setNumRooms(RoomType type, int n) {
+		if (n < 0) throw new NumberFormatException();
+		numRoomsByType.set(indexOf(type), n);
+	}
+	
+	/**
+	 * Function to get the number of shards.
+	 * @return The number of shards, and of shard threads.
+	 */
+	public int getShardCount() {
+		return shards.length;
+	}
+	
+	/**
+	 * Function to check the availability of a RoomType on a given night.
+	 * @param type RoomType to check the availability of.
+	 * @param date The night to be checked.
+	 * @return Future completed with the number of rooms available of the given type.
+	 * @throws IllegalArgumentException If the type was registered after the engine was created.
+	 */
+	public CompletableFuture<Integer> checkAvailability(RoomType type, LocalDate date) {
+		long day = date.toEpochDay();
+		return submit(shardOf(type, day), new Request(OP_CHECK, type, null, day, day + 1, 0)).thenApply(Long::intValue);
+	}
+	
+	/**
+	 * Books a room of a given type over a range of dates, if one is available on every night.
+	 * @param type RoomType to be booked.
+	 * @param startDate First night of the booking.
+	 * @param endDate Day after the last night of the booking.
+	 * @return Future completed with the ID of the booking, or -1 if it could not be made.
+	 * @throws IllegalArgumentException If the type was registered after the engine was created.
+	 */
+	public CompletableFuture<Long> book(RoomType type, LocalDate startDate, LocalDate endDate) {
+		//Reject a type with no shards even for an empty stay
+		indexOf(type);
+		if (!startDate.isBefore(endDate)) return CompletableFuture.completedFuture(-1L);
+		long startDay = startDate.toEpochDay();
+		long endDay = endDate.toEpochDay();
+		Shard home = shardOf(type, startDay);
+		if (shardsPerType == 1 || Math.floorDiv(startDay, blockNights) == Math.floorDiv(endDay - 1, blockNights)) {
+			return submit(home, new Request(OP_BOOK, type, new long[] { startDay, endDay }, startDay, endDay, 0));
+		}
+		
+		//First phase: every shard involved reserves its part of the stay, if it can
+		long[][] owned = split(type, startDay, endDay);
+		ArrayList<Request> votes = new ArrayList<Request>();
+		for (int k = 0; k < shardsPerType; k++) {
+			if (owned[k] == null) continue;
+			Request vote = new Request(OP_PREPARE, type, owned[k], startDay, endDay, 0);
+			votes.add(vote);
+			submit(shards[type.getValue() * shardsPerType + k], vote);
+		}
+		CompletableFuture<?>[] results = new CompletableFuture<?>[votes.size()];
+		for (int i = 0; i < results.length; i++) results[i] = votes.get(i).result;
+		
+		//Second phase, sent from outside of the shard threads: commit if every shard reserved its part
+		return CompletableFuture.allOf(results).thenComposeAsync(ignored -> {
+			boolean accepted = true;
+			for (Request vote : votes) accepted &= vote.result.join() == 1;
+			if (accepted) return submit(home, new Request(OP_COMMIT, type, null, startDay, endDay, 0));
+			ArrayList<CompletableFuture<Long>> aborts = new ArrayList<CompletableFuture<Long>>();
+			for (Request vote : votes) {
+				if (vote.result.join() != 1) continue;
+				aborts.add(submit(shardOf(type, vote.ranges[0]), new Request(OP_ABORT, type, vote.ranges, startDay, endDay, 0)));
+			}
+			return CompletableFuture.allOf(aborts.toArray(new CompletableFuture<?>[0])).thenApply(done -> -1L);
+		});
+	}
+	
+	/**
+	 * Cancels a booking by its ID, giving its room back on every night of the stay.
+	 * @param id The ID of the booking.
+	 * @return Future completed with true once every night has been given back, or with false if there was no such
+	 * booking.
+	 */
+	public CompletableFuture<Boolean> cancelBooking(long id) {
+		if (id < 1) return CompletableFuture.completedFuture(false);
+		Request cancel = new Request(OP_CANCEL, null, null, 0, 0, id);
+		return submit(shards[(int) ((id - 1) % shards.length)], cancel).thenComposeAsync(found -> {
+			if (found == 0) return CompletableFuture.completedFuture(false);
+			//The shard holding the booking has given back its own nights; the other shards give back theirs
+			BookingRequest booking = cancel.booking;
+			RoomType type = booking.getType();
+			long[][] owned = split(type, booking.getStartDate().toEpochDay(), booking.getEndDate().toEpochDay());
+			int homeIndex = (int) ((id - 1) % shards.length) - type.getValue() * shardsPerType;
+			ArrayList<CompletableFuture<Long>> releases = new ArrayList<CompletableFuture<Long>>();
+			for (int k = 0; k < shardsPerType; k++) {
+				if (owned[k] == null || k == homeIndex) continue;
+				releases.add(submit(shards[type.getValue() * shardsPerType + k], new Request(OP_RELEASE, type, owned[k], 0, 0, 0)));
+			}
+			return CompletableFuture.allOf(releases.toArray(new CompletableFuture<?>[0])).thenApply(done -> true);
+		});
+	}
+	
+	/**
+	 * Stops every shard thread once it has executed the requests already queued. Requests made after the engine
+	 * is closed complete exceptionally; requests made while it is being closed may do either, or never complete.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		for (Shard shard : shards) LockSupport.unpark(shard.thread);
+		boolean interrupted = false;
+		for (Shard shard : shards) {
+			while (shard.thread.isAlive()) {
+				try {
+					shard.thread.join();
+				} catch (InterruptedException ex) {
+					interrupted = true;
+				}
+			}
+			//Fail any request that was queued after the thread made its last check
+			Request request;
+			while ((request = shard.queue.poll()) != null) request.result.completeExceptionally(closed());
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+	
+	/**
+	 * Hands a request to a shard, waiting for room in its queue if it is full.
+	 * @param shard The shard that is to execute the request.
+	 * @param request The request.
+	 * @return The future of the request.
+	 */
+	private CompletableFuture<Long> submit(Shard shard, Request request) {
+		if (!running) {
+			request.result.completeExceptionally(closed());
+			return request.result;
+		}
+		while (!shard.queue.offer(request)) {
+			if (!running) {
+				request.result.completeExceptionally(closed());
+				return request.result;
+			}
+			//Give the shard thread a chance to drain its queue, even when every core is busy
+			Thread.yield();
+		}
+		if (shard.sleeping) LockSupport.unpark(shard.thread);
+		return request.result;
+	}
+	
+	/**
+	 * Function to find the shard that owns a night of a RoomType.
+	 * @param type RoomType of the night.
+	 * @param day The night, as an epoch day.
+	 * @return The shard owning the night.
+	 */
+	private Shard shardOf(RoomType type, long day) {
+		return shards[indexOf(type) * shardsPerType + Math.floorMod(Math.floorDiv(day, blockNights), shardsPerType)];
+	}
+	
+	/**
+	 * Function to get the index of a RoomType in the per-type state of the engine.
+	 * @param type The RoomType.
+	 * @return The numerical value of the type.
+	 * @throws IllegalArgumentException If the type was registered after the engine was created, and so has no shards.
+	 */
+	private int indexOf(RoomType type) {
+		if (type.getValue() >= numRoomsByType.length()) throw new IllegalArgumentException("The room type " + type + " was registered after the booking engine was created.");
+		return type.getValue();
+	}
+	
+	/**
+	 * Splits a stay into the ranges of nights owned by each shard of its RoomType.
+	 * @param type RoomType of the stay.
+	 * @param startDay First night of the stay, as an epoch day.
+	 * @param endDay Day after the last night of the stay, as an epoch day.
+	 * @return Array indexed by the shard's position among the shards of the type, holding for each shard the
+	 * (from, to) pairs of the ranges it owns, or null if it owns no night of the stay.
+	 */
+	private long[][] split(RoomType type, long startDay, long endDay) {
+		long firstBlock = Math.floorDiv(startDay, blockNights);
+		long lastBlock = Math.floorDiv(endDay - 1, blockNights);
+		int[] counts = new int[shardsPerType];
+		for (long block = firstBlock; block <= lastBlock && block < firstBlock + shardsPerType; block++) {
+			//Each shard owns every shardsPerType-th block from its first one
+			counts[Math.floorMod(block, shardsPerType)] = (int) ((lastBlock - block) / shardsPerType + 1);
+		}
+		long[][] owned = new long[shardsPerType][];
+		int[] filled = new int[shardsPerType];
+		for (long block = firstBlock; block <= lastBlock; block++) {
+			int k = Math.floorMod(block, shardsPerType);
+			if (owned[k] == null) owned[k] = new long[2 * counts[k]];
+			owned[k][filled[k]++] = Math.max(startDay, block * blockNights);
+			owned[k][filled[k]++] = Math.min(endDay, (block + 1) * blockNights);
+		}
+		return owned;
+	}
+	
+	/**
+	 * Builds the exception that a request made after the engine was closed completes with.
+	 * @return The exception.
+	 */
+	private static IllegalStateException closed() {
+		return new IllegalStateException("The booking engine has been closed.");
+	}
+	
+	/**
+	 * A request to a shard, and the future that the shard completes with its result.
+	 */
+	private static class Request {
+		
+		final byte op;
+		final RoomType type;
+		final long[] ranges;	//(from, to) pairs of nights of the shard that the request applies to
+		final long start;		//first night of the stay or the night checked
+		final long end;			//day after the last night of the stay
+		final long id;			//booking ID of a cancellation
+		final CompletableFuture<Long> result;
+		BookingRequest booking;	//the booking that was cancelled, set by the shard before completing the result
+		
+		/**
+		 * Constructor for a Request.
+		 * @param _op The operation.
+		 * @param _type RoomType of the request.
+		 * @param _ranges Ranges of nights of the shard that the request applies to.
+		 * @param _start First night of the stay, or the night checked.
+		 * @param _end Day after the last night of the stay.
+		 * @param _id Booking ID of a cancellation.
+		 */
+		Request(byte _op, RoomType _type, long[] _ranges, long _start, long _end, long _id) {
+			this.op = _op;
+			this.type = _type;
+			this.ranges = _ranges;
+			this.start = _start;
+			this.end = _end;
+			this.id = _id;
+			this.result = new CompletableFuture<Long>();
+		}
+	}
+	
+	/**
+	 * A shard: a calendar and a ledger of one RoomType, owned by a single thread that executes every request made
+	 * to it in the order in which they were queued.
+	 */
+	private class Shard implements Runnable {
+		
+		final int index;
+		final BookingCalendar calendar;
+		final BookingLedger ledger;		//bookings whose first night is owned by this shard
+		final MpscRingBuffer<Request> queue;
+		final Thread thread;
+		volatile boolean sleeping;		//true while the thread is parked, or about to park
+		long issued;					//number of booking IDs handed out by this shard (shard thread only)
+		
+		/**
+		 * Constructor for a Shard and its thread, which is not yet started.
+		 * @param _index Index of the shard.
+		 * @param _calendar Calendar holding the nights owned by the shard.
+		 */
+		Shard(int _index, BookingCalendar _calendar) {
+			this.index = _index;
+			this.calendar = _calendar;
+			this.ledger = new BookingLedger();
+			this.queue = new MpscRingBuffer<Request>(QUEUE_CAPACITY);
+			this.thread = new Thread(this, "booking-shard-" + _index);
+			thread.setDaemon(true);
+		}
+		
+		/**
+		 * Executes requests until the engine is closed and the queue is empty.
+		 */
+		@Override
+		public void run() {
+			int idle = 0;
+			while (true) {
+				Request request = queue.poll();
+				if (request != null) {
+					idle = 0;
+					execute(request);
+					continue;
+				}
+				if (!running) break;
+				if (++idle < SPINS) {
+					Thread.onSpinWait();
+					continue;
+				}
+				//Producers check the flag after queueing, so either they see it or the queue is seen non-empty here
+				sleeping = true;
+				if (queue.isEmpty() && running) LockSupport.park(this);
+				sleeping = false;
+				idle = 0;
+			}
+		}
+		
+		/**
+		 * Executes a single request and completes its future.
+		 * @param request The request.
+		 */
+		void execute(Request request) {
+			try {
+				long result = 0;
+				switch (request.op) {
+				case OP_CHECK:
+					//The calendar holds the rooms booked, so the rooms left follow the current capacity
+					result = Math.max(capacity(request.type) - Math.max(calendar.get(request.start), 0), 0);
+					break;
+				case OP_BOOK:
+					result = reserve(request) ? record(request.type, request.start, request.end) : -1;
+					break;
+				case OP_PREPARE:
+					result = reserve(request) ? 1 : 0;
+					break;
+				case OP_ABORT:
+				case OP_RELEASE:
+					release(request.type, request.ranges);
+					break;
+				case OP_COMMIT:
+					result = record(request.type, request.start, request.end);
+					break;
+				case OP_CANCEL:
+					BookingRequest booking = ledger.remove(request.id);
+					if (booking != null) {
+						long[][] owned = split(booking.getType(), booking.getStartDate().toEpochDay(), booking.getEndDate().toEpochDay());
+						long[] own = owned[index - booking.getType().getValue() * shardsPerType];
+						if (own != null) release(booking.getType(), own);
+						request.booking = booking;
+						result = 1;
+					}
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown operation " + request.op + ".");
+				}
+				request.result.complete(result);
+			} catch (RuntimeException ex) {
+				request.result.completeExceptionally(ex);
+			}
+		}
+		
+		/**
+		 * Reserves one room on every night of the ranges of a request, only if every one of them has a room.
+		 * @param request The request.
+		 * @return True if the nights were reserved, false if some night had no rooms available.
+		 */
+		boolean reserve(Request request) {
+			int capacity = capacity(request.type);
+			long[] ranges = request.ranges;
+			for (int i = 0; i < ranges.length; i += 2) {
+				if (calendar.minAvailable(ranges[i], ranges[i + 1], capacity) == 0) return false;
+			}
+			for (int i = 0; i < ranges.length; i += 2) calendar.reserve(ranges[i], ranges[i + 1], capacity);
+			return true;
+		}
+		
+		/**
+		 * Gives back one room on every night of a set of ranges.
+		 * @param type RoomType of the nights.
+		 * @param ranges The (from, to) pairs of the ranges.
+		 */
+		void release(RoomType type, long[] ranges) {
+			int capacity = capacity(type);
+			for (int i = 0; i < ranges.length; i += 2) calendar.release(ranges[i], ranges[i + 1], capacity);
+		}
+		
+		/**
+		 * Records a booking in the ledger of this shard under a new ID, which encodes the index of the shard.
+		 * @param type RoomType of the booking.
+		 * @param startDay First night of the booking, as an epoch day.
+		 * @param endDay Day after the last night of the booking, as an epoch day.
+		 * @return The ID of the booking.
+		 */
+		long record(RoomType type, long startDay, long endDay) {
+			long id = issued++ * shards.length + index + 1;
+			ledger.put(id, type, startDay, endDay);
+			return id;
+		}
+		
+		/**
+		 * Function to get the availability of a night of a RoomType that has no entry.
+		 * @param type The RoomType.
+		 * @return The number of rooms of the type, or 0 if it has not been set.
+		 */
+		int capacity(RoomType type) {
+			return Math.max(numRoomsByType.get(type.getValue()), 0);
+		}
+	}
+}
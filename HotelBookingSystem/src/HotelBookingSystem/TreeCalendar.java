@@ -0,0 +1,97 @@
+package HotelBookingSystem;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * BookingCalendar backed by a RedBlackBST keyed by LocalDate. This is the original storage strategy used
+ * by Bookings, kept as a backend so that it can be compared against the alternatives.
+ * @author Jonathan Janzen
+ *
+ */
+public class TreeCalendar implements BookingCalendar {
+	
+	private RedBlackBST<LocalDate, Integer> tree;
+	
+	/**
+	 * Constructor for an empty TreeCalendar.
+	 */
+	public TreeCalendar() {
+		this.tree = new RedBlackBST<LocalDate, Integer>();
+	}
+	
+	@Override
+	public int get(long day) {
+		Integer checkVal = tree.get(LocalDate.ofEpochDay(day));
+		if (checkVal == null) return EMPTY;
+		return checkVal;
+	}
+	
+	@Override
+	public void put(long day, int booked) {
+		tree.put(LocalDate.ofEpochDay(day), booked);
+	}
+	
+	@Override
+	public void forEach(NightVisitor visitor) {
+		tree.forEach((date, booked) -> visitor.visit(date.toEpochDay(), booked));
+	}
+	
+	@Override
+	public int evictBefore(long day, NightVisitor evicted) {
+		return tree.deleteBelow(LocalDate.ofEpochDay(day), (date, booked) -> evicted.visit(date.toEpochDay(), booked));
+	}
+	
+	@Override
+	public void load(long[] days, int[] values, int n) {
+		//Build the tree bottom-up from the sorted entries instead of inserting them one at a time
+		LocalDate[] keys = new LocalDate[n];
+		Integer[] vals = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = LocalDate.ofEpochDay(days[i]);
+			vals[i] = values[i];
+		}
+		tree = new RedBlackBST<LocalDate, Integer>(keys, vals, n);
+	}
+	
+	@Override
+	public void read(long from, int[] out, int offset, int length) {
+		if (length <= 0) return;
+		Arrays.fill(out, offset, offset + length, EMPTY);
+		//One ordered walk over the range instead of a root-to-leaf search per night
+		tree.forEach(LocalDate.ofEpochDay(from), LocalDate.ofEpochDay(from + length - 1),
+				(date, booked) -> out[offset + (int) (date.toEpochDay() - from)] = booked);
+	}
+	
+	@Override
+	public long bottleneck(long from, long to, int capacity) {
+		//Read the range with one ordered walk, then scan it for the most rooms booked
+		int[] nights = new int[(int) (to - from)];
+		read(from, nights, 0, nights.length);
+		int bottleneck = 0;
+		int max = EMPTY;
+		for (int i = 0; i < nights.length && max < capacity; i++) {
+			int checkVal = Math.max(nights[i], 0);
+			if (checkVal > max) {
+				max = checkVal;
+				bottleneck = i;
+			}
+		}
+		return from + bottleneck;
+	}
+	
+	@Override
+	public int size() {
+		return tree.size();
+	}
+	
+	@Override
+	public int height() {
+		return tree.height();
+	}
+	
+	@Override
+	public long getRotations() {
+		return tree.getRotations();
+	}
+}
@@ -0,0 +1,151 @@
+package unitTests;
+
+import static org.junit.Assert.assertThrows;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import HotelBookingSystem.BookingFeed;
+import HotelBookingSystem.Bookings;
+import HotelBookingSystem.CalendarBackend;
+import HotelBookingSystem.RoomType;
+
+/**
+ * Test class for the BookingFeed, on its own and attached to a Bookings object.
+ * @author Jonathan Janzen
+ *
+ */
+class bookingFeedTests {
+	
+	/**
+	 * Listener that keeps every event it reads, as {type, startDay, endDay, delta}, and the events it missed.
+	 */
+	private static class Recorder implements BookingFeed.Listener {
+		
+		private final List<long[]> events = new ArrayList<long[]>();
+		private long dropped;
+		
+		@Override
+		public void onChange(RoomType type, long startDay, long endDay, int delta) {
+			events.add(new long[] { type.getValue(), startDay, endDay, delta });
+		}
+		
+		@Override
+		public void onDropped(long count) {
+			dropped += count;
+		}
+	}
+	
+	@Test
+	void testConsumersReadIndependently() {
+		BookingFeed feed = new BookingFeed(16);
+		assertThrows(IllegalArgumentException.class, () -> new BookingFeed(12));
+		BookingFeed.Consumer first = feed.subscribe();
+		for (int i = 0; i < 10; i++) feed.publish(RoomType.QUEEN, i, i + 3, i - 5);
+		//A consumer only sees the events published after it subscribed
+		BookingFeed.Consumer second = feed.subscribe();
+		feed.publish(RoomType.KING, 100, BookingFeed.OPEN_END, 7);
+		assert first.lag() == 11 && second.lag() == 1 && feed.getMaxLag() == 11;
+		
+		Recorder a = new Recorder();
+		assert first.poll(a, 4) == 4;
+		assert first.poll(a, 100) == 7;
+		assert first.poll(a, 100) == 0;
+		for (int i = 0; i < 10; i++) {
+			long[] event = a.events.get(i);
+			assert event[0] == RoomType.QUEEN.getValue() && event[1] == i && event[2] == i + 3 && event[3] == i - 5;
+		}
+		long[] last = a.events.get(10);
+		assert last[0] == RoomType.KING.getValue() && last[2] == BookingFeed.OPEN_END && last[3] == 7;
+		
+		Recorder b = new Recorder();
+		assert second.poll(b, 100) == 1 && b.events.get(0)[1] == 100;
+		assert a.dropped == 0 && b.dropped == 0 && feed.getMaxLag() == 0;
+	}
+	
+	@Test
+	void testSlowConsumerIsToldOfDrops() {
+		//Publishing never waits: a consumer more than a lap behind loses the oldest events and is told how many
+		BookingFeed feed = new BookingFeed(8);
+		BookingFeed.Consumer slow = feed.subscribe();
+		for (int i = 0; i < 20; i++) feed.publish(RoomType.TWIN, i, i + 1, -1);
+		Recorder recorder = new Recorder();
+		assert slow.poll(recorder, 100) == 8;
+		assert recorder.dropped == 12 && slow.getDropped() == 12;
+		for (int i = 0; i < 8; i++) assert recorder.events.get(i)[1] == 12 + i;
+		
+		feed.publish(RoomType.TWIN, 50, 51, 1);
+		assert slow.poll(recorder, 100) == 1 && recorder.events.get(8)[1] == 50 && slow.getDropped() == 12;
+	}
+	
+	@Test
+	void testConcurrentPublishers() throws InterruptedException {
+		//Events from several threads must all arrive whole, with each thread's events in its own order
+		BookingFeed feed = new BookingFeed(1 << 16);
+		BookingFeed.Consumer consumer = feed.subscribe();
+		int threads = 4;
+		int perThread = 10000;
+		Thread[] publishers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			publishers[t] = new Thread(() -> {
+				for (int i = 0; i < perThread; i++) feed.publish(RoomType.fromValue(thread), i, i + thread, thread);
+			});
+			publishers[t].start();
+		}
+		for (Thread publisher : publishers) publisher.join();
+		
+		Recorder recorder = new Recorder();
+		assert consumer.poll(recorder, Integer.MAX_VALUE) == threads * perThread && recorder.dropped == 0;
+		long[] next = new long[threads];
+		for (long[] event : recorder.events) {
+			int thread = (int) event[0];
+			assert event[1] == next[thread]++ && event[2] == event[1] + thread && event[3] == thread;
+		}
+		for (long count : next) assert count == perThread;
+	}
+	
+	@Test
+	void testBookingsPublishChanges() {
+		for (CalendarBackend backend : new CalendarBackend[] { CalendarBackend.TREE, CalendarBackend.ATOMIC }) {
+			Bookings bookings = new Bookings(backend);
+			bookings.setNumRooms(RoomType.DOUBLE, 3);
+			BookingFeed feed = new BookingFeed(64);
+			BookingFeed.Consumer consumer = feed.subscribe();
+			bookings.setFeed(feed);
+			LocalDate start = LocalDate.parse("2022-06-01");
+			long day = start.toEpochDay();
+			
+			long id = bookings.book(RoomType.DOUBLE, start, start.plusDays(4));
+			bookings.book(RoomType.DOUBLE, start, start);
+			bookings.cancelBooking(id);
+			bookings.setNumRooms(RoomType.DOUBLE, 5);
+			//Closing two rooms over part of a range only changes the nights it covers
+			bookings.setNumRooms(RoomType.DOUBLE, start.plusDays(10), start.plusDays(20), 3);
+			bookings.setNumRooms(RoomType.DOUBLE, start.plusDays(15), start.plusDays(25), 6);
+			bookings.clearNumRooms(RoomType.DOUBLE, start, start.plusDays(30));
+			
+			Recorder recorder = new Recorder();
+			consumer.poll(recorder, 100);
+			long[][] expected = {
+				{ day, day + 4, -1 },
+				{ day, day + 4, 1 },
+				{ BookingFeed.OPEN_START, BookingFeed.OPEN_END, 2 },
+				{ day + 10, day + 20, -2 },
+				{ day + 15, day + 20, 3 },
+				{ day + 20, day + 25, 1 },
+				{ day + 10, day + 15, 2 },
+				{ day + 15, day + 25, -1 },
+			};
+			assert recorder.events.size() == expected.length : backend;
+			for (int i = 0; i < expected.length; i++) {
+				long[] event = recorder.events.get(i);
+				assert event[0] == RoomType.DOUBLE.getValue();
+				assert event[1] == expected[i][0] && event[2] == expected[i][1] && event[3] == expected[i][2] : backend + " " + i;
+			}
+		}
+	}
+}
@@ -0,0 +1,562 @@
+package unitTests;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import HotelBookingSystem.BookingArchive;
+import HotelBookingSystem.BookingJournal;
+import HotelBookingSystem.BookingRequest;
+import HotelBookingSystem.Bookings;
+import HotelBookingSystem.CalendarBackend;
+import HotelBookingSystem.RoomAssignments;
+import HotelBookingSystem.RoomType;
+
+/**
+ * Test class for the BookingJournal, checking that a journaled Bookings object can be rebuilt by replaying it.
+ * @author Jonathan Janzen
+ *
+ */
+class bookingJournalTests {
+	
+	static final LocalDate ORIGIN = LocalDate.parse("2022-06-01");
+	
+	Path testPath;
+	
+	/**
+	 * Creates a fresh Bookings object with a journal at testPath attached, after replaying anything already in it.
+	 * @param backend The CalendarBackend to be used.
+	 * @param journals List to which the opened journal is added, so that it can be closed later.
+	 * @return The Bookings object.
+	 * @throws IOException If the journal cannot be opened.
+	 */
+	Bookings open(CalendarBackend backend, ArrayList<BookingJournal> journals) throws IOException {
+		if (testPath == null) testPath = Files.createTempFile("bookings", ".journal");
+		Bookings bookings = new Bookings(backend);
+		BookingJournal journal = new BookingJournal(testPath);
+		journal.replay(bookings);
+		bookings.setJournal(journal);
+		journals.add(journal);
+		return bookings;
+	}
+	
+	/**
+	 * Asserts that two Bookings objects have the same capacity and availability for every type over the test dates.
+	 * @param expected Bookings object that the changes were made to.
+	 * @param actual Bookings object rebuilt from the journal.
+	 */
+	void assertSameState(Bookings expected, Bookings actual) {
+		for (RoomType type : RoomType.values()) {
+			assert actual.getNumRoomsByType(type) == expected.getNumRoomsByType(type);
+			assert actual.getNumBookings(type) == expected.getNumBookings(type);
+			for (int d = 0; d < 120; d++) {
+				assert actual.checkAvailability(type, ORIGIN.plusDays(d)) == expected.checkAvailability(type, ORIGIN.plusDays(d));
+			}
+		}
+	}
+	
+	@AfterEach
+	void tearDown() throws IOException {
+		if (testPath != null) Files.deleteIfExists(testPath);
+	}
+	
+	@Test
+	void testReplayRestoresBookings() throws IOException {
+		//Bookings (single and batched) and capacity changes made before a restart are all restored
+		ArrayList<BookingJournal> journals = new ArrayList<BookingJournal>();
+		Bookings original = open(CalendarBackend.TREE, journals);
+		for (RoomType type : RoomType.values()) original.setNumRooms(type, 3);
+		Random random = new Random(11);
+		ArrayList<BookingRequest> batch = new ArrayList<BookingRequest>();
+		for (int i = 0; i < 300; i++) {
+			RoomType type = RoomType.values()[random.nextInt(RoomType.values().length)];
+			LocalDate start = ORIGIN.plusDays(random.nextInt(100));
+			if (i % 2 == 0) original.createBooking(type, start, start.plusDays(1 + random.nextInt(10)));
+			else batch.add(new BookingRequest(type, start, start.plusDays(1 + random.nextInt(10))));
+		}
+		original.createBookings(batch);
+		original.setNumRooms(RoomType.KING, 7);
+		original.setNumRooms(RoomType.TWIN, ORIGIN.plusDays(30), ORIGIN.plusDays(60), 1);
+		original.clearNumRooms(RoomType.TWIN, ORIGIN.plusDays(40), ORIGIN.plusDays(45));
+		journals.get(0).close();
+		
+		Bookings restored = open(CalendarBackend.SEGMENT_TREE, journals);
+		journals.get(1).close();
+		assertSameState(original, restored);
+	}
+	
+	@Test
+	void testConcurrentBookingsAreAllJournaled() throws IOException, InterruptedException {
+		//Many threads sharing the group commit must each have their booking recorded exactly once
+		ArrayList<BookingJournal> journals = new ArrayList<BookingJournal>();
+		Bookings original = open(CalendarBackend.ARRAY, journals);
+		for (RoomType type : RoomType.values()) original.setNumRooms(type, 20);
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 8; t++) {
+			final long seed = t;
+			Thread thread = new Thread(() -> {
+				Random random = new Random(seed);
+				for (int i = 0; i < 200; i++) {
+					RoomType type = RoomType.values()[random.nextInt(RoomType.values().length)];
+					LocalDate start = ORIGIN.plusDays(random.nextInt(100));
+					original.createBooking(type, start, start.plusDays(1 + random.nextInt(5)));
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) thread.join();
+		journals.get(0).close();
+		
+		Bookings restored = open(CalendarBackend.ARRAY, journals);
+		journals.get(1).close();
+		assertSameState(original, restored);
+	}
+	
+	/**
+	 * Asserts that the ledgers of two Bookings objects agree on every ID up to a given one.
+	 * @param expected Bookings object that the changes were made to.
+	 * @param actual Bookings object rebuilt from the journal.
+	 * @param lastId The largest ID to be checked.
+	 */
+	void assertSameLedger(Bookings expected, Bookings actual, long lastId) {
+		for (long id = 1; id <= lastId; id++) {
+			BookingRequest booking = expected.getBooking(id);
+			BookingRequest restored = actual.getBooking(id);
+			assert (booking == null) == (restored == null);
+			if (booking == null) continue;
+			assert restored.getType() == booking.getType();
+			assert restored.getStartDate().equals(booking.getStartDate());
+			assert restored.getEndDate().equals(booking.getEndDate());
+		}
+	}
+	
+	/**
+	 * Journal that pauses briefly before appending each cancellation, so that other threads can book the rooms it gave
+	 * back and journal those bookings first.
+	 */
+	static class PausingJournal extends BookingJournal {
+		
+		static final long PAUSE_NANOS = 20000;
+		
+		/**
+		 * Constructor for a PausingJournal.
+		 * @param path Path of the journal file.
+		 * @throws IOException If the file cannot be opened.
+		 */
+		PausingJournal(Path path) throws IOException {
+			super(path);
+		}
+		
+		@Override
+		public long appendCancellation(RoomType type, long id) {
+			LockSupport.parkNanos(PAUSE_NANOS);
+			return super.appendCancellation(type, id);
+		}
+	}
+	
+	/**
+	 * Journal that appends each pair of bookings and cancellations in reverse order, as can happen when they are
+	 * made on the lock-free backend by two threads at once. The first record of each pair is held back until the
+	 * second has been appended.
+	 */
+	static class SwappingJournal extends BookingJournal {
+		
+		boolean holding;
+		boolean heldBooking;
+		RoomType heldType;
+		long heldStart, heldEnd, heldId;
+		
+		/**
+		 * Constructor for a SwappingJournal.
+		 * @param path Path of the journal file.
+		 * @throws IOException If the file cannot be opened.
+		 */
+		SwappingJournal(Path path) throws IOException {
+			super(path);
+		}
+		
+		@Override
+		public long appendBooking(RoomType type, long startDay, long endDay, long id, int room) {
+			if (hold(true, type, startDay, endDay, id)) return 0;
+			super.appendBooking(type, startDay, endDay, id, room);
+			return appendHeld();
+		}
+		
+		@Override
+		public long appendCancellation(RoomType type, long id) {
+			if (hold(false, type, 0, 0, id)) return 0;
+			super.appendCancellation(type, id);
+			return appendHeld();
+		}
+		
+		/**
+		 * Holds back a record if none is held yet.
+		 * @param booking True for a booking, false for a cancellation.
+		 * @param type RoomType of the record.
+		 * @param startDay First night of the booking (unused for a cancellation).
+		 * @param endDay Day after the last night of the booking (unused for a cancellation).
+		 * @param id ID of the booking.
+		 * @return True if the record was held back.
+		 */
+		boolean hold(boolean booking, RoomType type, long startDay, long endDay, long id) {
+			if (holding) return false;
+			holding = true;
+			heldBooking = booking;
+			heldType = type;
+			heldStart = startDay;
+			heldEnd = endDay;
+			heldId = id;
+			return true;
+		}
+		
+		/**
+		 * Appends the record that was held back.
+		 * @return The sequence number of the record.
+		 */
+		long appendHeld() {
+			holding = false;
+			if (heldBooking) return super.appendBooking(heldType, heldStart, heldEnd, heldId, RoomAssignments.NO_ROOM);
+			return super.appendCancellation(heldType, heldId);
+		}
+	}
+	
+	@Test
+	void testLockFreeRecordsReplayInAnyOrder() throws IOException {
+		//A cancellation journaled before its booking, and a booking journaled before the cancellation that gave back
+		//its room, are both restored as they were made
+		testPath = Files.createTempFile("bookings", ".journal");
+		Bookings original = new Bookings(CalendarBackend.ATOMIC);
+		BookingJournal journal = new SwappingJournal(testPath);
+		original.setJournal(journal);
+		original.setNumRooms(RoomType.DOUBLE, 1);
+		//Journaled as: cancellation of first, booking of first
+		long first = original.book(RoomType.DOUBLE, ORIGIN.plusDays(1), ORIGIN.plusDays(2));
+		assert original.cancelBooking(first);
+		//Journaled as: booking of third, booking of second
+		long second = original.book(RoomType.DOUBLE, ORIGIN.plusDays(1), ORIGIN.plusDays(2));
+		long third = original.book(RoomType.DOUBLE, ORIGIN.plusDays(5), ORIGIN.plusDays(6));
+		//Journaled as: booking of fourth, cancellation of third
+		assert original.cancelBooking(third);
+		long fourth = original.book(RoomType.DOUBLE, ORIGIN.plusDays(5), ORIGIN.plusDays(6));
+		assert first > 0 && second > 0 && third > 0 && fourth > 0;
+		journal.close();
+		
+		Bookings restored = new Bookings(CalendarBackend.ATOMIC);
+		BookingJournal reopened = new BookingJournal(testPath);
+		assert reopened.replay(restored) == 7;
+		reopened.close();
+		assertSameState(original, restored);
+		assertSameLedger(original, restored, fourth);
+		assert restored.getBooking(first) == null && restored.getBooking(third) == null;
+		assert restored.checkAvailability(RoomType.DOUBLE, ORIGIN.plusDays(1)) == 0;
+		assert restored.checkAvailability(RoomType.DOUBLE, ORIGIN.plusDays(5)) == 0;
+		assert restored.book(RoomType.DOUBLE, ORIGIN.plusDays(10), ORIGIN.plusDays(11)) > fourth;
+	}
+	
+	@Test
+	void testConcurrentLockFreeChangesReplay() throws IOException, InterruptedException {
+		//With the lock-free backend, bookings that take rooms freed by concurrent cancellations, and capacity changes
+		//racing with both, are journaled without a lock and so not always in the order they were made. Replaying the
+		//journal must still rebuild the same calendars and the same ledger
+		testPath = Files.createTempFile("bookings", ".journal");
+		Bookings original = new Bookings(CalendarBackend.ATOMIC);
+		BookingJournal journal = new PausingJournal(testPath);
+		original.setJournal(journal);
+		original.setNumRooms(RoomType.DOUBLE, 2);
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final long seed = t;
+			Thread thread = new Thread(() -> {
+				Random random = new Random(seed);
+				ArrayList<Long> held = new ArrayList<Long>();
+				for (int i = 0; i < 1000; i++) {
+					if (!held.isEmpty() && random.nextBoolean()) {
+						original.cancelBooking(held.remove(random.nextInt(held.size())));
+						continue;
+					}
+					LocalDate start = ORIGIN.plusDays(random.nextInt(8));
+					long id = original.book(RoomType.DOUBLE, start, start.plusDays(1 + random.nextInt(3)));
+					if (id > 0) held.add(id);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		Thread resizer = new Thread(() -> {
+			for (int i = 0; i < 300; i++) {
+				original.setNumRooms(RoomType.DOUBLE, 1 + i % 3);
+				Thread.yield();
+			}
+		});
+		resizer.start();
+		for (Thread thread : threads) thread.join();
+		resizer.join();
+		journal.close();
+		
+		Bookings restored = new Bookings(CalendarBackend.ATOMIC);
+		BookingJournal reopened = new BookingJournal(testPath);
+		reopened.replay(restored);
+		reopened.close();
+		assertSameState(original, restored);
+		assertSameLedger(original, restored, 4000);
+	}
+	
+	@Test
+	void testPartialRecordIsDiscarded() throws IOException {
+		//A record that was cut off part of the way through being written is ignored, and new records follow the last whole one
+		ArrayList<BookingJournal> journals = new ArrayList<BookingJournal>();
+		Bookings original = open(CalendarBackend.TREE, journals);
+		original.setNumRooms(RoomType.DOUBLE, 2);
+		original.createBooking(RoomType.DOUBLE, ORIGIN, ORIGIN.plusDays(3));
+		journals.get(0).close();
+		try (FileChannel channel = FileChannel.open(testPath, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 5);
+		}
+		
+		Bookings restored = open(CalendarBackend.TREE, journals);
+		assert restored.getNumRoomsByType(RoomType.DOUBLE) == 2;
+		assert restored.checkAvailability(RoomType.DOUBLE, ORIGIN) == 2;
+		restored.createBooking(RoomType.DOUBLE, ORIGIN.plusDays(1), ORIGIN.plusDays(2));
+		journals.get(1).close();
+		
+		Bookings again = open(CalendarBackend.TREE, journals);
+		journals.get(2).close();
+		assertSameState(restored, again);
+	}
+	
+	@Test
+	void testSnapshotRoundTrip() throws IOException {
+		//A snapshot taken with any backend loads back into any backend with the same state
+		Random random = new Random(5);
+		for (CalendarBackend from : CalendarBackend.values()) {
+			Bookings original = new Bookings(from);
+			for (RoomType type : RoomType.values()) original.setNumRooms(type, 2 + type.getValue());
+			for (int i = 0; i < 300; i++) {
+				RoomType type = RoomType.values()[random.nextInt(RoomType.values().length)];
+				LocalDate start = ORIGIN.plusDays(random.nextInt(100));
+				original.createBooking(type, start, start.plusDays(1 + random.nextInt(10)));
+			}
+			original.setNumRooms(RoomType.QUEEN, ORIGIN.plusDays(20), ORIGIN.plusDays(50), 1);
+			if (testPath == null) testPath = Files.createTempFile("bookings", ".snapshot");
+			original.saveSnapshot(testPath);
+			for (CalendarBackend to : CalendarBackend.values()) {
+				assertSameState(original, Bookings.loadSnapshot(testPath, to));
+			}
+		}
+	}
+	
+	@Test
+	void testCheckpointEmptiesJournal() throws IOException {
+		//After a checkpoint, the snapshot plus the (now shorter) journal restore every booking
+		ArrayList<BookingJournal> journals = new ArrayList<BookingJournal>();
+		Bookings original = open(CalendarBackend.TREE, journals);
+		long headerSize = Files.size(testPath);
+		original.setNumRooms(RoomType.QUEEN, 4);
+		original.createBooking(RoomType.QUEEN, ORIGIN, ORIGIN.plusDays(10));
+		Path snapshotPath = Files.createTempFile("bookings", ".snapshot");
+		try {
+			original.checkpoint(snapshotPath);
+			assert Files.size(testPath) == headerSize;
+			original.createBooking(RoomType.QUEEN, ORIGIN.plusDays(5), ORIGIN.plusDays(15));
+			journals.get(0).close();
+			
+			Bookings restored = Bookings.loadSnapshot(snapshotPath, CalendarBackend.TREE);
+			BookingJournal journal = new BookingJournal(testPath);
+			assert journal.replay(restored) == 1;
+			journal.close();
+			assertSameState(original, restored);
+		} finally {
+			Files.deleteIfExists(snapshotPath);
+		}
+	}
+	
+	@Test
+	void testLedgerSurvivesRestart() throws IOException {
+		//Booking IDs and cancellations are restored from both the journal and a checkpoint, and new IDs never reuse old ones
+		ArrayList<BookingJournal> journals = new ArrayList<BookingJournal>();
+		Bookings original = open(CalendarBackend.TREE, journals);
+		original.setNumRooms(RoomType.TWIN, 3);
+		long first = original.book(RoomType.TWIN, ORIGIN, ORIGIN.plusDays(4));
+		long second = original.book(RoomType.TWIN, ORIGIN.plusDays(2), ORIGIN.plusDays(6));
+		long third = original.book(RoomType.TWIN, ORIGIN.plusDays(1), ORIGIN.plusDays(3));
+		assert original.cancelBooking(second);
+		Path snapshotPath = Files.createTempFile("bookings", ".snapshot");
+		try {
+			original.checkpoint(snapshotPath);
+			assert original.cancelBooking(third);
+			journals.get(0).close();
+			
+			Bookings restored = Bookings.loadSnapshot(snapshotPath, CalendarBackend.ARRAY);
+			BookingJournal journal = new BookingJournal(testPath);
+			journal.replay(restored);
+			journal.close();
+			assertSameState(original, restored);
+			assert restored.getBooking(first).getEndDate().equals(ORIGIN.plusDays(4));
+			assert restored.getBooking(second) == null && restored.getBooking(third) == null;
+			assert restored.book(RoomType.TWIN, ORIGIN, ORIGIN.plusDays(1)) > third;
+			assert restored.cancelBooking(first);
+			assert restored.checkAvailability(RoomType.TWIN, ORIGIN.plusDays(3)) == 3;
+		} finally {
+			Files.deleteIfExists(snapshotPath);
+		}
+	}
+	
+	@Test
+	void testRoomsSurviveRestart() throws IOException {
+		//Rooms are restored from the journal and the snapshot rather than assigned again, which would swap the rooms
+		//of the bookings below, both those made with rooms and those given rooms when assignment was started
+		ArrayList<BookingJournal> journals = new ArrayList<BookingJournal>();
+		Bookings original = open(CalendarBackend.TREE, journals);
+		Path snapshotPath = Files.createTempFile("bookings", ".snapshot");
+		try {
+			original.setNumRooms(RoomType.TWIN, 2);
+			long early = original.book(RoomType.TWIN, ORIGIN.plusDays(10), ORIGIN.plusDays(12));
+			long late = original.book(RoomType.TWIN, ORIGIN.plusDays(11), ORIGIN.plusDays(13));
+			original.enableRoomAssignment();
+			assert original.getAssignedRoom(early) == 0 && original.getAssignedRoom(late) == 1;
+			assert original.cancelBooking(early);
+			long refill = original.book(RoomType.TWIN, ORIGIN.plusDays(10), ORIGIN.plusDays(12));
+			long first = original.book(RoomType.TWIN, ORIGIN, ORIGIN.plusDays(3));
+			long second = original.book(RoomType.TWIN, ORIGIN.plusDays(1), ORIGIN.plusDays(4));
+			assert original.cancelBooking(first);
+			long third = original.book(RoomType.TWIN, ORIGIN, ORIGIN.plusDays(2));
+			long[] ids = { late, refill, second, third };
+			int[] rooms = { 1, 0, 1, 0 };
+			for (int i = 0; i < ids.length; i++) assert original.getAssignedRoom(ids[i]) == rooms[i];
+			journals.get(0).close();
+			
+			Bookings restored = open(CalendarBackend.TREE, journals);
+			restored.enableRoomAssignment();
+			for (int i = 0; i < ids.length; i++) assert restored.getAssignedRoom(ids[i]) == rooms[i];
+			restored.checkpoint(snapshotPath);
+			journals.get(1).close();
+			Bookings loaded = Bookings.loadSnapshot(snapshotPath, CalendarBackend.TREE);
+			loaded.enableRoomAssignment();
+			for (int i = 0; i < ids.length; i++) assert loaded.getAssignedRoom(ids[i]) == rooms[i];
+			assert loaded.book(RoomType.TWIN, ORIGIN.plusDays(1), ORIGIN.plusDays(2)) == -1;
+		} finally {
+			Files.deleteIfExists(snapshotPath);
+		}
+	}
+	
+	@Test
+	void testHorizonIsJournaledAndArchived() throws IOException {
+		//Evicted nights go to the archive, and the horizon is restored from both the journal and a snapshot
+		ArrayList<BookingJournal> journals = new ArrayList<BookingJournal>();
+		Bookings original = open(CalendarBackend.TREE, journals);
+		Path archivePath = Files.createTempFile("bookings", ".archive");
+		Path snapshotPath = Files.createTempFile("bookings", ".snapshot");
+		try (BookingArchive archive = new BookingArchive(archivePath)) {
+			original.setArchive(archive);
+			original.setNumRooms(RoomType.DOUBLE, 2);
+			original.createBooking(RoomType.DOUBLE, ORIGIN, ORIGIN.plusDays(6));
+			original.createBooking(RoomType.DOUBLE, ORIGIN.plusDays(2), ORIGIN.plusDays(4));
+			assert original.advanceHorizon(ORIGIN.plusDays(3)) == 3;
+			ArrayList<Integer> archived = new ArrayList<Integer>();
+			assert archive.forEach(RoomType.DOUBLE, (day, value) -> archived.add(value)) == 3;
+			assert archived.equals(List.of(1, 1, 0));
+			assert archive.forEach(RoomType.KING, (day, value) -> archived.add(value)) == 0;
+			journals.get(0).close();
+			
+			Bookings restored = open(CalendarBackend.ARRAY, journals);
+			assert restored.getHorizon().equals(ORIGIN.plusDays(3));
+			assertSameState(original, restored);
+			restored.checkpoint(snapshotPath);
+			journals.get(1).close();
+			Bookings loaded = Bookings.loadSnapshot(snapshotPath, CalendarBackend.SEGMENT_TREE);
+			assert loaded.getHorizon().equals(ORIGIN.plusDays(3));
+			assertSameState(original, loaded);
+		} finally {
+			Files.deleteIfExists(archivePath);
+			Files.deleteIfExists(snapshotPath);
+		}
+	}
+	
+	/**
+	 * Journal that blocks the first booking appended to it until a latch is released, holding the write lock of the
+	 * booking's type for that long.
+	 */
+	static class BlockingJournal extends BookingJournal {
+		
+		final CountDownLatch release = new CountDownLatch(1);
+		volatile boolean blocked;
+		
+		/**
+		 * Constructor for a BlockingJournal.
+		 * @param path Path of the journal file.
+		 * @throws IOException If the file cannot be opened.
+		 */
+		BlockingJournal(Path path) throws IOException {
+			super(path);
+		}
+		
+		@Override
+		public long appendBooking(RoomType type, long startDay, long endDay, long id, int room) {
+			if (!blocked) {
+				blocked = true;
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return super.appendBooking(type, startDay, endDay, id, room);
+		}
+	}
+	
+	/**
+	 * Waits until a thread is parked, e.g. on a lock.
+	 * @param thread The thread to wait for.
+	 */
+	void awaitParked(Thread thread) {
+		while (thread.getState() != Thread.State.WAITING) Thread.yield();
+	}
+	
+	@Test
+	void testHorizonIsCheckedAgainUnderTheLock() throws IOException, InterruptedException {
+		//A booking that passed the horizon check while the horizon was being moved past its first night is rejected
+		//once it gets the lock, rather than writing to the evicted nights
+		testPath = Files.createTempFile("bookings", ".journal");
+		Bookings bookings = new Bookings(CalendarBackend.TREE);
+		BlockingJournal journal = new BlockingJournal(testPath);
+		bookings.setJournal(journal);
+		bookings.setNumRooms(RoomType.DOUBLE, 2);
+		long[] ids = new long[2];
+		Thread holder = new Thread(() -> ids[0] = bookings.book(RoomType.DOUBLE, ORIGIN.plusDays(5), ORIGIN.plusDays(6)));
+		holder.start();
+		awaitParked(holder);
+		Thread mover = new Thread(() -> {
+			try {
+				bookings.advanceHorizon(ORIGIN.plusDays(3));
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+		});
+		mover.start();
+		awaitParked(mover);
+		Thread late = new Thread(() -> ids[1] = bookings.book(RoomType.DOUBLE, ORIGIN.plusDays(1), ORIGIN.plusDays(4)));
+		late.start();
+		awaitParked(late);
+		journal.release.countDown();
+		holder.join();
+		mover.join();
+		late.join();
+		journal.close();
+		assert bookings.getHorizon().equals(ORIGIN.plusDays(3));
+		assert ids[0] > 0 && ids[1] == -1;
+		assert bookings.getBooking(ids[0] + 1) == null;
+		assert bookings.getNumBookings(RoomType.DOUBLE) == 1;
+	}
+}
@@ -0,0 +1,100 @@
+package unitTests;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import HotelBookingSystem.BookingLedger;
+import HotelBookingSystem.BookingRequest;
+import HotelBookingSystem.RoomType;
+
+/**
+ * Test class for the BookingLedger, checked against a HashMap.
+ * @author Jonathan Janzen
+ *
+ */
+class bookingLedgerTests {
+	
+	@Test
+	void testMatchesHashMap() {
+		//Random adds, restores and removes (enough to grow the table several times, and to leave long probe runs
+		//to be shifted back) must always agree with a HashMap
+		BookingLedger ledger = new BookingLedger();
+		HashMap<Long, long[]> expected = new HashMap<Long, long[]>();
+		Random random = new Random(21);
+		for (int i = 0; i < 50000; i++) {
+			RoomType type = RoomType.values()[random.nextInt(RoomType.values().length)];
+			long start = random.nextInt(1000);
+			long end = start + 1 + random.nextInt(10);
+			int action = random.nextInt(3);
+			if (action == 0) {
+				long id = ledger.add(type, start, end);
+				assert !expected.containsKey(id);
+				expected.put(id, new long[] { type.getValue(), start, end });
+			} else if (action == 1) {
+				long id = 1 + random.nextInt((int) ledger.getLastId() + 10);
+				ledger.put(id, type, start, end);
+				expected.put(id, new long[] { type.getValue(), start, end });
+			} else {
+				long id = 1 + random.nextInt((int) ledger.getLastId() + 1);
+				BookingRequest removed = ledger.remove(id);
+				long[] entry = expected.remove(id);
+				assert (removed == null) == (entry == null);
+				if (removed != null) {
+					assert removed.getType().getValue() == entry[0];
+					assert removed.getStartDate().equals(LocalDate.ofEpochDay(entry[1]));
+					assert removed.getEndDate().equals(LocalDate.ofEpochDay(entry[2]));
+				}
+			}
+			assert ledger.size() == expected.size();
+		}
+		for (long id = 0; id <= ledger.getLastId() + 1; id++) {
+			BookingRequest booking = ledger.get(id);
+			assert (booking == null) == !expected.containsKey(id);
+			if (booking != null) assert booking.getEndDate().toEpochDay() == expected.get(id)[2];
+		}
+	}
+	
+	@Test
+	void testConcurrentAddsAndRemoves() throws InterruptedException {
+		//Threads adding and removing bookings at the same time (as lock-free bookings do) must each get unique IDs,
+		//and every booking that was not removed must still be found
+		BookingLedger ledger = new BookingLedger();
+		int threads = 4;
+		int perThread = 20000;
+		long[][] kept = new long[threads][];
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			workers[t] = new Thread(() -> {
+				long[] ids = new long[perThread];
+				for (int i = 0; i < perThread; i++) {
+					ids[i] = ledger.add(RoomType.fromValue(thread), i, i + 1 + thread);
+					//Remove every other booking again, so that removals shift entries while other threads insert
+					if (i % 2 == 1) assert ledger.remove(ids[i - 1]) != null;
+				}
+				kept[thread] = ids;
+			});
+			workers[t].start();
+		}
+		for (Thread worker : workers) worker.join();
+		
+		assert ledger.getLastId() == threads * perThread;
+		assert ledger.size() == threads * perThread / 2;
+		HashSet<Long> seen = new HashSet<Long>();
+		for (int t = 0; t < threads; t++) {
+			for (int i = 0; i < perThread; i++) {
+				assert seen.add(kept[t][i]);
+				BookingRequest booking = ledger.get(kept[t][i]);
+				assert (booking == null) == (i % 2 == 0);
+				if (booking != null) {
+					assert booking.getType().getValue() == t;
+					assert booking.getEndDate().toEpochDay() == i + 1 + t;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package unitTests;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import HotelBookingSystem.BookingMetrics;
+import HotelBookingSystem.BookingRequest;
+import HotelBookingSystem.Bookings;
+import HotelBookingSystem.CalendarBackend;
+import HotelBookingSystem.LatencyHistogram;
+import HotelBookingSystem.RoomType;
+
+/**
+ * Test class for BookingMetrics and the LatencyHistogram behind it.
+ * @author Jonathan Janzen
+ *
+ */
+class bookingMetricsTests {
+	
+	@Test
+	void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assert histogram.getPercentile(50) == 0;
+		for (int i = 0; i < 99; i++) histogram.record(100);
+		histogram.record(5000);
+		assert histogram.getCount() == 100;
+		assert histogram.getMax() == 5000;
+		assert histogram.getMean() == (99 * 100 + 5000) / 100.0;
+		//Percentiles are the upper bound of their power-of-two bucket
+		assert histogram.getPercentile(50) == 127;
+		assert histogram.getPercentile(99) == 127;
+		assert histogram.getPercentile(100) == 5000;
+	}
+	
+	@Test
+	void testCountsAndGauges() throws Exception {
+		Bookings bookings = new Bookings(CalendarBackend.TREE);
+		BookingMetrics metrics = new BookingMetrics();
+		bookings.setMetrics(metrics);
+		bookings.setNumRooms(RoomType.DOUBLE, 1);
+		bookings.setNumRooms(RoomType.TWIN, 2);
+		LocalDate day = LocalDate.of(2030, 1, 1);
+		long id = bookings.book(RoomType.DOUBLE, day, day.plusDays(20));
+		assert id > 0;
+		assert bookings.book(RoomType.DOUBLE, day, day.plusDays(1)) == -1;
+		bookings.bookAll(List.of(new BookingRequest(RoomType.TWIN, day, day.plusDays(2)),
+				new BookingRequest(RoomType.TWIN, day, day.plusDays(2)), new BookingRequest(RoomType.TWIN, day, day.plusDays(2))));
+		bookings.checkAvailability(RoomType.TWIN, day);
+		bookings.checkAvailability(RoomType.TWIN, day, day.plusDays(2), false);
+		assert bookings.cancelBooking(id);
+		assert !bookings.cancelBooking(id);
+		
+		assert metrics.getBookings().get("DOUBLE") == 1;
+		assert metrics.getRejections().get("DOUBLE") == 1;
+		assert metrics.getBookings().get("TWIN") == 2;
+		assert metrics.getRejections().get("TWIN") == 1;
+		assert metrics.getAvailabilityChecks().get("TWIN") == 2;
+		assert metrics.getCancellations().get("DOUBLE") == 1;
+		assert metrics.getBookingLatency().getCount() == 2;
+		assert metrics.getAvailabilityLatency().getCount() == 2;
+		//The tree of DOUBLE has had to rebalance while its 20 nights were written
+		assert metrics.getCalendarSizes().get("DOUBLE") == 20;
+		assert metrics.getTreeHeights().get("DOUBLE") > 0;
+		assert metrics.getTreeRotations().get("DOUBLE") > 0;
+		assert metrics.getReport().contains("DOUBLE");
+		
+		//Detached metrics stop counting
+		bookings.setMetrics(null);
+		bookings.book(RoomType.TWIN, day.plusDays(5), day.plusDays(6));
+		assert metrics.getBookings().get("TWIN") == 2;
+	}
+	
+	@Test
+	void testRegister() throws Exception {
+		BookingMetrics metrics = new BookingMetrics();
+		ObjectName name = metrics.register();
+		assert ManagementFactory.getPlatformMBeanServer().isRegistered(name);
+		assert ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Bookings") != null;
+		metrics.close();
+		assert !ManagementFactory.getPlatformMBeanServer().isRegistered(name);
+	}
+}
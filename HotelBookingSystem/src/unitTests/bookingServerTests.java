@@ -0,0 +1,136 @@
+package unitTests;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+import HotelBookingSystem.BookingClient;
+import HotelBookingSystem.BookingServer;
+import HotelBookingSystem.Bookings;
+import HotelBookingSystem.RoomType;
+
+/**
+ * Test class for the BookingServer and BookingClient, over the loopback interface.
+ * @author Jonathan Janzen
+ *
+ */
+class bookingServerTests {
+	
+	static final int CLIENTS = 1000;		//concurrent connections in the load test (needs about 2 * CLIENTS file descriptors)
+	static final int DRIVERS = 8;			//threads driving the connections
+	static final int PIPELINED = 50;		//requests sent by each connection before reading any response
+	static final int WINDOW = 30;			//number of nights that the bookings are spread over
+	static final int ROOMS = 1000;
+	static final LocalDate ORIGIN = LocalDate.parse("2030-03-01");
+	
+	/**
+	 * Starts a server for the given bookings on a free loopback port.
+	 * @param bookings Bookings object to be served.
+	 * @return The running server.
+	 * @throws IOException If the server cannot be started.
+	 */
+	BookingServer startServer(Bookings bookings) throws IOException {
+		BookingServer server = new BookingServer(bookings, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4);
+		server.start();
+		return server;
+	}
+	
+	@Test
+	void testRoundTrip() throws IOException {
+		Bookings bookings = new Bookings();
+		try (BookingServer server = startServer(bookings);
+				BookingClient client = new BookingClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()))) {
+			client.setNumRooms(RoomType.QUEEN, 1);
+			assert bookings.getNumRoomsByType(RoomType.QUEEN) == 1;
+			assert client.checkAvailability(RoomType.QUEEN, ORIGIN) == 1;
+			long id = client.book(RoomType.QUEEN, ORIGIN, ORIGIN.plusDays(3));
+			assert id > 0;
+			assert client.book(RoomType.QUEEN, ORIGIN.plusDays(2), ORIGIN.plusDays(4)) == -1;
+			assert client.checkAvailability(RoomType.QUEEN, ORIGIN.plusDays(1)) == 0;
+			assert client.cancelBooking(id);
+			assert !client.cancelBooking(id);
+			assert client.checkAvailability(RoomType.QUEEN, ORIGIN.plusDays(1)) == 1;
+			
+			//Malformed requests are answered with an error, and the connection stays usable
+			try {
+				client.setNumRooms(RoomType.QUEEN, -1);
+				assert false;
+			} catch (IllegalArgumentException ex) {
+				//Expected
+			}
+			client.send((byte) 99, RoomType.QUEEN, 0, 0);
+			client.send(BookingServer.OP_CHECK, RoomType.QUEEN, ORIGIN.toEpochDay(), 0);
+			try {
+				client.receive();
+				assert false;
+			} catch (IllegalArgumentException ex) {
+				//Expected
+			}
+			assert client.receive() == 1;
+		}
+	}
+	
+	@Test
+	void testPipelinedLoad() throws Exception {
+		//Many connections each pipeline a burst of one-night bookings, with more demand than rooms on every night;
+		//every night must end up exactly full, and the server's answers must agree with the Bookings object
+		Bookings bookings = new Bookings();
+		bookings.setNumRooms(RoomType.KING, ROOMS);
+		AtomicIntegerArray taken = new AtomicIntegerArray(WINDOW);
+		ArrayList<Throwable> failures = new ArrayList<Throwable>();
+		try (BookingServer server = startServer(bookings)) {
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+			ArrayList<Thread> threads = new ArrayList<Thread>();
+			for (int t = 0; t < DRIVERS; t++) {
+				final int driver = t;
+				Thread thread = new Thread(() -> {
+					ArrayList<BookingClient> clients = new ArrayList<BookingClient>();
+					try {
+						for (int c = driver; c < CLIENTS; c += DRIVERS) clients.add(new BookingClient(address));
+						//Send every burst before reading any response, so that all the connections are busy at once
+						for (int c = 0; c < clients.size(); c++) {
+							for (int i = 0; i < PIPELINED; i++) {
+								long day = ORIGIN.toEpochDay() + (driver + c + i) % WINDOW;
+								clients.get(c).send(BookingServer.OP_BOOK, RoomType.KING, day, day + 1);
+							}
+							clients.get(c).flush();
+						}
+						for (int c = 0; c < clients.size(); c++) {
+							for (int i = 0; i < PIPELINED; i++) {
+								if (clients.get(c).receive() > 0) taken.incrementAndGet((driver + c + i) % WINDOW);
+							}
+						}
+					} catch (Throwable ex) {
+						synchronized (failures) {
+							failures.add(ex);
+						}
+					} finally {
+						for (BookingClient client : clients) {
+							try {
+								client.close();
+							} catch (IOException ex) {
+								//Already closed
+							}
+						}
+					}
+				});
+				threads.add(thread);
+				thread.start();
+			}
+			for (Thread thread : threads) thread.join();
+			assert failures.isEmpty() : failures.get(0);
+			
+			try (BookingClient client = new BookingClient(address)) {
+				for (int d = 0; d < WINDOW; d++) {
+					assert taken.get(d) == ROOMS;
+					assert client.checkAvailability(RoomType.KING, ORIGIN.plusDays(d)) == 0;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package unitTests;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+import HotelBookingSystem.Bookings;
+import HotelBookingSystem.CalendarBackend;
+import HotelBookingSystem.RoomType;
+
+/**
+ * Stress tests for using a single Bookings object from many threads at once.
+ * @author Jonathan Janzen
+ *
+ */
+class bookingsConcurrencyTests {
+	
+	static final int THREADS = 16;
+	static final int BOOKINGS_PER_THREAD = 2000;
+	static final int WINDOW = 60;		//number of nights that the bookings are spread over
+	static final int ROOMS = 5;
+	static final LocalDate ORIGIN = LocalDate.parse("2022-06-01");
+	
+	/**
+	 * Books random stays from many threads at once, recording how many rooms were successfully taken on each night.
+	 * @param bookings Bookings object to be shared by every thread.
+	 * @param taken Number of successful bookings covering each night of each type, indexed [type * WINDOW + night].
+	 * @throws InterruptedException If the test thread is interrupted while waiting.
+	 */
+	void hammer(Bookings bookings, AtomicIntegerArray taken) throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		ArrayList<Throwable> failures = new ArrayList<Throwable>();
+		for (int t = 0; t < THREADS; t++) {
+			final long seed = t;
+			Thread thread = new Thread(() -> {
+				Random random = new Random(seed);
+				try {
+					start.await();
+					for (int i = 0; i < BOOKINGS_PER_THREAD; i++) {
+						RoomType type = RoomType.values()[random.nextInt(RoomType.values().length)];
+						int first = random.nextInt(WINDOW - 1);
+						int last = Math.min(WINDOW, first + 1 + random.nextInt(7));
+						if (bookings.createBooking(type, ORIGIN.plusDays(first), ORIGIN.plusDays(last))) {
+							for (int d = first; d < last; d++) taken.incrementAndGet(type.getValue() * WINDOW + d);
+						}
+						//Availability must never be seen below zero, even while other threads are booking
+						assert bookings.checkAvailability(type, ORIGIN.plusDays(first)) >= 0;
+					}
+				} catch (Throwable ex) {
+					synchronized (failures) {
+						failures.add(ex);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : threads) thread.join();
+		assert failures.isEmpty() : failures.get(0);
+	}
+	
+	@Test
+	void testNoOverbookingUnderContention() throws InterruptedException {
+		//Hammers every backend from many threads and verifies that no night is ever overbooked, and that the
+		//availability left on each night matches exactly the bookings that reported success
+		for (CalendarBackend backend : CalendarBackend.values()) {
+			Bookings bookings = new Bookings(backend);
+			for (RoomType type : RoomType.values()) bookings.setNumRooms(type, ROOMS);
+			AtomicIntegerArray taken = new AtomicIntegerArray(RoomType.values().length * WINDOW);
+			hammer(bookings, taken);
+			
+			for (RoomType type : RoomType.values()) {
+				for (int d = 0; d < WINDOW; d++) {
+					int available = bookings.checkAvailability(type, ORIGIN.plusDays(d));
+					assert available >= 0;
+					assert available == ROOMS - taken.get(type.getValue() * WINDOW + d);
+				}
+			}
+		}
+	}
+	
+	@Test
+	void testLastRoomBookedOnce() throws InterruptedException {
+		//Many threads race for the only room on the same nights; exactly one of them must win
+		Bookings bookings = new Bookings();
+		bookings.setNumRooms(RoomType.DOUBLE, 1);
+		AtomicIntegerArray wins = new AtomicIntegerArray(1);
+		CountDownLatch start = new CountDownLatch(1);
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < THREADS; t++) {
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException ex) {
+					return;
+				}
+				if (bookings.createBooking(RoomType.DOUBLE, ORIGIN, ORIGIN.plusDays(3))) wins.incrementAndGet(0);
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : threads) thread.join();
+		assert wins.get(0) == 1;
+		assert bookings.checkAvailability(RoomType.DOUBLE, ORIGIN.plusDays(1)) == 0;
+	}
+	
+	@Test
+	void testSnapshotReadsAreConsistent() throws InterruptedException {
+		//Every booking covers the same nights, so a reader that sees one version of the calendar must always see
+		//the same availability on each of them, even without a lock while the writer is publishing
+		Bookings bookings = new Bookings(CalendarBackend.PERSISTENT_TREE);
+		bookings.setNumRooms(RoomType.KING, BOOKINGS_PER_THREAD);
+		ArrayList<Throwable> failures = new ArrayList<Throwable>();
+		ArrayList<Thread> readers = new ArrayList<Thread>();
+		Thread writer = new Thread(() -> {
+			for (int i = 0; i < BOOKINGS_PER_THREAD; i++) bookings.createBooking(RoomType.KING, ORIGIN, ORIGIN.plusDays(WINDOW));
+		});
+		for (int t = 0; t < THREADS / 2; t++) {
+			Thread reader = new Thread(() -> {
+				try {
+					while (writer.isAlive()) {
+						int[] nights = bookings.checkAvailability(RoomType.KING, ORIGIN, ORIGIN.plusDays(WINDOW), true).getNights();
+						for (int night : nights) assert night == nights[0];
+					}
+				} catch (Throwable ex) {
+					synchronized (failures) {
+						failures.add(ex);
+					}
+				}
+			});
+			readers.add(reader);
+		}
+		writer.start();
+		for (Thread reader : readers) reader.start();
+		writer.join();
+		for (Thread reader : readers) reader.join();
+		assert failures.isEmpty() : failures.get(0);
+		assert bookings.checkAvailability(RoomType.KING, ORIGIN.plusDays(WINDOW - 1)) == 0;
+	}
+	
+	@Test
+	void testContentionCounters() throws InterruptedException {
+		//Lock-based backends never retry, while the ATOMIC backend only counts retries and rollbacks under contention
+		Bookings locked = new Bookings(CalendarBackend.TREE);
+		locked.setNumRooms(RoomType.TWIN, ROOMS);
+		hammer(locked, new AtomicIntegerArray(RoomType.values().length * WINDOW));
+		assert locked.getCasRetries(RoomType.TWIN) == 0 && locked.getRollbacks(RoomType.TWIN) == 0;
+		
+		Bookings atomic = new Bookings(CalendarBackend.ATOMIC);
+		atomic.setNumRooms(RoomType.TWIN, 1);
+		assert atomic.createBooking(RoomType.TWIN, ORIGIN, ORIGIN.plusDays(5));
+		assert !atomic.createBooking(RoomType.TWIN, ORIGIN.plusDays(2), ORIGIN.plusDays(8));
+		assert atomic.getCasRetries(RoomType.TWIN) == 0 && atomic.getRollbacks(RoomType.TWIN) == 0;
+		hammer(atomic, new AtomicIntegerArray(RoomType.values().length * WINDOW));
+		assert atomic.getCasRetries(RoomType.TWIN) >= 0 && atomic.getRollbacks(RoomType.TWIN) >= 0;
+	}
+}
@@ -2,13 +2,21 @@ package unitTests;
 
 import static org.junit.Assert.assertThrows;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import HotelBookingSystem.BookingRequest;
 import HotelBookingSystem.Bookings;
+import HotelBookingSystem.CalendarBackend;
+import HotelBookingSystem.RangeAvailability;
+import HotelBookingSystem.RoomAssignments;
 import HotelBookingSystem.RoomType;
 
 /**
@@ -115,6 +123,54 @@ class bookingsTests {
 		assert testBookings.checkAvailability(RoomType.TWIN, LocalDate.parse("2022-07-01")) == testNumRooms.get(RoomType.TWIN.getValue()) - 3;
 	}
 	
+	@Test
+	void testCheckAvailabilityRange() {
+		//Using the same bookings as above, the bottleneck of the whole stay is the first night with three bookings
+		testBookings.createBooking(RoomType.TWIN, LocalDate.parse("2022-07-01"), LocalDate.parse("2022-07-03"));
+		testBookings.createBooking(RoomType.TWIN, LocalDate.parse("2022-06-20"), LocalDate.parse("2022-07-02"));
+		testBookings.createBooking(RoomType.TWIN, LocalDate.parse("2022-06-28"), LocalDate.parse("2022-07-03"));
+		
+		RangeAvailability range = testBookings.checkAvailability(RoomType.TWIN, LocalDate.parse("2022-06-15"), LocalDate.parse("2022-07-10"));
+		assert range.getMinimum() == testNumRooms.get(RoomType.TWIN.getValue()) - 3;
+		assert range.getBottleneck().equals(LocalDate.parse("2022-07-01"));
+		assert range.getNights() == null;
+		
+		range = testBookings.checkAvailability(RoomType.TWIN, LocalDate.parse("2022-06-19"), LocalDate.parse("2022-06-30"), true);
+		assert range.getMinimum() == testNumRooms.get(RoomType.TWIN.getValue()) - 2;
+		assert range.getBottleneck().equals(LocalDate.parse("2022-06-28"));
+		assert range.getNights().length == 11;
+		assert range.getNights()[0] == testNumRooms.get(RoomType.TWIN.getValue());
+		assert range.getNights()[1] == testNumRooms.get(RoomType.TWIN.getValue()) - 1;
+	}
+	
+	@Test
+	void testCheckAvailabilityRangeNoNights() {
+		//A range that does not include a night cannot be checked
+		assertThrows(IllegalArgumentException.class, () -> {
+			testBookings.checkAvailability(RoomType.TWIN, LocalDate.parse("2022-06-13"), LocalDate.parse("2022-06-13"));
+		});
+	}
+	
+	@Test
+	void testSearchAvailability() {
+		//Every type is returned, ranked by the number of rooms available over the whole stay
+		testBookings.createBooking(RoomType.QUEEN, LocalDate.parse("2022-07-01"), LocalDate.parse("2022-07-05"));
+		testBookings.createBooking(RoomType.QUEEN, LocalDate.parse("2022-07-02"), LocalDate.parse("2022-07-03"));
+		testBookings.createBooking(RoomType.QUEEN, LocalDate.parse("2022-07-02"), LocalDate.parse("2022-07-03"));
+		List<RangeAvailability> results = testBookings.searchAvailability(LocalDate.parse("2022-06-30"), LocalDate.parse("2022-07-04"));
+		assert results.size() == RoomType.values().length;
+		assert results.get(0).getType() == RoomType.TWIN && results.get(0).getMinimum() == 3;
+		assert results.get(1).getType() == RoomType.QUEEN && results.get(1).getMinimum() == 2;
+		assert results.get(1).getBottleneck().equals(LocalDate.parse("2022-07-02"));
+		assert results.get(2).getType() == RoomType.DOUBLE && results.get(2).getMinimum() == 1;
+		assert results.get(3).getType() == RoomType.KING && results.get(3).getMinimum() == 0;
+		
+		//A long range is searched in parallel, and must give the same ranking
+		results = testBookings.searchAvailability(LocalDate.parse("2020-01-01"), LocalDate.parse("2026-01-01"));
+		assert results.get(0).getType() == RoomType.TWIN && results.get(1).getType() == RoomType.QUEEN;
+		assert results.get(1).getMinimum() == 2;
+	}
+	
 	@Test
 	void testCheckAvailabilityNoBookings() {
 		//Test to go through each possible room type on a given day and ensure that they are available (with
@@ -150,4 +206,241 @@ class bookingsTests {
 		
 		assert testBookings.getNumBookings(RoomType.TWIN) == 13;
 	}
+	
+	@Test
+	void testCreateBookingsMatchesSequential() {
+		//A batch of requests must give the same results, and leave the same availability, as booking them one by one
+		Random random = new Random(3);
+		LocalDate origin = LocalDate.parse("2022-06-01");
+		ArrayList<BookingRequest> requests = new ArrayList<BookingRequest>();
+		for (int i = 0; i < 2000; i++) {
+			RoomType type = RoomType.values()[random.nextInt(RoomType.values().length)];
+			//Spread the stays over two clusters of dates, with the occasional empty or backwards stay
+			LocalDate start = origin.plusDays(random.nextInt(60) + (random.nextBoolean() ? 0 : 400));
+			requests.add(new BookingRequest(type, start, start.plusDays(random.nextInt(12) - 1)));
+		}
+		for (CalendarBackend backend : CalendarBackend.values()) {
+			Bookings sequential = new Bookings(backend);
+			Bookings batch = new Bookings(backend);
+			for (int i = 0; i < RoomType.values().length; i++) {
+				sequential.setNumRooms(RoomType.values()[i], testNumRooms.get(i) * 4);
+				batch.setNumRooms(RoomType.values()[i], testNumRooms.get(i) * 4);
+			}
+			//Existing bookings that the batch has to take into account
+			sequential.createBooking(RoomType.QUEEN, origin.plusDays(10), origin.plusDays(20));
+			batch.createBooking(RoomType.QUEEN, origin.plusDays(10), origin.plusDays(20));
+			
+			boolean[] results = batch.createBookings(requests);
+			for (int i = 0; i < requests.size(); i++) {
+				BookingRequest request = requests.get(i);
+				assert results[i] == sequential.createBooking(request.getType(), request.getStartDate(), request.getEndDate());
+			}
+			for (RoomType type : RoomType.values()) {
+				assert batch.getNumBookings(type) == sequential.getNumBookings(type);
+				for (int d = 0; d < 480; d++) {
+					assert batch.checkAvailability(type, origin.plusDays(d)) == sequential.checkAvailability(type, origin.plusDays(d));
+				}
+			}
+		}
+	}
+	
+	@Test
+	void testCancelBooking() {
+		//A cancelled booking gives its rooms back, and cannot be cancelled a second time
+		long id = testBookings.book(RoomType.TWIN, LocalDate.parse("2022-06-10"), LocalDate.parse("2022-06-13"));
+		assert id > 0;
+		assert testBookings.getBooking(id).getStartDate().equals(LocalDate.parse("2022-06-10"));
+		assert testBookings.checkAvailability(RoomType.TWIN, LocalDate.parse("2022-06-12")) == 2;
+		assert testBookings.cancelBooking(id);
+		assert testBookings.checkAvailability(RoomType.TWIN, LocalDate.parse("2022-06-12")) == 3;
+		assert testBookings.getBooking(id) == null;
+		assert !testBookings.cancelBooking(id);
+		assert testBookings.book(RoomType.KING, LocalDate.parse("2022-06-10"), LocalDate.parse("2022-06-13")) == -1;
+	}
+	
+	@Test
+	void testCancelBookingsMatchesSequential() {
+		//A batch of cancellations must leave the same availability as cancelling them one by one, and cancelling
+		//every booking must give back every room
+		Random random = new Random(8);
+		LocalDate origin = LocalDate.parse("2022-06-01");
+		ArrayList<BookingRequest> requests = new ArrayList<BookingRequest>();
+		for (int i = 0; i < 2000; i++) {
+			RoomType type = RoomType.values()[random.nextInt(RoomType.values().length)];
+			LocalDate start = origin.plusDays(random.nextInt(60) + (random.nextBoolean() ? 0 : 400));
+			requests.add(new BookingRequest(type, start, start.plusDays(1 + random.nextInt(10))));
+		}
+		for (CalendarBackend backend : CalendarBackend.values()) {
+			Bookings sequential = new Bookings(backend);
+			Bookings batch = new Bookings(backend);
+			for (int i = 0; i < RoomType.values().length; i++) {
+				sequential.setNumRooms(RoomType.values()[i], testNumRooms.get(i) * 4);
+				batch.setNumRooms(RoomType.values()[i], testNumRooms.get(i) * 4);
+			}
+			long[] ids = batch.bookAll(requests);
+			assert Arrays.equals(ids, sequential.bookAll(requests));
+			//Cancel every other ID, plus some that do not exist or repeat
+			long[] cancelled = new long[ids.length / 2 + 2];
+			for (int i = 0; i < ids.length / 2; i++) cancelled[i] = ids[2 * i];
+			cancelled[cancelled.length - 2] = 123456789;
+			cancelled[cancelled.length - 1] = ids[0];
+			boolean[] results = batch.cancelBookings(cancelled);
+			for (int i = 0; i < cancelled.length; i++) assert results[i] == sequential.cancelBooking(cancelled[i]);
+			for (RoomType type : RoomType.values()) {
+				for (int d = 0; d < 480; d++) {
+					assert batch.checkAvailability(type, origin.plusDays(d)) == sequential.checkAvailability(type, origin.plusDays(d));
+				}
+			}
+			batch.cancelBookings(ids);
+			for (RoomType type : RoomType.values()) {
+				for (int d = 0; d < 480; d++) {
+					assert batch.checkAvailability(type, origin.plusDays(d)) == batch.getNumRoomsByType(type);
+				}
+			}
+		}
+	}
+	
+	@Test
+	void testFindEarliestWindow() {
+		//QUEEN (5 rooms) is full from the 10th to the 14th and down to 3 rooms on the 17th
+		LocalDate origin = LocalDate.parse("2022-06-01");
+		for (int i = 0; i < 5; i++) testBookings.createBooking(RoomType.QUEEN, origin.plusDays(10), origin.plusDays(15));
+		for (int i = 0; i < 2; i++) testBookings.createBooking(RoomType.QUEEN, origin.plusDays(17), origin.plusDays(18));
+		assert testBookings.findEarliestWindow(RoomType.QUEEN, origin, 5, 1).equals(origin);
+		assert testBookings.findEarliestWindow(RoomType.QUEEN, origin.plusDays(8), 3, 1).equals(origin.plusDays(15));
+		assert testBookings.findEarliestWindow(RoomType.QUEEN, origin.plusDays(8), 3, 4).equals(origin.plusDays(18));
+		assert testBookings.findEarliestWindow(RoomType.QUEEN, origin.plusDays(8), origin.plusDays(20), 3, 4) == null;
+		assert testBookings.findEarliestWindow(RoomType.QUEEN, origin, 1, 6) == null;
+		assert testBookings.findEarliestWindow(RoomType.KING, origin, 1, 1) == null;
+		assertThrows(IllegalArgumentException.class, () -> testBookings.findEarliestWindow(RoomType.QUEEN, origin, 0, 1));
+	}
+	
+	@Test
+	void testAdvanceHorizon() throws IOException {
+		//Nights before the horizon are evicted from every backend, report no availability and cannot be booked,
+		//while bookings after it are untouched and a booking across it only gives back its later nights
+		LocalDate origin = LocalDate.parse("2022-06-01");
+		for (CalendarBackend backend : CalendarBackend.values()) {
+			Bookings bookings = new Bookings(backend);
+			bookings.setNumRooms(RoomType.QUEEN, 3);
+			long past = bookings.book(RoomType.QUEEN, origin, origin.plusDays(5));
+			long across = bookings.book(RoomType.QUEEN, origin.plusDays(8), origin.plusDays(12));
+			long future = bookings.book(RoomType.QUEEN, origin.plusDays(20), origin.plusDays(22));
+			assert bookings.getHorizon() == null;
+			
+			assert bookings.advanceHorizon(origin.plusDays(10)) == 7;
+			assert bookings.getHorizon().equals(origin.plusDays(10));
+			assert bookings.advanceHorizon(origin.plusDays(3)) == 0;
+			assert bookings.getNumBookings(RoomType.QUEEN) == 4;
+			assert bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(9)) == 0;
+			assert bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(11)) == 2;
+			assert bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(9), origin.plusDays(12)).getMinimum() == 0;
+			assert bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(9), origin.plusDays(12), true).getNights()[2] == 2;
+			assert bookings.book(RoomType.QUEEN, origin.plusDays(9), origin.plusDays(11)) == -1;
+			assert !bookings.createBookings(List.of(new BookingRequest(RoomType.QUEEN, origin.plusDays(9), origin.plusDays(11))))[0];
+			
+			assert bookings.getBooking(past) == null;
+			assert bookings.cancelBooking(across);
+			assert bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(11)) == 3;
+			assert bookings.cancelBooking(future);
+			assert bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(21)) == 3;
+		}
+	}
+	
+	@Test
+	void testCapacityOverrides() {
+		//Changing the number of rooms applies at once to nights already booked, and a wing closed over a range of
+		//dates only lowers the rooms on those nights, for every backend and every way of booking
+		LocalDate origin = LocalDate.parse("2022-03-01");
+		for (CalendarBackend backend : CalendarBackend.values()) {
+			Bookings bookings = new Bookings(backend);
+			bookings.setNumRooms(RoomType.QUEEN, 3);
+			long early = bookings.book(RoomType.QUEEN, origin.plusDays(5), origin.plusDays(10));
+			bookings.book(RoomType.QUEEN, origin.plusDays(5), origin.plusDays(10));
+			assert bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(7)) == 1;
+			bookings.setNumRooms(RoomType.QUEEN, 5);
+			assert bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(7)) == 3;
+			
+			//Close a wing of 3 rooms from the 8th to the 20th
+			bookings.setNumRooms(RoomType.QUEEN, origin.plusDays(8), origin.plusDays(20), 2);
+			assert bookings.getNumRoomsByType(RoomType.QUEEN, origin.plusDays(8)) == 2;
+			assert bookings.getNumRoomsByType(RoomType.QUEEN, origin.plusDays(20)) == 5;
+			assert bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(7)) == 3;
+			assert bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(9)) == 0;
+			assert bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(12)) == 2;
+			RangeAvailability range = bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(5), origin.plusDays(12));
+			assert range.getMinimum() == 0 && range.getBottleneck().equals(origin.plusDays(8));
+			assert Arrays.equals(bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(6), origin.plusDays(12), true).getNights(),
+					new int[] { 3, 3, 0, 0, 2, 2 });
+			assert bookings.book(RoomType.QUEEN, origin.plusDays(6), origin.plusDays(9)) == -1;
+			assert bookings.findEarliestWindow(RoomType.QUEEN, origin.plusDays(6), 4, 3).equals(origin.plusDays(20));
+			assert bookings.findEarliestWindow(RoomType.QUEEN, origin.plusDays(6), 4, 2).equals(origin.plusDays(10));
+			
+			//A stay across the start of the closure takes a room on both sides of it
+			assert bookings.book(RoomType.QUEEN, origin.plusDays(18), origin.plusDays(22)) > 0;
+			assert bookings.book(RoomType.QUEEN, origin.plusDays(18), origin.plusDays(22)) > 0;
+			assert bookings.book(RoomType.QUEEN, origin.plusDays(19), origin.plusDays(21)) == -1;
+			assert bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(21)) == 3;
+			boolean[] batch = bookings.createBookings(List.of(new BookingRequest(RoomType.QUEEN, origin.plusDays(12), origin.plusDays(14)),
+					new BookingRequest(RoomType.QUEEN, origin.plusDays(13), origin.plusDays(15)),
+					new BookingRequest(RoomType.QUEEN, origin.plusDays(13), origin.plusDays(14)),
+					new BookingRequest(RoomType.QUEEN, origin.plusDays(20), origin.plusDays(21))));
+			assert batch[0] && batch[1] && !batch[2] && batch[3];
+			
+			//Reopening the wing gives the rooms back, and cancelling still gives back every night
+			bookings.clearNumRooms(RoomType.QUEEN, origin.plusDays(8), origin.plusDays(20));
+			assert bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(9)) == 3;
+			assert bookings.cancelBooking(early);
+			assert bookings.checkAvailability(RoomType.QUEEN, origin.plusDays(9)) == 4;
+			assert bookings.getNumRoomsByType(RoomType.QUEEN, origin.plusDays(9)) == 5;
+		}
+	}
+	
+	@Test
+	void testRoomAssignment() {
+		//Every booking gets a room free over its whole stay, cancelling frees it, and a stay whose nights are only
+		//free in different rooms is rejected
+		LocalDate origin = LocalDate.parse("2022-06-01");
+		Bookings bookings = new Bookings();
+		bookings.setNumRooms(RoomType.TWIN, 2);
+		long before = bookings.book(RoomType.TWIN, origin, origin.plusDays(2));
+		bookings.enableRoomAssignment();
+		assert bookings.getAssignedRoom(before) == 0;
+		long second = bookings.book(RoomType.TWIN, origin.plusDays(3), origin.plusDays(5));
+		long third = bookings.book(RoomType.TWIN, origin.plusDays(1), origin.plusDays(3));
+		assert bookings.getAssignedRoom(second) == 0;
+		assert bookings.getAssignedRoom(third) == 1;
+		assert Arrays.equals(bookings.getOccupiedRooms(RoomType.TWIN, origin.plusDays(1)), new int[] { 0, 1 });
+		
+		//Room 0 is only free on night 2 and room 1 only on night 3
+		assert bookings.checkAvailability(RoomType.TWIN, origin.plusDays(2), origin.plusDays(4)).getMinimum() == 1;
+		assert bookings.book(RoomType.TWIN, origin.plusDays(2), origin.plusDays(4)) == -1;
+		assert bookings.cancelBooking(second);
+		assert bookings.getAssignedRoom(second) == -1;
+		long fitted = bookings.book(RoomType.TWIN, origin.plusDays(2), origin.plusDays(4));
+		assert bookings.getAssignedRoom(fitted) == 0;
+		
+		boolean[] batch = bookings.createBookings(List.of(new BookingRequest(RoomType.TWIN, origin.plusDays(5), origin.plusDays(7)),
+				new BookingRequest(RoomType.TWIN, origin.plusDays(5), origin.plusDays(7)),
+				new BookingRequest(RoomType.TWIN, origin.plusDays(5), origin.plusDays(6))));
+		assert batch[0] && batch[1] && !batch[2];
+		assert Arrays.equals(bookings.getOccupiedRooms(RoomType.TWIN, origin.plusDays(5)), new int[] { 0, 1 });
+		assertThrows(IllegalStateException.class, () -> new Bookings(CalendarBackend.ATOMIC).enableRoomAssignment());
+	}
+	
+	@Test
+	void testRoomAssignmentFailsIfABookingCannotBePlaced() {
+		//Each night has a room for every booking, but once the first three have their best-fitting rooms, no single
+		//room is free on both nights of the last one: no room is assigned at all rather than leaving it without one
+		LocalDate origin = LocalDate.parse("2022-06-01");
+		Bookings bookings = new Bookings();
+		bookings.setNumRooms(RoomType.TWIN, 2);
+		long first = bookings.book(RoomType.TWIN, origin.plusDays(1), origin.plusDays(2));
+		bookings.book(RoomType.TWIN, origin.plusDays(3), origin.plusDays(4));
+		bookings.book(RoomType.TWIN, origin, origin.plusDays(3));
+		assert bookings.book(RoomType.TWIN, origin.plusDays(2), origin.plusDays(4)) > 0;
+		assertThrows(IllegalStateException.class, () -> bookings.enableRoomAssignment());
+		assert bookings.getAssignedRoom(first) == RoomAssignments.NO_ROOM;
+		assertThrows(IllegalStateException.class, () -> bookings.getOccupiedRooms(RoomType.TWIN, origin));
+	}
 }
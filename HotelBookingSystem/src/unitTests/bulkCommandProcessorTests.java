@@ -0,0 +1,126 @@
+package unitTests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import HotelBookingSystem.Bookings;
+import HotelBookingSystem.BulkCommandProcessor;
+import HotelBookingSystem.RoomType;
+
+/**
+ * Test class for the BulkCommandProcessor, checked against the same commands made directly on a Bookings object.
+ * @author Jonathan Janzen
+ *
+ */
+class bulkCommandProcessorTests {
+	
+	static final LocalDate ORIGIN = LocalDate.parse("2031-12-20");
+	
+	/**
+	 * Runs a block of commands through a new processor.
+	 * @param bookings Bookings object that the commands are applied to.
+	 * @param commands The commands, one per line.
+	 * @return The lines written by the processor.
+	 * @throws IOException Never, as both streams are in memory.
+	 */
+	String[] run(Bookings bookings, String commands) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new BulkCommandProcessor(bookings).process(new ByteArrayInputStream(commands.getBytes(StandardCharsets.US_ASCII)), out);
+		return out.toString(StandardCharsets.US_ASCII).split("\n");
+	}
+	
+	@Test
+	void testMatchesDirectCalls() throws IOException {
+		//Enough random commands to fill the input and output buffers several times over
+		Bookings direct = new Bookings();
+		StringBuilder commands = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		Random random = new Random(17);
+		for (RoomType type : RoomType.values()) {
+			commands.append("ROOMS ").append(type.getValue()).append(' ').append(3).append('\n');
+			direct.setNumRooms(type, 3);
+			expected.append("OK\n");
+		}
+		long lastId = 0;
+		for (int i = 0; i < 40000; i++) {
+			RoomType type = RoomType.values()[random.nextInt(RoomType.values().length)];
+			LocalDate start = ORIGIN.plusDays(random.nextInt(60));
+			int action = random.nextInt(5);
+			if (action < 2) {
+				commands.append("CHECK ").append(type.name()).append(' ').append(start).append('\n');
+				expected.append(direct.checkAvailability(type, start)).append('\n');
+			} else if (action < 4) {
+				LocalDate end = start.plusDays(1 + random.nextInt(5));
+				commands.append("book\t").append(type.name().toLowerCase()).append("  ").append(start).append(' ').append(end).append("\r\n");
+				long id = direct.book(type, start, end);
+				if (id > 0) lastId = id;
+				expected.append(id).append('\n');
+			} else {
+				long id = 1 + random.nextInt((int) lastId + 1);
+				commands.append("CANCEL ").append(id).append('\n');
+				expected.append(direct.cancelBooking(id) ? 1 : 0).append('\n');
+			}
+		}
+		Bookings bulk = new Bookings();
+		String[] results = run(bulk, commands.toString());
+		assert String.join("\n", results).equals(expected.toString().trim());
+		for (RoomType type : RoomType.values()) assert bulk.getNumBookings(type) == direct.getNumBookings(type);
+	}
+	
+	@Test
+	void testDatesMatchLocalDate() throws IOException {
+		//Every day over several leap years and a century that is not one, checked through the dates of the bookings
+		Bookings bookings = new Bookings();
+		bookings.setNumRooms(RoomType.TWIN, 1);
+		LocalDate first = LocalDate.parse("1899-12-25");
+		int days = 365 * 8;
+		StringBuilder commands = new StringBuilder();
+		for (int d = 0; d < days; d++) {
+			commands.append("BOOK TWIN ").append(first.plusDays(d)).append(' ').append(first.plusDays(d + 1)).append('\n');
+		}
+		String[] results = run(bookings, commands.toString());
+		for (int d = 0; d < days; d++) {
+			assert bookings.getBooking(Long.parseLong(results[d])).getStartDate().equals(first.plusDays(d));
+		}
+	}
+	
+	@Test
+	void testMalformedLines() throws IOException {
+		Bookings bookings = new Bookings();
+		String[] results = run(bookings, "# header comment\n"
+				+ "ROOMS KING 2\n"
+				+ "\n"
+				+ "BOOK KING 2023-02-29 2023-03-02\n"		//not a leap year
+				+ "BOOK KING 2024-02-29 2024-03-02\n"
+				+ "CHECK KING 2024-13-01\n"
+				+ "CHECK PENTHOUSE 2024-03-01\n"
+				+ "CHECK KING 2024-3-01\n"
+				+ "BOOK KING 2024-03-02 2024-03-01\n"
+				+ "CANCEL -1\n"
+				+ "ROOMS KING\n"
+				+ "DELETE KING\n"
+				+ "CHECK KING 2024-03-01 extra\n"
+				+ "CHECK KING 2024-03-01");		//no final newline
+		assert results.length == 12;
+		assert results[0].equals("OK");
+		assert results[1].equals("ERROR 4");
+		assert results[2].equals("1");
+		for (int i = 3; i < 11; i++) assert results[i].equals("ERROR " + (i + 3));
+		assert results[11].equals("1");
+		
+		//A line too long for the buffer is a single error, and the lines after it are still applied
+		BulkCommandProcessor processor = new BulkCommandProcessor(bookings);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		processor.process(new ByteArrayInputStream(("CHECK " + "x".repeat(200000) + "\nCHECK KING 2024-03-01\n").getBytes(StandardCharsets.US_ASCII)), out);
+		assert out.toString(StandardCharsets.US_ASCII).equals("ERROR 1\n1\n");
+		assert processor.getCommands() == 2;
+		assert processor.getErrors() == 1;
+		assert processor.getReport().contains("2 commands");
+	}
+}
@@ -0,0 +1,258 @@
+package unitTests;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import HotelBookingSystem.BookingCalendar;
+import HotelBookingSystem.Bookings;
+import HotelBookingSystem.CalendarBackend;
+import HotelBookingSystem.RoomType;
+import HotelBookingSystem.RunLengthCalendar;
+
+/**
+ * Test class for the BookingCalendar implementations. Every test is run against each CalendarBackend.
+ * @author Jonathan Janzen
+ *
+ */
+class calendarTests {
+	
+	@Test
+	void testGetEmpty() {
+		//Verifies that a calendar with no entries reports every night as EMPTY
+		for (CalendarBackend backend : CalendarBackend.values()) {
+			BookingCalendar calendar = backend.newCalendar();
+			assert calendar.size() == 0;
+			assert calendar.get(LocalDate.parse("2022-06-13").toEpochDay()) == BookingCalendar.EMPTY;
+		}
+	}
+	
+	@Test
+	void testPutAndGet() {
+		//Verifies that values written are read back, and overwriting does not change the size
+		for (CalendarBackend backend : CalendarBackend.values()) {
+			BookingCalendar calendar = backend.newCalendar();
+			long day = LocalDate.parse("2022-06-13").toEpochDay();
+			calendar.put(day, 5);
+			calendar.put(day + 1, 2);
+			calendar.put(day, 4);
+			assert calendar.get(day) == 4;
+			assert calendar.get(day + 1) == 2;
+			assert calendar.get(day - 1) == BookingCalendar.EMPTY;
+			assert calendar.size() == 2;
+		}
+	}
+	
+	@Test
+	void testPutFarApart() {
+		//Verifies that the calendars handle nights years apart, on both sides of the first night written
+		for (CalendarBackend backend : CalendarBackend.values()) {
+			BookingCalendar calendar = backend.newCalendar();
+			long day = LocalDate.parse("2022-06-13").toEpochDay();
+			calendar.put(day, 1);
+			calendar.put(day + 3000, 2);
+			calendar.put(day - 5000, 3);
+			assert calendar.get(day) == 1;
+			assert calendar.get(day + 3000) == 2;
+			assert calendar.get(day - 5000) == 3;
+			assert calendar.get(day + 2999) == BookingCalendar.EMPTY;
+			assert calendar.size() == 3;
+		}
+	}
+	
+	@Test
+	void testBackendsAgree() {
+		//Applies the same random sequence of bookings to every backend and checks that they agree
+		Random random = new Random(42);
+		LocalDate origin = LocalDate.parse("2022-01-01");
+		Bookings[] bookings = new Bookings[CalendarBackend.values().length];
+		for (int b = 0; b < bookings.length; b++) {
+			bookings[b] = new Bookings(CalendarBackend.values()[b]);
+			for (RoomType type : RoomType.values()) bookings[b].setNumRooms(type, 3);
+		}
+		for (int i = 0; i < 500; i++) {
+			RoomType type = RoomType.values()[random.nextInt(RoomType.values().length)];
+			LocalDate start = origin.plusDays(random.nextInt(200));
+			LocalDate end = start.plusDays(1 + random.nextInt(14));
+			boolean expected = bookings[0].createBooking(type, start, end);
+			for (int b = 1; b < bookings.length; b++) {
+				assert bookings[b].createBooking(type, start, end) == expected;
+			}
+		}
+		for (RoomType type : RoomType.values()) {
+			for (int d = 0; d < 220; d++) {
+				int expected = bookings[0].checkAvailability(type, origin.plusDays(d));
+				for (int b = 1; b < bookings.length; b++) {
+					assert bookings[b].checkAvailability(type, origin.plusDays(d)) == expected;
+				}
+			}
+			for (int b = 1; b < bookings.length; b++) {
+				assert bookings[b].getNumBookings(type) == bookings[0].getNumBookings(type);
+			}
+		}
+	}
+	
+	@Test
+	void testMinAvailableAndReserve() {
+		//Verifies the range operations, including nights that have no entry yet
+		for (CalendarBackend backend : CalendarBackend.values()) {
+			BookingCalendar calendar = backend.newCalendar();
+			long day = LocalDate.parse("2022-06-13").toEpochDay();
+			assert calendar.minAvailable(day, day + 30, 4) == 4;
+			calendar.reserve(day + 5, day + 10, 4);
+			calendar.reserve(day + 8, day + 12, 4);
+			assert calendar.minAvailable(day, day + 30, 4) == 2;
+			assert calendar.minAvailable(day, day + 8, 4) == 3;
+			assert calendar.minAvailable(day + 10, day + 12, 4) == 3;
+			assert calendar.get(day + 9) == 2;
+			assert calendar.get(day + 4) == BookingCalendar.EMPTY;
+			assert calendar.size() == 7;
+		}
+	}
+	
+	@Test
+	void testRangeOperationsAgreeWithPointOperations() {
+		//Compares every backend against the ARRAY backend over a random mix of writes, reserves and queries,
+		//with a capacity that changes (as it does when setNumRooms is called after bookings exist)
+		Random random = new Random(7);
+		BookingCalendar expected = CalendarBackend.ARRAY.newCalendar();
+		BookingCalendar[] calendars = new BookingCalendar[CalendarBackend.values().length];
+		for (int b = 0; b < calendars.length; b++) calendars[b] = CalendarBackend.values()[b].newCalendar();
+		long origin = LocalDate.parse("2022-01-01").toEpochDay();
+		int capacity = 10;
+		for (int i = 0; i < 3000; i++) {
+			long from = origin + random.nextInt(4000) - 2000;
+			long to = from + 1 + random.nextInt(40);
+			int op = random.nextInt(10);
+			if (op == 0) {
+				capacity = 5 + random.nextInt(10);
+			} else if (op == 1) {
+				int value = random.nextInt(8);
+				expected.put(from, value);
+				for (BookingCalendar calendar : calendars) calendar.put(from, value);
+			} else if (op < 6) {
+				if (expected.minAvailable(from, to, capacity) > 0) {
+					expected.reserve(from, to, capacity);
+					for (BookingCalendar calendar : calendars) calendar.reserve(from, to, capacity);
+				}
+			} else {
+				int min = expected.minAvailable(from, to, capacity);
+				for (BookingCalendar calendar : calendars) {
+					assert calendar.minAvailable(from, to, capacity) == min;
+					assert calendar.bottleneck(from, to, capacity) == expected.bottleneck(from, to, capacity);
+					assert calendar.get(from) == expected.get(from);
+				}
+			}
+		}
+		for (BookingCalendar calendar : calendars) assert calendar.size() == expected.size();
+	}
+	
+	@Test
+	void testEarliestWindow() {
+		//Compares the window search of every backend against a night-by-night scan, over calendars with long full
+		//runs, short gaps and nights outside of anything written (which have no rooms booked)
+		long origin = LocalDate.parse("2022-01-01").toEpochDay();
+		for (CalendarBackend backend : CalendarBackend.values()) {
+			Random random = new Random(11);
+			BookingCalendar calendar = backend.newCalendar();
+			int capacity = 4;
+			for (int i = 0; i < 400; i++) {
+				long from = origin + random.nextInt(1500);
+				long to = from + 1 + random.nextInt(30);
+				if (random.nextInt(4) == 0) calendar.put(from, random.nextInt(6));
+				else if (calendar.minAvailable(from, to, capacity) > 0) calendar.reserve(from, to, capacity);
+			}
+			for (int i = 0; i < 300; i++) {
+				if (i % 50 == 0) capacity = random.nextInt(6);
+				long from = origin - 100 + random.nextInt(1700);
+				long to = from + random.nextInt(600);
+				int nights = 1 + random.nextInt(12);
+				int rooms = 1 + random.nextInt(5);
+				long expected = BookingCalendar.NOT_FOUND;
+				int run = 0;
+				for (long day = from; day < to && expected == BookingCalendar.NOT_FOUND; day++) {
+					int value = capacity - Math.max(calendar.get(day), 0);
+					run = value >= rooms ? run + 1 : 0;
+					if (run == nights) expected = day - nights + 1;
+				}
+				assert calendar.earliestWindow(from, to, nights, rooms, capacity) == expected : backend;
+			}
+		}
+	}
+	
+	@Test
+	void testEvictBefore() {
+		//Evicting a sliding window forwards must hand over exactly the nights before the cut, in order, and keep
+		//every later night (including across chunk and page boundaries), with the calendar still writable after
+		for (CalendarBackend backend : CalendarBackend.values()) {
+			Random random = new Random(17);
+			BookingCalendar calendar = backend.newCalendar();
+			TreeMap<Long, Integer> expected = new TreeMap<Long, Integer>();
+			long origin = LocalDate.parse("2022-01-01").toEpochDay();
+			for (int i = 0; i < 2000; i++) {
+				long day = origin + random.nextInt(5000);
+				int value = random.nextInt(8);
+				calendar.put(day, value);
+				expected.put(day, value);
+			}
+			for (long cut = origin - 10; cut < origin + 5200; cut += 1 + random.nextInt(700)) {
+				ArrayList<Long> evicted = new ArrayList<Long>();
+				final long before = cut;
+				int removed = calendar.evictBefore(cut, (day, value) -> {
+					assert day < before;
+					assert expected.get(day) == value;
+					evicted.add(day);
+				});
+				Map<Long, Integer> head = expected.headMap(cut);
+				assert removed == head.size() && evicted.equals(new ArrayList<Long>(head.keySet()));
+				head.clear();
+				assert calendar.size() == expected.size();
+				for (long day = cut - 3; day < cut + 800; day++) {
+					Integer value = expected.get(day);
+					assert calendar.get(day) == (value == null ? BookingCalendar.EMPTY : value);
+				}
+				long day = cut + random.nextInt(3000);
+				calendar.put(day, 9);
+				expected.put(day, 9);
+			}
+		}
+	}
+	
+	@Test
+	void testRunLengthCompression() {
+		//Long stays must be stored as a few runs rather than a night each, and cancelling them must merge the runs
+		//back together, with every night still matching the ARRAY backend
+		Random random = new Random(23);
+		RunLengthCalendar calendar = new RunLengthCalendar();
+		BookingCalendar expected = CalendarBackend.ARRAY.newCalendar();
+		long origin = LocalDate.parse("2022-01-01").toEpochDay();
+		long[][] stays = new long[50][];
+		for (int i = 0; i < stays.length; i++) {
+			long from = origin + random.nextInt(3000);
+			stays[i] = new long[] {from, from + 30 + random.nextInt(300)};
+			calendar.reserve(stays[i][0], stays[i][1], 1000);
+			expected.reserve(stays[i][0], stays[i][1], 1000);
+		}
+		//Each stay can only add a run at either end
+		assert calendar.runCount() <= 2 * stays.length + 1;
+		assert calendar.size() == expected.size() && calendar.size() > 10 * calendar.runCount();
+		for (long day = origin - 5; day < origin + 3400; day++) assert calendar.get(day) == expected.get(day);
+		
+		for (long[] stay : stays) {
+			calendar.release(stay[0], stay[1], 1000);
+			expected.release(stay[0], stay[1], 1000);
+		}
+		for (long day = origin - 5; day < origin + 3400; day++) assert calendar.get(day) == expected.get(day);
+		assert calendar.size() == expected.size();
+		//Every night written is back to none booked, so each stretch of nights written is a single run
+		long runs = 0;
+		for (long day = origin; day < origin + 3400; day++) {
+			if (calendar.get(day) != BookingCalendar.EMPTY && calendar.get(day - 1) == BookingCalendar.EMPTY) runs++;
+		}
+		assert calendar.runCount() == runs;
+	}
+}
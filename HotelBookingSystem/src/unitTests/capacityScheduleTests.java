@@ -0,0 +1,52 @@
+package unitTests;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import HotelBookingSystem.CapacitySchedule;
+
+/**
+ * Test class for the CapacitySchedule, checked against a plain array of the rooms on each night.
+ * @author Jonathan Janzen
+ *
+ */
+class capacityScheduleTests {
+	
+	@Test
+	void testEmpty() {
+		//With no overrides, every night has the default and nothing changes
+		CapacitySchedule schedule = new CapacitySchedule();
+		assert schedule.isEmpty();
+		assert schedule.roomsOn(19000, 7) == 7;
+		assert schedule.nextChange(19000) == Long.MAX_VALUE;
+	}
+	
+	@Test
+	void testOverlappingOverrides() {
+		//Overrides that overlap, nest, touch and go back to the default must match a night-by-night array, and
+		//nextChange() must only skip nights with the same number of rooms
+		Random random = new Random(3);
+		CapacitySchedule schedule = new CapacitySchedule();
+		int[] expected = new int[400];
+		Arrays.fill(expected, CapacitySchedule.DEFAULT);
+		for (int i = 0; i < 300; i++) {
+			int from = random.nextInt(390);
+			int to = from + 1 + random.nextInt(400 - from - 1);
+			int n = random.nextInt(5) == 0 ? CapacitySchedule.DEFAULT : random.nextInt(6);
+			schedule.set(from, to, n);
+			for (int day = from; day < to; day++) expected[day] = n;
+			
+			for (int day = 0; day < expected.length; day++) {
+				assert schedule.roomsOn(day, 9) == (expected[day] == CapacitySchedule.DEFAULT ? 9 : expected[day]);
+			}
+			for (long day = 0; day < expected.length; day = schedule.nextChange(day)) {
+				long next = Math.min(schedule.nextChange(day), expected.length);
+				for (long night = day; night < next; night++) assert expected[(int) night] == expected[(int) day];
+				if (next < expected.length) assert expected[(int) next] != expected[(int) day];
+				if (next == expected.length) break;
+			}
+		}
+	}
+}
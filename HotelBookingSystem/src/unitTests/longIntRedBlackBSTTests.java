@@ -0,0 +1,103 @@
+package unitTests;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import HotelBookingSystem.Bookings;
+import HotelBookingSystem.CalendarBackend;
+import HotelBookingSystem.LongIntRedBlackBST;
+import HotelBookingSystem.RoomType;
+
+/**
+ * Test class for the LongIntRedBlackBST data structure, and for the allocation-free booking path built on it.
+ * @author Jonathan Janzen
+ *
+ */
+class longIntRedBlackBSTTests {
+	
+	LongIntRedBlackBST testBST = new LongIntRedBlackBST();
+	
+	@Test
+	void testEmpty() {
+		//Verifies that an empty BST has size 0 and returns the missing value
+		assert testBST.isEmpty();
+		assert testBST.size() == 0;
+		assert testBST.get(19000, -1) == -1;
+	}
+	
+	@Test
+	void testPutAndGetAgainstTreeMap() {
+		//Compares a long random sequence of puts (new keys and overwrites) against java.util.TreeMap
+		Random random = new Random(9);
+		TreeMap<Long, Integer> expected = new TreeMap<Long, Integer>();
+		for (int i = 0; i < 20000; i++) {
+			long key = random.nextInt(5000) - 2500;
+			int val = random.nextInt(100);
+			testBST.put(key, val);
+			expected.put(key, val);
+		}
+		assert testBST.size() == expected.size();
+		for (long key = -2600; key < 2600; key++) {
+			assert testBST.get(key, -1) == expected.getOrDefault(key, -1);
+		}
+		ArrayList<Long> visited = new ArrayList<Long>();
+		testBST.forEach(-100, 100, (key, val) -> visited.add(key));
+		assert visited.equals(new ArrayList<Long>(expected.subMap(-100L, true, 100L, true).keySet()));
+	}
+	
+	@Test
+	void testBuildFromSorted() {
+		//Verifies that a tree built bottom-up holds every pair and can still be added to afterwards
+		for (int n = 0; n < 100; n++) {
+			long[] keys = new long[n];
+			int[] vals = new int[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = 2 * i;
+				vals[i] = i;
+			}
+			LongIntRedBlackBST built = new LongIntRedBlackBST(keys, vals, n);
+			for (int i = 0; i < n; i++) built.put(2 * i + 1, -i);
+			assert built.size() == 2 * n;
+			for (int i = 0; i < n; i++) {
+				assert built.get(2 * i, -1) == i;
+				assert built.get(2 * i + 1, 1) == -i;
+			}
+		}
+	}
+	
+	@Test
+	void testBookingPathDoesNotAllocate() {
+		//Once the nights exist, checking and booking with the PRIMITIVE_TREE backend should not allocate at all
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) return;
+		threads.setThreadAllocatedMemoryEnabled(true);
+		Bookings bookings = new Bookings(CalendarBackend.PRIMITIVE_TREE);
+		bookings.setNumRooms(RoomType.QUEEN, 1000000);
+		LocalDate[] dates = new LocalDate[400];
+		for (int i = 0; i < dates.length; i++) dates[i] = LocalDate.parse("2022-01-01").plusDays(i);
+		for (int i = 0; i + 30 < dates.length; i++) bookings.createBooking(RoomType.QUEEN, dates[i], dates[i + 30]);
+		//Grow the ledger of booking IDs to its final size up front, as its table only grows and never shrinks
+		long[] warmup = new long[100 * (dates.length - 30)];
+		for (int i = 0; i < warmup.length; i++) warmup[i] = bookings.book(RoomType.QUEEN, dates[0], dates[1]);
+		bookings.cancelBookings(warmup);
+		
+		long threadId = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(threadId);
+		long total = 0;
+		for (int round = 0; round < 100; round++) {
+			for (int i = 0; i + 30 < dates.length; i++) {
+				bookings.createBooking(RoomType.QUEEN, dates[i], dates[i + 30]);
+				total += bookings.checkAvailability(RoomType.QUEEN, dates[i]);
+			}
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+		assert total > 0;
+		//Allow for the measurement itself, but not for anything per call (37000 calls)
+		assert allocated < 4096 : allocated + " bytes allocated";
+	}
+}
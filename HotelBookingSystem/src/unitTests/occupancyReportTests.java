@@ -0,0 +1,85 @@
+package unitTests;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import HotelBookingSystem.Bookings;
+import HotelBookingSystem.CalendarBackend;
+import HotelBookingSystem.OccupancyReport;
+import HotelBookingSystem.RoomType;
+
+/**
+ * Test class for Bookings.getOccupancyReport(), checked against a night-by-night count.
+ * @author Jonathan Janzen
+ *
+ */
+class occupancyReportTests {
+	
+	@Test
+	void testMatchesNightByNight() {
+		//Random bookings over several years (enough nights to split the range into many tasks) must be totalled the
+		//same way by month and by day of week as by checking every night, for every backend
+		LocalDate origin = LocalDate.parse("2021-01-20");
+		for (CalendarBackend backend : CalendarBackend.values()) {
+			Bookings bookings = new Bookings(backend);
+			for (RoomType type : RoomType.values()) bookings.setNumRooms(type, 4 + type.getValue());
+			Random random = new Random(21);
+			for (int i = 0; i < 3000; i++) {
+				RoomType type = RoomType.values()[random.nextInt(RoomType.values().length)];
+				LocalDate start = origin.plusDays(random.nextInt(5 * 365));
+				bookings.book(type, start, start.plusDays(1 + random.nextInt(10)));
+			}
+			
+			LocalDate startDate = origin.plusDays(3);
+			LocalDate endDate = origin.plusDays(5 * 365 - 40);
+			OccupancyReport report = bookings.getOccupancyReport(startDate, endDate);
+			assert report.getFirstMonth().equals(YearMonth.of(2021, 1));
+			assert report.getFirstMonth().plusMonths(report.getNumMonths() - 1).equals(YearMonth.from(endDate.minusDays(1)));
+			for (RoomType type : RoomType.values()) {
+				int capacity = bookings.getNumRoomsByType(type);
+				long[] byMonth = new long[report.getNumMonths()];
+				long[] byDay = new long[7];
+				long[] daysByMonth = new long[report.getNumMonths()];
+				long total = 0;
+				for (LocalDate date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
+					int taken = capacity - bookings.checkAvailability(type, date);
+					int month = (int) report.getFirstMonth().until(YearMonth.from(date), ChronoUnit.MONTHS);
+					byMonth[month] += taken;
+					daysByMonth[month]++;
+					byDay[date.getDayOfWeek().ordinal()] += taken;
+					total += taken;
+				}
+				assert report.getOccupiedNights(type) == total;
+				for (int m = 0; m < byMonth.length; m++) {
+					YearMonth month = report.getFirstMonth().plusMonths(m);
+					assert report.getOccupiedNights(type, month) == byMonth[m];
+					assert Math.abs(report.getOccupancy(type, month) - (double) byMonth[m] / (capacity * daysByMonth[m])) < 1e-12;
+				}
+				long nights = endDate.toEpochDay() - startDate.toEpochDay();
+				for (DayOfWeek day : DayOfWeek.values()) assert report.getOccupiedNights(type, day) == byDay[day.ordinal()];
+				assert Math.abs(report.getOccupancy(type) - (double) total / (capacity * nights)) < 1e-12;
+			}
+		}
+	}
+	
+	@Test
+	void testEmptyAndSingleNight() {
+		//A type with no rooms has no occupancy, and a single night is reported on its own month and day of week
+		Bookings bookings = new Bookings();
+		bookings.setNumRooms(RoomType.DOUBLE, 2);
+		LocalDate night = LocalDate.parse("2024-02-29");
+		bookings.book(RoomType.DOUBLE, night, night.plusDays(1));
+		OccupancyReport report = bookings.getOccupancyReport(night, night.plusDays(1));
+		assert report.getNumMonths() == 1;
+		assert report.getOccupiedNights(RoomType.DOUBLE, DayOfWeek.THURSDAY) == 1;
+		assert report.getOccupancy(RoomType.DOUBLE, DayOfWeek.THURSDAY) == 0.5;
+		assert report.getOccupancy(RoomType.DOUBLE, DayOfWeek.FRIDAY) == 0;
+		assert report.getOccupancy(RoomType.KING) == 0;
+		assert report.getOccupiedNights(RoomType.DOUBLE, YearMonth.of(2024, 2)) == 1;
+	}
+}
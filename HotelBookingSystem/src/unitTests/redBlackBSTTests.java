@@ -1,9 +1,11 @@
 package unitTests;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 
 import org.junit.jupiter.api.Test;
 
+import HotelBookingSystem.PersistentRedBlackBST;
 import HotelBookingSystem.RedBlackBST;
 
 /**
@@ -14,7 +16,7 @@ import HotelBookingSystem.RedBlackBST;
 class redBlackBSTTests {
 	
 	RedBlackBST testBST = new RedBlackBST();
-
+	
 	@Test
 	void testSizeEmpty() {
 		//Verifies that an empty BST returns 0 for size
@@ -90,4 +92,122 @@ class redBlackBSTTests {
 		testBST.put(LocalDate.parse("2022-06-12"), 10);
 		assert (Integer) testBST.get(LocalDate.parse("2022-06-12")) == 10;
 	}
+	
+	@Test
+	void testForEachRange() {
+		//Verifies that 'forEach' visits exactly the keys within the range, in ascending order
+		testBST.put(LocalDate.parse("2022-06-13"), 5);
+		testBST.put(LocalDate.parse("2022-06-14"), 2);
+		testBST.put(LocalDate.parse("2022-03-13"), 2);
+		testBST.put(LocalDate.parse("2022-06-20"), 1);
+		testBST.put(LocalDate.parse("2022-06-10"), 3);
+		ArrayList<Object> visited = new ArrayList<Object>();
+		testBST.forEach(LocalDate.parse("2022-06-10"), LocalDate.parse("2022-06-14"), (key, val) -> visited.add(key));
+		assert visited.size() == 3;
+		assert visited.get(0).equals(LocalDate.parse("2022-06-10"));
+		assert visited.get(2).equals(LocalDate.parse("2022-06-14"));
+	}
+	
+	@Test
+	void testBuildFromSorted() {
+		//Verifies that a tree built bottom-up holds every pair, for sizes that need both 2-nodes and 3-nodes,
+		//and that it can still be added to and overwritten afterwards
+		for (int n = 0; n < 200; n++) {
+			LocalDate[] keys = new LocalDate[n];
+			Integer[] vals = new Integer[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = LocalDate.parse("2022-01-01").plusDays(2 * i);
+				vals[i] = i;
+			}
+			RedBlackBST<LocalDate, Integer> built = new RedBlackBST<LocalDate, Integer>(keys, vals, n);
+			assert built.size() == n;
+			for (int i = 0; i < n; i++) assert built.get(keys[i]) == i;
+			for (int i = 0; i < n; i++) built.put(keys[i].plusDays(1), -i);
+			built.put(LocalDate.parse("2022-01-01"), 100);
+			assert built.size() == 2 * n || n == 0;
+			for (int i = 1; i < n; i++) {
+				assert built.get(keys[i]) == i;
+				assert built.get(keys[i].plusDays(1)) == -i;
+			}
+			ArrayList<LocalDate> visited = new ArrayList<LocalDate>();
+			built.forEach((key, val) -> visited.add(key));
+			for (int i = 1; i < visited.size(); i++) assert visited.get(i - 1).isBefore(visited.get(i));
+		}
+	}
+	
+	@Test
+	void testPersistentVersionsUnchanged() {
+		//Verifies that put() on a PersistentRedBlackBST returns a new version and leaves every older version as it was
+		ArrayList<PersistentRedBlackBST<LocalDate, Integer>> versions = new ArrayList<PersistentRedBlackBST<LocalDate, Integer>>();
+		PersistentRedBlackBST<LocalDate, Integer> tree = new PersistentRedBlackBST<LocalDate, Integer>();
+		versions.add(tree);
+		for (int i = 0; i < 300; i++) {
+			tree = tree.put(LocalDate.parse("2022-01-01").plusDays((i * 37) % 300), i);
+			versions.add(tree);
+		}
+		tree = tree.put(LocalDate.parse("2022-01-01"), -1);
+		assert tree.size() == 300 && tree.get(LocalDate.parse("2022-01-01")) == -1;
+		for (int v = 0; v < versions.size(); v++) {
+			assert versions.get(v).size() == v;
+			for (int i = 0; i < 300; i++) {
+				Integer val = versions.get(v).get(LocalDate.parse("2022-01-01").plusDays((i * 37) % 300));
+				assert i < v ? val == i : val == null;
+			}
+		}
+		ArrayList<LocalDate> visited = new ArrayList<LocalDate>();
+		tree.forEach(LocalDate.parse("2022-01-11"), LocalDate.parse("2022-01-20"), (key, val) -> visited.add(key));
+		assert visited.size() == 10;
+		for (int i = 1; i < visited.size(); i++) assert visited.get(i - 1).isBefore(visited.get(i));
+	}
+	
+	@Test
+	void testPersistentBuildFromSorted() {
+		//Verifies that a PersistentRedBlackBST built bottom-up holds every pair, stays balanced, and that later
+		//versions can be built from it without changing it
+		for (int n = 0; n < 200; n++) {
+			LocalDate[] keys = new LocalDate[n];
+			Integer[] vals = new Integer[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = LocalDate.parse("2022-01-01").plusDays(2 * i);
+				vals[i] = i;
+			}
+			PersistentRedBlackBST<LocalDate, Integer> built = new PersistentRedBlackBST<LocalDate, Integer>(keys, vals, n);
+			assert built.size() == n;
+			assert built.height() <= 2 * (32 - Integer.numberOfLeadingZeros(n + 1));
+			for (int i = 0; i < n; i++) assert built.get(keys[i]) == i;
+			PersistentRedBlackBST<LocalDate, Integer> next = built;
+			for (int i = 0; i < n; i++) next = next.put(keys[i].plusDays(1), -i);
+			assert next.size() == 2 * n && built.size() == n;
+			for (int i = 0; i < n; i++) {
+				assert next.get(keys[i]) == i && next.get(keys[i].plusDays(1)) == -i;
+				assert built.get(keys[i].plusDays(1)) == null;
+			}
+			ArrayList<LocalDate> visited = new ArrayList<LocalDate>();
+			next.forEach(null, null, (key, val) -> visited.add(key));
+			for (int i = 1; i < visited.size(); i++) assert visited.get(i - 1).isBefore(visited.get(i));
+		}
+	}
+	
+	@Test
+	void testDeleteBelow() {
+		//Removing the smallest keys in several steps must keep every larger key, in order, and the tree usable
+		RedBlackBST<LocalDate, Integer> tree = new RedBlackBST<LocalDate, Integer>();
+		LocalDate origin = LocalDate.parse("2022-01-01");
+		for (int i = 0; i < 1000; i++) tree.put(origin.plusDays((i * 389) % 1000), (i * 389) % 1000);
+		assert tree.min().equals(origin);
+		ArrayList<Integer> deleted = new ArrayList<Integer>();
+		for (int cut = 0; cut <= 1000; cut += 137) {
+			tree.deleteBelow(origin.plusDays(cut), (key, val) -> deleted.add(val));
+			assert tree.size() == 1000 - cut;
+			if (cut < 1000) assert tree.min().equals(origin.plusDays(cut));
+			assert tree.get(origin.plusDays(cut - 1)) == null;
+			assert cut == 1000 || tree.get(origin.plusDays(999)) == 999;
+		}
+		tree.deleteBelow(origin.plusDays(1000), (key, val) -> deleted.add(val));
+		assert tree.isEmpty();
+		for (int i = 0; i < deleted.size(); i++) assert deleted.get(i) == i;
+		tree.put(origin, 1);
+		tree.deleteMin();
+		assert tree.isEmpty();
+	}
 }
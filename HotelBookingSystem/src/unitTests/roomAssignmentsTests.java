@@ -0,0 +1,84 @@
+package unitTests;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import HotelBookingSystem.RoomAssignments;
+
+/**
+ * Test class for the RoomAssignments class, checked against a plain boolean[room][night] grid.
+ * @author Jonathan Janzen
+ *
+ */
+class roomAssignmentsTests {
+	
+	@Test
+	void testBestFit() {
+		//A short stay goes into the hole that it fills exactly, rather than the first room that is free
+		RoomAssignments rooms = new RoomAssignments();
+		rooms.occupy(0, 0, 3);
+		rooms.occupy(1, 0, 5);
+		rooms.occupy(1, 7, 10);
+		assert rooms.findRoom(5, 7, 3) == 1;
+		assert rooms.assign(5, 7, 3) == 1;
+		//Room 0 is free from night 3, so only room 2 (never used) is left for a stay covering night 2
+		assert rooms.assign(2, 4, 3) == 2;
+		assert rooms.assign(2, 4, 3) == RoomAssignments.NO_ROOM;
+		assert rooms.assign(3, 20, 3) == 0;
+		
+		//Freeing a stay makes its room available again
+		rooms.release(1, 5, 7);
+		assert !rooms.isOccupied(1, 6);
+		assert rooms.assign(5, 6, 3) == 1;
+		assert rooms.occupiedRooms(5).length == 2;
+	}
+	
+	@Test
+	void testMatchesGrid() {
+		//Random stays over more than one word of rooms must be given a room free on every night, and must only be
+		//rejected when no such room exists
+		int numRooms = 150;
+		int numNights = 400;
+		boolean[][] grid = new boolean[numRooms][numNights];
+		RoomAssignments rooms = new RoomAssignments();
+		Random random = new Random(20);
+		for (int i = 0; i < 20000; i++) {
+			int start = random.nextInt(numNights - 14);
+			int end = start + 1 + random.nextInt(14);
+			if (random.nextInt(4) == 0) {
+				//Release a random room over a random stay, as a cancellation would
+				int room = random.nextInt(numRooms);
+				boolean whole = true;
+				for (int night = start; night < end; night++) whole &= grid[room][night];
+				if (!whole) continue;
+				rooms.release(room, start - 1000, end - 1000);
+				for (int night = start; night < end; night++) grid[room][night] = false;
+				continue;
+			}
+			boolean exists = false;
+			for (int room = 0; room < numRooms && !exists; room++) {
+				boolean free = true;
+				for (int night = start; night < end; night++) free &= !grid[room][night];
+				exists = free;
+			}
+			int room = rooms.assign(start - 1000, end - 1000, numRooms);
+			assert (room != RoomAssignments.NO_ROOM) == exists;
+			if (room == RoomAssignments.NO_ROOM) continue;
+			for (int night = start; night < end; night++) {
+				assert !grid[room][night];
+				grid[room][night] = true;
+			}
+		}
+		for (int room = 0; room < numRooms; room++) {
+			for (int night = 0; night < numNights; night++) assert rooms.isOccupied(room, night - 1000) == grid[room][night];
+		}
+		
+		//Evicted nights are forgotten, later ones are kept
+		rooms.evictBefore(200 - 1000);
+		for (int room = 0; room < numRooms; room++) {
+			assert !rooms.isOccupied(room, 199 - 1000);
+			assert rooms.isOccupied(room, 250 - 1000) == grid[room][250];
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package unitTests;
+
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import HotelBookingSystem.BookingJournal;
+import HotelBookingSystem.BookingRequest;
+import HotelBookingSystem.Bookings;
+import HotelBookingSystem.CalendarBackend;
+import HotelBookingSystem.RoomType;
+
+/**
+ * Test class for registering RoomTypes at runtime. The registry is reset after each test, so that the types registered
+ * here are not left behind for the tests that run after it.
+ * @author Jonathan Janzen
+ *
+ */
+class roomTypeTests {
+	
+	static final LocalDate ORIGIN = LocalDate.parse("2022-06-01");
+	
+	@AfterEach
+	void tearDown() {
+		RoomType.reset();
+	}
+	
+	@Test
+	void testRegister() {
+		//Types get dense values in order, registering a name again returns the same type, and names must be
+		//single words that do not clash regardless of case
+		assert RoomType.DOUBLE.getValue() == 0 && RoomType.KING.getValue() == 3;
+		RoomType suite = RoomType.register("SUITE");
+		assert RoomType.register("SUITE") == suite;
+		assert RoomType.valueOf("SUITE") == suite;
+		assert RoomType.fromValue(suite.getValue()) == suite;
+		assert RoomType.values()[suite.getValue()] == suite;
+		assert suite.getValue() < RoomType.count();
+		assert suite.toString().equals("SUITE");
+		assertThrows(IllegalArgumentException.class, () -> RoomType.register("Suite"));
+		assertThrows(IllegalArgumentException.class, () -> RoomType.register("FAMILY ROOM"));
+		assertThrows(IllegalArgumentException.class, () -> RoomType.valueOf("PENTHOUSE"));
+		assertThrows(IllegalArgumentException.class, () -> RoomType.fromValue(RoomType.MAX_TYPES));
+	}
+	
+	@Test
+	void testLoadedTypesCanBeBooked() throws IOException {
+		//Types loaded from a file (enough of them that values no longer fit in a signed byte) can be booked, checked
+		//and cancelled, and survive a snapshot
+		Path types = Files.createTempFile("roomtypes", ".txt");
+		Path snapshot = Files.createTempFile("bookings", ".snapshot");
+		try {
+			StringBuilder names = new StringBuilder("# Seasonal categories\nQUEEN\n\n");
+			for (int i = 0; i < 140; i++) names.append("CATEGORY_").append(i).append('\n');
+			Files.writeString(types, names);
+			assert RoomType.load(types) >= 144;
+			RoomType last = RoomType.valueOf("CATEGORY_139");
+			assert last.getValue() > Byte.MAX_VALUE;
+			
+			for (CalendarBackend backend : CalendarBackend.values()) {
+				Bookings bookings = new Bookings(backend);
+				bookings.setNumRooms(last, 2);
+				long id = bookings.book(last, ORIGIN, ORIGIN.plusDays(3));
+				assert id > 0;
+				assert bookings.getBooking(id).getType() == last;
+				assert bookings.createBookings(List.of(new BookingRequest(last, ORIGIN.plusDays(1), ORIGIN.plusDays(2)),
+						new BookingRequest(last, ORIGIN.plusDays(1), ORIGIN.plusDays(2))))[0];
+				assert bookings.checkAvailability(last, ORIGIN.plusDays(1)) == 0;
+				assert bookings.checkAvailability(RoomType.valueOf("CATEGORY_0"), ORIGIN) == 0;
+				
+				bookings.saveSnapshot(snapshot);
+				Bookings restored = Bookings.loadSnapshot(snapshot, CalendarBackend.TREE);
+				assert restored.getBooking(id).getType() == last;
+				assert restored.checkAvailability(last, ORIGIN) == 1;
+				assert restored.cancelBooking(id);
+				assert restored.checkAvailability(last, ORIGIN) == 2;
+			}
+		} finally {
+			Files.deleteIfExists(types);
+			Files.deleteIfExists(snapshot);
+		}
+	}
+	
+	@Test
+	void testFilesReadAfterTypesChange() throws IOException {
+		//A journal and a snapshot are read by type name, so they survive types being registered in another order or
+		//added, but not a type they use being removed
+		Path journalPath = Files.createTempFile("bookings", ".journal");
+		Path snapshot = Files.createTempFile("bookings", ".snapshot");
+		try {
+			RoomType.register("ALPHA");
+			RoomType beta = RoomType.register("BETA");
+			Bookings original = new Bookings(CalendarBackend.TREE);
+			BookingJournal journal = new BookingJournal(journalPath);
+			original.setJournal(journal);
+			original.setNumRooms(beta, 2);
+			original.setNumRooms(RoomType.KING, 1);
+			long betaId = original.book(beta, ORIGIN, ORIGIN.plusDays(3));
+			long kingId = original.book(RoomType.KING, ORIGIN.plusDays(1), ORIGIN.plusDays(2));
+			original.saveSnapshot(snapshot);
+			journal.close();
+			
+			RoomType.reset();
+			beta = RoomType.register("BETA");
+			RoomType.register("GAMMA");
+			RoomType.register("ALPHA");
+			Bookings replayed = new Bookings(CalendarBackend.TREE);
+			BookingJournal reopened = new BookingJournal(journalPath);
+			reopened.replay(replayed);
+			reopened.close();
+			Bookings loaded = Bookings.loadSnapshot(snapshot, CalendarBackend.TREE);
+			for (Bookings restored : List.of(replayed, loaded)) {
+				assert restored.getBooking(betaId).getType() == beta;
+				assert restored.getBooking(kingId).getType() == RoomType.KING;
+				assert restored.getNumRoomsByType(beta) == 2 && restored.getNumRoomsByType(RoomType.valueOf("ALPHA")) == -1;
+				assert restored.getNumRoomsByType(RoomType.valueOf("GAMMA")) == -1;
+				assert restored.checkAvailability(beta, ORIGIN.plusDays(2)) == 1;
+				assert restored.checkAvailability(RoomType.KING, ORIGIN.plusDays(1)) == 0;
+}
+
+			RoomType.reset();
+			RoomType.register("ALPHA");
+			assertThrows(IOException.class, () -> new BookingJournal(journalPath));
+			assertThrows(IOException.class, () -> Bookings.loadSnapshot(snapshot, CalendarBackend.TREE));
+		} finally {
+			Files.deleteIfExists(journalPath);
+			Files.deleteIfExists(snapshot);
+		}
+	}
+	
+	@Test
+	void testTypesRegisteredLaterAreRejected() throws IOException {
+		//A type registered after a Bookings object or a journal was created has no state in it, and is rejected
+		Path journalPath = Files.createTempFile("bookings", ".journal");
+		try {
+			Bookings bookings = new Bookings(CalendarBackend.ARRAY);
+			BookingJournal journal = new BookingJournal(journalPath);
+			RoomType late = RoomType.register("LATE");
+			assertThrows(IllegalArgumentException.class, () -> bookings.setNumRooms(late, 1));
+			assertThrows(IllegalArgumentException.class, () -> bookings.getNumRoomsByType(late));
+			assertThrows(IllegalArgumentException.class, () -> bookings.checkAvailability(late, ORIGIN));
+			assertThrows(IllegalArgumentException.class, () -> bookings.book(late, ORIGIN, ORIGIN.plusDays(2)));
+			assertThrows(IllegalArgumentException.class, () -> bookings.getNumBookings(late));
+			assertThrows(IllegalArgumentException.class, () -> journal.appendCancellation(late, 1));
+			journal.close();
+		} finally {
+			Files.deleteIfExists(journalPath);
+		}
+	}
+}
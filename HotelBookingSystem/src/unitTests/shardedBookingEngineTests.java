@@ -0,0 +1,187 @@
+package unitTests;
+
+import static org.junit.Assert.assertThrows;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+import HotelBookingSystem.Bookings;
+import HotelBookingSystem.CalendarBackend;
+import HotelBookingSystem.MpscRingBuffer;
+import HotelBookingSystem.RoomType;
+import HotelBookingSystem.ShardedBookingEngine;
+
+/**
+ * Test class for the ShardedBookingEngine and the MpscRingBuffer that feeds its shards.
+ * @author Jonathan Janzen
+ *
+ */
+class shardedBookingEngineTests {
+	
+	static final LocalDate ORIGIN = LocalDate.parse("2030-01-01");
+	static final int WINDOW = 90;		//number of nights that the bookings are spread over
+	static final int ROOMS = 4;
+	
+	@Test
+	void testRingBufferKeepsEachProducersOrder() throws InterruptedException {
+		//Several producers fill a small buffer while a single consumer drains it: nothing may be lost or
+		//duplicated, and the elements of each producer must come out in the order it added them
+		final int producers = 4;
+		final int perProducer = 100000;
+		MpscRingBuffer<long[]> buffer = new MpscRingBuffer<long[]>(64);
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		for (int p = 0; p < producers; p++) {
+			final int producer = p;
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < perProducer; i++) {
+					long[] element = new long[] { producer, i };
+					while (!buffer.offer(element)) Thread.yield();
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		int[] next = new int[producers];
+		for (int received = 0; received < producers * perProducer;) {
+			long[] element = buffer.poll();
+			if (element == null) {
+				Thread.yield();
+				continue;
+			}
+			assert element[1] == next[(int) element[0]]++;
+			received++;
+		}
+		for (Thread thread : threads) thread.join();
+		assert buffer.isEmpty() && buffer.poll() == null;
+	}
+	
+	@Test
+	void testMatchesBookings() {
+		//One request at a time, the engine must give the same answers as a Bookings object, with blocks small enough
+		//that most stays cross shards (including stays longer than a full round of the shards)
+		Bookings expected = new Bookings();
+		try (ShardedBookingEngine engine = new ShardedBookingEngine(3, 5, CalendarBackend.TREE)) {
+			for (RoomType type : RoomType.values()) {
+				expected.setNumRooms(type, ROOMS);
+				engine.setNumRooms(type, ROOMS);
+			}
+			Random random = new Random(5);
+			ArrayList<long[]> ids = new ArrayList<long[]>();	//(engine ID, Bookings ID) of each booking made
+			for (int i = 0; i < 3000; i++) {
+				RoomType type = RoomType.values()[random.nextInt(RoomType.values().length)];
+				LocalDate start = ORIGIN.plusDays(random.nextInt(WINDOW) - 10);
+				int action = random.nextInt(6);
+				if (action < 3) {
+					LocalDate end = start.plusDays(1 + random.nextInt(action == 0 ? 25 : 4));
+					long id = expected.book(type, start, end);
+					long engineId = engine.book(type, start, end).join();
+					assert (id > 0) == (engineId > 0);
+					if (id > 0) ids.add(new long[] { engineId, id });
+				} else if (action < 5) {
+					assert engine.checkAvailability(type, start).join() == expected.checkAvailability(type, start);
+				} else if (!ids.isEmpty()) {
+					long[] pair = ids.remove(random.nextInt(ids.size()));
+					assert engine.cancelBooking(pair[0]).join();
+					assert expected.cancelBooking(pair[1]);
+					assert !engine.cancelBooking(pair[0]).join();
+				}
+			}
+			for (RoomType type : RoomType.values()) {
+				for (int d = -10; d < WINDOW + 30; d++) {
+					assert engine.checkAvailability(type, ORIGIN.plusDays(d)).join() == expected.checkAvailability(type, ORIGIN.plusDays(d));
+				}
+			}
+			assert !engine.cancelBooking(0).join();
+		}
+	}
+	
+	@Test
+	void testNoOverbookingUnderContention() throws InterruptedException {
+		//Many threads book stays across shards at once, without waiting for each other's results
+		try (ShardedBookingEngine engine = new ShardedBookingEngine(4, 7, CalendarBackend.TREE)) {
+			for (RoomType type : RoomType.values()) engine.setNumRooms(type, ROOMS);
+			AtomicIntegerArray taken = new AtomicIntegerArray(RoomType.values().length * WINDOW);
+			CountDownLatch start = new CountDownLatch(1);
+			ArrayList<Thread> threads = new ArrayList<Thread>();
+			ArrayList<Throwable> failures = new ArrayList<Throwable>();
+			for (int t = 0; t < 8; t++) {
+				final long seed = t;
+				Thread thread = new Thread(() -> {
+					Random random = new Random(seed);
+					try {
+						start.await();
+						ArrayList<CompletableFuture<Long>> pending = new ArrayList<CompletableFuture<Long>>();
+						ArrayList<int[]> stays = new ArrayList<int[]>();
+						for (int i = 0; i < 2000; i++) {
+							RoomType type = RoomType.values()[random.nextInt(RoomType.values().length)];
+							int first = random.nextInt(WINDOW - 1);
+							int last = Math.min(WINDOW, first + 1 + random.nextInt(10));
+							pending.add(engine.book(type, ORIGIN.plusDays(first), ORIGIN.plusDays(last)));
+							stays.add(new int[] { type.getValue(), first, last });
+						}
+						for (int i = 0; i < pending.size(); i++) {
+							if (pending.get(i).join() < 0) continue;
+							int[] stay = stays.get(i);
+							for (int d = stay[1]; d < stay[2]; d++) taken.incrementAndGet(stay[0] * WINDOW + d);
+						}
+					} catch (Throwable ex) {
+						synchronized (failures) {
+							failures.add(ex);
+						}
+					}
+				});
+				threads.add(thread);
+				thread.start();
+			}
+			start.countDown();
+			for (Thread thread : threads) thread.join();
+			assert failures.isEmpty() : failures.get(0);
+			for (RoomType type : RoomType.values()) {
+				for (int d = 0; d < WINDOW; d++) {
+					int booked = taken.get(type.getValue() * WINDOW + d);
+					assert booked <= ROOMS;
+					assert engine.checkAvailability(type, ORIGIN.plusDays(d)).join() == ROOMS - booked;
+				}
+			}
+		}
+	}
+	
+	@Test
+	void testClosedEngineRejectsRequests() {
+		ShardedBookingEngine engine = new ShardedBookingEngine(2, 7, CalendarBackend.ARRAY);
+		engine.setNumRooms(RoomType.TWIN, 1);
+		assert engine.book(RoomType.TWIN, ORIGIN, ORIGIN.plusDays(20)).join() > 0;
+		engine.close();
+		try {
+			engine.book(RoomType.TWIN, ORIGIN, ORIGIN.plusDays(1)).join();
+			assert false;
+		} catch (CompletionException ex) {
+			assert ex.getCause() instanceof IllegalStateException;
+		}
+	}
+	
+	@Test
+	void testRejectsTypesRegisteredLater() {
+		//A type registered after the engine was created has no shards, and must be rejected rather than misrouted
+		try (ShardedBookingEngine engine = new ShardedBookingEngine(2, 7, CalendarBackend.ARRAY)) {
+			RoomType late = RoomType.register("SHARDLATE");
+			assertThrows(IllegalArgumentException.class, () -> engine.setNumRooms(late, 1));
+			assertThrows(IllegalArgumentException.class, () -> engine.getNumRoomsByType(late));
+			assertThrows(IllegalArgumentException.class, () -> engine.checkAvailability(late, ORIGIN));
+			assertThrows(IllegalArgumentException.class, () -> engine.book(late, ORIGIN, ORIGIN.plusDays(20)));
+			assertThrows(IllegalArgumentException.class, () -> engine.book(late, ORIGIN, ORIGIN));
+			//The types it was created with are still served
+			engine.setNumRooms(RoomType.KING, 1);
+			assert engine.book(RoomType.KING, ORIGIN, ORIGIN.plusDays(20)).join() > 0;
+		} finally {
+			RoomType.reset();
+		}
+	}
+}